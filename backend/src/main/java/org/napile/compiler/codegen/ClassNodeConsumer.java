@@ -0,0 +1,29 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.codegen;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.tree.members.ClassNode;
+
+/**
+ * @author VISTALL
+ * @since 14:05/18.10.26
+ */
+public interface ClassNodeConsumer
+{
+	void consume(@NotNull ClassNode classNode);
+}
@@ -19,42 +19,78 @@
  */
 package org.napile.compiler.codegen;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.resolve.name.FqName;
 import org.napile.asm.tree.members.ClassNode;
 import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.codegen.optimization.CodeOptimizer;
+import org.napile.compiler.codegen.optimization.MacroInliner;
+import org.napile.compiler.codegen.processors.AsmNodeCache;
 import org.napile.compiler.codegen.processors.ClassCodegen;
 import org.napile.compiler.codegen.processors.ExpressionCodegenContext;
 import org.napile.compiler.codegen.processors.FqNameGenerator;
 import org.napile.compiler.lang.psi.NapileClass;
 import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.LockBasedBindingTrace;
+import org.napile.compiler.util.CompilerStatistics;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.project.Project;
 
 public class GenerationState
 {
+	/**
+	 * Count of classes per codegen thread, which can be generated before merge of previous classes
+	 */
+	private static final int IN_FLIGHT_PER_THREAD = 2;
+
 	private final Progress progress;
 	@NotNull
 	private final Collection<NapileFile> files;
 	@NotNull
 	private final BindingTrace bindingTrace;
+	private final int threads;
 
 	private Map<FqName, ClassNode> classNodes = new LinkedHashMap<FqName, ClassNode>();
 
+	@Nullable
+	private ClassNodeConsumer classNodeConsumer;
+
+	@Nullable
+	private CodeOptimizer codeOptimizer;
+
+	@Nullable
+	private MacroInliner macroInliner;
+
 	private boolean used = false;
 
 	public GenerationState(@NotNull Project project, Progress progress, @NotNull AnalyzeExhaust exhaust, @NotNull Collection<NapileFile> files)
+	{
+		this(project, progress, exhaust, files, 1);
+	}
+
+	public GenerationState(@NotNull Project project, Progress progress, @NotNull AnalyzeExhaust exhaust, @NotNull Collection<NapileFile> files, int threads)
 	{
 		this.progress = progress;
 		this.files = files;
+		this.threads = Math.max(1, threads);
 
 		this.bindingTrace = exhaust.getBindingTrace();
 	}
@@ -68,6 +104,30 @@ public class GenerationState
 		used = true;
 	}
 
+	/**
+	 * If consumer is set - generated nodes are passed to it as soon as class is generated, and not stored in {@link #getClassNodes()}
+	 */
+	public void setClassNodeConsumer(@Nullable ClassNodeConsumer classNodeConsumer)
+	{
+		this.classNodeConsumer = classNodeConsumer;
+	}
+
+	/**
+	 * If optimizer is set - code of each class node is optimized, before node is passed to consumer
+	 */
+	public void setCodeOptimizer(@Nullable CodeOptimizer codeOptimizer)
+	{
+		this.codeOptimizer = codeOptimizer;
+	}
+
+	/**
+	 * If inliner is set - macro jumps of each class node are replaced by code of macros, before optimization
+	 */
+	public void setMacroInliner(@Nullable MacroInliner macroInliner)
+	{
+		this.macroInliner = macroInliner;
+	}
+
 	public Progress getProgress()
 	{
 		return progress;
@@ -76,6 +136,7 @@ public class GenerationState
 	public void compileAndGenerate(@NotNull CompilationErrorHandler errorHandler)
 	{
 		NapileFile file = null;
+		AsmNodeCache asmNodeCache = null;
 		try
 		{
 			markUsed();
@@ -97,15 +158,26 @@ public class GenerationState
 				napileClass.accept(fqNameGenerator, null);
 			}
 
+			// fq names are known - type nodes and refs can be shared between classes
+			asmNodeCache = new AsmNodeCache();
+
 			classNodes = new LinkedHashMap<FqName, ClassNode>(classes.size());
 
-			ClassCodegen classCodegen = new ClassCodegen(bindingTrace);
-			for(NapileClass napileClass : classes)
+			if(threads > 1 && classes.size() > 1)
 			{
-				file = napileClass.getContainingFile();
+				file = null;
+
+				genParallel(classes, asmNodeCache, errorHandler);
+			}
+			else
+			{
+				ClassCodegen classCodegen = new ClassCodegen(bindingTrace, asmNodeCache);
+				for(NapileClass napileClass : classes)
+				{
+					file = napileClass.getContainingFile();
 
-				ClassNode classNode = classCodegen.gen(napileClass, ExpressionCodegenContext.empty());
-				classNodes.put(classNode.name, classNode);
+					addClassNode(gen(classCodegen, napileClass));
+				}
 			}
 		}
 		catch(ProcessCanceledException pce)
@@ -116,10 +188,113 @@ public class GenerationState
 		{
 			errorHandler.reportException(e, file == null ? null : file.getVirtualFile().getUrl());
 		}
+		finally
+		{
+			if(asmNodeCache != null)
+			{
+				CompilerStatistics.setCounter("asmNodeCache.requests", asmNodeCache.getRequests());
+				CompilerStatistics.setCounter("asmNodeCache.hits", asmNodeCache.getHits());
+				CompilerStatistics.setCounter("asmNodeCache.size", asmNodeCache.getSize());
+			}
+		}
+	}
+
+	/**
+	 * Each class is generated by own {@link ClassCodegen} in pool thread. Trees of all files are already
+	 * parsed by {@link FqNameGenerator}, and codegen only reads trace - but it wrapped by lock anyway.
+	 * Result nodes are merged in source order. Failure of one class not stops other classes - each failure is reported for own file.
+	 * Only {@link #IN_FLIGHT_PER_THREAD} classes per thread are submitted ahead of merged class - slow class not holds nodes of all
+	 * next classes in memory, while consumer waits it
+	 */
+	private void genParallel(@NotNull List<NapileClass> classes, @NotNull final AsmNodeCache asmNodeCache, @NotNull CompilationErrorHandler errorHandler) throws InterruptedException
+	{
+		final BindingTrace sharedTrace = new LockBasedBindingTrace(bindingTrace);
+
+		int poolSize = Math.min(threads, classes.size());
+		ExecutorService executorService = Executors.newFixedThreadPool(poolSize, new CodegenThreadFactory());
+		try
+		{
+			int inFlight = poolSize * IN_FLIGHT_PER_THREAD;
+
+			Queue<Future<ClassNode>> futures = new ArrayDeque<Future<ClassNode>>(inFlight);
+			int submitted = 0;
+			for(int i = 0; i < classes.size(); i++)
+			{
+				for(; submitted < classes.size() && submitted < i + inFlight; submitted++)
+					futures.add(submit(executorService, sharedTrace, asmNodeCache, classes.get(submitted)));
+
+				try
+				{
+					addClassNode(futures.poll().get());
+				}
+				catch(ExecutionException e)
+				{
+					Throwable cause = e.getCause();
+					if(cause instanceof ProcessCanceledException)
+						throw (ProcessCanceledException) cause;
+
+					errorHandler.reportException(cause, classes.get(i).getContainingFile().getVirtualFile().getUrl());
+				}
+			}
+		}
+		finally
+		{
+			executorService.shutdownNow();
+		}
+	}
+
+	@NotNull
+	private Future<ClassNode> submit(@NotNull ExecutorService executorService, @NotNull final BindingTrace sharedTrace, @NotNull final AsmNodeCache asmNodeCache, @NotNull final NapileClass napileClass)
+	{
+		return executorService.submit(new Callable<ClassNode>()
+		{
+			@Override
+			public ClassNode call() throws Exception
+			{
+				return gen(new ClassCodegen(sharedTrace, asmNodeCache), napileClass);
+			}
+		});
+	}
+
+	@NotNull
+	private ClassNode gen(@NotNull ClassCodegen classCodegen, @NotNull NapileClass napileClass)
+	{
+		long time = CompilerStatistics.getCurrent() == null ? 0 : System.nanoTime();
+
+		ClassNode classNode = classCodegen.gen(napileClass, ExpressionCodegenContext.empty());
+		if(macroInliner != null)
+			macroInliner.inline(classNode);
+		if(codeOptimizer != null)
+			codeOptimizer.optimize(classNode);
+
+		if(time != 0)
+			CompilerStatistics.recordTime(CompilerStatistics.CODEGEN_CLASSES, classNode.name.getFqName(), System.nanoTime() - time);
+		return classNode;
+	}
+
+	private void addClassNode(@NotNull ClassNode classNode)
+	{
+		if(classNodeConsumer != null)
+			classNodeConsumer.consume(classNode);
+		else
+			classNodes.put(classNode.name, classNode);
 	}
 
 	public Map<FqName, ClassNode> getClassNodes()
 	{
 		return classNodes;
 	}
+
+	private static class CodegenThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, "codegen-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
 }
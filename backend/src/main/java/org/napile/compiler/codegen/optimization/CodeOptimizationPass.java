@@ -0,0 +1,37 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.codegen.optimization;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * @author VISTALL
+ * @since 16:15/19.10.26
+ */
+public interface CodeOptimizationPass
+{
+	/**
+	 * @return name of pass, which is used in compiler arguments and statistics
+	 */
+	@NotNull
+	String getName();
+
+	/**
+	 * Marks removed and replaces instructions of code. Removed instructions are dropped after pass
+	 */
+	void optimize(@NotNull OptimizedCode code);
+}
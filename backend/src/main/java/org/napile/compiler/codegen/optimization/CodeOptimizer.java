@@ -0,0 +1,210 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.codegen.optimization;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.Modifier;
+import org.napile.asm.tree.members.AbstractMemberNode;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.CodeInfo;
+import org.napile.asm.tree.members.MacroNode;
+import org.napile.asm.tree.members.MethodNode;
+import org.napile.asm.tree.members.MethodParameterNode;
+import org.napile.asm.tree.members.VariableNode;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.adapter.ReservedInstruction;
+import org.napile.asm.tree.members.bytecode.impl.PutAnonymInstruction;
+import org.napile.compiler.util.CompilerStatistics;
+import com.google.common.base.Splitter;
+
+/**
+ * Runs passes over code of methods and variables of generated class nodes. Passes are repeated, while they remove instructions.
+ * Code of macros is not changed - it is inlined into code of caller by {@link MacroInliner} or by VM.
+ * <p/>
+ * Optimizer can be shared by codegen threads
+ *
+ * @author VISTALL
+ * @since 17:00/19.10.26
+ */
+public class CodeOptimizer
+{
+	public static final String STATISTICS_PREFIX = "optimizer.";
+
+	private static final int MAX_ROUNDS = 8;
+
+	@NotNull
+	public static List<CodeOptimizationPass> createAllPasses()
+	{
+		return Arrays.<CodeOptimizationPass>asList(new ConstantConditionPass(), new JumpChainPass(), new PushPopPass(), new LocalStoreLoadPass(), new UnreachableCodePass());
+	}
+
+	/**
+	 * @param text 'all', 'none', or comma-separated names of passes
+	 */
+	@NotNull
+	public static CodeOptimizer parse(@NotNull String text)
+	{
+		if(text.equalsIgnoreCase("all"))
+			return new CodeOptimizer(createAllPasses());
+		if(text.equalsIgnoreCase("none"))
+			return new CodeOptimizer(Collections.<CodeOptimizationPass>emptyList());
+
+		Map<String, CodeOptimizationPass> allPasses = new LinkedHashMap<String, CodeOptimizationPass>();
+		for(CodeOptimizationPass pass : createAllPasses())
+			allPasses.put(pass.getName(), pass);
+
+		List<CodeOptimizationPass> passes = new ArrayList<CodeOptimizationPass>();
+		for(String name : Splitter.on(',').trimResults().omitEmptyStrings().split(text))
+		{
+			CodeOptimizationPass pass = allPasses.get(name);
+			if(pass == null)
+				throw new IllegalArgumentException("Unknown optimization pass: " + name + ". Expected 'all', 'none' or some of " + allPasses.keySet());
+			passes.add(pass);
+		}
+		return new CodeOptimizer(passes);
+	}
+
+	private final List<CodeOptimizationPass> passes;
+	private final AtomicLong[] removedCounts;
+
+	public CodeOptimizer(@NotNull List<CodeOptimizationPass> passes)
+	{
+		this.passes = passes;
+
+		removedCounts = new AtomicLong[passes.size()];
+		for(int i = 0; i < removedCounts.length; i++)
+			removedCounts[i] = new AtomicLong();
+	}
+
+	public boolean isEmpty()
+	{
+		return passes.isEmpty();
+	}
+
+	/**
+	 * @return names of passes, in order of running
+	 */
+	@NotNull
+	public List<String> getPassNames()
+	{
+		List<String> names = new ArrayList<String>(passes.size());
+		for(CodeOptimizationPass pass : passes)
+			names.add(pass.getName());
+		return names;
+	}
+
+	public void optimize(@NotNull ClassNode classNode)
+	{
+		if(passes.isEmpty())
+			return;
+
+		for(AbstractMemberNode<?> memberNode : classNode.getMembers())
+		{
+			if(memberNode instanceof ClassNode)
+				optimize((ClassNode) memberNode);
+			else if(memberNode instanceof MacroNode)
+				continue;
+			else if(memberNode instanceof MethodNode)
+			{
+				MethodNode methodNode = (MethodNode) memberNode;
+				if(methodNode.code != null)
+					methodNode.code = optimize(methodNode.code, hasRefParameters(methodNode));
+			}
+			else if(memberNode instanceof VariableNode)
+			{
+				VariableNode variableNode = (VariableNode) memberNode;
+				if(variableNode.code != null)
+					variableNode.code = optimize(variableNode.code, false);
+			}
+		}
+	}
+
+	/**
+	 * @param localsLiveAtExit true if locals are read after return(see {@link OptimizedCode#isLocalsLiveAtExit()})
+	 */
+	@NotNull
+	public CodeInfo optimize(@NotNull CodeInfo codeInfo, boolean localsLiveAtExit)
+	{
+		for(Instruction instruction : codeInfo.instructions)
+			// not replaced reserved instruction - code is broken, leave it as is
+			if(instruction instanceof ReservedInstruction)
+				return codeInfo;
+
+		OptimizedCode code = new OptimizedCode(codeInfo, localsLiveAtExit);
+
+		// anonym methods are optimized separately - indexes are own
+		for(int i = 0; i < code.size(); i++)
+		{
+			Instruction instruction = code.get(i);
+			if(instruction instanceof PutAnonymInstruction)
+			{
+				PutAnonymInstruction putAnonymInstruction = (PutAnonymInstruction) instruction;
+				code.set(i, new PutAnonymInstruction(putAnonymInstruction.require, optimize(putAnonymInstruction.code, true)));
+			}
+		}
+
+		for(int round = 0; round < MAX_ROUNDS; round++)
+		{
+			int removedInRound = 0;
+			for(int i = 0; i < passes.size(); i++)
+			{
+				passes.get(i).optimize(code);
+
+				int removed = code.commit();
+				if(removed > 0)
+				{
+					removedCounts[i].addAndGet(removed);
+					CompilerStatistics.count(STATISTICS_PREFIX + passes.get(i).getName(), removed);
+					removedInRound += removed;
+				}
+			}
+
+			if(removedInRound == 0)
+				break;
+		}
+		return code.toCodeInfo();
+	}
+
+	/**
+	 * @return count of instructions, removed by each pass
+	 */
+	@NotNull
+	public Map<String, Long> getRemovedCounts()
+	{
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for(int i = 0; i < passes.size(); i++)
+			result.put(passes.get(i).getName(), removedCounts[i].get());
+		return result;
+	}
+
+	static boolean hasRefParameters(@NotNull MethodNode methodNode)
+	{
+		for(MethodParameterNode parameterNode : methodNode.parameters)
+			for(Modifier modifier : parameterNode.modifiers)
+				if(modifier == Modifier.REF)
+					return true;
+		return false;
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.codegen.optimization;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.impl.JumpIfInstruction;
+import org.napile.asm.tree.members.bytecode.impl.JumpInstruction;
+import org.napile.asm.tree.members.bytecode.impl.PopInstruction;
+
+/**
+ * Simplifies conditions, generated as <code>condition, put_true, jump_if</code>(jump_if jumps if values are not equal):
+ * <ul>
+ * <li>both values are bool constants - jump_if is replaced by jump, or removed</li>
+ * <li>jump_if jumps to next instruction - constant and jump_if are replaced by pop of condition</li>
+ * </ul>
+ *
+ * @author VISTALL
+ * @since 16:30/19.10.26
+ */
+public class ConstantConditionPass implements CodeOptimizationPass
+{
+	@NotNull
+	@Override
+	public String getName()
+	{
+		return "conditions";
+	}
+
+	@Override
+	public void optimize(@NotNull OptimizedCode code)
+	{
+		for(int i = 1; i < code.size(); i++)
+		{
+			Instruction instruction = code.get(i);
+			if(!(instruction instanceof JumpIfInstruction) || code.isLabel(i) || code.isRemoved(i - 1) || !InstructionUtil.isBoolConstant(code.get(i - 1)))
+				continue;
+
+			int target = ((JumpIfInstruction) instruction).value;
+			Instruction constant = code.get(i - 1);
+			if(i > 1 && !code.isLabel(i - 1) && !code.isRemoved(i - 2) && InstructionUtil.isBoolConstant(code.get(i - 2)))
+			{
+				code.remove(i - 2);
+				code.remove(i - 1);
+				if(InstructionUtil.isPutTrue(code.get(i - 2)) == InstructionUtil.isPutTrue(constant))
+					code.remove(i);
+				else
+					code.set(i, new JumpInstruction(target));
+			}
+			else if(target == i + 1)
+			{
+				code.remove(i - 1);
+				code.set(i, new PopInstruction());
+			}
+		}
+	}
+}
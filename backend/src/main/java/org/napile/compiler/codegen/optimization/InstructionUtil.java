@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.codegen.optimization;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.lib.NapileLangPackage;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.resolve.name.Name;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.impl.DupInstruction;
+import org.napile.asm.tree.members.bytecode.impl.InvokeStaticInstruction;
+import org.napile.asm.tree.members.bytecode.impl.LocalGetInstruction;
+import org.napile.asm.tree.members.bytecode.impl.NewByteInstruction;
+import org.napile.asm.tree.members.bytecode.impl.NewCharInstruction;
+import org.napile.asm.tree.members.bytecode.impl.NewDoubleInstruction;
+import org.napile.asm.tree.members.bytecode.impl.NewFloatInstruction;
+import org.napile.asm.tree.members.bytecode.impl.NewIntInstruction;
+import org.napile.asm.tree.members.bytecode.impl.NewLongInstruction;
+import org.napile.asm.tree.members.bytecode.impl.NewShortInstruction;
+import org.napile.asm.tree.members.bytecode.impl.NewStringInstruction;
+import org.napile.asm.tree.members.bytecode.impl.PutAnonymInstruction;
+
+/**
+ * @author VISTALL
+ * @since 16:25/19.10.26
+ */
+class InstructionUtil
+{
+	// see InstructionAdapter#putTrue(), #putFalse(), #putNull()
+	private static final FqName BOOL_TRUE = NapileLangPackage.BOOL.child(Name.identifier("TRUE$get"));
+	private static final FqName BOOL_FALSE = NapileLangPackage.BOOL.child(Name.identifier("FALSE$get"));
+	private static final FqName NULL = NapileLangPackage.NULL.child(Name.identifier("INSTANCE$get"));
+
+	static boolean isPutTrue(@NotNull Instruction instruction)
+	{
+		return isStaticGet(instruction, BOOL_TRUE);
+	}
+
+	static boolean isPutFalse(@NotNull Instruction instruction)
+	{
+		return isStaticGet(instruction, BOOL_FALSE);
+	}
+
+	static boolean isBoolConstant(@NotNull Instruction instruction)
+	{
+		return isPutTrue(instruction) || isPutFalse(instruction);
+	}
+
+	/**
+	 * @return true if instruction only pushes one value to stack, without side effects
+	 */
+	static boolean isPurePush(@NotNull Instruction instruction)
+	{
+		return instruction instanceof LocalGetInstruction ||
+				instruction instanceof DupInstruction ||
+				instruction instanceof NewByteInstruction ||
+				instruction instanceof NewShortInstruction ||
+				instruction instanceof NewIntInstruction ||
+				instruction instanceof NewLongInstruction ||
+				instruction instanceof NewFloatInstruction ||
+				instruction instanceof NewDoubleInstruction ||
+				instruction instanceof NewCharInstruction ||
+				instruction instanceof NewStringInstruction ||
+				instruction instanceof PutAnonymInstruction ||
+				isBoolConstant(instruction) ||
+				isStaticGet(instruction, NULL);
+	}
+
+	private static boolean isStaticGet(@NotNull Instruction instruction, @NotNull FqName fqName)
+	{
+		if(!(instruction instanceof InvokeStaticInstruction))
+			return false;
+		InvokeStaticInstruction invokeInstruction = (InvokeStaticInstruction) instruction;
+		return invokeInstruction.methodRef.parameters.isEmpty() && invokeInstruction.methodRef.method.equals(fqName);
+	}
+}
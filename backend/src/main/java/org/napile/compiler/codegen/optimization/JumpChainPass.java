@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.codegen.optimization;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.impl.JumpIfInstruction;
+import org.napile.asm.tree.members.bytecode.impl.JumpInstruction;
+import org.napile.asm.tree.members.bytecode.impl.ReturnInstruction;
+
+/**
+ * Redirects jumps to jumps into final target, replaces jumps to return by return, and removes jumps to next instruction
+ *
+ * @author VISTALL
+ * @since 16:35/19.10.26
+ */
+public class JumpChainPass implements CodeOptimizationPass
+{
+	@NotNull
+	@Override
+	public String getName()
+	{
+		return "jumps";
+	}
+
+	@Override
+	public void optimize(@NotNull OptimizedCode code)
+	{
+		for(int i = 0; i < code.size(); i++)
+		{
+			Instruction instruction = code.get(i);
+			if(instruction instanceof JumpInstruction)
+			{
+				int oldTarget = ((JumpInstruction) instruction).value;
+				int target = findFinalTarget(code, oldTarget);
+				if(target == i + 1)
+					code.remove(i);
+				else if(target < code.size() && code.get(target) instanceof ReturnInstruction)
+					code.set(i, new ReturnInstruction(((ReturnInstruction) code.get(target)).count));
+				else if(target != oldTarget)
+					code.set(i, new JumpInstruction(target));
+			}
+			else if(instruction instanceof JumpIfInstruction)
+			{
+				int oldTarget = ((JumpIfInstruction) instruction).value;
+				int target = findFinalTarget(code, oldTarget);
+				if(target != oldTarget)
+					code.set(i, new JumpIfInstruction(target));
+			}
+		}
+	}
+
+	private static int findFinalTarget(@NotNull OptimizedCode code, int target)
+	{
+		// jumps can be looped - count of steps is limited
+		for(int step = 0; step < code.size() && target < code.size(); step++)
+		{
+			Instruction instruction = code.get(target);
+			if(!(instruction instanceof JumpInstruction))
+				break;
+			target = ((JumpInstruction) instruction).value;
+		}
+		return target;
+	}
+}
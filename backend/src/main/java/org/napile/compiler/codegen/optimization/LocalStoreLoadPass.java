@@ -0,0 +1,139 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.codegen.optimization;
+
+import java.util.BitSet;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.impl.LocalGetInstruction;
+import org.napile.asm.tree.members.bytecode.impl.LocalPutInstruction;
+import org.napile.asm.tree.members.bytecode.impl.MacroJumpInstruction;
+import org.napile.asm.tree.members.bytecode.impl.MacroStaticJumpInstruction;
+import org.napile.asm.tree.members.bytecode.impl.PutAnonymInstruction;
+import org.napile.asm.tree.members.bytecode.impl.ReturnInstruction;
+
+/**
+ * Removes pairs of local instructions on same slot:
+ * <ul>
+ * <li><code>local_get n, local_put n</code> - value is stored to local, from which it was read</li>
+ * <li><code>local_put n, local_get n</code> - if local is not read after it(temporary variables)</li>
+ * </ul>
+ * Liveness of locals is computed over code, anonym methods and macro jumps read all locals
+ *
+ * @author VISTALL
+ * @since 16:50/19.10.26
+ */
+public class LocalStoreLoadPass implements CodeOptimizationPass
+{
+	@NotNull
+	@Override
+	public String getName()
+	{
+		return "locals";
+	}
+
+	@Override
+	public void optimize(@NotNull OptimizedCode code)
+	{
+		BitSet[] liveIn = null;
+		for(int i = 0; i < code.size() - 1; i++)
+		{
+			Instruction first = code.get(i);
+			Instruction second = code.get(i + 1);
+			if(code.isLabel(i + 1) || code.isRemoved(i) || code.isRemoved(i + 1))
+				continue;
+
+			if(first instanceof LocalGetInstruction && second instanceof LocalPutInstruction && ((LocalGetInstruction) first).varIndex == ((LocalPutInstruction) second).varIndex)
+			{
+				code.remove(i);
+				code.remove(i + 1);
+			}
+			else if(first instanceof LocalPutInstruction && second instanceof LocalGetInstruction && ((LocalPutInstruction) first).varIndex == ((LocalGetInstruction) second).varIndex)
+			{
+				if(liveIn == null)
+					liveIn = computeLiveness(code);
+
+				if(!isLiveAfter(code, liveIn, i + 1, ((LocalGetInstruction) second).varIndex))
+				{
+					code.remove(i);
+					code.remove(i + 1);
+				}
+			}
+		}
+	}
+
+	private static boolean isLiveAfter(@NotNull OptimizedCode code, @NotNull BitSet[] liveIn, int index, int varIndex)
+	{
+		for(int successor : code.getSuccessors(index))
+		{
+			if(successor >= liveIn.length ? code.isLocalsLiveAtExit() : liveIn[successor].get(varIndex))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return locals, which are live before each instruction
+	 */
+	@NotNull
+	private static BitSet[] computeLiveness(@NotNull OptimizedCode code)
+	{
+		int size = code.size();
+		BitSet[] liveIn = new BitSet[size];
+		for(int i = 0; i < size; i++)
+			liveIn[i] = new BitSet();
+
+		BitSet allLocals = new BitSet();
+		allLocals.set(0, Math.max(code.getMaxLocals(), 1));
+
+		boolean changed = true;
+		while(changed)
+		{
+			changed = false;
+			for(int i = size - 1; i >= 0; i--)
+			{
+				Instruction instruction = code.get(i);
+
+				BitSet live = new BitSet();
+				for(int successor : code.getSuccessors(i))
+				{
+					if(successor < size)
+						live.or(liveIn[successor]);
+					else if(code.isLocalsLiveAtExit())
+						live.or(allLocals);
+				}
+
+				if(instruction instanceof LocalPutInstruction)
+					live.clear(((LocalPutInstruction) instruction).varIndex);
+				else if(instruction instanceof LocalGetInstruction)
+					live.set(((LocalGetInstruction) instruction).varIndex);
+				else if(instruction instanceof PutAnonymInstruction || instruction instanceof MacroJumpInstruction || instruction instanceof MacroStaticJumpInstruction)
+					live.or(allLocals);
+				else if(instruction instanceof ReturnInstruction && code.isLocalsLiveAtExit())
+					live.or(allLocals);
+
+				if(!live.equals(liveIn[i]))
+				{
+					liveIn[i] = live;
+					changed = true;
+				}
+			}
+		}
+		return liveIn;
+	}
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.napile.compiler.codegen.optimization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.Modifier;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.AbstractMemberNode;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.CodeInfo;
+import org.napile.asm.tree.members.MacroNode;
+import org.napile.asm.tree.members.MethodNode;
+import org.napile.asm.tree.members.VariableNode;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.MethodRef;
+import org.napile.asm.tree.members.bytecode.adapter.ReservedInstruction;
+import org.napile.asm.tree.members.bytecode.impl.JumpIfInstruction;
+import org.napile.asm.tree.members.bytecode.impl.JumpInstruction;
+import org.napile.asm.tree.members.bytecode.impl.LocalGetInstruction;
+import org.napile.asm.tree.members.bytecode.impl.LocalPutInstruction;
+import org.napile.asm.tree.members.bytecode.impl.MacroJumpInstruction;
+import org.napile.asm.tree.members.bytecode.impl.MacroStaticJumpInstruction;
+import org.napile.asm.tree.members.bytecode.impl.PutAnonymInstruction;
+import org.napile.asm.tree.members.bytecode.impl.ReturnInstruction;
+import org.napile.asm.tree.members.bytecode.tryCatch.CatchBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryCatchBlockNode;
+import org.napile.compiler.util.CompilerStatistics;
+import com.intellij.util.ArrayUtil;
+
+/**
+ * Replaces macro jumps by code of macro. Macros are local, so only macros of same class node(or its inner classes) are inlined.
+ * <p/>
+ * Arguments of macro jump are stored from stack to locals after last local of caller, and indexes of locals in code
+ * of macro are shifted to them. Jumps of macro are shifted to position of inlined code. Macros with try/catch blocks, returns,
+ * anonym methods, ref or type parameters are not inlined - jump to them is kept, and they are inlined by VM.
+ * <p/>
+ * Size of inlined macro and count of inlined instructions of one class are limited, macros which call themselves are not inlined into itself.
+ * Inliner can be shared by codegen threads - limit of class is not shared, so inlined code doesn't depend on order of generation
+ *
+ * @author VISTALL
+ * @since 18:40/19.10.26
+ */
+public class MacroInliner
+{
+	public static final String STATISTICS_PREFIX = "inliner.";
+
+	public static final int DEFAULT_MAX_INLINED_INSTRUCTIONS = 1 << 16;
+
+	private static class Context
+	{
+		private final Map<FqName, List<MacroNode>> macros;
+		private final Map<MacroNode, CodeInfo> inlinedMacros = new IdentityHashMap<MacroNode, CodeInfo>();
+		private final Set<MacroNode> inProgress = Collections.newSetFromMap(new IdentityHashMap<MacroNode, Boolean>());
+
+		private int inlinedInstructions;
+
+		private Context(@NotNull Map<FqName, List<MacroNode>> macros)
+		{
+			this.macros = macros;
+		}
+	}
+
+	private final int maxMacroSize;
+	private final int maxInlinedInstructions;
+
+	private final AtomicLong inlinedCalls = new AtomicLong();
+
+	/**
+	 * @param maxInlinedInstructions max count of inlined instructions in one class(with its inner classes)
+	 */
+	public MacroInliner(int maxMacroSize, int maxInlinedInstructions)
+	{
+		this.maxMacroSize = maxMacroSize;
+		this.maxInlinedInstructions = maxInlinedInstructions;
+	}
+
+	public void inline(@NotNull ClassNode classNode)
+	{
+		Map<FqName, List<MacroNode>> macros = new HashMap<FqName, List<MacroNode>>();
+		collectMacros(classNode, macros);
+		if(macros.isEmpty())
+			return;
+
+		inline(classNode, new Context(macros));
+	}
+
+	/**
+	 * @return count of replaced macro jumps
+	 */
+	public long getInlinedCalls()
+	{
+		return inlinedCalls.get();
+	}
+
+	private void inline(@NotNull ClassNode classNode, @NotNull Context context)
+	{
+		for(AbstractMemberNode<?> memberNode : classNode.getMembers())
+		{
+			if(memberNode instanceof ClassNode)
+				inline((ClassNode) memberNode, context);
+			else if(memberNode instanceof MacroNode)
+			{
+				MacroNode macroNode = (MacroNode) memberNode;
+				CodeInfo code = getInlinedMacro(macroNode, context);
+				if(code != null)
+					macroNode.code = code;
+			}
+			else if(memberNode instanceof MethodNode)
+			{
+				MethodNode methodNode = (MethodNode) memberNode;
+				if(methodNode.code != null)
+					methodNode.code = inline(methodNode.code, context);
+			}
+			else if(memberNode instanceof VariableNode)
+			{
+				VariableNode variableNode = (VariableNode) memberNode;
+				if(variableNode.code != null)
+					variableNode.code = inline(variableNode.code, context);
+			}
+		}
+	}
+
+	/**
+	 * @return code of macro with inlined calls of other macros, or null if macro is already inlined in this call chain
+	 */
+	@Nullable
+	private CodeInfo getInlinedMacro(@NotNull MacroNode macroNode, @NotNull Context context)
+	{
+		if(macroNode.code == null)
+			return null;
+
+		CodeInfo code = context.inlinedMacros.get(macroNode);
+		if(code != null)
+			return code;
+
+		// recursive macro
+		if(!context.inProgress.add(macroNode))
+			return null;
+
+		code = inline(macroNode.code, context);
+
+		context.inProgress.remove(macroNode);
+		context.inlinedMacros.put(macroNode, code);
+		return code;
+	}
+
+	@NotNull
+	private CodeInfo inline(@NotNull CodeInfo codeInfo, @NotNull Context context)
+	{
+		List<Instruction> instructions = new ArrayList<Instruction>(codeInfo.instructions);
+		for(Instruction instruction : instructions)
+			// not replaced reserved instruction - code is broken, leave it as is
+			if(instruction instanceof ReservedInstruction)
+				return codeInfo;
+
+		boolean changed = false;
+		CodeInfo[] inlinedCode = new CodeInfo[instructions.size()];
+		int[] newIndexes = new int[instructions.size() + 1];
+		int newSize = 0;
+		for(int i = 0; i < instructions.size(); i++)
+		{
+			newIndexes[i] = newSize;
+
+			Instruction instruction = instructions.get(i);
+			if(instruction instanceof PutAnonymInstruction)
+			{
+				// anonym methods have own locals
+				PutAnonymInstruction putAnonymInstruction = (PutAnonymInstruction) instruction;
+				CodeInfo anonymCode = inline(putAnonymInstruction.code, context);
+				if(anonymCode != putAnonymInstruction.code)
+				{
+					instructions.set(i, OptimizedCode.copyPosition(instruction, new PutAnonymInstruction(putAnonymInstruction.require, anonymCode)));
+					changed = true;
+				}
+			}
+			else if(instruction instanceof MacroJumpInstruction || instruction instanceof MacroStaticJumpInstruction)
+			{
+				inlinedCode[i] = getInlinableCode(instruction, context);
+				if(inlinedCode[i] != null)
+				{
+					newSize += getMethodRef(instruction).parameters.size() + (instruction instanceof MacroJumpInstruction ? 1 : 0) + inlinedCode[i].instructions.size();
+					changed = true;
+					continue;
+				}
+			}
+			newSize++;
+		}
+		newIndexes[instructions.size()] = newSize;
+
+		if(!changed)
+			return codeInfo;
+
+		// locals of inlined code are placed after locals of caller - they are not live after end of inlined code, so places are reused
+		int firstLocal = getLocalsSize(codeInfo);
+
+		CodeInfo result = new CodeInfo();
+		result.maxLocals = firstLocal;
+		for(int i = 0; i < instructions.size(); i++)
+		{
+			Instruction instruction = instructions.get(i);
+			if(inlinedCode[i] != null)
+			{
+				// arguments are on stack - last argument on top
+				int locals = getMethodRef(instruction).parameters.size() + (instruction instanceof MacroJumpInstruction ? 1 : 0);
+				for(int j = locals - 1; j >= 0; j--)
+					result.instructions.add(OptimizedCode.copyPosition(instruction, new LocalPutInstruction(firstLocal + j)));
+
+				int start = result.instructions.size();
+				for(Instruction macroInstruction : inlinedCode[i].instructions)
+					result.instructions.add(relocate(macroInstruction, start, firstLocal));
+
+				result.maxLocals = Math.max(result.maxLocals, firstLocal + getLocalsSize(inlinedCode[i]));
+				inlinedCalls.incrementAndGet();
+				CompilerStatistics.count(STATISTICS_PREFIX + "calls", 1);
+				CompilerStatistics.count(STATISTICS_PREFIX + "instructions", inlinedCode[i].instructions.size());
+			}
+			else if(instruction instanceof JumpInstruction)
+				result.instructions.add(OptimizedCode.copyPosition(instruction, new JumpInstruction(newIndexes[((JumpInstruction) instruction).value])));
+			else if(instruction instanceof JumpIfInstruction)
+				result.instructions.add(OptimizedCode.copyPosition(instruction, new JumpIfInstruction(newIndexes[((JumpIfInstruction) instruction).value])));
+			else
+				result.instructions.add(instruction);
+		}
+
+		for(TryCatchBlockNode tryCatchBlockNode : codeInfo.tryCatchBlockNodes)
+		{
+			TryBlock tryBlock = new TryBlock(newIndexes[tryCatchBlockNode.tryBlock.startIndex], newIndexes[tryCatchBlockNode.tryBlock.endIndex]);
+			List<CatchBlock> catchBlocks = new ArrayList<CatchBlock>(tryCatchBlockNode.catchBlocks.size());
+			for(CatchBlock catchBlock : tryCatchBlockNode.catchBlocks)
+				catchBlocks.add(new CatchBlock(newIndexes[catchBlock.startIndex], newIndexes[catchBlock.endIndex], catchBlock.variableIndex, catchBlock.exception));
+			result.tryCatchBlockNodes.add(new TryCatchBlockNode(tryBlock, catchBlocks));
+		}
+		return result;
+	}
+
+	/**
+	 * @return code of called macro, if it can be inlined
+	 */
+	@Nullable
+	private CodeInfo getInlinableCode(@NotNull Instruction macroJump, @NotNull Context context)
+	{
+		MethodRef methodRef = getMethodRef(macroJump);
+		MacroNode macroNode = findMacro(methodRef, macroJump instanceof MacroStaticJumpInstruction, context);
+		if(macroNode == null || !macroNode.typeParameters.isEmpty() || CodeOptimizer.hasRefParameters(macroNode))
+			return null;
+
+		CodeInfo code = getInlinedMacro(macroNode, context);
+		if(code == null || code.instructions.size() > maxMacroSize || !code.tryCatchBlockNodes.isEmpty())
+			return null;
+
+		for(Instruction instruction : code.instructions)
+			if(instruction instanceof ReturnInstruction || instruction instanceof PutAnonymInstruction || instruction instanceof ReservedInstruction)
+				return null;
+
+		if(context.inlinedInstructions + code.instructions.size() > maxInlinedInstructions)
+			return null;
+		context.inlinedInstructions += code.instructions.size();
+		return code;
+	}
+
+	@Nullable
+	private static MacroNode findMacro(@NotNull MethodRef methodRef, boolean isStatic, @NotNull Context context)
+	{
+		List<MacroNode> macros = context.macros.get(methodRef.method);
+		if(macros == null)
+			return null;
+
+		loop:
+		for(MacroNode macroNode : macros)
+		{
+			if(ArrayUtil.contains(Modifier.STATIC, macroNode.modifiers) != isStatic || macroNode.parameters.size() != methodRef.parameters.size())
+				continue;
+
+			for(int i = 0; i < macroNode.parameters.size(); i++)
+				if(!macroNode.parameters.get(i).returnType.equals(methodRef.parameters.get(i).returnType))
+					continue loop;
+			return macroNode;
+		}
+		return null;
+	}
+
+	private static void collectMacros(@NotNull ClassNode classNode, @NotNull Map<FqName, List<MacroNode>> macros)
+	{
+		for(AbstractMemberNode<?> memberNode : classNode.getMembers())
+		{
+			if(memberNode instanceof ClassNode)
+				collectMacros((ClassNode) memberNode, macros);
+			else if(memberNode instanceof MacroNode)
+			{
+				MacroNode macroNode = (MacroNode) memberNode;
+				FqName fqName = classNode.name.child(macroNode.name);
+				List<MacroNode> list = macros.get(fqName);
+				if(list == null)
+					macros.put(fqName, list = new ArrayList<MacroNode>(1));
+				list.add(macroNode);
+			}
+		}
+	}
+
+	@NotNull
+	private static Instruction relocate(@NotNull Instruction instruction, int start, int firstLocal)
+	{
+		if(instruction instanceof JumpInstruction)
+			return OptimizedCode.copyPosition(instruction, new JumpInstruction(start + ((JumpInstruction) instruction).value));
+		if(instruction instanceof JumpIfInstruction)
+			return OptimizedCode.copyPosition(instruction, new JumpIfInstruction(start + ((JumpIfInstruction) instruction).value));
+		if(instruction instanceof LocalGetInstruction)
+			return OptimizedCode.copyPosition(instruction, new LocalGetInstruction(firstLocal + ((LocalGetInstruction) instruction).varIndex));
+		if(instruction instanceof LocalPutInstruction)
+			return OptimizedCode.copyPosition(instruction, new LocalPutInstruction(firstLocal + ((LocalPutInstruction) instruction).varIndex));
+		return instruction;
+	}
+
+	/**
+	 * @return count of locals, used by code. It is not less than max index of local, because count of visited locals can be less
+	 */
+	private static int getLocalsSize(@NotNull CodeInfo codeInfo)
+	{
+		int size = codeInfo.maxLocals;
+		for(Instruction instruction : codeInfo.instructions)
+		{
+			if(instruction instanceof LocalGetInstruction)
+				size = Math.max(size, ((LocalGetInstruction) instruction).varIndex + 1);
+			else if(instruction instanceof LocalPutInstruction)
+				size = Math.max(size, ((LocalPutInstruction) instruction).varIndex + 1);
+		}
+		for(TryCatchBlockNode tryCatchBlockNode : codeInfo.tryCatchBlockNodes)
+			for(CatchBlock catchBlock : tryCatchBlockNode.catchBlocks)
+				size = Math.max(size, catchBlock.variableIndex + 1);
+		return size;
+	}
+
+	@NotNull
+	private static MethodRef getMethodRef(@NotNull Instruction macroJump)
+	{
+		return macroJump instanceof MacroJumpInstruction ? ((MacroJumpInstruction) macroJump).methodRef : ((MacroStaticJumpInstruction) macroJump).methodRef;
+	}
+
+}
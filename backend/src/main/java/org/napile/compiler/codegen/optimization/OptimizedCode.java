@@ -0,0 +1,261 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.codegen.optimization;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.tree.members.CodeInfo;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.impl.JumpIfInstruction;
+import org.napile.asm.tree.members.bytecode.impl.JumpInstruction;
+import org.napile.asm.tree.members.bytecode.impl.ReturnInstruction;
+import org.napile.asm.tree.members.bytecode.impl.ThrowInstruction;
+import org.napile.asm.tree.members.bytecode.tryCatch.CatchBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryCatchBlockNode;
+import com.intellij.util.ArrayUtil;
+
+/**
+ * Mutable code of one method, variable or anonym method. Passes mark instructions as removed, or replace them,
+ * and after each pass removed instructions are dropped by {@link #commit()} - indexes of jumps and try/catch blocks are remapped.
+ * <p/>
+ * Jump into removed instruction is redirected to next kept instruction, so passes must not remove instructions
+ * with effect, if they are labels(see {@link #isLabel(int)})
+ *
+ * @author VISTALL
+ * @since 16:20/19.10.26
+ */
+public class OptimizedCode
+{
+	private final List<Instruction> instructions;
+	private final List<TryCatchBlockNode> tryCatchBlockNodes;
+	private final int maxLocals;
+	private final boolean localsLiveAtExit;
+
+	private boolean[] removed;
+	private boolean[] labels;
+
+	public OptimizedCode(@NotNull CodeInfo codeInfo, boolean localsLiveAtExit)
+	{
+		instructions = new ArrayList<Instruction>(codeInfo.instructions);
+		tryCatchBlockNodes = new ArrayList<TryCatchBlockNode>(codeInfo.tryCatchBlockNodes);
+		maxLocals = codeInfo.maxLocals;
+		this.localsLiveAtExit = localsLiveAtExit;
+
+		reset();
+	}
+
+	public int size()
+	{
+		return instructions.size();
+	}
+
+	@NotNull
+	public Instruction get(int index)
+	{
+		return instructions.get(index);
+	}
+
+	/**
+	 * Replaces instruction, position of old instruction is kept
+	 */
+	public void set(int index, @NotNull Instruction instruction)
+	{
+		instruction.position = instructions.get(index).position;
+		instructions.set(index, instruction);
+
+		int target = getJumpTarget(instruction);
+		if(target >= 0 && target < labels.length)
+			labels[target] = true;
+	}
+
+	public void remove(int index)
+	{
+		removed[index] = true;
+	}
+
+	public boolean isRemoved(int index)
+	{
+		return removed[index];
+	}
+
+	/**
+	 * @return true if control is passed to instruction not only from previous instruction - it is target of jump,
+	 *         or start or end of try/catch block
+	 */
+	public boolean isLabel(int index)
+	{
+		return labels[index];
+	}
+
+	public int getMaxLocals()
+	{
+		return maxLocals;
+	}
+
+	/**
+	 * @return true if locals can be read after return from code(for example ref parameters, or unknown code)
+	 */
+	public boolean isLocalsLiveAtExit()
+	{
+		return localsLiveAtExit;
+	}
+
+	@NotNull
+	public List<TryCatchBlockNode> getTryCatchBlockNodes()
+	{
+		return tryCatchBlockNodes;
+	}
+
+	/**
+	 * @return indexes of instructions, which can be executed after given, including handlers of try blocks
+	 */
+	@NotNull
+	public int[] getSuccessors(int index)
+	{
+		Instruction instruction = instructions.get(index);
+
+		int[] result = ArrayUtil.EMPTY_INT_ARRAY;
+		if(instruction instanceof JumpInstruction)
+			result = new int[]{((JumpInstruction) instruction).value};
+		else if(instruction instanceof JumpIfInstruction)
+			result = new int[]{((JumpIfInstruction) instruction).value, index + 1};
+		else if(!(instruction instanceof ReturnInstruction) && !(instruction instanceof ThrowInstruction))
+			result = new int[]{index + 1};
+
+		for(TryCatchBlockNode tryCatchBlockNode : tryCatchBlockNodes)
+		{
+			TryBlock tryBlock = tryCatchBlockNode.tryBlock;
+			if(index < tryBlock.startIndex || index >= tryBlock.endIndex)
+				continue;
+			for(CatchBlock catchBlock : tryCatchBlockNode.catchBlocks)
+				result = ArrayUtil.append(result, catchBlock.startIndex);
+		}
+		return result;
+	}
+
+	/**
+	 * Drops removed instructions
+	 *
+	 * @return count of removed instructions
+	 */
+	public int commit()
+	{
+		int size = instructions.size();
+		int[] newIndexes = new int[size + 1];
+		int newSize = 0;
+		for(int i = 0; i < size; i++)
+		{
+			newIndexes[i] = newSize;
+			if(!removed[i])
+				newSize++;
+		}
+		newIndexes[size] = newSize;
+
+		if(newSize == size)
+			return 0;
+
+		List<Instruction> newInstructions = new ArrayList<Instruction>(newSize);
+		for(int i = 0; i < size; i++)
+		{
+			if(removed[i])
+				continue;
+
+			Instruction instruction = instructions.get(i);
+			if(instruction instanceof JumpInstruction)
+				instruction = copyPosition(instruction, new JumpInstruction(newIndexes[((JumpInstruction) instruction).value]));
+			else if(instruction instanceof JumpIfInstruction)
+				instruction = copyPosition(instruction, new JumpIfInstruction(newIndexes[((JumpIfInstruction) instruction).value]));
+			newInstructions.add(instruction);
+		}
+
+		List<TryCatchBlockNode> newTryCatchBlockNodes = new ArrayList<TryCatchBlockNode>(tryCatchBlockNodes.size());
+		for(TryCatchBlockNode tryCatchBlockNode : tryCatchBlockNodes)
+		{
+			TryBlock tryBlock = new TryBlock(newIndexes[tryCatchBlockNode.tryBlock.startIndex], newIndexes[tryCatchBlockNode.tryBlock.endIndex]);
+			// nothing can throw - handlers are not reachable
+			if(tryBlock.startIndex == tryBlock.endIndex)
+				continue;
+
+			List<CatchBlock> catchBlocks = new ArrayList<CatchBlock>(tryCatchBlockNode.catchBlocks.size());
+			for(CatchBlock catchBlock : tryCatchBlockNode.catchBlocks)
+				catchBlocks.add(new CatchBlock(newIndexes[catchBlock.startIndex], newIndexes[catchBlock.endIndex], catchBlock.variableIndex, catchBlock.exception));
+			newTryCatchBlockNodes.add(new TryCatchBlockNode(tryBlock, catchBlocks));
+		}
+
+		instructions.clear();
+		instructions.addAll(newInstructions);
+		tryCatchBlockNodes.clear();
+		tryCatchBlockNodes.addAll(newTryCatchBlockNodes);
+
+		reset();
+		return size - newSize;
+	}
+
+	@NotNull
+	public CodeInfo toCodeInfo()
+	{
+		CodeInfo codeInfo = new CodeInfo();
+		codeInfo.instructions.addAll(instructions);
+		codeInfo.tryCatchBlockNodes.addAll(tryCatchBlockNodes);
+		codeInfo.maxLocals = maxLocals;
+		return codeInfo;
+	}
+
+	private void reset()
+	{
+		int size = instructions.size();
+		removed = new boolean[size];
+		labels = new boolean[size + 1];
+
+		for(Instruction instruction : instructions)
+		{
+			int target = getJumpTarget(instruction);
+			if(target >= 0 && target <= size)
+				labels[target] = true;
+		}
+
+		for(TryCatchBlockNode tryCatchBlockNode : tryCatchBlockNodes)
+		{
+			labels[tryCatchBlockNode.tryBlock.startIndex] = true;
+			labels[tryCatchBlockNode.tryBlock.endIndex] = true;
+			for(CatchBlock catchBlock : tryCatchBlockNode.catchBlocks)
+			{
+				labels[catchBlock.startIndex] = true;
+				labels[catchBlock.endIndex] = true;
+			}
+		}
+	}
+
+	private static int getJumpTarget(@NotNull Instruction instruction)
+	{
+		if(instruction instanceof JumpInstruction)
+			return ((JumpInstruction) instruction).value;
+		if(instruction instanceof JumpIfInstruction)
+			return ((JumpIfInstruction) instruction).value;
+		return -1;
+	}
+
+	@NotNull
+	static Instruction copyPosition(@NotNull Instruction from, @NotNull Instruction to)
+	{
+		to.position = from.position;
+		return to;
+	}
+}
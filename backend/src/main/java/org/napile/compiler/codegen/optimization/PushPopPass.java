@@ -0,0 +1,52 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.codegen.optimization;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.tree.members.bytecode.impl.PopInstruction;
+
+/**
+ * Removes values, which are pushed without side effects and popped at once(for example result of unused expression)
+ *
+ * @author VISTALL
+ * @since 16:40/19.10.26
+ */
+public class PushPopPass implements CodeOptimizationPass
+{
+	@NotNull
+	@Override
+	public String getName()
+	{
+		return "pushPop";
+	}
+
+	@Override
+	public void optimize(@NotNull OptimizedCode code)
+	{
+		for(int i = 1; i < code.size(); i++)
+		{
+			if(!(code.get(i) instanceof PopInstruction) || code.isLabel(i) || code.isRemoved(i - 1))
+				continue;
+
+			if(InstructionUtil.isPurePush(code.get(i - 1)))
+			{
+				code.remove(i - 1);
+				code.remove(i);
+			}
+		}
+	}
+}
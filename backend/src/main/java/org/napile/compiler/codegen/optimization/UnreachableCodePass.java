@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.codegen.optimization;
+
+import gnu.trove.TIntArrayList;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Removes instructions, which are not reachable from start of code(for example code after return).
+ * Handlers of try block are reachable, only if one of instructions in try block is reachable
+ *
+ * @author VISTALL
+ * @since 16:45/19.10.26
+ */
+public class UnreachableCodePass implements CodeOptimizationPass
+{
+	@NotNull
+	@Override
+	public String getName()
+	{
+		return "unreachable";
+	}
+
+	@Override
+	public void optimize(@NotNull OptimizedCode code)
+	{
+		int size = code.size();
+		if(size == 0)
+			return;
+
+		boolean[] reachable = new boolean[size];
+		reachable[0] = true;
+
+		TIntArrayList stack = new TIntArrayList();
+		stack.add(0);
+		while(!stack.isEmpty())
+		{
+			int index = stack.remove(stack.size() - 1);
+			for(int successor : code.getSuccessors(index))
+			{
+				if(successor < size && !reachable[successor])
+				{
+					reachable[successor] = true;
+					stack.add(successor);
+				}
+			}
+		}
+
+		for(int i = 0; i < size; i++)
+			if(!reachable[i])
+				code.remove(i);
+	}
+}
@@ -17,6 +17,7 @@
 package org.napile.compiler.codegen.processors;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.tree.members.AnnotableNode;
 import org.napile.asm.tree.members.AnnotationNode;
 import org.napile.asm.tree.members.ClassNode;
@@ -37,24 +38,24 @@ import com.intellij.util.ArrayUtil;
  */
 public class AnnotationCodegen
 {
-	public static void gen(@NotNull BindingTrace bindingTrace, @NotNull Annotated annotated, @NotNull AnnotableNode<?> annotableNode, @NotNull ClassNode classNode)
+	public static void gen(@NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull Annotated annotated, @NotNull AnnotableNode<?> annotableNode, @NotNull ClassNode classNode)
 	{
 		for(AnnotationDescriptor a : annotated.getAnnotations())
-			annotableNode.annotations.add(gen(bindingTrace, a, classNode));
+			annotableNode.annotations.add(gen(bindingTrace, asmNodeCache, a, classNode));
 	}
 
 	@NotNull
-	public static AnnotationNode gen(@NotNull BindingTrace bindingTrace, @NotNull AnnotationDescriptor annotationDescriptor, @NotNull ClassNode classNode)
+	public static AnnotationNode gen(@NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull AnnotationDescriptor annotationDescriptor, @NotNull ClassNode classNode)
 	{
 		ResolvedCall<ConstructorDescriptor> resolvedCall = annotationDescriptor.getResolvedCall();
 
 		ConstructorDescriptor constructorDescriptor = resolvedCall.getResultingDescriptor();
 
-		CallableMethod callableMethod = CallTransformer.transformToCallable(bindingTrace, classNode, resolvedCall, false, false, false);
+		CallableMethod callableMethod = CallTransformer.transformToCallable(bindingTrace, asmNodeCache, classNode, resolvedCall, false, false, false);
 
-		TypeNode type = TypeTransformer.toAsmType(bindingTrace, constructorDescriptor.getReturnType(), classNode);
+		TypeNode type = TypeTransformer.toAsmType(bindingTrace, asmNodeCache, constructorDescriptor.getReturnType(), classNode);
 
-		ExpressionCodegen gen = new ExpressionCodegen(bindingTrace, type, classNode);
+		ExpressionCodegen gen = new ExpressionCodegen(bindingTrace, asmNodeCache, type, classNode);
 
 		gen.pushMethodArguments(resolvedCall, callableMethod.getValueParameterTypes());
 
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.napile.compiler.codegen.processors;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.MethodParameterNode;
+import org.napile.asm.tree.members.bytecode.MethodRef;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.asm.tree.members.types.constructors.ThisTypeNode;
+import org.napile.asm.tree.members.types.constructors.TypeConstructorNode;
+import org.napile.asm.tree.members.types.constructors.TypeParameterValueTypeNode;
+import org.napile.compiler.lang.descriptors.MethodDescriptor;
+import org.napile.compiler.lang.types.NapileType;
+
+/**
+ * Cache of asm nodes for one generation. It created by {@link org.napile.compiler.codegen.GenerationState} and passed
+ * to each {@link ClassCodegen}. Types are mapped to {@link TypeNode} by identity - {@link NapileType#equals(Object)}
+ * ignores annotations, which are part of type node. Method refs are mapped by identity of descriptor and fq name of call.
+ * <p/>
+ * Cached nodes are shared between classes, so they must not be changed after creation. Only nodes without annotations,
+ * with class, type parameter or this constructor are cached - and their arguments are replaced by unmodifiable list.
+ * Annotations list can not be replaced, so it checked each time when shared node is returned.
+ * Class node, which is passed to {@link TypeTransformer} is not part of key - it not affects result nodes.
+ *
+ * @author VISTALL
+ * @since 19:40/19.10.26
+ */
+public class AsmNodeCache
+{
+	private static final class Key
+	{
+		private final Object element;
+		private final FqName fqName;
+		private final int hashCode;
+
+		private Key(@NotNull Object element, @Nullable FqName fqName)
+		{
+			this.element = element;
+			this.fqName = fqName;
+
+			hashCode = 31 * System.identityHashCode(element) + (fqName == null ? 0 : fqName.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(this == o)
+				return true;
+			if(!(o instanceof Key))
+				return false;
+
+			Key key = (Key) o;
+			return hashCode == key.hashCode && element == key.element && (fqName == null ? key.fqName == null : fqName.equals(key.fqName));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+	}
+
+	private final ConcurrentMap<Key, TypeNode> types = new ConcurrentHashMap<Key, TypeNode>();
+	private final ConcurrentMap<Key, MethodRef> methodRefs = new ConcurrentHashMap<Key, MethodRef>();
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+
+	@Nullable
+	public TypeNode getType(@NotNull NapileType napileType)
+	{
+		TypeNode typeNode = get(types, new Key(napileType, null));
+		if(typeNode != null)
+			checkNotChanged(typeNode);
+		return typeNode;
+	}
+
+	/**
+	 * @return given node, or node which was cached by other thread. If node can not be shared - it returned as is
+	 */
+	@NotNull
+	public TypeNode putType(@NotNull NapileType napileType, @NotNull TypeNode typeNode)
+	{
+		if(!canBeShared(typeNode))
+			return typeNode;
+
+		typeNode.arguments = Collections.unmodifiableList(typeNode.arguments);
+		return put(types, new Key(napileType, null), typeNode);
+	}
+
+	@Nullable
+	public MethodRef getMethodRef(@NotNull MethodDescriptor methodDescriptor, @NotNull FqName fqName)
+	{
+		MethodRef methodRef = get(methodRefs, new Key(methodDescriptor, fqName));
+		if(methodRef != null)
+		{
+			checkNotChanged(methodRef.returnType);
+			for(MethodParameterNode parameterNode : methodRef.parameters)
+				if(!parameterNode.annotations.isEmpty())
+					throw new IllegalStateException("Shared method ref is changed: " + methodRef);
+		}
+		return methodRef;
+	}
+
+	/**
+	 * @return given ref, or ref which was cached by other thread. If ref can not be shared - it returned as is
+	 */
+	@NotNull
+	public MethodRef putMethodRef(@NotNull MethodDescriptor methodDescriptor, @NotNull FqName fqName, @NotNull MethodRef methodRef)
+	{
+		if(!canBeShared(methodRef.returnType))
+			return methodRef;
+		for(MethodParameterNode parameterNode : methodRef.parameters)
+			if(!parameterNode.annotations.isEmpty() || !canBeShared(parameterNode.returnType))
+				return methodRef;
+
+		return put(methodRefs, new Key(methodDescriptor, fqName), methodRef);
+	}
+
+	private static boolean canBeShared(@NotNull TypeNode typeNode)
+	{
+		if(!typeNode.annotations.isEmpty())
+			return false;
+
+		TypeConstructorNode typeConstructorNode = typeNode.typeConstructorNode;
+		if(!(typeConstructorNode instanceof ClassTypeNode || typeConstructorNode instanceof TypeParameterValueTypeNode || typeConstructorNode instanceof ThisTypeNode))
+			return false;
+
+		for(TypeNode argument : typeNode.arguments)
+			if(!canBeShared(argument))
+				return false;
+		return true;
+	}
+
+	private static void checkNotChanged(@NotNull TypeNode typeNode)
+	{
+		if(!typeNode.annotations.isEmpty())
+			throw new IllegalStateException("Shared type node is changed: " + typeNode);
+	}
+
+	@Nullable
+	private <T> T get(@NotNull ConcurrentMap<Key, T> map, @NotNull Key key)
+	{
+		requests.incrementAndGet();
+
+		T value = map.get(key);
+		if(value != null)
+			hits.incrementAndGet();
+		return value;
+	}
+
+	@NotNull
+	private static <T> T put(@NotNull ConcurrentMap<Key, T> map, @NotNull Key key, @NotNull T value)
+	{
+		T oldValue = map.putIfAbsent(key, value);
+		return oldValue == null ? value : oldValue;
+	}
+
+	public long getRequests()
+	{
+		return requests.get();
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public int getSize()
+	{
+		return types.size() + methodRefs.size();
+	}
+}
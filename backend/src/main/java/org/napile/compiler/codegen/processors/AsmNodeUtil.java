@@ -21,6 +21,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.Modifier;
 import org.napile.asm.resolve.name.FqName;
 import org.napile.asm.resolve.name.Name;
@@ -63,25 +64,42 @@ public class AsmNodeUtil
 		return new VariableRef(classNode.name.child(variableNode.name), variableNode.returnType);
 	}
 
-	public static VariableRef ref(@NotNull VariableDescriptor propertyDescriptor, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode)
+	public static VariableRef ref(@NotNull VariableDescriptor propertyDescriptor, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode)
 	{
 		propertyDescriptor = (VariableDescriptor) propertyDescriptor.getOriginal();
-		return new VariableRef(FqNameGenerator.getFqName(propertyDescriptor, bindingTrace), TypeTransformer.toAsmType(bindingTrace, propertyDescriptor.getType(), classNode));
+		return new VariableRef(FqNameGenerator.getFqName(propertyDescriptor, bindingTrace), TypeTransformer.toAsmType(bindingTrace, asmNodeCache, propertyDescriptor.getType(), classNode));
 	}
 
-	public static MethodRef ref(@NotNull MethodDescriptor descriptor, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode)
+	public static MethodRef ref(@NotNull MethodDescriptor descriptor, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode)
 	{
-		return ref(descriptor, FqNameGenerator.getFqName(descriptor, bindingTrace), bindingTrace, classNode);
+		return ref(descriptor, FqNameGenerator.getFqName(descriptor, bindingTrace), bindingTrace, asmNodeCache, classNode);
 	}
 
-	public static MethodRef ref(@NotNull MethodDescriptor descriptor, @NotNull FqName fqName, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode)
+	/**
+	 * @return ref to method, it can be shared with other call sites, and must not be changed
+	 */
+	@NotNull
+	public static MethodRef ref(@NotNull MethodDescriptor descriptor, @NotNull FqName fqName, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode)
 	{
 		descriptor = CallTransformer.unwrapFakeOverride(descriptor);
 
+		if(asmNodeCache == null)
+			return createRef(descriptor, fqName, bindingTrace, null, classNode);
+
+		MethodRef methodRef = asmNodeCache.getMethodRef(descriptor, fqName);
+		if(methodRef != null)
+			return methodRef;
+
+		return asmNodeCache.putMethodRef(descriptor, fqName, createRef(descriptor, fqName, bindingTrace, asmNodeCache, classNode));
+	}
+
+	@NotNull
+	private static MethodRef createRef(@NotNull MethodDescriptor descriptor, @NotNull FqName fqName, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode)
+	{
 		List<MethodParameterNode> typeNodes = new ArrayList<MethodParameterNode>(descriptor.getValueParameters().size());
 		for(CallParameterDescriptor p : descriptor.getValueParameters())
-			typeNodes.add(new MethodParameterNode(ModifierCodegen.gen(p), p.getName(), TypeTransformer.toAsmType(bindingTrace, p.getType(), classNode)));
+			typeNodes.add(new MethodParameterNode(ModifierCodegen.gen(p), p.getName(), TypeTransformer.toAsmType(bindingTrace, asmNodeCache, p.getType(), classNode)));
 
-		return new MethodRef(fqName, typeNodes, Collections.<TypeNode>emptyList(), TypeTransformer.toAsmType(bindingTrace, descriptor.getReturnType(), classNode));
+		return new MethodRef(fqName, typeNodes, Collections.<TypeNode>emptyList(), TypeTransformer.toAsmType(bindingTrace, asmNodeCache, descriptor.getReturnType(), classNode));
 	}
 }
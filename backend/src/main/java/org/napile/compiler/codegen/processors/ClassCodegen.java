@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.AsmConstants;
 import org.napile.asm.Modifier;
 import org.napile.asm.resolve.name.FqName;
@@ -55,13 +56,19 @@ public class ClassCodegen extends NapileVisitorVoid
 {
 	private final Map<Boolean, InstructionAdapter> constructorsAdapters = new HashMap<Boolean, InstructionAdapter>(2);
 	private final BindingTrace bindingTrace;
+	@Nullable
+	private final AsmNodeCache asmNodeCache;
 
 	private ClassNode classNode;
 	private ExpressionCodegenContext context;
 
-	public ClassCodegen(BindingTrace bindingTrace)
+	/**
+	 * @param asmNodeCache cache of type nodes and method refs, which are shared with other classes of generation. If null - nodes are not shared
+	 */
+	public ClassCodegen(BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache)
 	{
 		this.bindingTrace = bindingTrace;
+		this.asmNodeCache = asmNodeCache;
 	}
 
 	public ClassNode gen(NapileClass napileClass, ExpressionCodegenContext context)
@@ -88,15 +95,15 @@ public class ClassCodegen extends NapileVisitorVoid
 	{
 		this.context = context;
 
-		AnnotationCodegen.gen(bindingTrace, classDescriptor, classNode, classNode);
+		AnnotationCodegen.gen(bindingTrace, asmNodeCache, classDescriptor, classNode, classNode);
 
-		TypeParameterCodegen.gen(classDescriptor.getTypeConstructor().getParameters(), classNode, bindingTrace, classNode);
+		TypeParameterCodegen.gen(classDescriptor.getTypeConstructor().getParameters(), classNode, bindingTrace, asmNodeCache, classNode);
 
 		constructorsAdapters.put(Boolean.FALSE, new InstructionAdapter()); //instance
 		constructorsAdapters.put(Boolean.TRUE, new InstructionAdapter()); //static
 
 		for(NapileType superType : classDescriptor.getSupertypes())
-			classNode.supers.add(TypeTransformer.toAsmType(bindingTrace, superType, classNode));
+			classNode.supers.add(TypeTransformer.toAsmType(bindingTrace, asmNodeCache, superType, classNode));
 
 		NapileDeclaration[] declarations = classLike.getDeclarations();
 		List<NapileDeclaration> list = new ArrayList<NapileDeclaration>(declarations.length);
@@ -142,13 +149,13 @@ public class ClassCodegen extends NapileVisitorVoid
 			NapileExpression expression = constructor.getBodyExpression();
 			if(expression != null)
 			{
-				ExpressionCodegen gen = new ExpressionCodegen(bindingTrace, constructorDescriptor, classNode, context.clone(), constructorsAdapters.get(Boolean.TRUE));
+				ExpressionCodegen gen = new ExpressionCodegen(bindingTrace, asmNodeCache, constructorDescriptor, classNode, context.clone(), constructorsAdapters.get(Boolean.TRUE));
 				gen.gen(expression).put(AsmConstants.NULL_TYPE, gen.instructs, PositionMarker.EMPTY);
 			}
 		}
 		else
 		{
-			Pair<MethodNode, InstructionAdapter> pair = MethodCodegen.genConstructor(constructor, constructorDescriptor, bindingTrace, classNode);
+			Pair<MethodNode, InstructionAdapter> pair = MethodCodegen.genConstructor(constructor, constructorDescriptor, bindingTrace, asmNodeCache, classNode);
 
 			MethodNode constructorNode = pair.getFirst();
 			InstructionAdapter adapter = pair.getSecond();
@@ -158,7 +165,7 @@ public class ClassCodegen extends NapileVisitorVoid
 			adapter.getInstructions().addAll(variableInitCode.getInstructions());
 			adapter.getTryCatchBlockNodes().addAll(variableInitCode.getTryCatchBlockNodes());
 
-			ExpressionCodegen gen = new ExpressionCodegen(bindingTrace, constructorDescriptor, classNode, context.clone(), adapter);
+			ExpressionCodegen gen = new ExpressionCodegen(bindingTrace, asmNodeCache, constructorDescriptor, classNode, context.clone(), adapter);
 			NapileExpression expression = constructor.getBodyExpression();
 			if(expression != null)
 				gen.returnExpression(expression, false);
@@ -178,11 +185,11 @@ public class ClassCodegen extends NapileVisitorVoid
 	{
 		VariableDescriptor variableDescriptor = bindingTrace.safeGet(BindingTraceKeys.VARIABLE, variable);
 
-		TypeNode type = TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode);
+		TypeNode type = TypeTransformer.toAsmType(bindingTrace, asmNodeCache, variableDescriptor.getType(), classNode);
 
 
 
-		VariableCodegen.getSetterAndGetter(variableDescriptor, variable, classNode, bindingTrace, false);
+		VariableCodegen.getSetterAndGetter(variableDescriptor, variable, classNode, bindingTrace, asmNodeCache, false);
 
 		if(!variable.hasModifier(NapileTokens.OVERRIDE_KEYWORD))
 		{
@@ -190,7 +197,7 @@ public class ClassCodegen extends NapileVisitorVoid
 
 			classNode.addMember(variableNode);
 
-			AnnotationCodegen.gen(bindingTrace, variableDescriptor, variableNode, classNode);
+			AnnotationCodegen.gen(bindingTrace, asmNodeCache, variableDescriptor, variableNode, classNode);
 
 			NapileExpression initializer = variable.getInitializer();
 			if(initializer != null)
@@ -207,9 +214,9 @@ public class ClassCodegen extends NapileVisitorVoid
 				if(variable.hasModifier(NapileTokens.LAZY_KEYWORD))
 					adapter.putNull();
 				else
-					new ExpressionCodegen(bindingTrace, null, classNode, context.clone(), adapter).gen(initializer, type);
+					new ExpressionCodegen(bindingTrace, asmNodeCache, null, classNode, context.clone(), adapter).gen(initializer, type);
 
-				StackValue.variable(initializer, bindingTrace, classNode, variableDescriptor).store(type, adapter, PositionMarker.EMPTY);
+				StackValue.variable(initializer, bindingTrace, asmNodeCache, classNode, variableDescriptor).store(type, adapter, PositionMarker.EMPTY);
 
 				variableNode.code = new CodeInfo(adapter);
 			}
@@ -227,23 +234,23 @@ public class ClassCodegen extends NapileVisitorVoid
 
 		VariableNode variableNode = new VariableNode(ModifierCodegen.gen(variableDescriptor), variableDescriptor.getName(), type);
 
-		AnnotationCodegen.gen(bindingTrace, variableDescriptor, variableNode, classNode);
+		AnnotationCodegen.gen(bindingTrace, asmNodeCache, variableDescriptor, variableNode, classNode);
 
 		classNode.addMember(variableNode);
 
-		VariableCodegen.getSetterAndGetter(variableDescriptor, value, classNode, bindingTrace, true);
+		VariableCodegen.getSetterAndGetter(variableDescriptor, value, classNode, bindingTrace, asmNodeCache, true);
 
 		ClassDescriptor classDescriptor = bindingTrace.safeGet(BindingTraceKeys.CLASS, value);
 		ClassNode innerClassNode = new ClassNode(Modifier.list(Modifier.STATIC, Modifier.FINAL), classFqName);
 		for(NapileType superType : classDescriptor.getSupertypes())
-			innerClassNode.supers.add(TypeTransformer.toAsmType(bindingTrace, superType, classNode));
+			innerClassNode.supers.add(TypeTransformer.toAsmType(bindingTrace, asmNodeCache, superType, classNode));
 
 		MethodNode enumClassConstructorNode = MethodNode.constructor(Modifier.list(Modifier.LOCAL));
 
 		InstructionAdapter constructorAdapter = new InstructionAdapter();
 		constructorAdapter.visitLocalVariable("this");
 
-		MethodCodegen.genSuperCalls(constructorAdapter, value, bindingTrace, classNode);
+		MethodCodegen.genSuperCalls(constructorAdapter, value, bindingTrace, asmNodeCache, classNode);
 
 		constructorAdapter.localGet(0);
 		constructorAdapter.returnValues(1);
@@ -266,7 +273,7 @@ public class ClassCodegen extends NapileVisitorVoid
 	{
 		SimpleMethodDescriptor methodDescriptor = (SimpleMethodDescriptor) bindingTrace.safeGet(BindingTraceKeys.DECLARATION_TO_DESCRIPTOR, method);
 
-		MethodNode methodNode = MethodCodegen.genMethodOrMacro(method, methodDescriptor, bindingTrace, classNode, context.clone());
+		MethodNode methodNode = MethodCodegen.genMethodOrMacro(method, methodDescriptor, bindingTrace, asmNodeCache, classNode, context.clone());
 
 		classNode.addMember(methodNode);
 	}
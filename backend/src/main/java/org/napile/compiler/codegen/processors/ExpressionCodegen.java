@@ -91,6 +91,8 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 {
 	@NotNull
 	public final BindingTrace bindingTrace;
+	@Nullable
+	public final AsmNodeCache asmNodeCache;
 	@NotNull
 	public final InstructionAdapter instructs;
 	@NotNull
@@ -111,9 +113,10 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 
 	private TIntArrayList refParameters = null;
 
-	public ExpressionCodegen(@NotNull BindingTrace b, @NotNull TypeNode r, @NotNull ClassNode c)
+	public ExpressionCodegen(@NotNull BindingTrace b, @Nullable AsmNodeCache a, @NotNull TypeNode r, @NotNull ClassNode c)
 	{
 		bindingTrace = b;
+		asmNodeCache = a;
 		returnType = r;
 		classNode = c;
 		instructs = new InstructionAdapter();
@@ -122,9 +125,10 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 		context.gen = this;
 	}
 
-	public ExpressionCodegen(@NotNull BindingTrace b, @Nullable MethodDescriptor d, @NotNull ClassNode c, @NotNull ExpressionCodegenContext codegenContext, @Nullable InstructionAdapter adapter)
+	public ExpressionCodegen(@NotNull BindingTrace b, @Nullable AsmNodeCache a, @Nullable MethodDescriptor d, @NotNull ClassNode c, @NotNull ExpressionCodegenContext codegenContext, @Nullable InstructionAdapter adapter)
 	{
 		bindingTrace = b;
+		asmNodeCache = a;
 		classNode = c;
 		instructs = adapter == null ? new InstructionAdapter() : adapter;
 		context = codegenContext;
@@ -133,7 +137,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 
 		if(d != null)
 		{
-			returnType = d instanceof ConstructorDescriptor ? new TypeNode(false, new ThisTypeNode()) : TypeTransformer.toAsmType(bindingTrace, d.getReturnType(), classNode);
+			returnType = d instanceof ConstructorDescriptor ? new TypeNode(false, new ThisTypeNode()) : TypeTransformer.toAsmType(bindingTrace, asmNodeCache, d.getReturnType(), classNode);
 
 			if(!d.isStatic())
 			{
@@ -178,7 +182,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 			@Override
 			public Void fun(VariableDescriptor descriptor)
 			{
-				TypeNode varType = TypeTransformer.toAsmType(bindingTrace, descriptor.getType(), classNode);
+				TypeNode varType = TypeTransformer.toAsmType(bindingTrace, asmNodeCache, descriptor.getType(), classNode);
 				gen(initializer, varType);
 				return null;
 			}
@@ -491,13 +495,13 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 
 			instructs.newInt(i ++);
 
-			gen(exp, TypeTransformer.toAsmType(bindingTrace, bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, exp), classNode));
+			gen(exp, TypeTransformer.toAsmType(bindingTrace, asmNodeCache, bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, exp), classNode));
 
 			instructs.invokeVirtual(MultiVariable.SET_VALUE, false);
 			instructs.pop();
 		}
 
-		return StackValue.onStack(TypeTransformer.toAsmType(bindingTrace, bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, expression), classNode));
+		return StackValue.onStack(TypeTransformer.toAsmType(bindingTrace, asmNodeCache, bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, expression), classNode));
 	}
 
 	@Override
@@ -574,7 +578,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 					{
 						instructs.localGet(0);
 					}
-					return StackValue.variable(expression, bindingTrace, classNode, accessorDescriptor.getVariable());
+					return StackValue.variable(expression, bindingTrace, asmNodeCache, classNode, accessorDescriptor.getVariable());
 				}
 			}
 
@@ -583,7 +587,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 
 			final StackValue iValue = intermediateValueForProperty(expression, variableDescriptor, bindingTrace.get(BindingTraceKeys.VARIABLE_CALL, expression), directToVar, isSuper ? (NapileSuperExpression) r : null);
 			if(!directToVar && resolvedCall != null && !isSuper)
-				receiver.put(isStatic ? receiver.getType() : TypeTransformer.toAsmType(bindingTrace, ((ClassDescriptor) container).getDefaultType(), classNode), instructs, this);
+				receiver.put(isStatic ? receiver.getType() : TypeTransformer.toAsmType(bindingTrace, asmNodeCache, ((ClassDescriptor) container).getDefaultType(), classNode), instructs, this);
 			else
 			{
 				if(!isStatic)
@@ -596,7 +600,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 							receiver = generateThisOrOuter((ClassDescriptor) variableDescriptor.getContainingDeclaration(), false);
 					}
 					NapileType receiverType = bindingTrace.get(BindingTraceKeys.EXPRESSION_TYPE, r);
-					receiver.put(receiverType != null && !isSuper ? TypeTransformer.toAsmType(bindingTrace, receiverType, classNode) : AsmConstants.ANY_TYPE, instructs, this);
+					receiver.put(receiverType != null && !isSuper ? TypeTransformer.toAsmType(bindingTrace, asmNodeCache, receiverType, classNode) : AsmConstants.ANY_TYPE, instructs, this);
 				}
 			}
 			return iValue;
@@ -613,7 +617,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 	{
 		TypeNode typeNode = expressionType(classOfExpression);
 
-		instructs.classOf(TypeTransformer.toAsmType(bindingTrace, bindingTrace.safeGet(BindingTraceKeys.TYPE, classOfExpression.getTypeReference()), classNode));
+		instructs.classOf(TypeTransformer.toAsmType(bindingTrace, asmNodeCache, bindingTrace.safeGet(BindingTraceKeys.TYPE, classOfExpression.getTypeReference()), classNode));
 
 		return StackValue.onStack(typeNode);
 	}
@@ -623,7 +627,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 	{
 		TypeNode typeNode = expressionType(typeOfExpression);
 
-		instructs.typeOf(TypeTransformer.toAsmType(bindingTrace, bindingTrace.safeGet(BindingTraceKeys.TYPE, typeOfExpression.getTypeReference()), classNode));
+		instructs.typeOf(TypeTransformer.toAsmType(bindingTrace, asmNodeCache, bindingTrace.safeGet(BindingTraceKeys.TYPE, typeOfExpression.getTypeReference()), classNode));
 
 		return StackValue.onStack(typeNode);
 	}
@@ -658,7 +662,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 	public StackValue intermediateValueForProperty(NapileExpression expression, VariableDescriptor variableDescriptor, @Nullable MethodDescriptor methodDescriptor, final boolean forceField, @Nullable NapileSuperExpression superExpression)
 	{
 		if(methodDescriptor != null)
-			return StackValue.variableAccessor(methodDescriptor, TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode), this, CallTransformer.isNullable(expression), expression);
+			return StackValue.variableAccessor(methodDescriptor, TypeTransformer.toAsmType(bindingTrace, asmNodeCache, variableDescriptor.getType(), classNode), this, CallTransformer.isNullable(expression), expression);
 
 		if(!forceField)
 		{
@@ -666,7 +670,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 			//return StackValue.simpleVariableAccessor(FqNameGenerator.getFqName(variableDescriptor, bindingTrace), TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode), variableDescriptor.isStatic() ? CallableMethod.CallType.STATIC : CallableMethod.CallType.VIRTUAL);
 		}
 		else
-			return StackValue.variable(expression, FqNameGenerator.getFqName(variableDescriptor, bindingTrace), TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode), variableDescriptor.isStatic());
+			return StackValue.variable(expression, FqNameGenerator.getFqName(variableDescriptor, bindingTrace), TypeTransformer.toAsmType(bindingTrace, asmNodeCache, variableDescriptor.getType(), classNode), variableDescriptor.isStatic());
 	}
 
 	private StackValue generateConstructorCall(NapileCallExpression expression, NapileSimpleNameExpression constructorReference, StackValue receiver)
@@ -680,7 +684,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 			//noinspection ConstantConditions
 			NapileType expressionType = bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, expression);
 
-			type = TypeTransformer.toAsmType(bindingTrace, expressionType, classNode);
+			type = TypeTransformer.toAsmType(bindingTrace, asmNodeCache, expressionType, classNode);
 
 			//final ClassDescriptor classDescriptor = ((ConstructorDescriptor) constructorDescriptor).getContainingDeclaration();
 
@@ -826,7 +830,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 		{
 			final NapileType outType = ((VariableDescriptor) descriptor).getType();
 
-			return StackValue.local(target, index, TypeTransformer.toAsmType(bindingTrace, outType, classNode));
+			return StackValue.local(target, index, TypeTransformer.toAsmType(bindingTrace, asmNodeCache, outType, classNode));
 		}
 		else
 			return StackValue.local(target, index, AsmConstants.ANY_TYPE);
@@ -918,7 +922,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 	{
 		if(descriptor instanceof ClassReceiver)
 		{
-			TypeNode exprType = TypeTransformer.toAsmType(bindingTrace, descriptor.getType(), classNode);
+			TypeNode exprType = TypeTransformer.toAsmType(bindingTrace, asmNodeCache, descriptor.getType(), classNode);
 			ClassReceiver classReceiver = (ClassReceiver) descriptor;
 			ClassDescriptor classReceiverDeclarationDescriptor = classReceiver.getDeclarationDescriptor();
 
@@ -933,7 +937,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 		else if(descriptor instanceof AutoCastReceiver)
 		{
 			AutoCastReceiver autoCastReceiver = (AutoCastReceiver) descriptor;
-			TypeNode intermediateType = TypeTransformer.toAsmType(bindingTrace, autoCastReceiver.getType(), classNode);
+			TypeNode intermediateType = TypeTransformer.toAsmType(bindingTrace, asmNodeCache, autoCastReceiver.getType(), classNode);
 			generateFromResolvedCall(autoCastReceiver.getOriginal(), intermediateType);
 			StackValue.onStack(intermediateType).put(type, instructs, this);
 		}
@@ -949,7 +953,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 		if(wrappedOuter != null)
 			return wrappedOuter;
 
-		return StackValue.local(null, 0, TypeTransformer.toAsmType(bindingTrace, calleeContainingClass.getDefaultType(), classNode));
+		return StackValue.local(null, 0, TypeTransformer.toAsmType(bindingTrace, asmNodeCache, calleeContainingClass.getDefaultType(), classNode));
 	}
 
 	private void generateLocalVariableDeclaration(@NotNull final NapileVariable variableDeclaration, @NotNull List<Function<StackValue, Void>> leaveTasks)
@@ -957,7 +961,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 		final VariableDescriptor variableDescriptor = bindingTrace.safeGet(BindingTraceKeys.VARIABLE, variableDeclaration);
 		if(!context.wrapVariableIfNeed(variableDescriptor))
 		{
-			final TypeNode type = TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode);
+			final TypeNode type = TypeTransformer.toAsmType(bindingTrace, asmNodeCache, variableDescriptor.getType(), classNode);
 			int index = frameMap.enter(variableDescriptor);
 
 			leaveTasks.add(new Function<StackValue, Void>()
@@ -985,7 +989,7 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 
 			generateInitializer.fun(variableDescriptor);
 
-			wrappedVariable.store(TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode), instructs, this);
+			wrappedVariable.store(TypeTransformer.toAsmType(bindingTrace, asmNodeCache, variableDescriptor.getType(), classNode), instructs, this);
 		}
 		else
 		{
@@ -1136,13 +1140,13 @@ public class ExpressionCodegen extends NapileVisitor<StackValue, StackValue> imp
 	public TypeNode expressionType(NapileExpression expr)
 	{
 		NapileType type = bindingTrace.get(BindingTraceKeys.EXPRESSION_TYPE, expr);
-		return type == null ? StackValue.none().getType() : TypeTransformer.toAsmType(bindingTrace, type, classNode);
+		return type == null ? StackValue.none().getType() : TypeTransformer.toAsmType(bindingTrace, asmNodeCache, type, classNode);
 	}
 
 	@NotNull
 	public TypeNode toAsmType(@NotNull NapileType type)
 	{
-		return TypeTransformer.toAsmType(bindingTrace, type, classNode);
+		return TypeTransformer.toAsmType(bindingTrace, asmNodeCache, type, classNode);
 	}
 
 	public InstructionAdapter marker(final PsiElement element)
@@ -65,7 +65,7 @@ public class ExpressionCodegenContext
 
 			wrappedVariables.put(variableDescriptor, new WrappedVar(gen, newVariableDescriptor));
 
-			VariableCodegen.getSetterAndGetter(newVariableDescriptor, null, gen.classNode, gen.bindingTrace, false);
+			VariableCodegen.getSetterAndGetter(newVariableDescriptor, null, gen.classNode, gen.bindingTrace, gen.asmNodeCache, false);
 			VariableNode variableNode = new VariableNode(newVariableDescriptor.isStatic() ? Modifier.list(Modifier.STATIC, Modifier.MUTABLE) : Modifier.list(Modifier.MUTABLE), newVariableDescriptor.getName(), gen.toAsmType(newVariableDescriptor.getType()));
 			gen.classNode.addMember(variableNode);
 			return true;
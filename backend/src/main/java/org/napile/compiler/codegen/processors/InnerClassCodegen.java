@@ -61,7 +61,7 @@ public class InnerClassCodegen
 	{
 		NapileAnonymClass anonymClass = expression.getAnonymClass();
 
-		ClassCodegen classCodegen = new ClassCodegen(gen.bindingTrace);
+		ClassCodegen classCodegen = new ClassCodegen(gen.bindingTrace, gen.asmNodeCache);
 
 		FqName fqName = gen.bindingTrace.safeGet(BindingTraceKeys2.DECLARATION_TO_FQ_NAME, anonymClass);
 		ClassDescriptor classDescriptor = gen.bindingTrace.safeGet(BindingTraceKeys.CLASS, anonymClass);
@@ -96,7 +96,7 @@ public class InnerClassCodegen
 		constructorAdapter.visitLocalVariable("this");
 
 		// gen super calls
-		MethodCodegen.genSuperCalls(constructorAdapter, anonymClass, gen.bindingTrace, anonymClassNode);
+		MethodCodegen.genSuperCalls(constructorAdapter, anonymClass, gen.bindingTrace, gen.asmNodeCache, anonymClassNode);
 
 		for(ClassDescriptor owner : outerClasses)
 		{
@@ -113,7 +113,7 @@ public class InnerClassCodegen
 			VariableDescriptorImpl varDesc = new VariableDescriptorImpl(classDescriptor, Collections.<AnnotationDescriptor>emptyList(), Modality.FINAL, Visibility.PUBLIC, variableNode.name, CallableMemberDescriptor.Kind.DECLARATION, false, false, false);
 			varDesc.setType(classDescriptor.getDefaultType(), Collections.<TypeParameterDescriptor>emptyList(), ReceiverDescriptor.NO_RECEIVER);
 
-			VariableCodegen.getSetterAndGetter(varDesc, null, anonymClassNode, gen.bindingTrace, false);
+			VariableCodegen.getSetterAndGetter(varDesc, null, anonymClassNode, gen.bindingTrace, gen.asmNodeCache, false);
 
 			// put data from parameters to variables
 			constructorAdapter.localGet(0);
@@ -19,6 +19,7 @@ package org.napile.compiler.codegen.processors;
 import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.AsmConstants;
 import org.napile.asm.tree.members.ClassNode;
 import org.napile.asm.tree.members.CodeInfo;
@@ -55,7 +56,7 @@ import com.intellij.openapi.util.Pair;
  */
 public class MethodCodegen
 {
-	public static void genSuperCalls(@NotNull InstructionAdapter adapter, @NotNull NapileDelegationSpecifierListOwner owner, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode)
+	public static void genSuperCalls(@NotNull InstructionAdapter adapter, @NotNull NapileDelegationSpecifierListOwner owner, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode)
 	{
 		ConstructorDescriptor constructorDescriptor = bindingTrace.safeGet(BindingTraceKeys.CONSTRUCTOR, owner);
 		List<NapileDelegationToSuperCall> delegationSpecifiers = owner.getDelegationSpecifiers();
@@ -69,42 +70,43 @@ public class MethodCodegen
 			}
 			adapter.localGet(0);
 
-			ExpressionCodegen generator = new ExpressionCodegen(bindingTrace, constructorDescriptor, classNode, ExpressionCodegenContext.empty(), adapter);
+			ExpressionCodegen generator = new ExpressionCodegen(bindingTrace, asmNodeCache, constructorDescriptor, classNode, ExpressionCodegenContext.empty(), adapter);
 
-			CallableMethod method = CallTransformer.transformToCallable(bindingTrace, classNode, call, false, false, false);
+			CallableMethod method = CallTransformer.transformToCallable(bindingTrace, asmNodeCache, classNode, call, false, false, false);
 
 			generator.invokeMethodWithArguments(method, specifier, StackValue.none());
 
-			adapter.pop(); //FIXME [VISTALL] this is needed?
+			// constructor call pushes created object - it is not used
+			adapter.pop();
 		}
 	}
 
-	public static Pair<MethodNode, InstructionAdapter> genConstructor(@NotNull NapileConstructor constructor, @NotNull MethodDescriptor methodDescriptor, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode)
+	public static Pair<MethodNode, InstructionAdapter> genConstructor(@NotNull NapileConstructor constructor, @NotNull MethodDescriptor methodDescriptor, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode)
 	{
 		MethodNode methodNode = MethodNode.constructor(ModifierCodegen.gen(methodDescriptor));
 
-		AnnotationCodegen.gen(bindingTrace, methodDescriptor, methodNode, classNode);
+		AnnotationCodegen.gen(bindingTrace, asmNodeCache, methodDescriptor, methodNode, classNode);
 
-		InstructionAdapter adapter = prepareMethodToCodegen(constructor, methodDescriptor, methodNode, bindingTrace, classNode);
+		InstructionAdapter adapter = prepareMethodToCodegen(constructor, methodDescriptor, methodNode, bindingTrace, asmNodeCache, classNode);
 
-		genSuperCalls(adapter, constructor, bindingTrace, classNode);
+		genSuperCalls(adapter, constructor, bindingTrace, asmNodeCache, classNode);
 
-		genReferenceParameters(constructor, methodDescriptor, adapter, bindingTrace, classNode);
+		genReferenceParameters(constructor, methodDescriptor, adapter, bindingTrace, asmNodeCache, classNode);
 
 		return new Pair<MethodNode, InstructionAdapter>(methodNode, adapter);
 	}
 
-	public static MethodNode genMethodOrMacro(@NotNull NapileNamedMethodOrMacro method, @NotNull MethodDescriptor methodDescriptor, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode, @NotNull ExpressionCodegenContext gen)
+	public static MethodNode genMethodOrMacro(@NotNull NapileNamedMethodOrMacro method, @NotNull MethodDescriptor methodDescriptor, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode, @NotNull ExpressionCodegenContext gen)
 	{
-		MethodNode methodNode = methodDescriptor.isMacro() ? new MacroNode(ModifierCodegen.gen(methodDescriptor), methodDescriptor.getName(), TypeTransformer.toAsmType(bindingTrace, methodDescriptor.getReturnType(), classNode)) : new MethodNode(ModifierCodegen.gen(methodDescriptor), methodDescriptor.getName(), TypeTransformer.toAsmType(bindingTrace, methodDescriptor.getReturnType(), classNode));
+		MethodNode methodNode = methodDescriptor.isMacro() ? new MacroNode(ModifierCodegen.gen(methodDescriptor), methodDescriptor.getName(), TypeTransformer.toAsmType(bindingTrace, asmNodeCache, methodDescriptor.getReturnType(), classNode)) : new MethodNode(ModifierCodegen.gen(methodDescriptor), methodDescriptor.getName(), TypeTransformer.toAsmType(bindingTrace, asmNodeCache, methodDescriptor.getReturnType(), classNode));
 
-		AnnotationCodegen.gen(bindingTrace, methodDescriptor, methodNode, classNode);
+		AnnotationCodegen.gen(bindingTrace, asmNodeCache, methodDescriptor, methodNode, classNode);
 
-		InstructionAdapter adapter = prepareMethodToCodegen(method, methodDescriptor, methodNode, bindingTrace, classNode);
+		InstructionAdapter adapter = prepareMethodToCodegen(method, methodDescriptor, methodNode, bindingTrace, asmNodeCache, classNode);
 
-		genReferenceParameters(method, methodDescriptor, adapter, bindingTrace, classNode);
+		genReferenceParameters(method, methodDescriptor, adapter, bindingTrace, asmNodeCache, classNode);
 
-		genBody(adapter, methodDescriptor, method, bindingTrace, classNode, gen);
+		genBody(adapter, methodDescriptor, method, bindingTrace, asmNodeCache, classNode, gen);
 
 		// hack
 		if(methodDescriptor.isNative())
@@ -115,13 +117,13 @@ public class MethodCodegen
 		return methodNode;
 	}
 
-	public static InstructionAdapter prepareMethodToCodegen(@NotNull NapileDeclarationWithBody declarationWithBody, @NotNull MethodDescriptor methodDescriptor, @NotNull MethodNode methodNode, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode)
+	public static InstructionAdapter prepareMethodToCodegen(@NotNull NapileDeclarationWithBody declarationWithBody, @NotNull MethodDescriptor methodDescriptor, @NotNull MethodNode methodNode, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode)
 	{
 		InstructionAdapter instructionAdapter = new InstructionAdapter();
 		if(!methodDescriptor.isStatic())
 			instructionAdapter.visitLocalVariable("this");
 
-		TypeParameterCodegen.gen(methodDescriptor.getTypeParameters(), methodNode, bindingTrace, classNode);
+		TypeParameterCodegen.gen(methodDescriptor.getTypeParameters(), methodNode, bindingTrace, asmNodeCache, classNode);
 
 		final NapileCallParameter[] callParameters = declarationWithBody.getCallParameters();
 		final List<CallParameterDescriptor> valueParameters = methodDescriptor.getValueParameters();
@@ -130,22 +132,22 @@ public class MethodCodegen
 			NapileCallParameter parameter = callParameters[i];
 			CallParameterDescriptor descriptor = valueParameters.get(i);
 
-			methodNode.parameters.add(new MethodParameterNode(ModifierCodegen.gen(descriptor), descriptor.getName(), TypeTransformer.toAsmType(bindingTrace, descriptor.getType(), classNode), ExpressionToQualifiedExpressionVisitor.convert(parameter.getDefaultValue())));
+			methodNode.parameters.add(new MethodParameterNode(ModifierCodegen.gen(descriptor), descriptor.getName(), TypeTransformer.toAsmType(bindingTrace, asmNodeCache, descriptor.getType(), classNode), ExpressionToQualifiedExpressionVisitor.convert(parameter.getDefaultValue())));
 		}
 		return instructionAdapter;
 	}
 
-	public static void genBody(@NotNull InstructionAdapter adapter, @NotNull MethodDescriptor methodDescriptor, @NotNull NapileDeclarationWithBody declarationWithBody, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode, @NotNull ExpressionCodegenContext gen)
+	public static void genBody(@NotNull InstructionAdapter adapter, @NotNull MethodDescriptor methodDescriptor, @NotNull NapileDeclarationWithBody declarationWithBody, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode, @NotNull ExpressionCodegenContext gen)
 	{
 		NapileExpression expression = declarationWithBody.getBodyExpression();
 		if(expression != null)
 		{
-			ExpressionCodegen expressionCodegen = new ExpressionCodegen(bindingTrace, methodDescriptor, classNode, gen, adapter);
+			ExpressionCodegen expressionCodegen = new ExpressionCodegen(bindingTrace, asmNodeCache, methodDescriptor, classNode, gen, adapter);
 			expressionCodegen.returnExpression(expression, methodDescriptor.isMacro());
 		}
 	}
 
-	public static void genReferenceParameters(@NotNull NapileDeclarationWithBody declarationWithBody, @NotNull CallableDescriptor callableDescriptor, InstructionAdapter adapter, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode)
+	public static void genReferenceParameters(@NotNull NapileDeclarationWithBody declarationWithBody, @NotNull CallableDescriptor callableDescriptor, InstructionAdapter adapter, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode)
 	{
 		for(CallParameterDescriptor parameterDescriptor : callableDescriptor.getValueParameters())
 			if(parameterDescriptor instanceof CallParameterAsReferenceDescriptorImpl)
@@ -154,14 +156,14 @@ public class MethodCodegen
 				MethodDescriptor resolvedSetter = bindingTrace.safeGet(BindingTraceKeys.VARIABLE_CALL, refParameter.getReferenceExpression());
 				VariableDescriptor variableDescriptor = (VariableDescriptor) bindingTrace.safeGet(BindingTraceKeys.REFERENCE_TARGET, refParameter.getReferenceExpression());
 
-				TypeNode typeNode = TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode);
+				TypeNode typeNode = TypeTransformer.toAsmType(bindingTrace, asmNodeCache, variableDescriptor.getType(), classNode);
 
 				if(!variableDescriptor.isStatic())
 					StackValue.local(null, 0, typeNode).put(AsmConstants.ANY_TYPE, adapter, PositionMarker.EMPTY);
 
 				StackValue.local(null, callableDescriptor.isStatic() ? 0 : 1 + parameterDescriptor.getIndex(), typeNode).put(typeNode, adapter, PositionMarker.EMPTY);
 
-				StackValue.variableAccessor(null, resolvedSetter, typeNode, bindingTrace, classNode, false).store(typeNode, adapter, PositionMarker.EMPTY);
+				StackValue.variableAccessor(null, resolvedSetter, typeNode, bindingTrace, asmNodeCache, classNode, false).store(typeNode, adapter, PositionMarker.EMPTY);
 			}
 	}
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.tree.members.AbstractMemberNode;
 import org.napile.asm.tree.members.ClassNode;
 import org.napile.asm.tree.members.MethodParameterNode;
@@ -20,20 +21,20 @@ import org.napile.compiler.lang.types.NapileType;
  */
 public class TypeParameterCodegen
 {
-	public static void gen(@NotNull List<TypeParameterDescriptor> typeParameters, @NotNull AbstractMemberNode<?> node, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode)
+	public static void gen(@NotNull List<TypeParameterDescriptor> typeParameters, @NotNull AbstractMemberNode<?> node, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode)
 	{
 		for(TypeParameterDescriptor typeParameterDescriptor : typeParameters)
 		{
 			TypeParameterNode typeParameterNode = new TypeParameterNode(typeParameterDescriptor.getName());
 			for(NapileType superType : typeParameterDescriptor.getUpperBounds())
-				typeParameterNode.supers.add(TypeTransformer.toAsmType(bindingTrace, superType, classNode));
+				typeParameterNode.supers.add(TypeTransformer.toAsmType(bindingTrace, asmNodeCache, superType, classNode));
 
 			for(ConstructorDescriptor constructorDescriptor : typeParameterDescriptor.getConstructors())
 			{
 				List<MethodParameterNode> parameterNodes = new ArrayList<MethodParameterNode>(constructorDescriptor.getValueParameters().size());
 				for(CallParameterDescriptor declaration : constructorDescriptor.getValueParameters())
 				{
-					MethodParameterNode methodParameterNode = new MethodParameterNode(ModifierCodegen.gen(declaration), declaration.getName(), TypeTransformer.toAsmType(bindingTrace, declaration.getType(), classNode));
+					MethodParameterNode methodParameterNode = new MethodParameterNode(ModifierCodegen.gen(declaration), declaration.getName(), TypeTransformer.toAsmType(bindingTrace, asmNodeCache, declaration.getType(), classNode));
 
 					parameterNodes.add(methodParameterNode);
 				}
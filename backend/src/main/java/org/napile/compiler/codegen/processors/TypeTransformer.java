@@ -19,6 +19,7 @@ package org.napile.compiler.codegen.processors;
 import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.Modifier;
 import org.napile.asm.resolve.name.Name;
 import org.napile.asm.tree.members.ClassNode;
@@ -48,7 +49,20 @@ import org.napile.compiler.lang.types.SelfTypeConstructor;
 public class TypeTransformer
 {
 	@NotNull
-	public static TypeNode toAsmType(BindingTrace bindingTrace, @NotNull NapileType napileType, ClassNode classNode)
+	public static TypeNode toAsmType(BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull NapileType napileType, ClassNode classNode)
+	{
+		if(asmNodeCache == null)
+			return createAsmType(bindingTrace, null, napileType, classNode);
+
+		TypeNode typeNode = asmNodeCache.getType(napileType);
+		if(typeNode != null)
+			return typeNode;
+
+		return asmNodeCache.putType(napileType, createAsmType(bindingTrace, asmNodeCache, napileType, classNode));
+	}
+
+	@NotNull
+	private static TypeNode createAsmType(BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull NapileType napileType, ClassNode classNode)
 	{
 		TypeConstructorNode typeConstructorNode = null;
 		ClassifierDescriptor owner = napileType.getConstructor().getDeclarationDescriptor();
@@ -62,9 +76,9 @@ public class TypeTransformer
 			MethodTypeNode methodTypeNode = (MethodTypeNode) typeConstructorNode;
 
 			methodTypeNode.name = methodTypeConstructor.getExpectedName();
-			methodTypeNode.returnType = toAsmType(bindingTrace, methodTypeConstructor.getReturnType(), classNode);
+			methodTypeNode.returnType = toAsmType(bindingTrace, asmNodeCache, methodTypeConstructor.getReturnType(), classNode);
 			for(Map.Entry<Name, NapileType> entry : methodTypeConstructor.getParameterTypes().entrySet())
-				methodTypeNode.parameters.add(new MethodParameterNode(Modifier.EMPTY, entry.getKey(), toAsmType(bindingTrace, entry.getValue(), classNode)));
+				methodTypeNode.parameters.add(new MethodParameterNode(Modifier.EMPTY, entry.getKey(), toAsmType(bindingTrace, asmNodeCache, entry.getValue(), classNode)));
 		}
 		else if(napileType.getConstructor() instanceof MultiTypeConstructor)
 		{
@@ -78,7 +92,7 @@ public class TypeTransformer
 			{
 				boolean mutable = entry.mutable != null && entry.mutable;
 				Name name = entry.name == null ? Name.identifier("p" + entry.index) : entry.name;
-				multiTypeNode.variables.add(new VariableNode(mutable ? Modifier.list(Modifier.MUTABLE) : Modifier.EMPTY, name, toAsmType(bindingTrace, entry.type, classNode)));
+				multiTypeNode.variables.add(new VariableNode(mutable ? Modifier.list(Modifier.MUTABLE) : Modifier.EMPTY, name, toAsmType(bindingTrace, asmNodeCache, entry.type, classNode)));
 			}
 		}
 		else if(owner instanceof ClassDescriptor)
@@ -90,9 +104,9 @@ public class TypeTransformer
 
 		TypeNode typeNode = new TypeNode(napileType.isNullable(), typeConstructorNode);
 		for(NapileType argument : napileType.getArguments())
-			typeNode.arguments.add(toAsmType(bindingTrace, argument, classNode));
+			typeNode.arguments.add(toAsmType(bindingTrace, asmNodeCache, argument, classNode));
 
-		AnnotationCodegen.gen(bindingTrace, napileType, typeNode, classNode);
+		AnnotationCodegen.gen(bindingTrace, asmNodeCache, napileType, typeNode, classNode);
 
 		return typeNode;
 	}
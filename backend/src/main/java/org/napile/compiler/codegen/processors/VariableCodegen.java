@@ -49,24 +49,24 @@ import com.intellij.psi.tree.IElementType;
  */
 public class VariableCodegen
 {
-	public static void getSetterAndGetter(@NotNull VariableDescriptor variableDescriptor, @Nullable NapileVariable variable, @NotNull ClassNode classNode, @NotNull BindingTrace bindingTrace, boolean noSetter)
+	public static void getSetterAndGetter(@NotNull VariableDescriptor variableDescriptor, @Nullable NapileVariable variable, @NotNull ClassNode classNode, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, boolean noSetter)
 	{
 		Map<IElementType, NapileVariableAccessor> map = new HashMap<IElementType, NapileVariableAccessor>(2);
 		if(variable != null)
 			for(NapileVariableAccessor variableAccessor : variable.getAccessors())
 				map.put(variableAccessor.getAccessorElementType(), variableAccessor);
 
-		getGetter(variableDescriptor, classNode, bindingTrace, map.get(NapileTokens.GET_KEYWORD), variable);
+		getGetter(variableDescriptor, classNode, bindingTrace, asmNodeCache, map.get(NapileTokens.GET_KEYWORD), variable);
 		if(!noSetter)
-			getSetter(variableDescriptor, classNode, bindingTrace, map.get(NapileTokens.SET_KEYWORD), variable);
+			getSetter(variableDescriptor, classNode, bindingTrace, asmNodeCache, map.get(NapileTokens.SET_KEYWORD), variable);
 	}
 
-	private static void getSetter(@NotNull VariableDescriptor variableDescriptor, @NotNull ClassNode classNode, @NotNull BindingTrace bindingTrace, @Nullable NapileVariableAccessor variableAccessor, @Nullable NapileVariable variable)
+	private static void getSetter(@NotNull VariableDescriptor variableDescriptor, @NotNull ClassNode classNode, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @Nullable NapileVariableAccessor variableAccessor, @Nullable NapileVariable variable)
 	{
 		Name accessorFq = Name.identifier(variableDescriptor.getName() + AsmConstants.ANONYM_SPLITTER + "set");
 
 		if(variableAccessor == null)
-			getSetterCode(bindingTrace, classNode, new MethodNode(ModifierCodegen.gen(variableDescriptor), accessorFq, AsmConstants.NULL_TYPE), variableDescriptor);
+			getSetterCode(bindingTrace, asmNodeCache, classNode, new MethodNode(ModifierCodegen.gen(variableDescriptor), accessorFq, AsmConstants.NULL_TYPE), variableDescriptor);
 		else
 		{
 			final NapileExpression bodyExpression = variableAccessor.getBodyExpression();
@@ -75,21 +75,21 @@ public class VariableCodegen
 			{
 				final VariableAccessorDescriptor descriptor = bindingTrace.safeGet(BindingTraceKeys.VARIABLE_SET_ACCESSOR, variableAccessor);
 				final MethodNode methodNode = new MethodNode(ModifierCodegen.gen(descriptor), accessorFq, AsmConstants.NULL_TYPE);
-				AnnotationCodegen.gen(bindingTrace, descriptor, methodNode, classNode);
+				AnnotationCodegen.gen(bindingTrace, asmNodeCache, descriptor, methodNode, classNode);
 
-				getSetterCode(bindingTrace, classNode, methodNode, variableDescriptor);
+				getSetterCode(bindingTrace, asmNodeCache, classNode, methodNode, variableDescriptor);
 			}
 			else
 			{
 				VariableAccessorDescriptor descriptor = bindingTrace.safeGet(BindingTraceKeys.VARIABLE_SET_ACCESSOR, variableAccessor);
 
-				ExpressionCodegen codegen = new ExpressionCodegen(bindingTrace, descriptor, classNode, ExpressionCodegenContext.empty(), null);
+				ExpressionCodegen codegen = new ExpressionCodegen(bindingTrace, asmNodeCache, descriptor, classNode, ExpressionCodegenContext.empty(), null);
 				codegen.returnExpression(bodyExpression, false);
 
 				MethodNode methodNode = new MethodNode(ModifierCodegen.gen(descriptor), accessorFq, AsmConstants.NULL_TYPE);
-				AnnotationCodegen.gen(bindingTrace, descriptor, methodNode, classNode);
+				AnnotationCodegen.gen(bindingTrace, asmNodeCache, descriptor, methodNode, classNode);
 
-				methodNode.parameters.add(new MethodParameterNode(Modifier.list(Modifier.FINAL), NapileConstants.VARIABLE_SET_PARAMETER_NAME, TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode)));
+				methodNode.parameters.add(new MethodParameterNode(Modifier.list(Modifier.FINAL), NapileConstants.VARIABLE_SET_PARAMETER_NAME, TypeTransformer.toAsmType(bindingTrace, asmNodeCache, variableDescriptor.getType(), classNode)));
 				methodNode.code = new CodeInfo(codegen.instructs);
 
 				classNode.addMember(methodNode);
@@ -97,9 +97,9 @@ public class VariableCodegen
 		}
 	}
 
-	private static void getSetterCode(@NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode, @NotNull MethodNode setterMethodNode, @NotNull VariableDescriptor variableDescriptor)
+	private static void getSetterCode(@NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode, @NotNull MethodNode setterMethodNode, @NotNull VariableDescriptor variableDescriptor)
 	{
-		setterMethodNode.parameters.add(new MethodParameterNode(Modifier.list(Modifier.FINAL), NapileConstants.VARIABLE_SET_PARAMETER_NAME, TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode)));
+		setterMethodNode.parameters.add(new MethodParameterNode(Modifier.list(Modifier.FINAL), NapileConstants.VARIABLE_SET_PARAMETER_NAME, TypeTransformer.toAsmType(bindingTrace, asmNodeCache, variableDescriptor.getType(), classNode)));
 
 		InstructionAdapter adapter = new InstructionAdapter();
 
@@ -110,7 +110,7 @@ public class VariableCodegen
 		if(variableDescriptor.isStatic())
 		{
 			adapter.localGet(0);
-			adapter.putToStaticVar(AsmNodeUtil.ref(variableDescriptor, bindingTrace, classNode));
+			adapter.putToStaticVar(AsmNodeUtil.ref(variableDescriptor, bindingTrace, asmNodeCache, classNode));
 			adapter.putNull();
 			adapter.returnValues(1);
 		}
@@ -118,7 +118,7 @@ public class VariableCodegen
 		{
 			adapter.localGet(0);
 			adapter.localGet(1);
-			adapter.putToVar(AsmNodeUtil.ref(variableDescriptor, bindingTrace, classNode));
+			adapter.putToVar(AsmNodeUtil.ref(variableDescriptor, bindingTrace, asmNodeCache, classNode));
 			adapter.putNull();
 			adapter.returnValues(1);
 		}
@@ -127,32 +127,32 @@ public class VariableCodegen
 		classNode.addMember(setterMethodNode);
 	}
 
-	private static void getGetter(VariableDescriptor variableDescriptor, ClassNode classNode, BindingTrace bindingTrace, NapileVariableAccessor variableAccessor, @Nullable NapileVariable variable)
+	private static void getGetter(VariableDescriptor variableDescriptor, ClassNode classNode, BindingTrace bindingTrace, AsmNodeCache asmNodeCache, NapileVariableAccessor variableAccessor, @Nullable NapileVariable variable)
 	{
 		Name accessorFq = Name.identifier(variableDescriptor.getName() + AsmConstants.ANONYM_SPLITTER + "get");
 
 		if(variableAccessor == null)
-			getGetterCode(classNode, new MethodNode(ModifierCodegen.gen(variableDescriptor), accessorFq, TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode)), variableDescriptor, bindingTrace, variable);
+			getGetterCode(classNode, new MethodNode(ModifierCodegen.gen(variableDescriptor), accessorFq, TypeTransformer.toAsmType(bindingTrace, asmNodeCache, variableDescriptor.getType(), classNode)), variableDescriptor, bindingTrace, asmNodeCache, variable);
 		else
 		{
 			final NapileExpression bodyExpression = variableAccessor.getBodyExpression();
 			if(bodyExpression == null)
 			{
 				final VariableAccessorDescriptor descriptor = bindingTrace.safeGet(BindingTraceKeys.VARIABLE_GET_ACCESSOR, variableAccessor);
-				final MethodNode methodNode = new MethodNode(ModifierCodegen.gen(descriptor), accessorFq, TypeTransformer.toAsmType(bindingTrace, variableDescriptor.getType(), classNode));
+				final MethodNode methodNode = new MethodNode(ModifierCodegen.gen(descriptor), accessorFq, TypeTransformer.toAsmType(bindingTrace, asmNodeCache, variableDescriptor.getType(), classNode));
 
-				AnnotationCodegen.gen(bindingTrace, descriptor, methodNode, classNode);
-				getGetterCode(classNode, methodNode, variableDescriptor, bindingTrace, variable);
+				AnnotationCodegen.gen(bindingTrace, asmNodeCache, descriptor, methodNode, classNode);
+				getGetterCode(classNode, methodNode, variableDescriptor, bindingTrace, asmNodeCache, variable);
 			}
 			else
 			{
 				VariableAccessorDescriptor descriptor = bindingTrace.safeGet(BindingTraceKeys.VARIABLE_GET_ACCESSOR, variableAccessor);
 
-				ExpressionCodegen codegen = new ExpressionCodegen(bindingTrace, descriptor, classNode, ExpressionCodegenContext.empty(), null);
+				ExpressionCodegen codegen = new ExpressionCodegen(bindingTrace, asmNodeCache, descriptor, classNode, ExpressionCodegenContext.empty(), null);
 				codegen.returnExpression(bodyExpression, false);
 
 				MethodNode methodNode = new MethodNode(ModifierCodegen.gen(descriptor), accessorFq, codegen.toAsmType(descriptor.getVariable().getType()));
-				AnnotationCodegen.gen(bindingTrace, descriptor, methodNode, classNode);
+				AnnotationCodegen.gen(bindingTrace, asmNodeCache, descriptor, methodNode, classNode);
 				methodNode.code = new CodeInfo(codegen.instructs);
 
 				classNode.addMember(methodNode);
@@ -160,7 +160,7 @@ public class VariableCodegen
 		}
 	}
 
-	private static void getGetterCode(@NotNull ClassNode classNode, @NotNull MethodNode getterMethodNode, @NotNull VariableDescriptor variableDescriptor, @NotNull BindingTrace bindingTrace, @Nullable NapileVariable variable)
+	private static void getGetterCode(@NotNull ClassNode classNode, @NotNull MethodNode getterMethodNode, @NotNull VariableDescriptor variableDescriptor, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @Nullable NapileVariable variable)
 	{
 		//TODO [VISTALL] make LazyType, current version is not thread safe
 		if(variable != null && variable.hasModifier(NapileTokens.LAZY_KEYWORD))
@@ -169,7 +169,7 @@ public class VariableCodegen
 			if(!variableDescriptor.isStatic())
 				adapter.visitLocalVariable("this");
 
-			final StackValue varStackValue = StackValue.variable(variable, bindingTrace, classNode, variableDescriptor);
+			final StackValue varStackValue = StackValue.variable(variable, bindingTrace, asmNodeCache, classNode, variableDescriptor);
 
 			if(!variableDescriptor.isStatic())
 				adapter.localGet(0);
@@ -186,7 +186,7 @@ public class VariableCodegen
 
 			ReservedInstruction reservedInstruction = adapter.reserve();
 
-			ExpressionCodegen expressionCodegen = new ExpressionCodegen(bindingTrace, null, classNode, ExpressionCodegenContext.empty(), adapter);
+			ExpressionCodegen expressionCodegen = new ExpressionCodegen(bindingTrace, asmNodeCache, null, classNode, ExpressionCodegenContext.empty(), adapter);
 			if(!variableDescriptor.isStatic())
 				expressionCodegen.instructs.localGet(0);
 
@@ -216,13 +216,13 @@ public class VariableCodegen
 
 			if(variableDescriptor.isStatic())
 			{
-				adapter.getStaticVar(AsmNodeUtil.ref(variableDescriptor, bindingTrace, classNode));
+				adapter.getStaticVar(AsmNodeUtil.ref(variableDescriptor, bindingTrace, asmNodeCache, classNode));
 				adapter.returnValues(1);
 			}
 			else
 			{
 				adapter.localGet(0);
-				adapter.getVar(AsmNodeUtil.ref(variableDescriptor, bindingTrace, classNode));
+				adapter.getVar(AsmNodeUtil.ref(variableDescriptor, bindingTrace, asmNodeCache, classNode));
 				adapter.returnValues(1);
 			}
 
@@ -22,23 +22,26 @@ import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.napile.asm.resolve.name.FqName;
 import org.napile.asm.tree.members.ClassNode;
-import org.napile.asm.tree.members.MethodParameterNode;
 import org.napile.asm.tree.members.bytecode.MethodRef;
 import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.compiler.codegen.processors.AsmNodeCache;
+import org.napile.compiler.codegen.processors.AsmNodeUtil;
 import org.napile.compiler.codegen.processors.ExpressionCodegen;
 import org.napile.compiler.codegen.processors.FqNameGenerator;
-import org.napile.compiler.codegen.processors.ModifierCodegen;
 import org.napile.compiler.codegen.processors.TypeTransformer;
 import org.napile.compiler.lang.descriptors.CallParameterDescriptor;
 import org.napile.compiler.lang.descriptors.CallableDescriptor;
 import org.napile.compiler.lang.descriptors.CallableMemberDescriptor;
+import org.napile.compiler.lang.descriptors.ClassDescriptor;
 import org.napile.compiler.lang.descriptors.ConstructorDescriptor;
 import org.napile.compiler.lang.descriptors.MethodDescriptor;
+import org.napile.compiler.lang.descriptors.Modality;
 import org.napile.compiler.lang.descriptors.TypeParameterDescriptor;
 import org.napile.compiler.lang.descriptors.Visibility;
 import org.napile.compiler.lang.psi.NapileExpression;
 import org.napile.compiler.lang.psi.NapileSafeQualifiedExpressionImpl;
 import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
 import org.napile.compiler.lang.resolve.calls.ResolvedCall;
 import org.napile.compiler.lang.resolve.calls.inference.ConstraintSystem;
 import org.napile.compiler.lang.resolve.calls.inference.TypeConstraints;
@@ -51,12 +54,18 @@ import com.intellij.psi.PsiElement;
  */
 public class CallTransformer
 {
+	public static final String DEVIRTUALIZATION_PREFIX = "devirtualization.";
+	public static final String DEVIRTUALIZATION_DECISIONS = "devirtualization";
+
+	private static final String SPECIAL = "special.";
+	private static final String VIRTUAL = "virtual.";
+
 	public static CallableMethod transformToCallable(ExpressionCodegen gen, ResolvedCall<? extends CallableDescriptor> resolvedCall, boolean nullable, boolean anonym, boolean requireSpecialCall)
 	{
-		return transformToCallable(gen.bindingTrace, gen.classNode, resolvedCall, nullable, anonym, requireSpecialCall);
+		return transformToCallable(gen.bindingTrace, gen.asmNodeCache, gen.classNode, resolvedCall, nullable, anonym, requireSpecialCall);
 	}
 
-	public static CallableMethod transformToCallable(BindingTrace bindingTrace, ClassNode classNode, ResolvedCall<? extends CallableDescriptor> resolvedCall, boolean nullable, boolean anonym, boolean requireSpecialCall)
+	public static CallableMethod transformToCallable(BindingTrace bindingTrace, AsmNodeCache asmNodeCache, ClassNode classNode, ResolvedCall<? extends CallableDescriptor> resolvedCall, boolean nullable, boolean anonym, boolean requireSpecialCall)
 	{
 		MethodDescriptor fd = (MethodDescriptor) resolvedCall.getResultingDescriptor();
 		fd = unwrapFakeOverride(fd);
@@ -64,7 +73,7 @@ public class CallTransformer
 		List<TypeNode> typeArguments = new ArrayList<TypeNode>(fd.getTypeParameters().size());
 
 		for(NapileType type : resolvedCall.getTypeArguments().values())
-			typeArguments.add(TypeTransformer.toAsmType(bindingTrace, type, classNode));
+			typeArguments.add(TypeTransformer.toAsmType(bindingTrace, asmNodeCache, type, classNode));
 
 		ConstraintSystem constraintSystem = resolvedCall.getConstraintSystem();
 		if(constraintSystem != null && constraintSystem.isSuccessful())
@@ -77,11 +86,11 @@ public class CallTransformer
 
 				assert typeConstants != null;
 
-				typeArguments.add(TypeTransformer.toAsmType(bindingTrace, typeConstants.getUpperBounds().iterator().next(), classNode));
+				typeArguments.add(TypeTransformer.toAsmType(bindingTrace, asmNodeCache, typeConstants.getUpperBounds().iterator().next(), classNode));
 			}
 		}
 
-		return transformToCallable(bindingTrace, classNode, fd, typeArguments, nullable, anonym, requireSpecialCall);
+		return transformToCallable(bindingTrace, asmNodeCache, classNode, fd, typeArguments, nullable, anonym, requireSpecialCall);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -95,11 +104,11 @@ public class CallTransformer
 	@NotNull
 	public static CallableMethod transformToCallable(ExpressionCodegen gen, MethodDescriptor methodDescriptor, List<TypeNode> typeArguments, boolean nullable, boolean anonym, boolean requireSpecialCall)
 	{
-		return transformToCallable(gen.bindingTrace, gen.classNode, methodDescriptor, typeArguments, nullable, anonym, requireSpecialCall);
+		return transformToCallable(gen.bindingTrace, gen.asmNodeCache, gen.classNode, methodDescriptor, typeArguments, nullable, anonym, requireSpecialCall);
 	}
 
 	@NotNull
-	public static CallableMethod transformToCallable(BindingTrace bindingTrace, ClassNode classNode, MethodDescriptor methodDescriptor, List<TypeNode> typeArguments, boolean nullable, boolean anonym, boolean requireSpecialCall)
+	public static CallableMethod transformToCallable(BindingTrace bindingTrace, AsmNodeCache asmNodeCache, ClassNode classNode, MethodDescriptor methodDescriptor, List<TypeNode> typeArguments, boolean nullable, boolean anonym, boolean requireSpecialCall)
 	{
 		CallableMethod.CallType type = CallableMethod.CallType.VIRTUAL;
 		if(methodDescriptor instanceof ConstructorDescriptor || requireSpecialCall)
@@ -107,8 +116,13 @@ public class CallTransformer
 		else if(methodDescriptor.isStatic())
 			type = CallableMethod.CallType.STATIC;
 
-		if(!methodDescriptor.isStatic() && methodDescriptor.getVisibility() == Visibility.LOCAL)
-			type = CallableMethod.CallType.SPECIAL;
+		String devirtualization = null;
+		if(type == CallableMethod.CallType.VIRTUAL && !anonym)
+		{
+			devirtualization = devirtualize(bindingTrace, methodDescriptor);
+			if(devirtualization.startsWith(SPECIAL))
+				type = CallableMethod.CallType.SPECIAL;
+		}
 		if(anonym)
 			type = CallableMethod.CallType.ANONYM;
 
@@ -120,16 +134,49 @@ public class CallTransformer
 		MethodDescriptor originalMethodDescriptor = unwrapFakeOverride(methodDescriptor).getOriginal();
 
 		// it used for save in bytecode/checks - for example, original 'E'(type parameter) and caller is 'napile.lang.Int'
-		List<MethodParameterNode> parametersToByteCode = new ArrayList<MethodParameterNode>(originalMethodDescriptor.getValueParameters().size());
-		List<TypeNode> parametersToChecks = new ArrayList<TypeNode>(originalMethodDescriptor.getValueParameters().size());
+		List<TypeNode> parametersToChecks = new ArrayList<TypeNode>(methodDescriptor.getValueParameters().size());
 
 		for(CallParameterDescriptor p : methodDescriptor.getValueParameters())
-			parametersToChecks.add(TypeTransformer.toAsmType(bindingTrace, p.getType(), classNode));
+			parametersToChecks.add(TypeTransformer.toAsmType(bindingTrace, asmNodeCache, p.getType(), classNode));
 
-		for(CallParameterDescriptor p : originalMethodDescriptor.getValueParameters())
-			parametersToByteCode.add(new MethodParameterNode(ModifierCodegen.gen(p), p.getName(), TypeTransformer.toAsmType(bindingTrace, p.getType(), classNode)));
+		// ref without type arguments is shared by all calls of method
+		MethodRef methodRef = AsmNodeUtil.ref(originalMethodDescriptor, fqName, bindingTrace, asmNodeCache, classNode);
+		if(!typeArguments.isEmpty())
+			methodRef = new MethodRef(fqName, methodRef.parameters, typeArguments, methodRef.returnType);
 
-		return new CallableMethod(new MethodRef(fqName, parametersToByteCode, typeArguments, TypeTransformer.toAsmType(bindingTrace, originalMethodDescriptor.getReturnType(), classNode)), type, TypeTransformer.toAsmType(bindingTrace, methodDescriptor.getReturnType(), classNode), parametersToChecks, methodDescriptor.isMacro(), nullable);
+		return new CallableMethod(methodRef, type, TypeTransformer.toAsmType(bindingTrace, asmNodeCache, methodDescriptor.getReturnType(), classNode), parametersToChecks, methodDescriptor.isMacro(), nullable, devirtualization);
+	}
+
+	/**
+	 * Virtual call is replaced by special call, only if target can not be overridden: member is local or final, or class is final.
+	 * Other members of module classes stay virtual - they can be overridden by module, which is compiled later(module is library of it),
+	 * or by new class of this module in incremental build. Calls to library members are not changed - library can be changed after compilation.
+	 *
+	 * @return decision with reason, it is recorded for call site in statistics by {@link CallableMethod#invoke}
+	 */
+	@NotNull
+	private static String devirtualize(@NotNull BindingTrace bindingTrace, @NotNull MethodDescriptor methodDescriptor)
+	{
+		if(methodDescriptor.getVisibility() == Visibility.LOCAL)
+			return SPECIAL + "localMember";
+
+		// fq name of call is generated from descriptor - it must be real declaration
+		if(methodDescriptor.getKind() == CallableMemberDescriptor.Kind.FAKE_OVERRIDE || methodDescriptor.getModality() == Modality.ABSTRACT)
+			return VIRTUAL + "abstract";
+
+		MethodDescriptor original = methodDescriptor.getOriginal();
+		if(!(original.getContainingDeclaration() instanceof ClassDescriptor))
+			return VIRTUAL + "library";
+
+		ClassDescriptor classDescriptor = (ClassDescriptor) original.getContainingDeclaration();
+		if(!bindingTrace.safeGet(BindingTraceKeys.MODULE_CLASS, classDescriptor))
+			return VIRTUAL + "library";
+
+		if(classDescriptor.getModality() == Modality.FINAL)
+			return SPECIAL + "finalClass";
+		if(original.getModality() == Modality.FINAL)
+			return SPECIAL + "finalMember";
+		return VIRTUAL + "overridable";
 	}
 
 	public static boolean isNullable(NapileExpression expression)
@@ -21,10 +21,12 @@ import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.InstructionInCodePosition;
 import org.napile.asm.tree.members.bytecode.MethodRef;
 import org.napile.asm.tree.members.bytecode.adapter.InstructionAdapter;
 import org.napile.asm.tree.members.types.TypeNode;
 import org.napile.compiler.codegen.processors.PositionMarker;
+import org.napile.compiler.util.CompilerStatistics;
 import com.intellij.psi.PsiElement;
 
 /**
@@ -47,8 +49,9 @@ public class CallableMethod
 	private final List<TypeNode> parameters;
 	private final boolean macro;
 	private final boolean nullable;
+	private final String devirtualization;
 
-	public CallableMethod(@NotNull MethodRef methodRef, @NotNull CallType callType, TypeNode returnType, List<TypeNode> parameters, boolean macro, boolean nullable)
+	public CallableMethod(@NotNull MethodRef methodRef, @NotNull CallType callType, TypeNode returnType, List<TypeNode> parameters, boolean macro, boolean nullable, @Nullable String devirtualization)
 	{
 		this.methodRef = methodRef;
 		this.callType = callType;
@@ -56,6 +59,7 @@ public class CallableMethod
 		this.parameters = parameters;
 		this.macro = macro;
 		this.nullable = nullable;
+		this.devirtualization = devirtualization;
 	}
 
 	public void newObject(@NotNull InstructionAdapter instructionAdapter, @NotNull PositionMarker marker,  @Nullable PsiElement target, @NotNull TypeNode typeNode)
@@ -91,6 +95,14 @@ public class CallableMethod
 		}
 
 		marker.mark(instruction, target);
+
+		if(devirtualization != null)
+		{
+			InstructionInCodePosition position = instruction.position;
+			String site = position == null ? "?" : position.getFile() + ":" + position.getLine() + ":" + position.getColumn();
+			CompilerStatistics.recordDecision(CallTransformer.DEVIRTUALIZATION_DECISIONS, site + " " + methodRef.method, devirtualization);
+			CompilerStatistics.count(CallTransformer.DEVIRTUALIZATION_PREFIX + devirtualization, 1);
+		}
 	}
 
 	public TypeNode getReturnType()
@@ -112,4 +124,13 @@ public class CallableMethod
 	{
 		return callType;
 	}
+
+	/**
+	 * @return decision of devirtualization with reason(for example 'special.finalClass'), or null if call type is not virtual by nature
+	 */
+	@Nullable
+	public String getDevirtualization()
+	{
+		return devirtualization;
+	}
 }
@@ -48,9 +48,9 @@ public class CallReceiver extends StackValue
 		if(thisObject.exists())
 		{
 			if(callableMethod != null)
-				return TypeTransformer.toAsmType(codegen.bindingTrace, ((ClassDescriptor) descriptor.getContainingDeclaration()).getDefaultType(), codegen.classNode);
+				return TypeTransformer.toAsmType(codegen.bindingTrace, codegen.asmNodeCache, ((ClassDescriptor) descriptor.getContainingDeclaration()).getDefaultType(), codegen.classNode);
 			else
-				return TypeTransformer.toAsmType(codegen.bindingTrace, descriptor.getExpectedThisObject().getType(), codegen.classNode);
+				return TypeTransformer.toAsmType(codegen.bindingTrace, codegen.asmNodeCache, descriptor.getExpectedThisObject().getType(), codegen.classNode);
 		}
 		else
 			return AsmConstants.NULL_TYPE;
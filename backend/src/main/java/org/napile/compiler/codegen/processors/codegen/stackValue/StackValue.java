@@ -17,10 +17,12 @@
 package org.napile.compiler.codegen.processors.codegen.stackValue;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.resolve.name.FqName;
 import org.napile.asm.tree.members.ClassNode;
 import org.napile.asm.tree.members.bytecode.adapter.InstructionAdapter;
 import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.compiler.codegen.processors.AsmNodeCache;
 import org.napile.compiler.codegen.processors.ExpressionCodegen;
 import org.napile.compiler.codegen.processors.FqNameGenerator;
 import org.napile.compiler.codegen.processors.PositionMarker;
@@ -82,9 +84,9 @@ public abstract class StackValue
 	}
 
 	@NotNull
-	public static StackValue variable(@NotNull PsiElement psiElement, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode, @NotNull VariableDescriptor propertyDescriptor)
+	public static StackValue variable(@NotNull PsiElement psiElement, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode, @NotNull VariableDescriptor propertyDescriptor)
 	{
-		return new Variable(psiElement, FqNameGenerator.getFqName(propertyDescriptor, bindingTrace), TypeTransformer.toAsmType(bindingTrace, propertyDescriptor.getType(), classNode), propertyDescriptor.isStatic());
+		return new Variable(psiElement, FqNameGenerator.getFqName(propertyDescriptor, bindingTrace), TypeTransformer.toAsmType(bindingTrace, asmNodeCache, propertyDescriptor.getType(), classNode), propertyDescriptor.isStatic());
 	}
 
 	@NotNull
@@ -96,13 +98,13 @@ public abstract class StackValue
 	@NotNull
 	public static StackValue variableAccessor(@NotNull MethodDescriptor methodDescriptor, @NotNull TypeNode typeNode, @NotNull ExpressionCodegen gen, boolean nullable, PsiElement target)
 	{
-		return variableAccessor(target, methodDescriptor, typeNode, gen.bindingTrace, gen.classNode, nullable);
+		return variableAccessor(target, methodDescriptor, typeNode, gen.bindingTrace, gen.asmNodeCache, gen.classNode, nullable);
 	}
 
 	@NotNull
-	public static StackValue variableAccessor(PsiElement target, @NotNull MethodDescriptor methodDescriptor, @NotNull TypeNode typeNode, @NotNull BindingTrace bindingTrace, @NotNull ClassNode classNode, boolean nullable)
+	public static StackValue variableAccessor(PsiElement target, @NotNull MethodDescriptor methodDescriptor, @NotNull TypeNode typeNode, @NotNull BindingTrace bindingTrace, @Nullable AsmNodeCache asmNodeCache, @NotNull ClassNode classNode, boolean nullable)
 	{
-		return new VariableAccessor(typeNode, target, methodDescriptor, bindingTrace, classNode, nullable);
+		return new VariableAccessor(typeNode, target, methodDescriptor, bindingTrace, asmNodeCache, classNode, nullable);
 	}
 
 	@NotNull
@@ -21,6 +21,7 @@ import java.util.Collections;
 import org.napile.asm.tree.members.ClassNode;
 import org.napile.asm.tree.members.bytecode.adapter.InstructionAdapter;
 import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.compiler.codegen.processors.AsmNodeCache;
 import org.napile.compiler.codegen.processors.PositionMarker;
 import org.napile.compiler.codegen.processors.codegen.CallTransformer;
 import org.napile.compiler.codegen.processors.codegen.CallableMethod;
@@ -36,11 +37,11 @@ public class VariableAccessor extends StackValue
 {
 	private final CallableMethod callableMethod;
 
-	public VariableAccessor(TypeNode type, PsiElement target, MethodDescriptor methodDescriptor, BindingTrace bindingTrace, ClassNode classNode, boolean nullable)
+	public VariableAccessor(TypeNode type, PsiElement target, MethodDescriptor methodDescriptor, BindingTrace bindingTrace, AsmNodeCache asmNodeCache, ClassNode classNode, boolean nullable)
 	{
 		super(target, type);
 
-		callableMethod = CallTransformer.transformToCallable(bindingTrace, classNode, methodDescriptor, Collections.<TypeNode>emptyList(), nullable, false, false);
+		callableMethod = CallTransformer.transformToCallable(bindingTrace, asmNodeCache, classNode, methodDescriptor, Collections.<TypeNode>emptyList(), nullable, false, false);
 	}
 
 	@Override
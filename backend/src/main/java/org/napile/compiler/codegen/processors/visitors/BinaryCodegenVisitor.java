@@ -359,10 +359,10 @@ public class BinaryCodegenVisitor extends CodegenVisitor
 		NapileExpression right = expression.getRight();
 
 		NapileType leftNapileType = gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, left);
-		TypeNode leftType = TypeTransformer.toAsmType(gen.bindingTrace, leftNapileType, gen.classNode);
+		TypeNode leftType = TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, leftNapileType, gen.classNode);
 
 		NapileType rightNapileType = gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, right);
-		TypeNode rightType = TypeTransformer.toAsmType(gen.bindingTrace, rightNapileType, gen.classNode);
+		TypeNode rightType = TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, rightNapileType, gen.classNode);
 
 		gen.gen(left, leftType);
 
@@ -418,7 +418,7 @@ public class BinaryCodegenVisitor extends CodegenVisitor
 	{
 		final TypeNode exprType = gen.expressionType(expression);
 		NapileType type = gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, expression.getLeft());
-		final TypeNode leftType = TypeTransformer.toAsmType(gen.bindingTrace, type, gen.classNode);
+		final TypeNode leftType = TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, type, gen.classNode);
 
 		gen.gen(expression.getLeft(), leftType);
 
@@ -85,15 +85,15 @@ public class ClosureCodegenVisitor extends CodegenVisitor
 		}
 
 		if(target.isStatic())
-			adapter.invokeStatic(AsmNodeUtil.ref(target, gen.bindingTrace, gen.classNode), false);
+			adapter.invokeStatic(AsmNodeUtil.ref(target, gen.bindingTrace, gen.asmNodeCache, gen.classNode), false);
 		else
-			adapter.invokeVirtual(AsmNodeUtil.ref(target, gen.bindingTrace, gen.classNode), false);
+			adapter.invokeVirtual(AsmNodeUtil.ref(target, gen.bindingTrace, gen.asmNodeCache, gen.classNode), false);
 
 		adapter.returnValues(1);
 
 		gen.marker(expression).putAnonym(Collections.<IntIntPair>emptyList(), new CodeInfo(adapter));
 
-		return StackValue.onStack(TypeTransformer.toAsmType(gen.bindingTrace, napileType, gen.classNode));
+		return StackValue.onStack(TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, napileType, gen.classNode));
 	}
 
 	@Override
@@ -106,7 +106,7 @@ public class ClosureCodegenVisitor extends CodegenVisitor
 
 		InstructionAdapter adapter = new InstructionAdapter();
 
-		ExpressionCodegen expressionCodegen = new ExpressionCodegen(gen.bindingTrace, null, gen.classNode, ExpressionCodegenContext.empty(), adapter);
+		ExpressionCodegen expressionCodegen = new ExpressionCodegen(gen.bindingTrace, gen.asmNodeCache, null, gen.classNode, ExpressionCodegenContext.empty(), adapter);
 
 		final NapileExpression targetExpression = expression.getTargetExpression();
 
@@ -129,7 +129,7 @@ public class ClosureCodegenVisitor extends CodegenVisitor
 		adapter.returnValues(1);
 
 		gen.marker(expression).putAnonym(Collections.<IntIntPair>emptyList(), new CodeInfo(adapter));
-		return StackValue.onStack(TypeTransformer.toAsmType(gen.bindingTrace, napileType, gen.classNode));
+		return StackValue.onStack(TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, napileType, gen.classNode));
 	}
 
 	@Override
@@ -168,7 +168,7 @@ public class ClosureCodegenVisitor extends CodegenVisitor
 		};
 		bodyExpression.accept(visitorVoid);
 
-		ExpressionCodegen expCodegen = new ExpressionCodegen(gen.bindingTrace, methodDescriptor, gen.classNode,  gen.context.clone(), adapter);
+		ExpressionCodegen expCodegen = new ExpressionCodegen(gen.bindingTrace, gen.asmNodeCache, methodDescriptor, gen.classNode,  gen.context.clone(), adapter);
 		for(VariableDescriptor v : vars)
 		{
 			expCodegen.frameMap.enter(v);
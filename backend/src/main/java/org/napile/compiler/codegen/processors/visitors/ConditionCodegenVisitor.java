@@ -58,13 +58,13 @@ public class ConditionCodegenVisitor extends CodegenVisitor
 	@Override
 	public StackValue visitIsExpression(NapileIsExpression expression, StackValue data)
 	{
-		gen.gen(expression.getLeftHandSide(), TypeTransformer.toAsmType(gen.bindingTrace, gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, expression.getLeftHandSide()), gen.classNode));
+		gen.gen(expression.getLeftHandSide(), TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, expression.getLeftHandSide()), gen.classNode));
 
 		NapileType rightType = gen.bindingTrace.safeGet(BindingTraceKeys.TYPE, expression.getTypeRef());
 
 		InstructionAdapter marker = gen.marker(expression.getOperationReference());
 
-		marker.is(TypeTransformer.toAsmType(gen.bindingTrace, rightType, gen.classNode));
+		marker.is(TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, rightType, gen.classNode));
 
 		if(expression.isNegated())
 			marker.invokeVirtual(new MethodRef(NapileLangPackage.BOOL.child(Name.identifier("not")), Collections.<MethodParameterNode>emptyList(), Collections.<TypeNode>emptyList(), AsmConstants.BOOL_TYPE), false);
@@ -140,7 +140,7 @@ public class ConditionCodegenVisitor extends CodegenVisitor
 
 		NapileExpression subjectExpression = expression.getSubjectExpression();
 		if(subjectExpression != null)
-			gen.gen(subjectExpression, TypeTransformer.toAsmType(gen.bindingTrace, gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, subjectExpression), gen.classNode));
+			gen.gen(subjectExpression, TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, subjectExpression), gen.classNode));
 
 		List<NapileWhenEntry> whenEntries = expression.getEntries();
 		List<ReservedInstruction> jumpToBlocks = new ArrayList<ReservedInstruction>(whenEntries.size());
@@ -159,7 +159,7 @@ public class ConditionCodegenVisitor extends CodegenVisitor
 				{
 					instructs.dup();
 
-					TypeNode typeNode = TypeTransformer.toAsmType(gen.bindingTrace, gen.bindingTrace.safeGet(BindingTraceKeys.TYPE, ((NapileWhenConditionIsPattern) condition).getTypeRef()), gen.classNode);
+					TypeNode typeNode = TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, gen.bindingTrace.safeGet(BindingTraceKeys.TYPE, ((NapileWhenConditionIsPattern) condition).getTypeRef()), gen.classNode);
 
 					instructs.is(typeNode);
 
@@ -179,7 +179,7 @@ public class ConditionCodegenVisitor extends CodegenVisitor
 					if(subjectExpression != null)
 						instructs.dup();
 
-					gen.gen(condExp, TypeTransformer.toAsmType(gen.bindingTrace, gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, condExp), gen.classNode));
+					gen.gen(condExp, TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, condExp), gen.classNode));
 
 					if(subjectExpression != null)
 						instructs.invokeVirtual(BinaryCodegenVisitor.ANY_EQUALS, false);
@@ -209,7 +209,7 @@ public class ConditionCodegenVisitor extends CodegenVisitor
 
 			instructs.replace(reservedInstruction).jump(instructs.size());
 
-			gen.gen(whenExp, TypeTransformer.toAsmType(gen.bindingTrace, gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, whenExp), gen.classNode));
+			gen.gen(whenExp, TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, whenExp), gen.classNode));
 
 			jumpOut.add(instructs.reserve());
 		}
@@ -217,7 +217,7 @@ public class ConditionCodegenVisitor extends CodegenVisitor
 		for(ReservedInstruction instruction : jumpOut)
 			instructs.replace(instruction).jump(instructs.size());
 
-		return StackValue.onStack(TypeTransformer.toAsmType(gen.bindingTrace, expType, gen.classNode));
+		return StackValue.onStack(TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, expType, gen.classNode));
 	}
 
 
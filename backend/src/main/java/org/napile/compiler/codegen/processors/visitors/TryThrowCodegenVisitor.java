@@ -52,7 +52,7 @@ public class TryThrowCodegenVisitor extends CodegenVisitor
 	{
 		NapileType napileType = gen.bindingTrace.safeGet(BindingTraceKeys.EXPRESSION_TYPE, expression);
 
-		TypeNode expectedAsmType = TypeTransformer.toAsmType(gen.bindingTrace, napileType, gen.classNode);
+		TypeNode expectedAsmType = TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, napileType, gen.classNode);
 
 		final int tryStartIndex = gen.instructs.size();
 
@@ -78,7 +78,7 @@ public class TryThrowCodegenVisitor extends CodegenVisitor
 
 			jumpOutInstructions.add(gen.instructs.reserve());
 
-			catchBlocks.add(new CatchBlock(startCatchIndex, gen.instructs.size(), index, TypeTransformer.toAsmType(gen.bindingTrace, catchParameter.getType(), gen.classNode)));
+			catchBlocks.add(new CatchBlock(startCatchIndex, gen.instructs.size(), index, TypeTransformer.toAsmType(gen.bindingTrace, gen.asmNodeCache, catchParameter.getType(), gen.classNode)));
 
 			gen.frameMap.leave(catchParameter);
 		}
@@ -19,8 +19,11 @@ package org.napile.compiler.codegen.processors.visitors.loopCodegen;
 import java.util.Collections;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.AsmConstants;
 import org.napile.asm.lib.NapileCollectionPackage;
+import org.napile.asm.lib.NapileConditionPackage;
+import org.napile.asm.lib.NapileLangPackage;
 import org.napile.asm.resolve.name.Name;
 import org.napile.asm.tree.members.MethodParameterNode;
 import org.napile.asm.tree.members.bytecode.MethodRef;
@@ -30,22 +33,48 @@ import org.napile.asm.tree.members.types.TypeNode;
 import org.napile.asm.tree.members.types.constructors.TypeParameterValueTypeNode;
 import org.napile.compiler.codegen.processors.AsmNodeUtil;
 import org.napile.compiler.codegen.processors.ExpressionCodegen;
+import org.napile.compiler.codegen.processors.codegen.CallableMethod;
 import org.napile.compiler.codegen.processors.codegen.TypeConstants;
+import org.napile.compiler.codegen.processors.codegen.stackValue.SimpleVariableAccessor;
+import org.napile.compiler.codegen.processors.visitors.BinaryCodegenVisitor;
 import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
 import org.napile.compiler.lang.descriptors.MethodDescriptor;
+import org.napile.compiler.lang.lexer.NapileTokens;
+import org.napile.compiler.lang.psi.NapileBinaryExpression;
+import org.napile.compiler.lang.psi.NapileConstantExpression;
+import org.napile.compiler.lang.psi.NapileExpression;
 import org.napile.compiler.lang.psi.NapileForExpression;
+import org.napile.compiler.lang.psi.NapilePsiUtil;
+import org.napile.compiler.lang.psi.NapileSimpleNameExpression;
 import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.TypeUtils;
 
 /**
+ * Loops over arrays and int ranges('a..b', where 'a' and 'b' are constants or locals) are generated as loops with index,
+ * without creating of iterator(and array for range). Other loops use iterator of range
+ * <p/>
+ * Inverted int range('a > b') have no iterations, while 'rangeTo' fails on creating of array with negative size
+ *
  * @author VISTALL
  * @since 21:16/02.10.12
  */
 public class ForLoopCodegen extends LoopCodegen<NapileForExpression>
 {
+	private static final MethodRef INT_INC = new MethodRef(NapileLangPackage.INT.child(Name.identifier("inc")), Collections.<MethodParameterNode>emptyList(), Collections.<TypeNode>emptyList(), AsmConstants.INT_TYPE);
+	private static final MethodRef INT_COMPARE_TO = new MethodRef(NapileLangPackage.INT.child(Name.identifier("compareTo")), Collections.singletonList(AsmNodeUtil.parameterNode("value", AsmConstants.INT_TYPE)), Collections.<TypeNode>emptyList(), TypeConstants.COMPARE_RESULT);
+	private static final MethodRef ARRAY_GET = new MethodRef(NapileLangPackage.ARRAY.child(Name.identifier("get")), Collections.singletonList(AsmNodeUtil.parameterNode("index", AsmConstants.INT_TYPE)), Collections.<TypeNode>emptyList(), new TypeNode(false, new TypeParameterValueTypeNode(Name.identifier("E"))));
+	private static final MethodRef ITERATOR_HAS_NEXT = new MethodRef(NapileCollectionPackage.ITERATOR.child(Name.identifier("hasNext")), Collections.<MethodParameterNode>emptyList(), Collections.<TypeNode>emptyList(), AsmConstants.BOOL_TYPE);
+	private static final MethodRef ITERATOR_NEXT = new MethodRef(NapileCollectionPackage.ITERATOR.child(Name.identifier("next")), Collections.<MethodParameterNode>emptyList(), Collections.<TypeNode>emptyList(), new TypeNode(false, new TypeParameterValueTypeNode(Name.identifier("E"))));
+	private static final SimpleVariableAccessor ARRAY_LENGTH = new SimpleVariableAccessor(NapileLangPackage.ARRAY.child(Name.identifier("length")), AsmConstants.INT_TYPE, CallableMethod.CallType.VIRTUAL);
+	private static final SimpleVariableAccessor LOWER = new SimpleVariableAccessor(NapileConditionPackage.COMPARE_RESULT.child(Name.identifier("LOWER")), TypeConstants.COMPARE_RESULT, CallableMethod.CallType.STATIC);
+
 	private DeclarationDescriptor loopParameterDescriptor;
 
 	private ReservedInstruction jumpIfSlot;
 
+	private int tempCount;
+
 	public ForLoopCodegen(@NotNull NapileForExpression expression)
 	{
 		super(expression);
@@ -57,37 +86,170 @@ public class ForLoopCodegen extends LoopCodegen<NapileForExpression>
 		loopParameterDescriptor = gen.bindingTrace.safeGet(BindingTraceKeys.DECLARATION_TO_DESCRIPTOR, expression.getLoopParameter());
 		int loopParameterIndex = gen.frameMap.enter(loopParameterDescriptor);
 
+		NapileBinaryExpression intRange = getIntRange(gen, NapilePsiUtil.deparenthesize(expression.getLoopRange()));
+		if(intRange != null)
+			genIntRangeLoop(gen, instructions, intRange, loopParameterIndex);
+		else if(isArray(gen, expression.getLoopRange()))
+			genArrayLoop(gen, instructions, loopParameterIndex);
+		else
+			genIteratorLoop(gen, instructions, loopParameterIndex);
+	}
+
+	@Override
+	protected void afterLoop(ExpressionCodegen gen, InstructionAdapter instructions)
+	{
+		instructions.jump(firstPos);
+
+		instructions.replace(jumpIfSlot).jumpIf(instructions.size());
+
+		for(int i = 0; i < tempCount; i++)
+			gen.frameMap.leaveTemp();
+		gen.frameMap.leave(loopParameterDescriptor);
+	}
+
+	private void genIteratorLoop(ExpressionCodegen gen, InstructionAdapter instructions, int loopParameterIndex)
+	{
 		// temp var for iterator ref
-		int loopIteratorIndex = gen.frameMap.enterTemp();
+		int loopIteratorIndex = enterTemp(gen);
 		instructions.visitLocalVariable("temp$iterator");
 		instructions.visitLocalVariable(loopParameterDescriptor.getName().getName());
 
 		// put Iterator instance to stack
 		MethodDescriptor methodDescriptor = gen.bindingTrace.safeGet(BindingTraceKeys.LOOP_RANGE_ITERATOR, expression.getLoopRange());
 		gen.gen(expression.getLoopRange(), TypeConstants.ITERATOR__ANY__);
-		instructions.invokeVirtual(AsmNodeUtil.ref(methodDescriptor, gen.bindingTrace, gen.classNode), false);
+		instructions.invokeVirtual(AsmNodeUtil.ref(methodDescriptor, gen.bindingTrace, gen.asmNodeCache, gen.classNode), false);
 		instructions.localPut(loopIteratorIndex);
 
 		firstPos = instructions.size();
 
 		instructions.localGet(loopIteratorIndex);
-		instructions.invokeVirtual(new MethodRef(NapileCollectionPackage.ITERATOR.child(Name.identifier("hasNext")), Collections.<MethodParameterNode>emptyList(), Collections.<TypeNode>emptyList(), AsmConstants.BOOL_TYPE), false);
+		instructions.invokeVirtual(ITERATOR_HAS_NEXT, false);
 		instructions.putTrue();
 		jumpIfSlot = instructions.reserve();
 
 		instructions.localGet(loopIteratorIndex);
-		instructions.invokeVirtual(new MethodRef(NapileCollectionPackage.ITERATOR.child(Name.identifier("next")), Collections.<MethodParameterNode>emptyList(), Collections.<TypeNode>emptyList(), new TypeNode(false, new TypeParameterValueTypeNode(Name.identifier("E")))), false);
+		instructions.invokeVirtual(ITERATOR_NEXT, false);
 		instructions.localPut(loopParameterIndex);
 	}
 
-	@Override
-	protected void afterLoop(ExpressionCodegen gen, InstructionAdapter instructions)
+	private void genArrayLoop(ExpressionCodegen gen, InstructionAdapter instructions, int loopParameterIndex)
 	{
-		instructions.jump(firstPos);
+		int arrayIndex = enterTemp(gen);
+		int counterIndex = enterTemp(gen);
+		instructions.visitLocalVariable("temp$array");
+		instructions.visitLocalVariable("temp$index");
+		instructions.visitLocalVariable(loopParameterDescriptor.getName().getName());
 
-		instructions.replace(jumpIfSlot).jumpIf(instructions.size());
+		gen.gen(expression.getLoopRange(), gen.expressionType(expression.getLoopRange()));
+		instructions.localPut(arrayIndex);
 
-		gen.frameMap.leaveTemp();
-		gen.frameMap.leave(loopParameterDescriptor);
+		instructions.newInt(0);
+		instructions.localPut(counterIndex);
+
+		genIncrement(instructions, counterIndex);
+
+		// index == array.length - exit
+		instructions.localGet(counterIndex);
+		instructions.localGet(arrayIndex);
+		ARRAY_LENGTH.put(AsmConstants.INT_TYPE, instructions, gen);
+		instructions.invokeVirtual(BinaryCodegenVisitor.ANY_EQUALS, false);
+		instructions.putFalse();
+		jumpIfSlot = instructions.reserve();
+
+		instructions.localGet(arrayIndex);
+		instructions.localGet(counterIndex);
+		instructions.invokeVirtual(ARRAY_GET, false);
+		instructions.localPut(loopParameterIndex);
+	}
+
+	private void genIntRangeLoop(ExpressionCodegen gen, InstructionAdapter instructions, NapileBinaryExpression intRange, int loopParameterIndex)
+	{
+		int counterIndex = enterTemp(gen);
+		int endIndex = enterTemp(gen);
+		instructions.visitLocalVariable("temp$index");
+		instructions.visitLocalVariable("temp$end");
+		instructions.visitLocalVariable(loopParameterDescriptor.getName().getName());
+
+		// range values are evaluated in same order as for 'rangeTo' call
+		gen.gen(intRange.getLeft(), AsmConstants.INT_TYPE);
+		instructions.localPut(counterIndex);
+		gen.gen(intRange.getRight(), AsmConstants.INT_TYPE);
+		instructions.localPut(endIndex);
+
+		genIncrement(instructions, counterIndex);
+
+		// index < end - enter body, end is excluded like in 'rangeTo'
+		instructions.localGet(counterIndex);
+		instructions.localGet(endIndex);
+		instructions.invokeVirtual(INT_COMPARE_TO, false);
+		LOWER.put(TypeConstants.COMPARE_RESULT, instructions, gen);
+		instructions.invokeVirtual(BinaryCodegenVisitor.ANY_EQUALS, false);
+		instructions.putTrue();
+		jumpIfSlot = instructions.reserve();
+
+		instructions.localGet(counterIndex);
+		instructions.localPut(loopParameterIndex);
+	}
+
+	/**
+	 * Generates increment of counter, which is skipped before first iteration. Start of increment is position for 'continue'
+	 */
+	private void genIncrement(InstructionAdapter instructions, int counterIndex)
+	{
+		ReservedInstruction jumpToCondition = instructions.reserve();
+
+		firstPos = instructions.size();
+
+		instructions.localGet(counterIndex);
+		instructions.invokeVirtual(INT_INC, false);
+		instructions.localPut(counterIndex);
+
+		instructions.replace(jumpToCondition).jump(instructions.size());
+	}
+
+	private int enterTemp(ExpressionCodegen gen)
+	{
+		tempCount++;
+		return gen.frameMap.enterTemp();
+	}
+
+	@Nullable
+	private static NapileBinaryExpression getIntRange(ExpressionCodegen gen, @Nullable NapileExpression loopRange)
+	{
+		if(!(loopRange instanceof NapileBinaryExpression))
+			return null;
+
+		NapileBinaryExpression binaryExpression = (NapileBinaryExpression) loopRange;
+		if(binaryExpression.getOperationReference().getReferencedNameElementType() != NapileTokens.RANGE)
+			return null;
+
+		NapileExpression left = binaryExpression.getLeft();
+		NapileExpression right = binaryExpression.getRight();
+		if(left == null || right == null || !isIntConstantOrLocal(gen, left) || !isIntConstantOrLocal(gen, right))
+			return null;
+		return binaryExpression;
+	}
+
+	private static boolean isIntConstantOrLocal(ExpressionCodegen gen, @NotNull NapileExpression expression)
+	{
+		NapileType type = gen.bindingTrace.get(BindingTraceKeys.EXPRESSION_TYPE, expression);
+		if(type == null || type.isNullable() || !TypeUtils.isEqualFqName(type, NapileLangPackage.INT))
+			return false;
+
+		if(expression instanceof NapileConstantExpression)
+			return true;
+
+		if(expression instanceof NapileSimpleNameExpression)
+		{
+			DeclarationDescriptor descriptor = gen.bindingTrace.get(BindingTraceKeys.REFERENCE_TARGET, (NapileSimpleNameExpression) expression);
+			return descriptor != null && gen.frameMap.getIndex(descriptor) >= 0;
+		}
+		return false;
+	}
+
+	private static boolean isArray(ExpressionCodegen gen, @NotNull NapileExpression loopRange)
+	{
+		NapileType type = gen.bindingTrace.get(BindingTraceKeys.EXPRESSION_TYPE, loopRange);
+		return type != null && !type.isNullable() && TypeUtils.isEqualFqName(type, NapileLangPackage.ARRAY);
 	}
 }
@@ -17,21 +17,37 @@
 package org.napile.compiler.common;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.napile.asm.LangVersion;
-import org.napile.asm.io.xml.out.AsmXmlFileWriter;
-import org.napile.asm.tree.members.ClassNode;
 import org.napile.compiler.analyzer.AnalyzeExhaust;
 import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.bytecode.ClassFileFormat;
+import org.napile.compiler.codegen.ClassNodeConsumer;
 import org.napile.compiler.codegen.CompilationErrorHandler;
 import org.napile.compiler.codegen.GenerationState;
 import org.napile.compiler.codegen.Progress;
+import org.napile.compiler.codegen.optimization.CodeOptimizationPass;
+import org.napile.compiler.codegen.optimization.CodeOptimizer;
+import org.napile.compiler.codegen.optimization.MacroInliner;
 import org.napile.compiler.common.messages.AnalyzerWithCompilerReport;
 import org.napile.compiler.common.messages.CompilerMessageLocation;
 import org.napile.compiler.common.messages.CompilerMessageSeverity;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.incremental.FileDependencyCollector;
+import org.napile.compiler.incremental.IncrementalCache;
 import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.util.CompilerStatistics;
+import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.intellij.openapi.project.Project;
 import com.intellij.util.Function;
@@ -51,22 +67,103 @@ public class AnalyzeProcessor
 
 	public static boolean compileBunchOfSources(NapileCoreEnvironment environment, @Nullable File outputDir)
 	{
-		GenerationState generationState = analyzeAndGenerate(environment);
-		if(generationState == null)
-			return false;
+		IncrementalCache incrementalCache = null;
+		Map<String, NapileFile> files = new LinkedHashMap<String, NapileFile>();
+		for(NapileFile file : environment.getSourceFiles())
+			files.put(file.getVirtualFile().getPath(), file);
+
+		ClassFileFormat format = environment.getConfiguration().get(CompilerConfigurationKeys.CLASS_FILE_FORMAT_KEY, ClassFileFormat.XML);
 
-		if(outputDir != null)
+		Collection<NapileFile> filesToCompile = environment.getSourceFiles();
+		if(outputDir != null && environment.getConfiguration().get(CompilerConfigurationKeys.INCREMENTAL_KEY, Boolean.FALSE))
 		{
-			AsmXmlFileWriter writer = new AsmXmlFileWriter(outputDir);
-			for(ClassNode classNode : generationState.getClassNodes().values())
-				writer.write(LangVersion.CURRENT, classNode);
+			CompilerStatistics.Phase phase = CompilerStatistics.startPhase("incremental.dirtyFiles");
+			incrementalCache = new IncrementalCache(outputDir, format, getGenerationOptions(environment.getConfiguration()), environment.getConfiguration().getList(CompilerConfigurationKeys.CLASSPATH_KEY));
+			filesToCompile = getDirtyFiles(environment, incrementalCache, files);
+			phase.end();
 		}
-		else
+
+		CompilerStatistics.Phase phase = CompilerStatistics.startPhase("analyze");
+		AnalyzeExhaust exhaust = analyze(environment, Predicates.in(new HashSet<NapileFile>(filesToCompile)));
+		phase.end();
+		if(exhaust == null)
+			return false;
+
+		exhaust.throwIfError();
+
+		if(outputDir == null)
 			throw new CompileEnvironmentException("Output directory is not specified - no files will be saved to the disk");
 
+		phase = CompilerStatistics.startPhase("codegen");
+		StreamingClassNodeWriter writer = new StreamingClassNodeWriter(outputDir, format);
+		boolean generated = false;
+		try
+		{
+			generate(environment, exhaust, filesToCompile, writer);
+			generated = true;
+		}
+		finally
+		{
+			try
+			{
+				writer.close();
+			}
+			catch(CompileEnvironmentException e)
+			{
+				// error of writer is thrown only after successful codegen - else it hides error of codegen
+				if(generated)
+					throw e;
+			}
+			finally
+			{
+				phase.end();
+			}
+		}
+
+		if(incrementalCache != null)
+		{
+			for(NapileFile file : filesToCompile)
+				incrementalCache.putEntry(file.getVirtualFile().getPath(), FileDependencyCollector.collect(file, exhaust.getBindingTrace()));
+
+			incrementalCache.retainFiles(files.keySet());
+			try
+			{
+				incrementalCache.save();
+			}
+			catch(IOException e)
+			{
+				throw new CompileEnvironmentException("Failed to save incremental cache: " + incrementalCache.getCacheFile(), e);
+			}
+		}
 		return true;
 	}
 
+	@NotNull
+	private static List<NapileFile> getDirtyFiles(@NotNull NapileCoreEnvironment environment, @NotNull IncrementalCache incrementalCache, @NotNull Map<String, NapileFile> files)
+	{
+		try
+		{
+			incrementalCache.load();
+		}
+		catch(IOException e)
+		{
+			throw new CompileEnvironmentException("Failed to load incremental cache: " + incrementalCache.getCacheFile(), e);
+		}
+
+		Map<String, IncrementalCache.FileEntry> entries = new LinkedHashMap<String, IncrementalCache.FileEntry>(files.size());
+		for(Map.Entry<String, NapileFile> entry : files.entrySet())
+			entries.put(entry.getKey(), FileDependencyCollector.collect(entry.getValue(), null));
+
+		Set<String> dirtyPaths = incrementalCache.computeDirtyFiles(entries);
+
+		List<NapileFile> dirtyFiles = new ArrayList<NapileFile>(dirtyPaths.size());
+		for(String path : dirtyPaths)
+			dirtyFiles.add(files.get(path));
+
+		environment.getConfiguration().get(CompilerConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(CompilerMessageSeverity.LOGGING, "Incremental compilation: " + dirtyFiles.size() + " of " + files.size() + " files need to be compiled", CompilerMessageLocation.NO_LOCATION);
+		return dirtyFiles;
+	}
+
 	@Nullable
 	public static GenerationState analyzeAndGenerate(NapileCoreEnvironment environment)
 	{
@@ -77,13 +174,23 @@ public class AnalyzeProcessor
 
 		exhaust.throwIfError();
 
-		return generate(environment, exhaust);
+		return generate(environment, exhaust, environment.getSourceFiles(), null);
 	}
 
 	@Nullable
 	public static AnalyzeExhaust analyze(final NapileCoreEnvironment environment)
+	{
+		return analyze(environment, Predicates.<NapileFile>alwaysTrue());
+	}
+
+	/**
+	 * @param analyzeCompletely files, which bodies will be resolved
+	 */
+	@Nullable
+	public static AnalyzeExhaust analyze(final NapileCoreEnvironment environment, @NotNull final Predicate<NapileFile> analyzeCompletely)
 	{
 		AnalyzerWithCompilerReport analyzerWithCompilerReport = new AnalyzerWithCompilerReport(environment.getConfiguration().get(CompilerConfigurationKeys.MESSAGE_COLLECTOR_KEY));
+		final int resolveThreads = environment.getConfiguration().get(CompilerConfigurationKeys.RESOLVE_THREADS_KEY, 1);
 
 		analyzerWithCompilerReport.analyzeAndReport(new Function<Void, AnalyzeExhaust>()
 		{
@@ -91,7 +198,7 @@ public class AnalyzeProcessor
 			@Override
 			public AnalyzeExhaust fun(Void v)
 			{
-				return AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+				return AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), analyzeCompletely, resolveThreads);
 			}
 		}, environment.getSourceFiles());
 
@@ -99,7 +206,7 @@ public class AnalyzeProcessor
 	}
 
 	@NotNull
-	private static GenerationState generate(final NapileCoreEnvironment environment, AnalyzeExhaust exhaust)
+	private static GenerationState generate(final NapileCoreEnvironment environment, AnalyzeExhaust exhaust, @NotNull Collection<NapileFile> files, @Nullable ClassNodeConsumer classNodeConsumer)
 	{
 		Project project = environment.getProject();
 		Progress backendProgress = new Progress()
@@ -110,9 +217,47 @@ public class AnalyzeProcessor
 				environment.getConfiguration().get(CompilerConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(CompilerMessageSeverity.LOGGING, message, CompilerMessageLocation.NO_LOCATION);
 			}
 		};
-		GenerationState generationState = new GenerationState(project, backendProgress, exhaust, environment.getSourceFiles());
+		int threads = environment.getConfiguration().get(CompilerConfigurationKeys.BACKEND_THREADS_KEY, 1);
+
+		CodeOptimizer codeOptimizer = getCodeOptimizer(environment.getConfiguration());
+
+		int macroInlineSize = getMacroInlineSize(environment.getConfiguration());
+		MacroInliner macroInliner = macroInlineSize > 0 ? new MacroInliner(macroInlineSize, MacroInliner.DEFAULT_MAX_INLINED_INSTRUCTIONS) : null;
+
+		GenerationState generationState = new GenerationState(project, backendProgress, exhaust, files, threads);
+		generationState.setClassNodeConsumer(classNodeConsumer);
+		generationState.setCodeOptimizer(codeOptimizer);
+		generationState.setMacroInliner(macroInliner);
 		generationState.compileAndGenerate(CompilationErrorHandler.THROW_EXCEPTION);
 
+		for(Map.Entry<String, Long> entry : codeOptimizer.getRemovedCounts().entrySet())
+			backendProgress.log("Optimization pass '" + entry.getKey() + "' removed " + entry.getValue() + " instructions");
+		if(macroInliner != null)
+			backendProgress.log("Inlined " + macroInliner.getInlinedCalls() + " macro calls");
+
 		return generationState;
 	}
+
+	@NotNull
+	private static CodeOptimizer getCodeOptimizer(@NotNull CompilerConfiguration configuration)
+	{
+		CodeOptimizer codeOptimizer = configuration.get(CompilerConfigurationKeys.CODE_OPTIMIZER_KEY);
+		// optimization is opt-in
+		return codeOptimizer == null ? new CodeOptimizer(Collections.<CodeOptimizationPass>emptyList()) : codeOptimizer;
+	}
+
+	private static int getMacroInlineSize(@NotNull CompilerConfiguration configuration)
+	{
+		// inlining is opt-in
+		return configuration.get(CompilerConfigurationKeys.MACRO_INLINE_SIZE_KEY, 0);
+	}
+
+	/**
+	 * @return options, which affect generated code - files compiled with other options are compiled again
+	 */
+	@NotNull
+	private static String getGenerationOptions(@NotNull CompilerConfiguration configuration)
+	{
+		return "optimize=" + getCodeOptimizer(configuration).getPassNames() + " macroInlineSize=" + getMacroInlineSize(configuration);
+	}
 }
@@ -16,8 +16,13 @@
 
 package org.napile.compiler.common;
 
+import java.io.File;
 import java.util.List;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import com.sampullara.cli.Argument;
 
@@ -34,6 +39,30 @@ public class CompilerArguments
 	@Argument(value = "output", description = "output directory")
 	public String outputDir;
 
+	@Argument(value = "threads", description = "number of threads used for code generation")
+	public Integer threads;
+
+	@Argument(value = "resolveThreads", description = "number of threads used for resolving of method bodies (experimental)")
+	public Integer resolveThreads;
+
+	@Argument(value = "incremental", description = "recompile only changed files and files which depend on them")
+	public boolean incremental;
+
+	@Argument(value = "format", description = "format of compiled class files: xml (default) or binary")
+	public String format;
+
+	@Argument(value = "optimize", description = "optimization passes of generated code: none (default), all, or comma-separated names of passes")
+	public String optimize;
+
+	@Argument(value = "macroInlineSize", description = "max count of instructions of macro, which is inlined into caller: 0 disables inlining (default), for example 32")
+	public Integer macroInlineSize;
+
+	@Argument(value = "report", description = "write JSON report with times of compilation phases and counters to given file")
+	public String report;
+
+	@Argument(value = "stubCache", description = "directory of persistent cache of declaration stubs, which is shared between compilations")
+	public String stubCache;
+
 	@Argument(value = "tags", description = "Demarcate each compilation message (error, warning, etc) with an open and close tag")
 	public boolean tags;
 
@@ -76,6 +105,86 @@ public class CompilerArguments
 		this.outputDir = outputDir;
 	}
 
+	public Integer getThreads()
+	{
+		return threads;
+	}
+
+	public void setThreads(Integer threads)
+	{
+		this.threads = threads;
+	}
+
+	public Integer getResolveThreads()
+	{
+		return resolveThreads;
+	}
+
+	public void setResolveThreads(Integer resolveThreads)
+	{
+		this.resolveThreads = resolveThreads;
+	}
+
+	public boolean isIncremental()
+	{
+		return incremental;
+	}
+
+	public void setIncremental(boolean incremental)
+	{
+		this.incremental = incremental;
+	}
+
+	public String getFormat()
+	{
+		return format;
+	}
+
+	public void setFormat(String format)
+	{
+		this.format = format;
+	}
+
+	public String getOptimize()
+	{
+		return optimize;
+	}
+
+	public void setOptimize(String optimize)
+	{
+		this.optimize = optimize;
+	}
+
+	public Integer getMacroInlineSize()
+	{
+		return macroInlineSize;
+	}
+
+	public void setMacroInlineSize(Integer macroInlineSize)
+	{
+		this.macroInlineSize = macroInlineSize;
+	}
+
+	public String getReport()
+	{
+		return report;
+	}
+
+	public void setReport(String report)
+	{
+		this.report = report;
+	}
+
+	public String getStubCache()
+	{
+		return stubCache;
+	}
+
+	public void setStubCache(String stubCache)
+	{
+		this.stubCache = stubCache;
+	}
+
 	public boolean isTags()
 	{
 		return tags;
@@ -95,4 +204,42 @@ public class CompilerArguments
 	{
 		this.tags = tags;
 	}
+
+	/**
+	 * Resolves relative paths against working directory. Used when arguments are passed from other process(see compiler daemon)
+	 */
+	public void resolvePaths(@NotNull File workingDir)
+	{
+		classpath = resolvePathList(workingDir, classpath);
+		outputDir = resolvePath(workingDir, outputDir);
+		report = resolvePath(workingDir, report);
+		stubCache = resolvePath(workingDir, stubCache);
+
+		List<String> newFreeArgs = Lists.newArrayListWithCapacity(freeArgs.size());
+		for(String freeArg : freeArgs)
+			newFreeArgs.add(resolvePathList(workingDir, freeArg));
+		freeArgs = newFreeArgs;
+	}
+
+	@Nullable
+	private static String resolvePathList(@NotNull File workingDir, @Nullable String paths)
+	{
+		if(paths == null)
+			return null;
+
+		List<String> result = Lists.newArrayList();
+		for(String path : Splitter.on(File.pathSeparatorChar).split(paths))
+			result.add(resolvePath(workingDir, path));
+		return Joiner.on(File.pathSeparatorChar).join(result);
+	}
+
+	@Nullable
+	private static String resolvePath(@NotNull File workingDir, @Nullable String path)
+	{
+		if(path == null || path.isEmpty())
+			return path;
+
+		File file = new File(path);
+		return file.isAbsolute() ? path : new File(workingDir, path).getPath();
+	}
 }
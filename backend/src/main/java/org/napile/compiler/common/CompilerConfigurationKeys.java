@@ -19,6 +19,8 @@ package org.napile.compiler.common;
 import java.io.File;
 import java.util.List;
 
+import org.napile.compiler.bytecode.ClassFileFormat;
+import org.napile.compiler.codegen.optimization.CodeOptimizer;
 import org.napile.compiler.common.messages.MessageCollector;
 import org.napile.compiler.config.CompilerConfigurationKey;
 
@@ -33,4 +35,18 @@ public interface CompilerConfigurationKeys
 	CompilerConfigurationKey<List<String>> SOURCE_ROOTS_KEY = CompilerConfigurationKey.create("source roots");
 
 	CompilerConfigurationKey<List<File>> CLASSPATH_KEY = CompilerConfigurationKey.create("classpath");
+
+	CompilerConfigurationKey<Integer> BACKEND_THREADS_KEY = CompilerConfigurationKey.create("backend threads");
+
+	CompilerConfigurationKey<Integer> RESOLVE_THREADS_KEY = CompilerConfigurationKey.create("resolve threads");
+
+	CompilerConfigurationKey<Boolean> INCREMENTAL_KEY = CompilerConfigurationKey.create("incremental");
+
+	CompilerConfigurationKey<ClassFileFormat> CLASS_FILE_FORMAT_KEY = CompilerConfigurationKey.create("class file format");
+
+	CompilerConfigurationKey<CodeOptimizer> CODE_OPTIMIZER_KEY = CompilerConfigurationKey.create("code optimizer");
+
+	CompilerConfigurationKey<Integer> MACRO_INLINE_SIZE_KEY = CompilerConfigurationKey.create("macro inline size");
+
+	CompilerConfigurationKey<File> STUB_CACHE_DIRECTORY_KEY = CompilerConfigurationKey.create("stub cache directory");
 }
@@ -21,21 +21,31 @@ import static org.napile.compiler.common.ExitCode.INTERNAL_ERROR;
 import static org.napile.compiler.common.ExitCode.OK;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.compiler.Main;
+import org.napile.compiler.bytecode.ClassFileFormat;
 import org.napile.compiler.codegen.CompilationException;
+import org.napile.compiler.codegen.optimization.CodeOptimizer;
 import org.napile.compiler.common.messages.CompilerMessageLocation;
 import org.napile.compiler.common.messages.CompilerMessageSeverity;
+import org.napile.compiler.common.messages.MessageCollector;
 import org.napile.compiler.common.messages.MessageRenderer;
 import org.napile.compiler.common.messages.MessageUtil;
 import org.napile.compiler.common.messages.PrintingMessageCollector;
 import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.util.CompilerStatistics;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
+import com.intellij.core.CoreApplicationEnvironment;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.util.text.StringUtil;
@@ -46,6 +56,22 @@ import com.sampullara.cli.Args;
  */
 public class CompilerProcessor
 {
+	@Nullable
+	private final CoreApplicationEnvironment applicationEnvironment;
+
+	public CompilerProcessor()
+	{
+		this(null);
+	}
+
+	/**
+	 * @param applicationEnvironment shared application environment, if null - new application environment is created for each compilation
+	 */
+	public CompilerProcessor(@Nullable CoreApplicationEnvironment applicationEnvironment)
+	{
+		this.applicationEnvironment = applicationEnvironment;
+	}
+
 	@NotNull
 	public ExitCode exec(@NotNull PrintStream errStream, @NotNull String... args)
 	{
@@ -60,7 +86,7 @@ public class CompilerProcessor
 	/**
 	 * Returns true if the arguments can be parsed correctly
 	 */
-	protected boolean parseArguments(@NotNull PrintStream errStream, @NotNull CompilerArguments arguments, @NotNull String[] args)
+	public boolean parseArguments(@NotNull PrintStream errStream, @NotNull CompilerArguments arguments, @NotNull String[] args)
 	{
 		try
 		{
@@ -150,14 +176,62 @@ public class CompilerProcessor
 		}
 
 		configuration.put(CompilerConfigurationKeys.MESSAGE_COLLECTOR_KEY, messageCollector);
+		configuration.put(CompilerConfigurationKeys.BACKEND_THREADS_KEY, arguments.threads == null ? 1 : arguments.threads);
+		configuration.put(CompilerConfigurationKeys.RESOLVE_THREADS_KEY, arguments.resolveThreads == null ? 1 : arguments.resolveThreads);
+		configuration.put(CompilerConfigurationKeys.MACRO_INLINE_SIZE_KEY, arguments.macroInlineSize);
+		configuration.put(CompilerConfigurationKeys.INCREMENTAL_KEY, arguments.incremental);
+		if(arguments.stubCache != null)
+			configuration.put(CompilerConfigurationKeys.STUB_CACHE_DIRECTORY_KEY, new File(arguments.stubCache));
+		if(arguments.format != null)
+		{
+			try
+			{
+				configuration.put(CompilerConfigurationKeys.CLASS_FILE_FORMAT_KEY, ClassFileFormat.parse(arguments.format));
+			}
+			catch(IllegalArgumentException e)
+			{
+				messageCollector.report(CompilerMessageSeverity.ERROR, e.getMessage(), CompilerMessageLocation.NO_LOCATION);
+				return INTERNAL_ERROR;
+			}
+		}
+		if(arguments.optimize != null)
+		{
+			try
+			{
+				configuration.put(CompilerConfigurationKeys.CODE_OPTIMIZER_KEY, CodeOptimizer.parse(arguments.optimize));
+			}
+			catch(IllegalArgumentException e)
+			{
+				messageCollector.report(CompilerMessageSeverity.ERROR, e.getMessage(), CompilerMessageLocation.NO_LOCATION);
+				return INTERNAL_ERROR;
+			}
+		}
+
+		CompilerStatistics statistics = arguments.report != null || arguments.isVerbose() ? CompilerStatistics.start() : null;
+		try
+		{
+			return doCompile(configuration, arguments, messageCollector, rootDisposable);
+		}
+		finally
+		{
+			if(statistics != null)
+			{
+				statistics.end();
+				reportStatistics(statistics, arguments.report, messageCollector);
+			}
+		}
+	}
 
+	@NotNull
+	private ExitCode doCompile(CompilerConfiguration configuration, CompilerArguments arguments, PrintingMessageCollector messageCollector, Disposable rootDisposable)
+	{
 		messageCollector.report(CompilerMessageSeverity.LOGGING, "Configuring the compilation environment", CompilerMessageLocation.NO_LOCATION);
 		try
 		{
 			File outputDir = arguments.outputDir != null ? new File(arguments.outputDir) : null;
 
 			boolean noErrors;
-			NapileCoreEnvironment environment = new NapileCoreEnvironment(rootDisposable, configuration);
+			NapileCoreEnvironment environment = applicationEnvironment == null ? new NapileCoreEnvironment(rootDisposable, configuration) : new NapileCoreEnvironment(rootDisposable, applicationEnvironment, configuration);
 			noErrors = AnalyzeProcessor.compileBunchOfSources(environment, outputDir);
 
 			return noErrors ? OK : COMPILATION_ERROR;
@@ -174,6 +248,40 @@ public class CompilerProcessor
 		}
 	}
 
+	private static void reportStatistics(@NotNull CompilerStatistics statistics, @Nullable String reportPath, @NotNull MessageCollector messageCollector)
+	{
+		for(String message : statistics.getMessages())
+			messageCollector.report(CompilerMessageSeverity.LOGGING, message, CompilerMessageLocation.NO_LOCATION);
+
+		if(reportPath == null)
+			return;
+
+		Writer writer = null;
+		try
+		{
+			writer = new OutputStreamWriter(new FileOutputStream(reportPath), "UTF-8");
+			statistics.writeJson(writer);
+		}
+		catch(IOException e)
+		{
+			messageCollector.report(CompilerMessageSeverity.WARNING, "Failed to write report to " + reportPath + ": " + e.getMessage(), CompilerMessageLocation.NO_LOCATION);
+		}
+		finally
+		{
+			if(writer != null)
+			{
+				try
+				{
+					writer.close();
+				}
+				catch(IOException e)
+				{
+					// ignored
+				}
+			}
+		}
+	}
+
 	//TODO: can we make it private?
 	@NotNull
 	private MessageRenderer getMessageRenderer(@NotNull CompilerArguments arguments)
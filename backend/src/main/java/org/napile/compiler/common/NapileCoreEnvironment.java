@@ -23,6 +23,7 @@ import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
 import org.napile.compiler.NXmlFileType;
+import org.napile.compiler.bytecode.ClassFileFormat;
 import org.napile.compiler.NapileFileType;
 import org.napile.compiler.analyzer.AnalyzeContext;
 import org.napile.compiler.config.CompilerConfiguration;
@@ -31,30 +32,33 @@ import org.napile.compiler.lang.parsing.NapileParserDefinition;
 import org.napile.compiler.lang.parsing.injection.CodeInjectionManager;
 import org.napile.compiler.lang.psi.NapileFile;
 import org.napile.compiler.lang.psi.impl.file.NXmlFileViewProviderFactory;
+import org.napile.compiler.lang.psi.stubs.NapileStubCache;
+import org.napile.compiler.lang.psi.stubs.NapileStubTreeLoader;
 import org.napile.doc.lang.NapileDocLanguage;
 import org.napile.doc.lang.parsing.NapileDocParserDefinition;
 import com.intellij.core.CoreApplicationEnvironment;
 import com.intellij.lang.LanguageParserDefinitions;
 import com.intellij.mock.MockApplication;
-import com.intellij.mock.MockProject;
 import com.intellij.mock.MockPsiDocumentManager;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.fileTypes.FileTypeExtension;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.FileTypeFileViewProviders;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
+import com.intellij.psi.stubs.StubTreeLoader;
+import org.picocontainer.MutablePicoContainer;
 
 /**
  * @author yole
  */
 public class NapileCoreEnvironment
 {
-	private final Disposable parentDisposable;
 	private final CoreApplicationEnvironment applicationEnvironment;
 	private final NapileCoreProjectEnvironment projectEnvironment;
 
@@ -62,31 +66,31 @@ public class NapileCoreEnvironment
 
 	private final CompilerConfiguration configuration;
 
+	private final NapileStubCache stubCache;
+
 	private boolean initialized = false;
 
 	public NapileCoreEnvironment(Disposable parentDisposable, @NotNull CompilerConfiguration configuration)
 	{
-		this.parentDisposable = parentDisposable;
+		this(parentDisposable, createApplicationEnvironment(parentDisposable), configuration);
+	}
+
+	/**
+	 * Creates environment with new project over already initialized application environment.
+	 * Application environment can be shared by many compilations(see {@link #createApplicationEnvironment(Disposable)})
+	 */
+	public NapileCoreEnvironment(Disposable parentDisposable, @NotNull CoreApplicationEnvironment applicationEnvironment, @NotNull CompilerConfiguration configuration)
+	{
 		this.configuration = configuration.copy();
 		this.configuration.setReadOnly(true);
 
-		this.applicationEnvironment = new CoreApplicationEnvironment(parentDisposable);
-		applicationEnvironment.registerFileType(NapileFileType.INSTANCE, NapileFileType.INSTANCE.getDefaultExtension());
-		applicationEnvironment.registerFileType(NXmlFileType.INSTANCE, NXmlFileType.INSTANCE.getDefaultExtension());
-
-		applicationEnvironment.registerParserDefinition(new NapileParserDefinition());
-		applicationEnvironment.addExplicitExtension(LanguageParserDefinitions.INSTANCE, NapileDocLanguage.INSTANCE, new NapileDocParserDefinition());
-
-		for(CodeInjection injection : CodeInjectionManager.INSTANCE.getCodeInjections())
-			applicationEnvironment.addExplicitExtension(LanguageParserDefinitions.INSTANCE, injection.getLanguage(), injection);
-
-		addExplicitExtension(FileTypeFileViewProviders.INSTANCE, NXmlFileType.INSTANCE, new NXmlFileViewProviderFactory());
+		this.applicationEnvironment = applicationEnvironment;
 
 		projectEnvironment = new NapileCoreProjectEnvironment(parentDisposable, applicationEnvironment);
 		projectEnvironment.registerProjectComponent(PsiDocumentManager.class, new MockPsiDocumentManager());
 
-
-		final MockProject project = projectEnvironment.getProject();
+		File stubCacheDirectory = configuration.get(CompilerConfigurationKeys.STUB_CACHE_DIRECTORY_KEY);
+		stubCache = stubCacheDirectory == null ? null : registerStubCache(parentDisposable, applicationEnvironment, stubCacheDirectory);
 
 		for(File path : configuration.getList(CompilerConfigurationKeys.CLASSPATH_KEY))
 			addToClasspath(path);
@@ -94,12 +98,72 @@ public class NapileCoreEnvironment
 		for(String path : configuration.getList(CompilerConfigurationKeys.SOURCE_ROOTS_KEY))
 			addSources(path);
 
-
 		initialized = true;
 	}
 
+	/**
+	 * Creates application environment with registered file types, parser definitions and code injections.
+	 * All registrations live until parentDisposable is disposed
+	 */
+	@NotNull
+	public static CoreApplicationEnvironment createApplicationEnvironment(@NotNull Disposable parentDisposable)
+	{
+		CoreApplicationEnvironment applicationEnvironment = new CoreApplicationEnvironment(parentDisposable);
+		applicationEnvironment.registerFileType(NapileFileType.INSTANCE, NapileFileType.INSTANCE.getDefaultExtension());
+		for(ClassFileFormat format : ClassFileFormat.values())
+			applicationEnvironment.registerFileType(NXmlFileType.INSTANCE, format.getExtension());
+
+		applicationEnvironment.registerParserDefinition(new NapileParserDefinition());
+		applicationEnvironment.addExplicitExtension(LanguageParserDefinitions.INSTANCE, NapileDocLanguage.INSTANCE, new NapileDocParserDefinition());
+
+		for(CodeInjection injection : CodeInjectionManager.INSTANCE.getCodeInjections())
+			applicationEnvironment.addExplicitExtension(LanguageParserDefinitions.INSTANCE, injection.getLanguage(), injection);
+
+		addExplicitExtension(parentDisposable, FileTypeFileViewProviders.INSTANCE, NXmlFileType.INSTANCE, new NXmlFileViewProviderFactory());
+		return applicationEnvironment;
+	}
+
+	/**
+	 * Replaces stub loader of application by {@link NapileStubTreeLoader} until parentDisposable is disposed.
+	 * If cache of same directory is already registered in shared application environment - it is reused
+	 *
+	 * @throws CompileEnvironmentException if registered cache uses other directory
+	 */
+	@NotNull
+	private static NapileStubCache registerStubCache(@NotNull Disposable parentDisposable, @NotNull CoreApplicationEnvironment applicationEnvironment, @NotNull File directory)
+	{
+		NapileStubCache registeredCache = NapileStubCache.getInstance();
+		if(registeredCache != null)
+		{
+			if(!FileUtil.filesEqual(registeredCache.getDirectory(), directory))
+				throw new CompileEnvironmentException("Stub cache of directory " + registeredCache.getDirectory() + " is already used, cache of " + directory + " can not be used at same time");
+			return registeredCache;
+		}
+
+		final NapileStubCache stubCache = new NapileStubCache(directory);
+		final StubTreeLoader oldLoader = StubTreeLoader.getInstance();
+		final MutablePicoContainer container = applicationEnvironment.getApplication().getPicoContainer();
+
+		container.unregisterComponent(StubTreeLoader.class.getName());
+		container.registerComponentInstance(StubTreeLoader.class.getName(), new NapileStubTreeLoader(oldLoader, stubCache));
+		container.registerComponentInstance(NapileStubCache.class.getName(), stubCache);
 
-	protected <T> void addExplicitExtension(final FileTypeExtension<T> instance, final FileType fileType, final T object)
+		Disposer.register(parentDisposable, new Disposable()
+		{
+			@Override
+			public void dispose()
+			{
+				container.unregisterComponent(NapileStubCache.class.getName());
+				container.unregisterComponent(StubTreeLoader.class.getName());
+				container.registerComponentInstance(StubTreeLoader.class.getName(), oldLoader);
+
+				stubCache.flush();
+			}
+		});
+		return stubCache;
+	}
+
+	private static <T> void addExplicitExtension(Disposable parentDisposable, final FileTypeExtension<T> instance, final FileType fileType, final T object)
 	{
 		instance.addExplicitExtension(fileType, object);
 		Disposer.register(parentDisposable, new Disposable()
@@ -164,6 +228,9 @@ public class NapileCoreEnvironment
 		if(!vFile.isDirectory() && vFile.getFileType() != NapileFileType.INSTANCE)
 			throw new CompileEnvironmentException("Not a Napile file: " + path);
 
+		if(vFile.isDirectory() && stubCache != null)
+			stubCache.addRoot(vFile);
+
 		addSources(new File(path));
 	}
 
@@ -182,12 +249,14 @@ public class NapileCoreEnvironment
 				throw new IllegalArgumentException("trying to add non-existing file to classpath: " + path);
 			}
 			projectEnvironment.addSourcesToClasspath(root);
+			if(stubCache != null)
+				stubCache.addRoot(root);
 		}
 	}
 
 	public AnalyzeContext makeAnalyzeContext()
 	{
-		return new AnalyzeContext(getSourceFiles(), Collections.<VirtualFile>emptyList(), Collections.<VirtualFile>emptyList());
+		return new AnalyzeContext(getSourceFiles(), Collections.<VirtualFile>emptyList(), projectEnvironment.getClasspathRoots());
 	}
 
 	public List<NapileFile> getSourceFiles()
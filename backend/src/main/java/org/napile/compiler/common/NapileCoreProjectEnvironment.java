@@ -16,6 +16,8 @@
 package org.napile.compiler.common;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jetbrains.annotations.NotNull;
 import com.intellij.core.CoreApplicationEnvironment;
@@ -26,6 +28,8 @@ import com.intellij.openapi.vfs.VirtualFile;
 
 public class NapileCoreProjectEnvironment extends CoreProjectEnvironment
 {
+	private final List<VirtualFile> classpathRoots = new ArrayList<VirtualFile>();
+
 	public NapileCoreProjectEnvironment(Disposable parentDisposable, CoreApplicationEnvironment applicationEnvironment)
 	{
 		super(parentDisposable, applicationEnvironment);
@@ -47,5 +51,12 @@ public class NapileCoreProjectEnvironment extends CoreProjectEnvironment
 	{
 		assert root.isDirectory();
 		((MockFileIndexFacade) myFileIndexFacade).addLibraryRoot(root);
+		classpathRoots.add(root);
+	}
+
+	@NotNull
+	public List<VirtualFile> getClasspathRoots()
+	{
+		return classpathRoots;
 	}
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.common;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.LangVersion;
+import org.napile.asm.Modifier;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.compiler.bytecode.ClassFileFormat;
+import org.napile.compiler.codegen.ClassNodeConsumer;
+
+/**
+ * Writes class nodes to disk in background thread. Codegen blocks only if queue is full - so
+ * only {@link #DEFAULT_QUEUE_SIZE} nodes are alive at one time
+ *
+ * @author VISTALL
+ * @since 14:10/18.10.26
+ */
+public class StreamingClassNodeWriter implements ClassNodeConsumer
+{
+	public static final int DEFAULT_QUEUE_SIZE = 16;
+
+	private static final ClassNode END = new ClassNode(Modifier.EMPTY, FqName.ROOT);
+
+	private final BlockingQueue<ClassNode> queue;
+	private final Thread thread;
+
+	private volatile Throwable error;
+
+	public StreamingClassNodeWriter(@NotNull File outputDir, @NotNull ClassFileFormat format)
+	{
+		this(outputDir, format, DEFAULT_QUEUE_SIZE);
+	}
+
+	public StreamingClassNodeWriter(@NotNull final File outputDir, @NotNull final ClassFileFormat format, int queueSize)
+	{
+		queue = new ArrayBlockingQueue<ClassNode>(Math.max(1, queueSize));
+		thread = new Thread("class-node-writer")
+		{
+			@Override
+			public void run()
+			{
+				while(true)
+				{
+					ClassNode classNode;
+					try
+					{
+						classNode = queue.take();
+					}
+					catch(InterruptedException e)
+					{
+						error = e;
+						return;
+					}
+
+					if(classNode == END)
+						return;
+
+					// after error - only drain queue, that codegen thread will not block
+					if(error != null)
+						continue;
+
+					try
+					{
+						format.write(outputDir, LangVersion.CURRENT, classNode);
+					}
+					catch(Throwable e)
+					{
+						error = e;
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public void consume(@NotNull ClassNode classNode)
+	{
+		try
+		{
+			queue.put(classNode);
+		}
+		catch(InterruptedException e)
+		{
+			throw new CompileEnvironmentException(e);
+		}
+	}
+
+	/**
+	 * Waits until all queued nodes are written
+	 */
+	public void close()
+	{
+		try
+		{
+			queue.put(END);
+
+			thread.join();
+		}
+		catch(InterruptedException e)
+		{
+			throw new CompileEnvironmentException(e);
+		}
+
+		if(error != null)
+			throw new CompileEnvironmentException("Failed to write class nodes", error);
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.bytecode.ClassNodeCache;
+import org.napile.compiler.common.CompileEnvironmentException;
+import org.napile.compiler.common.CompilerArguments;
+import org.napile.compiler.common.CompilerProcessor;
+import org.napile.compiler.common.ExitCode;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import com.intellij.core.CoreApplicationEnvironment;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.SystemInfo;
+import com.intellij.openapi.util.io.FileUtil;
+
+/**
+ * Long-lived compiler process. Application environment(file types, parsers, code injections) is created once,
+ * and read class files are cached between compilations. Each compilation is executed in new project, which is disposed after it.
+ * <p/>
+ * Compilations are executed one by one - core environment is not designed for parallel projects.
+ * Request is accepted only with token of daemon, see {@link CompilerDaemonProtocol}.
+ * Usage:
+ * <pre>
+ * CompilerDaemon [port]
+ * </pre>
+ *
+ * @author VISTALL
+ * @since 22:05/18.10.26
+ */
+public class CompilerDaemon implements CompilerDaemonProtocol
+{
+	private static final int TOKEN_LENGTH = 32;
+	private static final String CHARSET = "UTF-8";
+
+	public static void main(String... args) throws IOException
+	{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT);
+
+		CompilerDaemon daemon = new CompilerDaemon(port, getDefaultDirectory());
+		System.out.println("Compiler daemon is started on port " + port + ", token file: " + daemon.getTokenFile());
+		try
+		{
+			daemon.run();
+		}
+		finally
+		{
+			daemon.dispose();
+		}
+	}
+
+	private final Disposable rootDisposable = Disposer.newDisposable();
+	private final CompilerProcessor compilerProcessor;
+	private final ServerSocket serverSocket;
+	private final String token;
+	private final File tokenFile;
+
+	private volatile boolean running = true;
+
+	/**
+	 * @param directory directory for token file, it's created if absent
+	 */
+	public CompilerDaemon(int port, @NotNull File directory) throws IOException
+	{
+		CoreApplicationEnvironment applicationEnvironment = NapileCoreEnvironment.createApplicationEnvironment(rootDisposable);
+		applicationEnvironment.registerApplicationService(ClassNodeCache.class, new ClassNodeCache());
+
+		compilerProcessor = new CompilerProcessor(applicationEnvironment);
+
+		// daemon is accessible only from local machine, and only for owner of token file
+		serverSocket = new ServerSocket(port, 50, InetAddress.getByName(null));
+		token = generateToken();
+		tokenFile = getTokenFile(directory, serverSocket.getLocalPort());
+		try
+		{
+			writeToken(tokenFile, token);
+		}
+		catch(IOException e)
+		{
+			serverSocket.close();
+			throw e;
+		}
+	}
+
+	@NotNull
+	public static File getDefaultDirectory()
+	{
+		String path = System.getProperty(DIRECTORY_PROPERTY);
+		return path != null ? new File(path) : new File(new File(System.getProperty("user.home"), ".napile"), "daemon");
+	}
+
+	@NotNull
+	public static File getTokenFile(@NotNull File directory, int port)
+	{
+		return new File(directory, port + ".token");
+	}
+
+	/**
+	 * @return token of daemon on port, or null if daemon is not started
+	 */
+	@Nullable
+	public static String readToken(@NotNull File directory, int port) throws IOException
+	{
+		File file = getTokenFile(directory, port);
+		return file.isFile() ? FileUtil.loadFile(file).trim() : null;
+	}
+
+	public void run()
+	{
+		while(running)
+		{
+			Socket socket;
+			try
+			{
+				socket = serverSocket.accept();
+			}
+			catch(IOException e)
+			{
+				if(running)
+					e.printStackTrace();
+				continue;
+			}
+
+			try
+			{
+				handle(socket);
+			}
+			catch(Throwable e)
+			{
+				// response is not sent - connection is broken
+				e.printStackTrace();
+			}
+			finally
+			{
+				try
+				{
+					socket.close();
+				}
+				catch(IOException e)
+				{
+					// ignored
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return port on which daemon is listening, useful if daemon was created with port 0
+	 */
+	public int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	@NotNull
+	public File getTokenFile()
+	{
+		return tokenFile;
+	}
+
+	public void dispose()
+	{
+		running = false;
+		try
+		{
+			serverSocket.close();
+		}
+		catch(IOException e)
+		{
+			// ignored
+		}
+		FileUtil.delete(tokenFile);
+		Disposer.dispose(rootDisposable);
+	}
+
+	private void handle(@NotNull Socket socket) throws IOException
+	{
+		DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		PrintStream printStream = new PrintStream(new BufferedOutputStream(new ResponseOutputStream(output)));
+
+		ExitCode exitCode;
+		try
+		{
+			exitCode = handleRequest(input, printStream);
+		}
+		catch(Throwable e)
+		{
+			// daemon is not stopped by failed compilation, client gets the error
+			e.printStackTrace(printStream);
+			exitCode = ExitCode.INTERNAL_ERROR;
+		}
+
+		printStream.flush();
+
+		output.writeByte(RESPONSE_EXIT);
+		output.writeInt(exitCode.getCode());
+		output.flush();
+	}
+
+	@NotNull
+	private ExitCode handleRequest(@NotNull DataInputStream input, @NotNull PrintStream printStream) throws IOException
+	{
+		if(input.readInt() != PROTOCOL_VERSION)
+		{
+			printStream.println("Incompatible version of compiler daemon protocol");
+			return ExitCode.INTERNAL_ERROR;
+		}
+
+		// nothing else is read without valid token
+		if(!MessageDigest.isEqual(token.getBytes(CHARSET), input.readUTF().getBytes(CHARSET)))
+		{
+			printStream.println("Invalid token of compiler daemon");
+			return ExitCode.INTERNAL_ERROR;
+		}
+
+		byte request = input.readByte();
+		switch(request)
+		{
+			case REQUEST_COMPILE:
+				File workingDir = new File(input.readUTF());
+				String[] args = new String[input.readInt()];
+				for(int i = 0; i < args.length; i++)
+					args[i] = input.readUTF();
+
+				return compile(printStream, workingDir, args);
+			case REQUEST_SHUTDOWN:
+				running = false;
+				serverSocket.close();
+				return ExitCode.OK;
+			default:
+				printStream.println("Unknown request: " + request);
+				return ExitCode.INTERNAL_ERROR;
+		}
+	}
+
+	@NotNull
+	private ExitCode compile(@NotNull PrintStream printStream, @NotNull File workingDir, @NotNull String[] args)
+	{
+		CompilerArguments arguments = new CompilerArguments();
+		if(!compilerProcessor.parseArguments(printStream, arguments, args))
+			return ExitCode.INTERNAL_ERROR;
+
+		// daemon working directory is not same as client
+		arguments.resolvePaths(workingDir);
+		try
+		{
+			return compilerProcessor.exec(printStream, arguments);
+		}
+		catch(CompileEnvironmentException e)
+		{
+			printStream.println(e.getMessage());
+			return ExitCode.INTERNAL_ERROR;
+		}
+	}
+
+	@NotNull
+	private static String generateToken()
+	{
+		byte[] bytes = new byte[TOKEN_LENGTH];
+		new SecureRandom().nextBytes(bytes);
+
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for(byte b : bytes)
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return builder.toString();
+	}
+
+	/**
+	 * Token file is created with access only for owner, before token is written to it
+	 */
+	private static void writeToken(@NotNull File file, @NotNull String token) throws IOException
+	{
+		File directory = file.getParentFile();
+		if(!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Can't create directory: " + directory);
+		restrictToOwner(directory, true);
+
+		if(file.exists() && !file.delete())
+			throw new IOException("Can't delete old token file: " + file);
+		if(!file.createNewFile())
+			throw new IOException("Can't create token file: " + file);
+		restrictToOwner(file, false);
+
+		FileUtil.writeToFile(file, token);
+	}
+
+	private static void restrictToOwner(@NotNull File file, boolean directory) throws IOException
+	{
+		// access to files can't be changed by java.io.File on Windows, profile directory of user is private there
+		if(SystemInfo.isWindows)
+			return;
+
+		boolean restricted = file.setReadable(false, false) && file.setReadable(true, true) && file.setWritable(false, false) && file.setWritable(true, true);
+		if(directory)
+			restricted = restricted && file.setExecutable(false, false) && file.setExecutable(true, true);
+		if(!restricted)
+			throw new IOException("Can't restrict access to " + file + " by owner");
+	}
+
+	private static class ResponseOutputStream extends OutputStream
+	{
+		private final DataOutputStream output;
+
+		private ResponseOutputStream(@NotNull DataOutputStream output)
+		{
+			this.output = output;
+		}
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			if(len == 0)
+				return;
+
+			output.writeByte(RESPONSE_OUTPUT);
+			output.writeInt(len);
+			output.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			output.flush();
+		}
+	}
+}
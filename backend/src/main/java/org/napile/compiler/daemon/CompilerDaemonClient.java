@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.Main;
+import org.napile.compiler.common.ExitCode;
+
+/**
+ * Thin client of {@link CompilerDaemon}. Arguments are same as for {@link Main}. If daemon is not started - compilation is executed in this process.
+ * <pre>
+ * CompilerDaemonClient [compiler arguments]
+ * CompilerDaemonClient -shutdown-daemon
+ * </pre>
+ * Port of daemon is set by system property {@link CompilerDaemonProtocol#PORT_PROPERTY}, token of daemon is read from
+ * directory {@link CompilerDaemonProtocol#DIRECTORY_PROPERTY}
+ *
+ * @author VISTALL
+ * @since 22:30/18.10.26
+ */
+public class CompilerDaemonClient implements CompilerDaemonProtocol
+{
+	public static final String SHUTDOWN_ARGUMENT = "-shutdown-daemon";
+
+	public static void main(String... args)
+	{
+		int port = Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT);
+
+		int exitCode;
+		try
+		{
+			String token = CompilerDaemon.readToken(CompilerDaemon.getDefaultDirectory(), port);
+			if(token == null)
+				throw new ConnectException("Token file of daemon is not found");
+
+			if(args.length == 1 && SHUTDOWN_ARGUMENT.equals(args[0]))
+				exitCode = shutdown(port, token);
+			else
+				exitCode = compile(port, token, System.out, new File("").getAbsoluteFile(), args);
+		}
+		catch(ConnectException e)
+		{
+			System.err.println("Compiler daemon is not started on port " + port + ", compiling in current process");
+
+			exitCode = Main.doMainNoExit(System.out, args).getCode();
+		}
+		catch(IOException e)
+		{
+			e.printStackTrace();
+
+			exitCode = ExitCode.INTERNAL_ERROR.getCode();
+		}
+
+		if(exitCode != ExitCode.OK.getCode())
+			System.exit(exitCode);
+	}
+
+	/**
+	 * @return exit code of compilation
+	 */
+	public static int compile(int port, @NotNull String token, @NotNull PrintStream out, @NotNull File workingDir, @NotNull String[] args) throws IOException
+	{
+		Socket socket = new Socket(InetAddress.getByName(null), port);
+		try
+		{
+			DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			output.writeInt(PROTOCOL_VERSION);
+			output.writeUTF(token);
+			output.writeByte(REQUEST_COMPILE);
+			output.writeUTF(workingDir.getPath());
+			output.writeInt(args.length);
+			for(String arg : args)
+				output.writeUTF(arg);
+			output.flush();
+
+			return readResponse(socket, out);
+		}
+		finally
+		{
+			socket.close();
+		}
+	}
+
+	public static int shutdown(int port, @NotNull String token) throws IOException
+	{
+		Socket socket = new Socket(InetAddress.getByName(null), port);
+		try
+		{
+			DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+			output.writeInt(PROTOCOL_VERSION);
+			output.writeUTF(token);
+			output.writeByte(REQUEST_SHUTDOWN);
+			output.flush();
+
+			return readResponse(socket, System.out);
+		}
+		finally
+		{
+			socket.close();
+		}
+	}
+
+	private static int readResponse(@NotNull Socket socket, @NotNull PrintStream out) throws IOException
+	{
+		DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		byte[] buffer = new byte[8192];
+		while(true)
+		{
+			byte response = input.readByte();
+			switch(response)
+			{
+				case RESPONSE_OUTPUT:
+					int length = input.readInt();
+					if(length > buffer.length)
+						buffer = new byte[length];
+					input.readFully(buffer, 0, length);
+					out.write(buffer, 0, length);
+					break;
+				case RESPONSE_EXIT:
+					out.flush();
+					return input.readInt();
+				default:
+					throw new IOException("Unknown response: " + response);
+			}
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.daemon;
+
+/**
+ * Protocol between compiler daemon and client. All data is written by {@link java.io.DataOutputStream}
+ * <pre>
+ * request:
+ *   int PROTOCOL_VERSION
+ *   utf token
+ *   byte REQUEST_COMPILE, utf working directory, int argument count, utf[] arguments
+ *   or
+ *   byte REQUEST_SHUTDOWN
+ * response:
+ *   (byte RESPONSE_OUTPUT, int length, byte[] compiler output)*
+ *   byte RESPONSE_EXIT, int exit code
+ * </pre>
+ * Token is random string, which is generated by daemon on start and written to file {@code <port>.token} in daemon directory.
+ * Only owner of daemon can read this file, so other users of machine can't send requests to daemon.
+ * Daemon directory is set by system property {@link #DIRECTORY_PROPERTY}, by default it's {@code ~/.napile/daemon}
+ *
+ * @author VISTALL
+ * @since 22:00/18.10.26
+ */
+public interface CompilerDaemonProtocol
+{
+	int PROTOCOL_VERSION = 2;
+
+	int DEFAULT_PORT = 7767;
+
+	String PORT_PROPERTY = "napile.daemon.port";
+
+	String DIRECTORY_PROPERTY = "napile.daemon.dir";
+
+	byte REQUEST_COMPILE = 1;
+	byte REQUEST_SHUTDOWN = 2;
+
+	byte RESPONSE_OUTPUT = 1;
+	byte RESPONSE_EXIT = 2;
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.incremental;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.compiler.lang.descriptors.ClassDescriptor;
+import org.napile.compiler.lang.descriptors.ClassifierDescriptor;
+import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
+import org.napile.compiler.lang.psi.NapileClass;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.psi.NapileReferenceExpression;
+import org.napile.compiler.lang.psi.NapileTypeReference;
+import org.napile.compiler.lang.psi.NapileVisitorVoid;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.lang.resolve.DescriptorUtils;
+import org.napile.compiler.lang.types.NapileType;
+import com.intellij.psi.PsiElement;
+
+/**
+ * Collect top level classes, which are referenced from file, using resolved trace
+ *
+ * @author VISTALL
+ * @since 15:50/18.10.26
+ */
+public class FileDependencyCollector extends NapileVisitorVoid
+{
+	@NotNull
+	public static IncrementalCache.FileEntry collect(@NotNull NapileFile file, @Nullable BindingTrace trace)
+	{
+		Set<FqName> references = new LinkedHashSet<FqName>();
+		if(trace != null)
+		{
+			FileDependencyCollector collector = new FileDependencyCollector(trace);
+			file.accept(collector);
+			references.addAll(collector.references);
+		}
+
+		Set<FqName> exports = new LinkedHashSet<FqName>();
+		for(NapileClass napileClass : file.getDeclarations())
+		{
+			FqName fqName = napileClass.getFqName();
+			if(fqName != null)
+				exports.add(fqName);
+		}
+
+		references.removeAll(exports);
+
+		return new IncrementalCache.FileEntry(hash(file.getText()), exports, references);
+	}
+
+	@NotNull
+	private static String hash(@NotNull String text)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			return new BigInteger(1, digest.digest(text.getBytes("UTF-8"))).toString(16);
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		catch(UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private final BindingTrace trace;
+	private final Set<FqName> references = new LinkedHashSet<FqName>();
+
+	private FileDependencyCollector(@NotNull BindingTrace trace)
+	{
+		this.trace = trace;
+	}
+
+	@Override
+	public void visitElement(PsiElement element)
+	{
+		element.acceptChildren(this);
+	}
+
+	@Override
+	public void visitReferenceExpression(NapileReferenceExpression expression)
+	{
+		DeclarationDescriptor descriptor = trace.get(BindingTraceKeys.REFERENCE_TARGET, expression);
+		if(descriptor != null)
+			addReference(descriptor);
+
+		super.visitReferenceExpression(expression);
+	}
+
+	@Override
+	public void visitTypeReference(NapileTypeReference typeReference)
+	{
+		NapileType type = trace.get(BindingTraceKeys.TYPE, typeReference);
+		if(type != null)
+			addReference(type);
+
+		super.visitTypeReference(typeReference);
+	}
+
+	private void addReference(@NotNull NapileType type)
+	{
+		ClassifierDescriptor descriptor = type.getConstructor().getDeclarationDescriptor();
+		if(descriptor != null)
+			addReference(descriptor);
+
+		for(NapileType argument : type.getArguments())
+			addReference(argument);
+	}
+
+	private void addReference(@NotNull DeclarationDescriptor descriptor)
+	{
+		ClassDescriptor topLevelClass = null;
+		for(DeclarationDescriptor current = descriptor; current != null; current = current.getContainingDeclaration())
+			if(current instanceof ClassDescriptor)
+				topLevelClass = (ClassDescriptor) current;
+
+		if(topLevelClass != null)
+			references.add(DescriptorUtils.getFQName(topLevelClass).toSafe());
+	}
+}
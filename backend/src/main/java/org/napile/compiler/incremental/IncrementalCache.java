@@ -0,0 +1,378 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.incremental;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.compiler.bytecode.ClassFileFormat;
+
+/**
+ * Per file data of previous successful compilation: content hash, exported top level classes and referenced classes.
+ * Stored as text file near output directory.
+ * <p/>
+ * Header of cache contains compiler options and fingerprint of classpath(paths, sizes and time stamps of library files) -
+ * if one of them is changed, all files are compiled again
+ *
+ * @author VISTALL
+ * @since 15:20/18.10.26
+ */
+public class IncrementalCache
+{
+	public static class FileEntry
+	{
+		@NotNull
+		public final String hash;
+		@NotNull
+		public final Set<FqName> exports;
+		@NotNull
+		public final Set<FqName> references;
+
+		public FileEntry(@NotNull String hash, @NotNull Set<FqName> exports, @NotNull Set<FqName> references)
+		{
+			this.hash = hash;
+			this.exports = exports;
+			this.references = references;
+		}
+	}
+
+	private static final String HEADER = "napile-incremental";
+	private static final int VERSION = 2;
+
+	@NotNull
+	private final File cacheFile;
+	@NotNull
+	private final File outputDir;
+	@NotNull
+	private final ClassFileFormat format;
+	@NotNull
+	private final String options;
+	@NotNull
+	private final String classpathFingerprint;
+
+	private final Map<String, FileEntry> entries = new LinkedHashMap<String, FileEntry>();
+	// exports of previous compilation, which are not generated by rebuilt files anymore
+	private final Set<FqName> removedNames = new HashSet<FqName>();
+	private boolean outdated;
+
+	/**
+	 * @param options compiler options, which affect generated code
+	 */
+	public IncrementalCache(@NotNull File outputDir, @NotNull ClassFileFormat format, @NotNull String options, @NotNull List<File> classpath)
+	{
+		this.outputDir = outputDir;
+		this.format = format;
+		this.options = format.getExtension() + " " + options;
+		this.classpathFingerprint = fingerprint(classpath);
+		this.cacheFile = new File(outputDir.getAbsoluteFile().getParentFile(), outputDir.getName() + ".icache");
+	}
+
+	@NotNull
+	public File getCacheFile()
+	{
+		return cacheFile;
+	}
+
+	@Nullable
+	public FileEntry getEntry(@NotNull String path)
+	{
+		return entries.get(path);
+	}
+
+	/**
+	 * Sets entry of rebuilt file. Classes, which was exported by old entry, and not exported by new - are removed by {@link #retainFiles(Collection)}
+	 */
+	public void putEntry(@NotNull String path, @NotNull FileEntry entry)
+	{
+		FileEntry oldEntry = entries.put(path, entry);
+		if(oldEntry != null)
+			for(FqName fqName : oldEntry.exports)
+				if(!entry.exports.contains(fqName))
+					removedNames.add(fqName);
+	}
+
+	/**
+	 * @return true if cache is written with other compiler options or classpath - all files must be compiled
+	 */
+	public boolean isOutdated()
+	{
+		return outdated;
+	}
+
+	/**
+	 * Calculate files which need to be compiled again: changed files, files without output, and all files which depend on them
+	 *
+	 * @param currentFiles map of path to new entry. References of new entries are not known yet - and ignored
+	 * @return paths from currentFiles
+	 */
+	@NotNull
+	public Set<String> computeDirtyFiles(@NotNull Map<String, FileEntry> currentFiles)
+	{
+		if(outdated)
+			return new LinkedHashSet<String>(currentFiles.keySet());
+
+		Set<String> dirty = new LinkedHashSet<String>();
+		Set<FqName> affectedNames = new HashSet<FqName>();
+
+		for(Map.Entry<String, FileEntry> entry : currentFiles.entrySet())
+		{
+			FileEntry oldEntry = entries.get(entry.getKey());
+			if(oldEntry == null || !oldEntry.hash.equals(entry.getValue().hash) || !isOutputExists(oldEntry.exports))
+			{
+				dirty.add(entry.getKey());
+				affectedNames.addAll(entry.getValue().exports);
+				if(oldEntry != null)
+					affectedNames.addAll(oldEntry.exports);
+			}
+		}
+
+		// removed files
+		for(Map.Entry<String, FileEntry> entry : entries.entrySet())
+			if(!currentFiles.containsKey(entry.getKey()))
+				affectedNames.addAll(entry.getValue().exports);
+
+		boolean changed = !affectedNames.isEmpty();
+		while(changed)
+		{
+			changed = false;
+			for(String path : currentFiles.keySet())
+			{
+				if(dirty.contains(path))
+					continue;
+
+				FileEntry oldEntry = entries.get(path);
+				if(oldEntry == null || !containsAny(oldEntry.references, affectedNames))
+					continue;
+
+				dirty.add(path);
+				affectedNames.addAll(oldEntry.exports);
+				affectedNames.addAll(currentFiles.get(path).exports);
+				changed = true;
+			}
+		}
+		return dirty;
+	}
+
+	/**
+	 * Drop entries of files which are not exists anymore, and remove outputs of theirs classes, and classes which are removed
+	 * from rebuilt files - if they are not generated by other files
+	 */
+	public void retainFiles(@NotNull Collection<String> paths)
+	{
+		Set<FqName> aliveNames = new HashSet<FqName>();
+		for(String path : paths)
+		{
+			FileEntry entry = entries.get(path);
+			if(entry != null)
+				aliveNames.addAll(entry.exports);
+		}
+
+		for(Map.Entry<String, FileEntry> entry : entries.entrySet())
+			if(!paths.contains(entry.getKey()))
+				removedNames.addAll(entry.getValue().exports);
+
+		entries.keySet().retainAll(paths);
+
+		removedNames.removeAll(aliveNames);
+		for(FqName fqName : removedNames)
+		{
+			File file = getOutputFile(fqName);
+			if(file.exists())
+				file.delete();
+		}
+		removedNames.clear();
+	}
+
+	/**
+	 * Entries of cache with other options or classpath are loaded too - outputs of theirs classes can be removed
+	 */
+	public void load() throws IOException
+	{
+		entries.clear();
+		removedNames.clear();
+		outdated = false;
+		if(!cacheFile.exists())
+			return;
+
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+		try
+		{
+			String line = reader.readLine();
+			if(line == null || !line.equals(HEADER + " " + VERSION))
+			{
+				outdated = true;
+				return;
+			}
+
+			String optionsLine = reader.readLine();
+			String classpathLine = reader.readLine();
+			outdated = !("options " + options).equals(optionsLine) || !("classpath " + classpathFingerprint).equals(classpathLine);
+
+			String path = null;
+			String hash = null;
+			Set<FqName> exports = null;
+			Set<FqName> references = null;
+			while((line = reader.readLine()) != null)
+			{
+				int index = line.indexOf(' ');
+				String key = index == -1 ? line : line.substring(0, index);
+				String value = index == -1 ? "" : line.substring(index + 1);
+
+				if(key.equals("file"))
+				{
+					path = value;
+					hash = null;
+					exports = new LinkedHashSet<FqName>();
+					references = new LinkedHashSet<FqName>();
+				}
+				else if(path == null)
+					throw new IOException("Broken incremental cache: " + cacheFile);
+				else if(key.equals("hash"))
+					hash = value;
+				else if(key.equals("export"))
+					exports.add(new FqName(value));
+				else if(key.equals("reference"))
+					references.add(new FqName(value));
+				else if(key.equals("end"))
+				{
+					if(hash != null)
+						entries.put(path, new FileEntry(hash, exports, references));
+					path = null;
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	public void save() throws IOException
+	{
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(cacheFile), "UTF-8"));
+		try
+		{
+			writer.write(HEADER + " " + VERSION);
+			writer.newLine();
+			writeLine(writer, "options", options);
+			writeLine(writer, "classpath", classpathFingerprint);
+			for(Map.Entry<String, FileEntry> entry : entries.entrySet())
+			{
+				FileEntry fileEntry = entry.getValue();
+
+				writeLine(writer, "file", entry.getKey());
+				writeLine(writer, "hash", fileEntry.hash);
+				for(FqName fqName : fileEntry.exports)
+					writeLine(writer, "export", fqName.getFqName());
+				for(FqName fqName : fileEntry.references)
+					writeLine(writer, "reference", fqName.getFqName());
+				writer.write("end");
+				writer.newLine();
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private boolean isOutputExists(@NotNull Set<FqName> exports)
+	{
+		for(FqName fqName : exports)
+			if(!getOutputFile(fqName).exists())
+				return false;
+		return true;
+	}
+
+	@NotNull
+	private File getOutputFile(@NotNull FqName fqName)
+	{
+		return format.getOutputFile(outputDir, fqName);
+	}
+
+	private static void writeLine(@NotNull BufferedWriter writer, @NotNull String key, @NotNull String value) throws IOException
+	{
+		writer.write(key);
+		writer.write(' ');
+		writer.write(value);
+		writer.newLine();
+	}
+
+	@NotNull
+	private static String fingerprint(@NotNull List<File> classpath)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			for(File file : classpath)
+				fingerprint(digest, file.getAbsoluteFile());
+			return new BigInteger(1, digest.digest()).toString(16);
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		catch(UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void fingerprint(@NotNull MessageDigest digest, @NotNull File file) throws UnsupportedEncodingException
+	{
+		digest.update(file.getPath().getBytes("UTF-8"));
+
+		File[] children = file.listFiles();
+		if(children != null)
+		{
+			Arrays.sort(children);
+			for(File child : children)
+				fingerprint(digest, child);
+		}
+		else if(file.exists())
+			digest.update((file.length() + ":" + file.lastModified()).getBytes("UTF-8"));
+	}
+
+	private static boolean containsAny(@NotNull Set<FqName> set, @NotNull Set<FqName> values)
+	{
+		for(FqName fqName : set)
+			if(values.contains(fqName))
+				return true;
+		return false;
+	}
+}
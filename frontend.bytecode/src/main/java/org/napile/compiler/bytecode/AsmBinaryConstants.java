@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.bytecode;
+
+import org.napile.asm.tree.members.bytecode.impl.*;
+
+/**
+ * Layout of binary class file (all numbers are big endian):
+ * <pre>
+ * int      MAGIC
+ * short    VERSION
+ * byte     language version
+ * int      string count, int[] string offsets, int data length, data (int length + utf8 bytes)
+ * int      type count, int[] type offsets, int data length, data (encoded type nodes)
+ * class    top level class
+ * </pre>
+ * Names, fq names and texts are indexes in string pool, type nodes are indexes in type pool. Members of class
+ * are described by table (kind, name, offset) before theirs bodies - so single member can be read without reading of other members
+ *
+ * @author VISTALL
+ * @since 19:20/18.10.26
+ */
+public interface AsmBinaryConstants
+{
+	int MAGIC = 0x4E42494E; // NBIN
+
+	short VERSION = 1;
+
+	int NULL_INDEX = -1;
+
+	// member kinds
+	byte MEMBER_CLASS = 0;
+	byte MEMBER_METHOD = 1;
+	byte MEMBER_MACRO = 2;
+	byte MEMBER_VARIABLE = 3;
+
+	// type constructor kinds
+	byte TYPE_CLASS = 0;
+	byte TYPE_THIS = 1;
+	byte TYPE_METHOD = 2;
+	byte TYPE_MULTI = 3;
+	byte TYPE_PARAMETER_VALUE = 4;
+
+	/**
+	 * Opcode of instruction is index in this array. New instructions must be added only to end
+	 */
+	Class<?>[] INSTRUCTIONS = new Class<?>[]
+	{
+		DupInstruction.class,
+		Dup1x1Instruction.class,
+		PopInstruction.class,
+		SwapInstruction.class,
+		ThrowInstruction.class,
+		LocalGetInstruction.class,
+		LocalPutInstruction.class,
+		PutAnonymInstruction.class,
+		NewObjectInstruction.class,
+		NewByteInstruction.class,
+		NewShortInstruction.class,
+		NewIntInstruction.class,
+		NewLongInstruction.class,
+		NewFloatInstruction.class,
+		NewDoubleInstruction.class,
+		NewCharInstruction.class,
+		NewStringInstruction.class,
+		ReturnInstruction.class,
+		InvokeStaticInstruction.class,
+		InvokeSpecialInstruction.class,
+		InvokeVirtualInstruction.class,
+		InvokeAnonymInstruction.class,
+		MacroJumpInstruction.class,
+		MacroStaticJumpInstruction.class,
+		PutToVariableInstruction.class,
+		PutToStaticVariableInstruction.class,
+		GetVariableInstruction.class,
+		GetStaticVariableInstruction.class,
+		JumpIfInstruction.class,
+		JumpInstruction.class,
+		TypeOfInstruction.class,
+		ClassOfInstruction.class,
+		IsInstruction.class
+	};
+}
@@ -0,0 +1,577 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.bytecode;
+
+import static org.napile.compiler.bytecode.AsmBinaryConstants.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.LangVersion;
+import org.napile.asm.Modifier;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.resolve.name.Name;
+import org.napile.asm.tree.members.*;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.InstructionInCodePosition;
+import org.napile.asm.tree.members.bytecode.MethodRef;
+import org.napile.asm.tree.members.bytecode.VariableRef;
+import org.napile.asm.tree.members.bytecode.impl.*;
+import org.napile.asm.tree.members.bytecode.tryCatch.CatchBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryCatchBlockNode;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.asm.tree.members.types.constructors.MethodTypeNode;
+import org.napile.asm.tree.members.types.constructors.MultiTypeNode;
+import org.napile.asm.tree.members.types.constructors.ThisTypeNode;
+import org.napile.asm.tree.members.types.constructors.TypeConstructorNode;
+import org.napile.asm.tree.members.types.constructors.TypeParameterValueTypeNode;
+import org.napile.asm.util.IntIntPair;
+
+/**
+ * Reads {@link ClassNode} from binary format, described in {@link AsmBinaryConstants}. Buffer is read by absolute
+ * positions - so it can be memory mapped file, and single members can be read via {@link #findMembers(Name)} without
+ * reading of whole class. Strings and type nodes are decoded only once.
+ * <p/>
+ * Not thread safe
+ *
+ * @author VISTALL
+ * @since 19:50/18.10.26
+ */
+public class AsmBinaryReader
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int MEMBER_ENTRY_SIZE = 9;
+
+	@NotNull
+	public static AsmBinaryReader map(@NotNull File file) throws IOException
+	{
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = randomAccessFile.getChannel();
+			// mapping is valid after closing of channel
+			return new AsmBinaryReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally
+		{
+			randomAccessFile.close();
+		}
+	}
+
+	public static boolean isBinary(@NotNull byte[] data)
+	{
+		return data.length >= 4 && ByteBuffer.wrap(data).getInt(0) == MAGIC;
+	}
+
+	private final ByteBuffer buffer;
+	private final LangVersion langVersion;
+
+	private final int stringOffsetsStart;
+	private final int stringDataStart;
+	private final String[] strings;
+
+	private final int typeOffsetsStart;
+	private final int typeDataStart;
+	private final TypeNode[] types;
+
+	private final int classStart;
+
+	private int position;
+
+	public AsmBinaryReader(@NotNull byte[] data) throws IOException
+	{
+		this(ByteBuffer.wrap(data));
+	}
+
+	public AsmBinaryReader(@NotNull ByteBuffer buffer) throws IOException
+	{
+		this.buffer = buffer;
+
+		try
+		{
+			if(readInt() != MAGIC)
+				throw new IOException("Not a binary class file");
+			short version = readShort();
+			if(version != VERSION)
+				throw new IOException("Unsupported version of binary class file: " + version + ", expected: " + VERSION);
+			langVersion = LangVersion.values()[readByte()];
+
+			strings = new String[readInt()];
+			stringOffsetsStart = position;
+			position += strings.length * 4;
+			int stringDataLength = readInt();
+			stringDataStart = position;
+			position += stringDataLength;
+
+			types = new TypeNode[readInt()];
+			typeOffsetsStart = position;
+			position += types.length * 4;
+			int typeDataLength = readInt();
+			typeDataStart = position;
+			position += typeDataLength;
+
+			classStart = position;
+		}
+		catch(IndexOutOfBoundsException e)
+		{
+			throw new IOException("Binary class file is corrupted", e);
+		}
+	}
+
+	@NotNull
+	public LangVersion getLangVersion()
+	{
+		return langVersion;
+	}
+
+	@NotNull
+	public FqName getClassName()
+	{
+		return new FqName(getString(buffer.getInt(classStart)));
+	}
+
+	@NotNull
+	public ClassNode read()
+	{
+		position = classStart;
+		return readClass();
+	}
+
+	/**
+	 * Read only members of top level class with given name. Nested classes are found by short name
+	 */
+	@NotNull
+	public List<AbstractMemberNode<?>> findMembers(@NotNull Name name)
+	{
+		int count = buffer.getInt(classStart + 4);
+		int tableStart = classStart + 8;
+
+		List<AbstractMemberNode<?>> result = new ArrayList<AbstractMemberNode<?>>(1);
+		for(int i = 0; i < count; i++)
+		{
+			int entry = tableStart + i * MEMBER_ENTRY_SIZE;
+			byte kind = buffer.get(entry);
+			String memberName = getString(buffer.getInt(entry + 1));
+			if(kind == MEMBER_CLASS ? new FqName(memberName).shortName().equals(name) : memberName.equals(name.getIdentifier()))
+				result.add(readMember(entry));
+		}
+		return result;
+	}
+
+	@NotNull
+	private ClassNode readClass()
+	{
+		FqName fqName = new FqName(getString(readInt()));
+
+		int count = readInt();
+		int tableStart = position;
+		position += count * MEMBER_ENTRY_SIZE;
+
+		ClassNode classNode = new ClassNode(readModifiers(), fqName);
+		readTypeParameters(classNode);
+		readAnnotations(classNode);
+		readTypes(classNode.supers);
+
+		for(int i = 0; i < count; i++)
+			classNode.addMember(readMember(tableStart + i * MEMBER_ENTRY_SIZE));
+		return classNode;
+	}
+
+	@NotNull
+	private AbstractMemberNode<?> readMember(int entry)
+	{
+		byte kind = buffer.get(entry);
+		position = classStart + buffer.getInt(entry + 5);
+
+		switch(kind)
+		{
+			case MEMBER_CLASS:
+				return readClass();
+			case MEMBER_METHOD:
+				return readMethod(false);
+			case MEMBER_MACRO:
+				return readMethod(true);
+			case MEMBER_VARIABLE:
+				return readVariable();
+			default:
+				throw new IllegalArgumentException("Unknown member kind: " + kind);
+		}
+	}
+
+	@NotNull
+	private MethodNode readMethod(boolean macro)
+	{
+		Name name = Name.identifier(getString(readInt()));
+		Modifier[] modifiers = readModifiers();
+		TypeNode returnType = getType(readInt());
+
+		MethodNode methodNode = macro ? new MacroNode(modifiers, name, returnType) : new MethodNode(modifiers, name, returnType);
+		readTypeParameters(methodNode);
+		readAnnotations(methodNode);
+		readParameters(methodNode.parameters);
+		methodNode.code = readCode();
+		return methodNode;
+	}
+
+	@NotNull
+	private VariableNode readVariable()
+	{
+		Name name = Name.identifier(getString(readInt()));
+		Modifier[] modifiers = readModifiers();
+		TypeNode returnType = getType(readInt());
+
+		VariableNode variableNode = new VariableNode(modifiers, name, returnType);
+		readTypeParameters(variableNode);
+		readAnnotations(variableNode);
+		variableNode.code = readCode();
+		return variableNode;
+	}
+
+	@NotNull
+	private List<MethodParameterNode> readParameters(@NotNull List<MethodParameterNode> parameters)
+	{
+		int count = readInt();
+		for(int i = 0; i < count; i++)
+		{
+			Name name = Name.identifier(getString(readInt()));
+			Modifier[] modifiers = readModifiers();
+			TypeNode typeNode = getType(readInt());
+			String defaultValue = getString(readInt());
+
+			MethodParameterNode parameterNode = new MethodParameterNode(modifiers, name, typeNode, defaultValue);
+			readTypeParameters(parameterNode);
+			readAnnotations(parameterNode);
+			parameters.add(parameterNode);
+		}
+		return parameters;
+	}
+
+	@NotNull
+	private Modifier[] readModifiers()
+	{
+		int count = readByte();
+		if(count == 0)
+			return Modifier.EMPTY;
+
+		Modifier[] modifiers = new Modifier[count];
+		for(int i = 0; i < count; i++)
+			modifiers[i] = Modifier.valueOf(getString(readInt()));
+		return modifiers;
+	}
+
+	private void readTypeParameters(@NotNull AbstractMemberNode<?> memberNode)
+	{
+		int count = readInt();
+		for(int i = 0; i < count; i++)
+		{
+			TypeParameterNode typeParameterNode = new TypeParameterNode(Name.identifier(getString(readInt())));
+			readTypes(typeParameterNode.supers);
+
+			int constructorCount = readInt();
+			for(int j = 0; j < constructorCount; j++)
+				typeParameterNode.constructors.add(readParameters(new ArrayList<MethodParameterNode>()));
+
+			readAnnotations(typeParameterNode);
+
+			memberNode.typeParameters.add(typeParameterNode);
+		}
+	}
+
+	private void readAnnotations(@NotNull AnnotableNode<?> node)
+	{
+		int count = readInt();
+		for(int i = 0; i < count; i++)
+		{
+			TypeNode typeNode = getType(readInt());
+			CodeInfo codeInfo = readCode();
+
+			String[] parameters = new String[readInt()];
+			for(int j = 0; j < parameters.length; j++)
+				parameters[j] = getString(readInt());
+
+			node.annotations.add(new AnnotationNode(typeNode, codeInfo, parameters));
+		}
+	}
+
+	@NotNull
+	private List<TypeNode> readTypes(@NotNull List<TypeNode> list)
+	{
+		int count = readInt();
+		for(int i = 0; i < count; i++)
+			list.add(getType(readInt()));
+		return list;
+	}
+
+	@Nullable
+	private CodeInfo readCode()
+	{
+		if(readByte() == 0)
+			return null;
+
+		CodeInfo codeInfo = new CodeInfo();
+		codeInfo.maxLocals = readInt();
+
+		int count = readInt();
+		for(int i = 0; i < count; i++)
+		{
+			int opcode = readByte();
+
+			InstructionInCodePosition position = InstructionInCodePosition.EMPTY_POSITION;
+			if(readByte() != 0)
+				position = new InstructionInCodePosition(getString(readInt()), readInt(), readInt());
+
+			Instruction instruction = readInstruction(opcode);
+			instruction.position = position;
+			codeInfo.instructions.add(instruction);
+		}
+
+		int tryCatchCount = readInt();
+		for(int i = 0; i < tryCatchCount; i++)
+		{
+			TryBlock tryBlock = new TryBlock(readInt(), readInt());
+
+			int catchCount = readInt();
+			List<CatchBlock> catchBlocks = new ArrayList<CatchBlock>(catchCount);
+			for(int j = 0; j < catchCount; j++)
+				catchBlocks.add(new CatchBlock(readInt(), readInt(), readInt(), getType(readInt())));
+
+			codeInfo.tryCatchBlockNodes.add(new TryCatchBlockNode(tryBlock, catchBlocks));
+		}
+		return codeInfo;
+	}
+
+	@NotNull
+	private Instruction readInstruction(int opcode)
+	{
+		Class<?> clazz = opcode < INSTRUCTIONS.length ? INSTRUCTIONS[opcode] : null;
+
+		if(clazz == DupInstruction.class)
+			return new DupInstruction();
+		else if(clazz == Dup1x1Instruction.class)
+			return new Dup1x1Instruction();
+		else if(clazz == PopInstruction.class)
+			return new PopInstruction();
+		else if(clazz == SwapInstruction.class)
+			return new SwapInstruction();
+		else if(clazz == ThrowInstruction.class)
+			return new ThrowInstruction();
+		else if(clazz == LocalGetInstruction.class)
+			return new LocalGetInstruction(readInt());
+		else if(clazz == LocalPutInstruction.class)
+			return new LocalPutInstruction(readInt());
+		else if(clazz == PutAnonymInstruction.class)
+		{
+			int count = readInt();
+			List<IntIntPair> require = new ArrayList<IntIntPair>(count);
+			for(int i = 0; i < count; i++)
+				require.add(new IntIntPair(readInt(), readInt()));
+			return new PutAnonymInstruction(require, readCode());
+		}
+		else if(clazz == NewObjectInstruction.class)
+		{
+			TypeNode typeNode = getType(readInt());
+			return new NewObjectInstruction(typeNode, readParameters(new ArrayList<MethodParameterNode>()));
+		}
+		else if(clazz == NewByteInstruction.class)
+			return new NewByteInstruction(readByte());
+		else if(clazz == NewShortInstruction.class)
+			return new NewShortInstruction(readShort());
+		else if(clazz == NewIntInstruction.class)
+			return new NewIntInstruction(readInt());
+		else if(clazz == NewLongInstruction.class)
+			return new NewLongInstruction(readLong());
+		else if(clazz == NewFloatInstruction.class)
+			return new NewFloatInstruction(Float.intBitsToFloat(readInt()));
+		else if(clazz == NewDoubleInstruction.class)
+			return new NewDoubleInstruction(Double.longBitsToDouble(readLong()));
+		else if(clazz == NewCharInstruction.class)
+			return new NewCharInstruction((char) readShort());
+		else if(clazz == NewStringInstruction.class)
+			return new NewStringInstruction(getString(readInt()));
+		else if(clazz == ReturnInstruction.class)
+			return new ReturnInstruction(readInt());
+		else if(clazz == InvokeStaticInstruction.class)
+		{
+			boolean nullable = readByte() != 0;
+			return new InvokeStaticInstruction(readMethodRef(), nullable);
+		}
+		else if(clazz == InvokeSpecialInstruction.class)
+		{
+			boolean nullable = readByte() != 0;
+			return new InvokeSpecialInstruction(readMethodRef(), nullable);
+		}
+		else if(clazz == InvokeVirtualInstruction.class)
+		{
+			boolean nullable = readByte() != 0;
+			return new InvokeVirtualInstruction(readMethodRef(), nullable);
+		}
+		else if(clazz == InvokeAnonymInstruction.class)
+		{
+			boolean nullable = readByte() != 0;
+			TypeNode returnType = getType(readInt());
+			List<MethodParameterNode> parameters = readParameters(new ArrayList<MethodParameterNode>());
+			List<TypeNode> typeArguments = readTypes(new ArrayList<TypeNode>());
+			return new InvokeAnonymInstruction(parameters, typeArguments, returnType, nullable);
+		}
+		else if(clazz == MacroJumpInstruction.class)
+			return new MacroJumpInstruction(readMethodRef());
+		else if(clazz == MacroStaticJumpInstruction.class)
+			return new MacroStaticJumpInstruction(readMethodRef());
+		else if(clazz == PutToVariableInstruction.class)
+			return new PutToVariableInstruction(readVariableRef());
+		else if(clazz == PutToStaticVariableInstruction.class)
+			return new PutToStaticVariableInstruction(readVariableRef());
+		else if(clazz == GetVariableInstruction.class)
+			return new GetVariableInstruction(readVariableRef());
+		else if(clazz == GetStaticVariableInstruction.class)
+			return new GetStaticVariableInstruction(readVariableRef());
+		else if(clazz == JumpIfInstruction.class)
+			return new JumpIfInstruction(readInt());
+		else if(clazz == JumpInstruction.class)
+			return new JumpInstruction(readInt());
+		else if(clazz == TypeOfInstruction.class)
+			return new TypeOfInstruction(getType(readInt()));
+		else if(clazz == ClassOfInstruction.class)
+			return new ClassOfInstruction(getType(readInt()));
+		else if(clazz == IsInstruction.class)
+			return new IsInstruction(getType(readInt()));
+
+		throw new IllegalArgumentException("Unknown opcode: " + opcode);
+	}
+
+	@NotNull
+	private MethodRef readMethodRef()
+	{
+		FqName fqName = new FqName(getString(readInt()));
+		TypeNode returnType = getType(readInt());
+		List<MethodParameterNode> parameters = readParameters(new ArrayList<MethodParameterNode>());
+		List<TypeNode> typeArguments = readTypes(new ArrayList<TypeNode>());
+		return new MethodRef(fqName, parameters, typeArguments, returnType);
+	}
+
+	@NotNull
+	private VariableRef readVariableRef()
+	{
+		FqName fqName = new FqName(getString(readInt()));
+		return new VariableRef(fqName, getType(readInt()));
+	}
+
+	@NotNull
+	private TypeNode getType(int index)
+	{
+		TypeNode typeNode = types[index];
+		if(typeNode != null)
+			return typeNode;
+
+		int oldPosition = position;
+		position = typeDataStart + buffer.getInt(typeOffsetsStart + index * 4);
+
+		boolean nullable = readByte() != 0;
+		byte kind = readByte();
+		TypeConstructorNode constructorNode;
+		switch(kind)
+		{
+			case TYPE_CLASS:
+				constructorNode = new ClassTypeNode(new FqName(getString(readInt())));
+				break;
+			case TYPE_THIS:
+				constructorNode = new ThisTypeNode();
+				break;
+			case TYPE_METHOD:
+				MethodTypeNode methodTypeNode = new MethodTypeNode();
+				String name = getString(readInt());
+				methodTypeNode.name = name == null ? null : Name.identifier(name);
+				methodTypeNode.returnType = getType(readInt());
+				readParameters(methodTypeNode.parameters);
+				constructorNode = methodTypeNode;
+				break;
+			case TYPE_MULTI:
+				MultiTypeNode multiTypeNode = new MultiTypeNode();
+				int count = readInt();
+				for(int i = 0; i < count; i++)
+					multiTypeNode.variables.add(readVariable());
+				constructorNode = multiTypeNode;
+				break;
+			case TYPE_PARAMETER_VALUE:
+				constructorNode = new TypeParameterValueTypeNode(Name.identifier(getString(readInt())));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown type constructor kind: " + kind);
+		}
+
+		typeNode = new TypeNode(nullable, constructorNode);
+		readTypes(typeNode.arguments);
+		readAnnotations(typeNode);
+
+		position = oldPosition;
+		return types[index] = typeNode;
+	}
+
+	@Nullable
+	private String getString(int index)
+	{
+		if(index == NULL_INDEX)
+			return null;
+
+		String value = strings[index];
+		if(value != null)
+			return value;
+
+		int offset = stringDataStart + buffer.getInt(stringOffsetsStart + index * 4);
+		byte[] bytes = new byte[buffer.getInt(offset)];
+		for(int i = 0; i < bytes.length; i++)
+			bytes[i] = buffer.get(offset + 4 + i);
+		return strings[index] = new String(bytes, UTF_8);
+	}
+
+	private byte readByte()
+	{
+		return buffer.get(position++);
+	}
+
+	private short readShort()
+	{
+		short value = buffer.getShort(position);
+		position += 2;
+		return value;
+	}
+
+	private int readInt()
+	{
+		int value = buffer.getInt(position);
+		position += 4;
+		return value;
+	}
+
+	private long readLong()
+	{
+		long value = buffer.getLong(position);
+		position += 8;
+		return value;
+	}
+}
@@ -0,0 +1,726 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.bytecode;
+
+import static org.napile.compiler.bytecode.AsmBinaryConstants.*;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.LangVersion;
+import org.napile.asm.Modifier;
+import org.napile.asm.tree.members.*;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.InstructionInCodePosition;
+import org.napile.asm.tree.members.bytecode.InstructionVisitor;
+import org.napile.asm.tree.members.bytecode.MethodRef;
+import org.napile.asm.tree.members.bytecode.VariableRef;
+import org.napile.asm.tree.members.bytecode.impl.*;
+import org.napile.asm.tree.members.bytecode.tryCatch.CatchBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryCatchBlockNode;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.asm.tree.members.types.constructors.MethodTypeNode;
+import org.napile.asm.tree.members.types.constructors.MultiTypeNode;
+import org.napile.asm.tree.members.types.constructors.ThisTypeNode;
+import org.napile.asm.tree.members.types.constructors.TypeConstructorNode;
+import org.napile.asm.tree.members.types.constructors.TypeParameterValueTypeNode;
+import org.napile.asm.util.IntIntPair;
+
+/**
+ * Writes {@link ClassNode} in binary format, described in {@link AsmBinaryConstants}. Not thread safe
+ *
+ * @author VISTALL
+ * @since 19:25/18.10.26
+ */
+public class AsmBinaryWriter implements InstructionVisitor<AsmBinaryWriter.Output, Void>
+{
+	private static final Map<Class<?>, Integer> OPCODES = new HashMap<Class<?>, Integer>();
+
+	static
+	{
+		for(int i = 0; i < INSTRUCTIONS.length; i++)
+			OPCODES.put(INSTRUCTIONS[i], i);
+	}
+
+	private final List<String> strings = new ArrayList<String>();
+	private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+
+	private final List<byte[]> types = new ArrayList<byte[]>();
+	// type nodes have no hashCode - so they are interned by theirs encoded form
+	private final Map<ByteBuffer, Integer> typeIndexes = new HashMap<ByteBuffer, Integer>();
+
+	@NotNull
+	public byte[] write(@NotNull LangVersion langVersion, @NotNull ClassNode classNode)
+	{
+		strings.clear();
+		stringIndexes.clear();
+		types.clear();
+		typeIndexes.clear();
+
+		Output classOutput = new Output();
+		writeClass(classNode, classOutput);
+
+		List<byte[]> stringData = new ArrayList<byte[]>(strings.size());
+		for(String string : strings)
+			stringData.add(toUtf8(string));
+
+		Output output = new Output();
+		output.writeInt(MAGIC);
+		output.writeShort(VERSION);
+		output.writeByte(langVersion.ordinal());
+		writePool(stringData, output);
+		writePool(types, output);
+		output.write(classOutput.toByteArray());
+		return output.toByteArray();
+	}
+
+	private static void writePool(@NotNull List<byte[]> entries, @NotNull Output output)
+	{
+		output.writeInt(entries.size());
+
+		int offset = 0;
+		for(byte[] entry : entries)
+		{
+			output.writeInt(offset);
+			offset += entry.length;
+		}
+
+		output.writeInt(offset);
+		for(byte[] entry : entries)
+			output.write(entry);
+	}
+
+	private void writeClass(@NotNull ClassNode classNode, @NotNull Output output)
+	{
+		output.writeInt(string(classNode.name.getFqName()));
+
+		List<AbstractMemberNode> members = classNode.getMembers();
+		output.writeInt(members.size());
+
+		int tableOffset = output.size();
+		for(AbstractMemberNode<?> memberNode : members)
+		{
+			output.writeByte(getMemberKind(memberNode));
+			output.writeInt(string(getMemberName(memberNode)));
+			output.writeInt(0);
+		}
+
+		writeModifiers(classNode.modifiers, output);
+		writeTypeParameters(classNode.typeParameters, output);
+		writeAnnotations(classNode.annotations, output);
+		writeTypes(classNode.supers, output);
+
+		for(int i = 0; i < members.size(); i++)
+		{
+			// offsets of members are relative to start of class section
+			output.setInt(tableOffset + i * 9 + 5, output.size());
+
+			writeMember(members.get(i), output);
+		}
+	}
+
+	private void writeMember(@NotNull AbstractMemberNode<?> memberNode, @NotNull Output output)
+	{
+		if(memberNode instanceof ClassNode)
+			writeClass((ClassNode) memberNode, output);
+		else if(memberNode instanceof MethodNode)
+			writeMethod((MethodNode) memberNode, output);
+		else if(memberNode instanceof VariableNode)
+			writeVariable((VariableNode) memberNode, output);
+		else
+			throw new IllegalArgumentException("Unknown member: " + memberNode);
+	}
+
+	private void writeMethod(@NotNull MethodNode methodNode, @NotNull Output output)
+	{
+		output.writeInt(string(methodNode.name.getIdentifier()));
+		writeModifiers(methodNode.modifiers, output);
+		output.writeInt(type(methodNode.returnType));
+		writeTypeParameters(methodNode.typeParameters, output);
+		writeAnnotations(methodNode.annotations, output);
+		writeParameters(methodNode.parameters, output);
+		writeCode(methodNode.code, output);
+	}
+
+	private void writeVariable(@NotNull VariableNode variableNode, @NotNull Output output)
+	{
+		output.writeInt(string(variableNode.name.getIdentifier()));
+		writeModifiers(variableNode.modifiers, output);
+		output.writeInt(type(variableNode.returnType));
+		writeTypeParameters(variableNode.typeParameters, output);
+		writeAnnotations(variableNode.annotations, output);
+		writeCode(variableNode.code, output);
+	}
+
+	private void writeParameters(@NotNull List<MethodParameterNode> parameters, @NotNull Output output)
+	{
+		output.writeInt(parameters.size());
+		for(MethodParameterNode parameterNode : parameters)
+		{
+			output.writeInt(string(parameterNode.name.getIdentifier()));
+			writeModifiers(parameterNode.modifiers, output);
+			output.writeInt(type(parameterNode.returnType));
+			output.writeInt(string(parameterNode.defaultValue));
+			writeTypeParameters(parameterNode.typeParameters, output);
+			writeAnnotations(parameterNode.annotations, output);
+		}
+	}
+
+	private void writeModifiers(@NotNull Modifier[] modifiers, @NotNull Output output)
+	{
+		output.writeByte(modifiers.length);
+		for(Modifier modifier : modifiers)
+			output.writeInt(string(modifier.name()));
+	}
+
+	private void writeTypeParameters(@NotNull List<TypeParameterNode> typeParameters, @NotNull Output output)
+	{
+		output.writeInt(typeParameters.size());
+		for(TypeParameterNode typeParameterNode : typeParameters)
+		{
+			output.writeInt(string(typeParameterNode.name.getIdentifier()));
+			writeTypes(typeParameterNode.supers, output);
+
+			output.writeInt(typeParameterNode.constructors.size());
+			for(List<MethodParameterNode> constructor : typeParameterNode.constructors)
+				writeParameters(constructor, output);
+
+			writeAnnotations(typeParameterNode.annotations, output);
+		}
+	}
+
+	private void writeAnnotations(@NotNull List<AnnotationNode> annotations, @NotNull Output output)
+	{
+		output.writeInt(annotations.size());
+		for(AnnotationNode annotationNode : annotations)
+		{
+			output.writeInt(type(annotationNode.type));
+			writeCode(annotationNode.code, output);
+
+			output.writeInt(annotationNode.parameters.length);
+			for(String parameter : annotationNode.parameters)
+				output.writeInt(string(parameter));
+		}
+	}
+
+	private void writeTypes(@NotNull Collection<TypeNode> typeNodes, @NotNull Output output)
+	{
+		output.writeInt(typeNodes.size());
+		for(TypeNode typeNode : typeNodes)
+			output.writeInt(type(typeNode));
+	}
+
+	private void writeCode(@Nullable CodeInfo codeInfo, @NotNull Output output)
+	{
+		if(codeInfo == null)
+		{
+			output.writeByte(0);
+			return;
+		}
+
+		output.writeByte(1);
+		output.writeInt(codeInfo.maxLocals);
+
+		output.writeInt(codeInfo.instructions.size());
+		for(Instruction instruction : codeInfo.instructions)
+		{
+			Integer opcode = OPCODES.get(instruction.getClass());
+			if(opcode == null)
+				throw new IllegalArgumentException("Unknown instruction: " + instruction);
+
+			output.writeByte(opcode);
+
+			InstructionInCodePosition position = instruction.position;
+			if(position == InstructionInCodePosition.EMPTY_POSITION)
+				output.writeByte(0);
+			else
+			{
+				output.writeByte(1);
+				output.writeInt(string(position.getFile()));
+				output.writeInt(position.getLine());
+				output.writeInt(position.getColumn());
+			}
+
+			instruction.accept(this, output);
+		}
+
+		output.writeInt(codeInfo.tryCatchBlockNodes.size());
+		for(TryCatchBlockNode tryCatchBlockNode : codeInfo.tryCatchBlockNodes)
+		{
+			output.writeInt(tryCatchBlockNode.tryBlock.startIndex);
+			output.writeInt(tryCatchBlockNode.tryBlock.endIndex);
+
+			output.writeInt(tryCatchBlockNode.catchBlocks.size());
+			for(CatchBlock catchBlock : tryCatchBlockNode.catchBlocks)
+			{
+				output.writeInt(catchBlock.startIndex);
+				output.writeInt(catchBlock.endIndex);
+				output.writeInt(catchBlock.variableIndex);
+				output.writeInt(type(catchBlock.exception));
+			}
+		}
+	}
+
+	private void writeMethodRef(@NotNull MethodRef methodRef, @NotNull Output output)
+	{
+		output.writeInt(string(methodRef.method.getFqName()));
+		output.writeInt(type(methodRef.returnType));
+		writeParameters(methodRef.parameters, output);
+		writeTypes(methodRef.typeArguments, output);
+	}
+
+	private void writeVariableRef(@NotNull VariableRef variableRef, @NotNull Output output)
+	{
+		output.writeInt(string(variableRef.variable.getFqName()));
+		output.writeInt(type(variableRef.returnType));
+	}
+
+	private int string(@Nullable String value)
+	{
+		if(value == null)
+			return NULL_INDEX;
+
+		Integer index = stringIndexes.get(value);
+		if(index == null)
+		{
+			stringIndexes.put(value, index = strings.size());
+			strings.add(value);
+		}
+		return index;
+	}
+
+	private int type(@NotNull TypeNode typeNode)
+	{
+		Output output = new Output();
+		output.writeBoolean(typeNode.nullable);
+
+		TypeConstructorNode constructorNode = typeNode.typeConstructorNode;
+		if(constructorNode instanceof ClassTypeNode)
+		{
+			output.writeByte(TYPE_CLASS);
+			output.writeInt(string(((ClassTypeNode) constructorNode).className.getFqName()));
+		}
+		else if(constructorNode instanceof ThisTypeNode)
+			output.writeByte(TYPE_THIS);
+		else if(constructorNode instanceof MethodTypeNode)
+		{
+			MethodTypeNode methodTypeNode = (MethodTypeNode) constructorNode;
+
+			output.writeByte(TYPE_METHOD);
+			output.writeInt(string(methodTypeNode.name == null ? null : methodTypeNode.name.getIdentifier()));
+			output.writeInt(type(methodTypeNode.returnType));
+			writeParameters(methodTypeNode.parameters, output);
+		}
+		else if(constructorNode instanceof MultiTypeNode)
+		{
+			List<VariableNode> variables = ((MultiTypeNode) constructorNode).variables;
+
+			output.writeByte(TYPE_MULTI);
+			output.writeInt(variables.size());
+			for(VariableNode variableNode : variables)
+				writeVariable(variableNode, output);
+		}
+		else if(constructorNode instanceof TypeParameterValueTypeNode)
+		{
+			output.writeByte(TYPE_PARAMETER_VALUE);
+			output.writeInt(string(((TypeParameterValueTypeNode) constructorNode).name.getIdentifier()));
+		}
+		else
+			throw new IllegalArgumentException("Unknown type constructor: " + constructorNode);
+
+		writeTypes(typeNode.arguments, output);
+		writeAnnotations(typeNode.annotations, output);
+
+		byte[] data = output.toByteArray();
+		ByteBuffer key = ByteBuffer.wrap(data);
+		Integer index = typeIndexes.get(key);
+		if(index == null)
+		{
+			typeIndexes.put(key, index = types.size());
+			types.add(data);
+		}
+		return index;
+	}
+
+	private static byte getMemberKind(@NotNull AbstractMemberNode<?> memberNode)
+	{
+		if(memberNode instanceof ClassNode)
+			return MEMBER_CLASS;
+		else if(memberNode instanceof MacroNode)
+			return MEMBER_MACRO;
+		else if(memberNode instanceof MethodNode)
+			return MEMBER_METHOD;
+		else if(memberNode instanceof VariableNode)
+			return MEMBER_VARIABLE;
+		throw new IllegalArgumentException("Unknown member: " + memberNode);
+	}
+
+	@NotNull
+	private static String getMemberName(@NotNull AbstractMemberNode<?> memberNode)
+	{
+		if(memberNode instanceof ClassNode)
+			return ((ClassNode) memberNode).name.getFqName();
+		else if(memberNode instanceof MethodNode)
+			return ((MethodNode) memberNode).name.getIdentifier();
+		else if(memberNode instanceof VariableNode)
+			return ((VariableNode) memberNode).name.getIdentifier();
+		throw new IllegalArgumentException("Unknown member: " + memberNode);
+	}
+
+	@NotNull
+	private static byte[] toUtf8(@NotNull String value)
+	{
+		try
+		{
+			byte[] bytes = value.getBytes("UTF-8");
+
+			Output output = new Output();
+			output.writeInt(bytes.length);
+			output.write(bytes);
+			return output.toByteArray();
+		}
+		catch(UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	//-----------------------------------------------------------------------------
+
+	@Override
+	public Void visitDup(DupInstruction instruction, Output a)
+	{
+		return null;
+	}
+
+	@Override
+	public Void visitDup1x1(Dup1x1Instruction instruction, Output a2)
+	{
+		return null;
+	}
+
+	@Override
+	public Void visitPop(PopInstruction popInstruction, Output a2)
+	{
+		return null;
+	}
+
+	@Override
+	public Void visitSwap(SwapInstruction swapInstruction, Output a2)
+	{
+		return null;
+	}
+
+	@Override
+	public Void visitThrow(ThrowInstruction throwInstruction, Output a2)
+	{
+		return null;
+	}
+
+	@Override
+	public Void visitLocalGet(LocalGetInstruction instruction, Output a)
+	{
+		a.writeInt(instruction.varIndex);
+		return null;
+	}
+
+	@Override
+	public Void visitLocalPut(LocalPutInstruction instruction, Output a)
+	{
+		a.writeInt(instruction.varIndex);
+		return null;
+	}
+
+	@Override
+	public Void visitPutAnonym(PutAnonymInstruction instruction, Output a)
+	{
+		a.writeInt(instruction.require.size());
+		for(IntIntPair pair : instruction.require)
+		{
+			a.writeInt(pair.a);
+			a.writeInt(pair.b);
+		}
+		writeCode(instruction.code, a);
+		return null;
+	}
+
+	@Override
+	public Void visitNewObject(NewObjectInstruction instruction, Output a)
+	{
+		a.writeInt(type(instruction.value));
+		writeParameters(instruction.parameters, a);
+		return null;
+	}
+
+	@Override
+	public Void visitNewByte(NewByteInstruction instruction, Output a)
+	{
+		a.writeByte(instruction.value);
+		return null;
+	}
+
+	@Override
+	public Void visitNewShort(NewShortInstruction instruction, Output a)
+	{
+		a.writeShort(instruction.value);
+		return null;
+	}
+
+	@Override
+	public Void visitNewInt(NewIntInstruction instruction, Output a)
+	{
+		a.writeInt(instruction.value);
+		return null;
+	}
+
+	@Override
+	public Void visitNewLong(NewLongInstruction instruction, Output a)
+	{
+		a.writeLong(instruction.value);
+		return null;
+	}
+
+	@Override
+	public Void visitNewFloat(NewFloatInstruction instruction, Output a)
+	{
+		a.writeInt(Float.floatToRawIntBits(instruction.value));
+		return null;
+	}
+
+	@Override
+	public Void visitNewDouble(NewDoubleInstruction instruction, Output a)
+	{
+		a.writeLong(Double.doubleToRawLongBits(instruction.value));
+		return null;
+	}
+
+	@Override
+	public Void visitNewChar(NewCharInstruction instruction, Output a)
+	{
+		a.writeShort(instruction.value);
+		return null;
+	}
+
+	@Override
+	public Void visitNewString(NewStringInstruction instruction, Output a)
+	{
+		a.writeInt(string(instruction.value));
+		return null;
+	}
+
+	@Override
+	public Void visitReturn(ReturnInstruction instruction, Output a)
+	{
+		a.writeInt(instruction.count);
+		return null;
+	}
+
+	@Override
+	public Void visitInvokeStatic(InvokeStaticInstruction instruction, Output a)
+	{
+		return visitInvoke(instruction, a);
+	}
+
+	@Override
+	public Void visitInvokeSpecial(InvokeSpecialInstruction instruction, Output a)
+	{
+		return visitInvoke(instruction, a);
+	}
+
+	@Override
+	public Void visitInvokeVirtual(InvokeVirtualInstruction instruction, Output a)
+	{
+		return visitInvoke(instruction, a);
+	}
+
+	private Void visitInvoke(InvokeInstruction instruction, Output a)
+	{
+		a.writeBoolean(instruction.nullable);
+		writeMethodRef(instruction.methodRef, a);
+		return null;
+	}
+
+	@Override
+	public Void visitInvokeAnonym(InvokeAnonymInstruction instruction, Output a2)
+	{
+		// anonym has no name
+		MethodRef methodRef = instruction.methodRef;
+		a2.writeBoolean(instruction.nullable);
+		a2.writeInt(type(methodRef.returnType));
+		writeParameters(methodRef.parameters, a2);
+		writeTypes(methodRef.typeArguments, a2);
+		return null;
+	}
+
+	@Override
+	public Void visitMacroJump(MacroJumpInstruction instruction, Output a)
+	{
+		writeMethodRef(instruction.methodRef, a);
+		return null;
+	}
+
+	@Override
+	public Void visitMacroStaticJump(MacroStaticJumpInstruction instruction, Output a)
+	{
+		writeMethodRef(instruction.methodRef, a);
+		return null;
+	}
+
+	@Override
+	public Void visitPutToVariable(PutToVariableInstruction instruction, Output a)
+	{
+		writeVariableRef(instruction.variableRef, a);
+		return null;
+	}
+
+	@Override
+	public Void visitPutToStaticVariable(PutToStaticVariableInstruction instruction, Output a)
+	{
+		writeVariableRef(instruction.variableRef, a);
+		return null;
+	}
+
+	@Override
+	public Void visitGetVariable(GetVariableInstruction instruction, Output a)
+	{
+		writeVariableRef(instruction.variableRef, a);
+		return null;
+	}
+
+	@Override
+	public Void visitGetStaticVariable(GetStaticVariableInstruction instruction, Output a)
+	{
+		writeVariableRef(instruction.variableRef, a);
+		return null;
+	}
+
+	@Override
+	public Void visitJumpIf(JumpIfInstruction jumpIfInstruction, Output a2)
+	{
+		a2.writeInt(jumpIfInstruction.value);
+		return null;
+	}
+
+	@Override
+	public Void visitJump(JumpInstruction jumpInstruction, Output a2)
+	{
+		a2.writeInt(jumpInstruction.value);
+		return null;
+	}
+
+	@Override
+	public Void visitTypeOf(TypeOfInstruction typeOfInstruction, Output a2)
+	{
+		a2.writeInt(type(typeOfInstruction.value));
+		return null;
+	}
+
+	@Override
+	public Void visitClassOf(ClassOfInstruction classOfInstruction, Output a2)
+	{
+		a2.writeInt(type(classOfInstruction.value));
+		return null;
+	}
+
+	@Override
+	public Void visitIs(IsInstruction isInstruction, Output a2)
+	{
+		a2.writeInt(type(isInstruction.value));
+		return null;
+	}
+
+	/**
+	 * Growable big endian byte buffer, which allow to patch already written ints
+	 */
+	public static class Output
+	{
+		private byte[] data = new byte[256];
+		private int size;
+
+		public int size()
+		{
+			return size;
+		}
+
+		public void writeBoolean(boolean value)
+		{
+			writeByte(value ? 1 : 0);
+		}
+
+		public void writeByte(int value)
+		{
+			ensureCapacity(1);
+			data[size++] = (byte) value;
+		}
+
+		public void writeShort(int value)
+		{
+			ensureCapacity(2);
+			data[size++] = (byte) (value >>> 8);
+			data[size++] = (byte) value;
+		}
+
+		public void writeInt(int value)
+		{
+			ensureCapacity(4);
+			setInt(size, value);
+			size += 4;
+		}
+
+		public void writeLong(long value)
+		{
+			writeInt((int) (value >>> 32));
+			writeInt((int) value);
+		}
+
+		public void write(@NotNull byte[] bytes)
+		{
+			ensureCapacity(bytes.length);
+			System.arraycopy(bytes, 0, data, size, bytes.length);
+			size += bytes.length;
+		}
+
+		public void setInt(int offset, int value)
+		{
+			data[offset] = (byte) (value >>> 24);
+			data[offset + 1] = (byte) (value >>> 16);
+			data[offset + 2] = (byte) (value >>> 8);
+			data[offset + 3] = (byte) value;
+		}
+
+		@NotNull
+		public byte[] toByteArray()
+		{
+			return Arrays.copyOf(data, size);
+		}
+
+		private void ensureCapacity(int length)
+		{
+			if(size + length > data.length)
+				data = Arrays.copyOf(data, Math.max(data.length * 2, size + length));
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.bytecode;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.LangVersion;
+import org.napile.asm.tree.members.ClassNode;
+
+/**
+ * Converts compiled class files between formats. Usage:
+ * <pre>
+ * ClassFileConverter &lt;xml|binary&gt; &lt;input file or directory&gt; &lt;output directory&gt;
+ * </pre>
+ * All class files from input (in any format except target format) are written to output directory in target format
+ *
+ * @author VISTALL
+ * @since 20:30/18.10.26
+ */
+public class ClassFileConverter
+{
+	public static void main(String... args) throws IOException
+	{
+		if(args.length != 3)
+		{
+			System.err.println("Usage: ClassFileConverter <xml|binary> <input file or directory> <output directory>");
+			System.exit(1);
+		}
+
+		int count = convert(ClassFileFormat.parse(args[0]), new File(args[1]), new File(args[2]));
+
+		System.out.println(count + " files converted");
+	}
+
+	/**
+	 * @return count of converted files
+	 */
+	public static int convert(@NotNull ClassFileFormat targetFormat, @NotNull File input, @NotNull File outputDir) throws IOException
+	{
+		if(input.isDirectory())
+		{
+			int count = 0;
+			File[] children = input.listFiles();
+			if(children != null)
+				for(File child : children)
+					count += convert(targetFormat, child, outputDir);
+			return count;
+		}
+
+		String name = input.getName();
+		int dotIndex = name.lastIndexOf('.');
+		ClassFileFormat format = dotIndex == -1 ? null : ClassFileFormat.findByExtension(name.substring(dotIndex + 1));
+		if(format == null || format == targetFormat)
+			return 0;
+
+		ClassNode classNode = format.read(input);
+		targetFormat.write(outputDir, LangVersion.CURRENT, classNode);
+		return 1;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.bytecode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.LangVersion;
+import org.napile.asm.io.xml.in.AsmXmlFileReader;
+import org.napile.asm.io.xml.out.AsmXmlFileWriter;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.ClassNode;
+
+/**
+ * Formats of compiled class files. Xml format is interchange and debugging format, binary is faster for reading
+ *
+ * @author VISTALL
+ * @since 20:10/18.10.26
+ */
+public enum ClassFileFormat
+{
+	XML("nxml")
+	{
+		@NotNull
+		@Override
+		public ClassNode read(@NotNull InputStream stream) throws IOException
+		{
+			return new AsmXmlFileReader().read(stream);
+		}
+
+		@NotNull
+		@Override
+		public File write(@NotNull File outputDir, @NotNull LangVersion langVersion, @NotNull ClassNode classNode)
+		{
+			return new AsmXmlFileWriter(outputDir).write(langVersion, classNode);
+		}
+	},
+	BINARY("nbin")
+	{
+		@NotNull
+		@Override
+		public ClassNode read(@NotNull InputStream stream) throws IOException
+		{
+			return new AsmBinaryReader(loadBytes(stream)).read();
+		}
+
+		@NotNull
+		@Override
+		public ClassNode read(@NotNull File file) throws IOException
+		{
+			return AsmBinaryReader.map(file).read();
+		}
+
+		@NotNull
+		@Override
+		public File write(@NotNull File outputDir, @NotNull LangVersion langVersion, @NotNull ClassNode classNode) throws IOException
+		{
+			File file = getOutputFile(outputDir, classNode.name);
+			file.getParentFile().mkdirs();
+
+			OutputStream stream = new FileOutputStream(file);
+			try
+			{
+				stream.write(new AsmBinaryWriter().write(langVersion, classNode));
+			}
+			finally
+			{
+				stream.close();
+			}
+			return file;
+		}
+	};
+
+	private final String extension;
+
+	ClassFileFormat(@NotNull String extension)
+	{
+		this.extension = extension;
+	}
+
+	@NotNull
+	public String getExtension()
+	{
+		return extension;
+	}
+
+	@NotNull
+	public String getDotExtension()
+	{
+		return "." + extension;
+	}
+
+	@NotNull
+	public abstract ClassNode read(@NotNull InputStream stream) throws IOException;
+
+	@NotNull
+	public ClassNode read(@NotNull File file) throws IOException
+	{
+		InputStream stream = new FileInputStream(file);
+		try
+		{
+			return read(stream);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	@NotNull
+	public abstract File write(@NotNull File outputDir, @NotNull LangVersion langVersion, @NotNull ClassNode classNode) throws IOException;
+
+	@NotNull
+	public File getOutputFile(@NotNull File outputDir, @NotNull FqName fqName)
+	{
+		return new File(outputDir, fqName.getFqName().replace(".", File.separator) + getDotExtension());
+	}
+
+	@Nullable
+	public static ClassFileFormat findByExtension(@Nullable String extension)
+	{
+		for(ClassFileFormat format : values())
+			if(format.extension.equals(extension))
+				return format;
+		return null;
+	}
+
+	/**
+	 * @param name name of format from command line, case is ignored
+	 * @throws IllegalArgumentException if format is unknown
+	 */
+	@NotNull
+	public static ClassFileFormat parse(@NotNull String name)
+	{
+		for(ClassFileFormat format : values())
+			if(format.name().equalsIgnoreCase(name))
+				return format;
+		throw new IllegalArgumentException("Unknown class file format: " + name + ". Expected 'xml' or 'binary'");
+	}
+
+	@NotNull
+	private static byte[] loadBytes(@NotNull InputStream stream) throws IOException
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int length;
+		while((length = stream.read(buffer)) != -1)
+			output.write(buffer, 0, length);
+		return output.toByteArray();
+	}
+}
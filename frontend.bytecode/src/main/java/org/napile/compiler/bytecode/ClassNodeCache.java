@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.bytecode;
+
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.tree.members.ClassNode;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.vfs.VirtualFile;
+
+/**
+ * Application level cache of read class files. Projects are created for each compilation, but library files are same,
+ * so if cache is registered as application service(compiler daemon) - class files are read only once, while they are not changed
+ * <p/>
+ * Class nodes from cache are shared between projects, and must not be modified
+ *
+ * @author VISTALL
+ * @since 21:40/18.10.26
+ */
+public class ClassNodeCache
+{
+	private static class Entry
+	{
+		private final long timeStamp;
+		private final long length;
+		private final SoftReference<ClassNode> classNodeRef;
+
+		private Entry(long timeStamp, long length, @NotNull ClassNode classNode)
+		{
+			this.timeStamp = timeStamp;
+			this.length = length;
+			classNodeRef = new SoftReference<ClassNode>(classNode);
+		}
+	}
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * @return registered cache, or null if class files are not cached between projects
+	 */
+	@Nullable
+	public static ClassNodeCache getInstance()
+	{
+		return ServiceManager.getService(ClassNodeCache.class);
+	}
+
+	@Nullable
+	public ClassNode get(@NotNull VirtualFile file)
+	{
+		Entry entry = entries.get(file.getUrl());
+		if(entry == null)
+			return null;
+
+		ClassNode classNode = entry.classNodeRef.get();
+		if(classNode == null || entry.timeStamp != file.getTimeStamp() || entry.length != file.getLength())
+		{
+			entries.remove(file.getUrl(), entry);
+			return null;
+		}
+		return classNode;
+	}
+
+	public void put(@NotNull VirtualFile file, @NotNull ClassNode classNode)
+	{
+		entries.put(file.getUrl(), new Entry(file.getTimeStamp(), file.getLength(), classNode));
+	}
+
+	public void clear()
+	{
+		entries.clear();
+	}
+}
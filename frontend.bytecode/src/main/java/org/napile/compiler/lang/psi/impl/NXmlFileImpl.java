@@ -17,6 +17,7 @@
 package org.napile.compiler.lang.psi.impl;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.ref.SoftReference;
 import java.util.Collections;
 import java.util.List;
@@ -24,11 +25,12 @@ import java.util.List;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.napile.asm.io.xml.in.AsmXmlFileReader;
 import org.napile.asm.resolve.name.FqName;
 import org.napile.asm.tree.members.ClassNode;
 import org.napile.compiler.NXmlFileType;
 import org.napile.compiler.NapileFileType;
+import org.napile.compiler.bytecode.ClassFileFormat;
+import org.napile.compiler.bytecode.ClassNodeCache;
 import org.napile.compiler.lang.NapileLanguage;
 import org.napile.compiler.lang.psi.NXmlElementBase;
 import org.napile.compiler.lang.psi.NapileClass;
@@ -39,12 +41,15 @@ import org.napile.compiler.lang.psi.NapileVisitor;
 import org.napile.compiler.lang.psi.NapileVisitorVoid;
 import org.napile.compiler.lang.psi.impl.file.NXmlFileViewProvider;
 import org.napile.compiler.lang.psi.stubs.NapilePsiFileStub;
+import org.napile.compiler.lang.psi.stubs.NapileStubCache;
 import org.napile.compiler.util.NodeToStringBuilder;
+import org.napile.compiler.util.NodeToStubBuilder;
 import com.intellij.lang.ASTNode;
 import com.intellij.lang.FileASTNode;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.vfs.VfsUtilCore;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.FileViewProvider;
 import com.intellij.psi.PsiDirectory;
@@ -71,6 +76,10 @@ import com.intellij.util.IncorrectOperationException;
  * @since 20:39/09.10.12
  * <p/>
  * Stub & Mirror system was 'copied' from IDEA CE
+ * <p/>
+ * Stubs(classes, methods, variables) are built from class node, without text. There is no loader of descriptors from class node -
+ * descriptors of library are resolved over PSI as for source files, so text mirror is created on first request of PSI, which is not
+ * present in stubs(types, annotations, default values)
  */
 public class NXmlFileImpl extends NXmlElementBase implements NapileFile, StubBasedPsiElement<NapilePsiFileStub>
 {
@@ -78,11 +87,14 @@ public class NXmlFileImpl extends NXmlElementBase implements NapileFile, StubBas
 
 	private final FileViewProvider fileViewProvider;
 
-	private static final Object MIRROR_LOCK = new Object();
-
 	private SoftReference<StubTree> stubTreeSoftRef;
 	private final Object stubLock = new Object();
 
+	private SoftReference<ClassNode> classNodeSoftRef;
+	private final Object classNodeLock = new Object();
+
+	private final Object mirrorLock = new Object();
+
 	private NapileFile mirrorElement;
 	private String text;
 
@@ -96,19 +108,16 @@ public class NXmlFileImpl extends NXmlElementBase implements NapileFile, StubBas
 	@Override
 	public NapileFile getMirror()
 	{
-		synchronized(MIRROR_LOCK)
+		synchronized(mirrorLock)
 		{
 			if(mirrorElement == null)
 			{
-				AsmXmlFileReader reader = new AsmXmlFileReader();
-
-				try
+				ClassNode classNode = getClassNode();
+				if(classNode != null)
 				{
-					ClassNode classNode = reader.read(getVirtualFile().getInputStream());
-
 					text = NodeToStringBuilder.convertClass(classNode);
 
-					PsiFile mirror = PsiFileFactory.getInstance(getProject()).createFileFromText(getVirtualFile().getName().replace(NXmlFileType.INSTANCE.getDefaultExtension(), NapileFileType.INSTANCE.getDefaultExtension()), NapileLanguage.INSTANCE, text, false, false);
+					PsiFile mirror = PsiFileFactory.getInstance(getProject()).createFileFromText(getVirtualFile().getNameWithoutExtension() + "." + NapileFileType.INSTANCE.getDefaultExtension(), NapileLanguage.INSTANCE, text, false, false);
 
 					final ASTNode mirrorTreeElement = SourceTreeToPsiMap.psiElementToTree(mirror);
 
@@ -116,14 +125,35 @@ public class NXmlFileImpl extends NXmlElementBase implements NapileFile, StubBas
 
 					mirrorElement = (NapileFile) mirror;
 				}
+			}
+		}
+
+		return mirrorElement;
+	}
+
+	/**
+	 * Class node is read once, and shared by stub building and mirror creation
+	 */
+	@Nullable
+	public ClassNode getClassNode()
+	{
+		synchronized(classNodeLock)
+		{
+			ClassNode classNode = classNodeSoftRef != null ? classNodeSoftRef.get() : null;
+			if(classNode == null)
+			{
+				try
+				{
+					classNode = readClassNode(getVirtualFile());
+					classNodeSoftRef = new SoftReference<ClassNode>(classNode);
+				}
 				catch(IOException e)
 				{
-					e.printStackTrace();
+					LOGGER.warn("Can't read class file: " + getVirtualFile().getPresentableUrl(), e);
 				}
 			}
+			return classNode;
 		}
-
-		return mirrorElement;
 	}
 
 	@Override
@@ -336,6 +366,14 @@ public class NXmlFileImpl extends NXmlElementBase implements NapileFile, StubBas
 
 		StubTree stubHolder = (StubTree) StubTreeLoader.getInstance().readOrBuild(getProject(), getVirtualFile(), this);
 		if(stubHolder == null)
+		{
+			stubHolder = buildStubTree();
+
+			NapileStubCache stubCache = NapileStubCache.getInstance();
+			if(stubHolder != null && stubCache != null)
+				stubCache.put(getVirtualFile(), stubHolder);
+		}
+		if(stubHolder == null)
 		{
 			// Must be corrupted classfile
 			LOGGER.info("Class file is corrupted: " + getVirtualFile().getPresentableUrl());
@@ -359,9 +397,62 @@ public class NXmlFileImpl extends NXmlElementBase implements NapileFile, StubBas
 		return stubHolder;
 	}
 
+	@NotNull
+	private static ClassNode readClassNode(@NotNull VirtualFile file) throws IOException
+	{
+		ClassNodeCache cache = ClassNodeCache.getInstance();
+		if(cache == null)
+			return readClassNodeFromFile(file);
+
+		ClassNode classNode = cache.get(file);
+		if(classNode == null)
+		{
+			classNode = readClassNodeFromFile(file);
+			cache.put(file, classNode);
+		}
+		return classNode;
+	}
+
+	@NotNull
+	private static ClassNode readClassNodeFromFile(@NotNull VirtualFile file) throws IOException
+	{
+		ClassFileFormat format = ClassFileFormat.findByExtension(file.getExtension());
+		if(format == null)
+			format = ClassFileFormat.XML;
+
+		// local files are memory mapped
+		if(file.isInLocalFileSystem())
+			return format.read(VfsUtilCore.virtualToIoFile(file));
+
+		InputStream stream = file.getInputStream();
+		try
+		{
+			return format.read(stream);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	/**
+	 * Build stubs directly from class node - without decompiling to text and parsing of mirror
+	 */
+	@Nullable
+	private StubTree buildStubTree()
+	{
+		ClassNode classNode = getClassNode();
+		if(classNode == null)
+			return null;
+
+		NapilePsiFileStub fileStub = new NapilePsiFileStub(this, classNode.name.parent(), true);
+		classNode.accept(new NodeToStubBuilder(), fileStub);
+		return new StubTree(fileStub);
+	}
+
 	private void resetMirror()
 	{
-		synchronized(MIRROR_LOCK)
+		synchronized(mirrorLock)
 		{
 			mirrorElement = null;
 		}
@@ -409,7 +500,12 @@ public class NXmlFileImpl extends NXmlElementBase implements NapileFile, StubBas
 
 		ApplicationManager.getApplication().assertWriteAccessAllowed();
 
-		synchronized(MIRROR_LOCK)
+		synchronized(classNodeLock)
+		{
+			classNodeSoftRef = null;
+		}
+
+		synchronized(mirrorLock)
 		{
 			mirrorElement = null;
 		}
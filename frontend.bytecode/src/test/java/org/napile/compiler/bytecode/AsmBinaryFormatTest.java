@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.bytecode;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.napile.asm.LangVersion;
+import org.napile.asm.Modifier;
+import org.napile.asm.io.xml.out.AsmXmlTextWriter;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.resolve.name.Name;
+import org.napile.asm.tree.members.*;
+import org.napile.asm.tree.members.bytecode.InstructionInCodePosition;
+import org.napile.asm.tree.members.bytecode.MethodRef;
+import org.napile.asm.tree.members.bytecode.VariableRef;
+import org.napile.asm.tree.members.bytecode.impl.*;
+import org.napile.asm.tree.members.bytecode.tryCatch.CatchBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryCatchBlockNode;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.asm.tree.members.types.constructors.MethodTypeNode;
+import org.napile.asm.tree.members.types.constructors.ThisTypeNode;
+import org.napile.asm.tree.members.types.constructors.TypeParameterValueTypeNode;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 20:50/18.10.26
+ */
+public class AsmBinaryFormatTest extends TestCase
+{
+	private static final TypeNode INT = new TypeNode(false, new ClassTypeNode(new FqName("napile.lang.Int")));
+	private static final TypeNode STRING = new TypeNode(true, new ClassTypeNode(new FqName("napile.lang.String")));
+	private static final TypeNode EXCEPTION = new TypeNode(false, new ClassTypeNode(new FqName("napile.lang.Exception")));
+
+	public void testRoundTrip() throws Exception
+	{
+		ClassNode classNode = createClass();
+
+		ClassNode result = new AsmBinaryReader(new AsmBinaryWriter().write(LangVersion.CURRENT, classNode)).read();
+
+		assertEquals(toXml(classNode), toXml(result));
+	}
+
+	public void testFindMembers() throws Exception
+	{
+		AsmBinaryReader reader = new AsmBinaryReader(new AsmBinaryWriter().write(LangVersion.CURRENT, createClass()));
+
+		assertEquals(new FqName("test.A"), reader.getClassName());
+
+		List<AbstractMemberNode<?>> members = reader.findMembers(Name.identifier("foo"));
+		assertEquals(1, members.size());
+		assertTrue(members.get(0) instanceof MethodNode);
+		assertEquals(Name.identifier("foo"), ((MethodNode) members.get(0)).name);
+
+		members = reader.findMembers(Name.identifier("Inner"));
+		assertEquals(1, members.size());
+		assertEquals(new FqName("test.A.Inner"), ((ClassNode) members.get(0)).name);
+
+		assertTrue(reader.findMembers(Name.identifier("unknown")).isEmpty());
+	}
+
+	private static ClassNode createClass()
+	{
+		ClassNode classNode = new ClassNode(new Modifier[]{Modifier.ABSTRACT}, new FqName("test.A"));
+		classNode.supers.add(new TypeNode(false, new ClassTypeNode(new FqName("napile.lang.Any"))));
+
+		TypeParameterNode typeParameterNode = new TypeParameterNode(Name.identifier("E"));
+		typeParameterNode.supers.add(INT);
+		classNode.typeParameters.add(typeParameterNode);
+
+		classNode.annotations.add(new AnnotationNode(new TypeNode(false, new ClassTypeNode(new FqName("napile.annotation.Extension"))), null, new String[]{"a", "b"}));
+
+		VariableNode variableNode = new VariableNode(new Modifier[]{Modifier.MUTABLE}, Name.identifier("count"), INT);
+		classNode.addMember(variableNode);
+
+		MethodTypeNode methodTypeNode = new MethodTypeNode();
+		methodTypeNode.returnType = new TypeNode(false, new ThisTypeNode());
+		methodTypeNode.parameters.add(new MethodParameterNode(Modifier.EMPTY, Name.identifier("p"), new TypeNode(false, new TypeParameterValueTypeNode(Name.identifier("E")))));
+
+		MethodNode methodNode = new MethodNode(Modifier.EMPTY, Name.identifier("foo"), STRING);
+		methodNode.parameters.add(new MethodParameterNode(Modifier.EMPTY, Name.identifier("a"), INT, "1"));
+		methodNode.parameters.add(new MethodParameterNode(Modifier.EMPTY, Name.identifier("b"), new TypeNode(false, methodTypeNode)));
+
+		CodeInfo codeInfo = new CodeInfo();
+		codeInfo.maxLocals = 3;
+		codeInfo.instructions.add(new LocalGetInstruction(1));
+		codeInfo.instructions.add(new NewLongInstruction(Long.MAX_VALUE));
+		codeInfo.instructions.add(new NewDoubleInstruction(0.5));
+		codeInfo.instructions.add(new NewCharInstruction('\u044F'));
+		codeInfo.instructions.add(new NewStringInstruction("text \u044F\n"));
+		codeInfo.instructions.add(new InvokeVirtualInstruction(new MethodRef(new FqName("napile.lang.Int.plus"), Collections.singletonList(new MethodParameterNode(Modifier.EMPTY, Name.identifier("value"), INT)), Collections.<TypeNode>emptyList(), INT), true));
+		codeInfo.instructions.add(new PutToStaticVariableInstruction(new VariableRef(new FqName("test.A.count"), INT)));
+		codeInfo.instructions.add(new JumpIfInstruction(9));
+		codeInfo.instructions.add(new IsInstruction(STRING));
+		codeInfo.instructions.add(new ReturnInstruction(1));
+
+		NewIntInstruction positioned = new NewIntInstruction(-1);
+		positioned.position = new InstructionInCodePosition("A.ns", 10, 4);
+		codeInfo.instructions.add(positioned);
+		codeInfo.instructions.add(new ThrowInstruction());
+
+		codeInfo.tryCatchBlockNodes.add(new TryCatchBlockNode(new TryBlock(0, 5), Collections.singletonList(new CatchBlock(6, 9, 2, EXCEPTION))));
+		methodNode.code = codeInfo;
+		classNode.addMember(methodNode);
+
+		classNode.addMember(new MacroNode(Modifier.EMPTY, Name.identifier("bar"), INT));
+
+		classNode.addMember(new ClassNode(Modifier.EMPTY, new FqName("test.A.Inner")));
+		return classNode;
+	}
+
+	private static String toXml(ClassNode classNode)
+	{
+		return new AsmXmlTextWriter().write(LangVersion.CURRENT, classNode);
+	}
+}
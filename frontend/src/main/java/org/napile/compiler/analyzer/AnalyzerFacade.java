@@ -25,6 +25,9 @@ import org.napile.compiler.lang.resolve.BindingTraceImpl;
 import org.napile.compiler.lang.resolve.CachedBodiesResolveContext;
 import org.napile.compiler.lang.resolve.ObservableBindingTrace;
 import org.napile.compiler.lang.resolve.TopDownAnalysisParameters;
+import org.napile.compiler.lang.types.checker.TypeCheckerCache;
+import org.napile.compiler.lang.types.impl.NapileTypeInterner;
+import org.napile.compiler.util.CompilerStatistics;
 import com.google.common.base.Predicate;
 import com.intellij.openapi.project.Project;
 
@@ -39,12 +42,24 @@ public class AnalyzerFacade
 
 	@NotNull
 	public static AnalyzeExhaust analyzeFiles(@NotNull Project project, @NotNull AnalyzeContext analyzeContext, @NotNull Predicate<NapileFile> predicate)
+	{
+		return analyzeFiles(project, analyzeContext, predicate, 1);
+	}
+
+	/**
+	 * @param bodyResolveThreads if more than one - bodies of declarations are resolved in parallel
+	 */
+	@NotNull
+	public static AnalyzeExhaust analyzeFiles(@NotNull Project project, @NotNull AnalyzeContext analyzeContext, @NotNull Predicate<NapileFile> predicate, int bodyResolveThreads)
 	{
 		BindingTraceImpl bindingTraceImpl = new BindingTraceImpl();
 
 		final ModuleDescriptor owner = new ModuleDescriptor(Name.special("<module>"));
 
-		TopDownAnalysisParameters topDownAnalysisParameters = new TopDownAnalysisParameters(predicate, false);
+		TopDownAnalysisParameters topDownAnalysisParameters = new TopDownAnalysisParameters(predicate, false, bodyResolveThreads);
+
+		NapileTypeInterner typeInterner = NapileTypeInterner.startSession();
+		TypeCheckerCache typeCheckerCache = TypeCheckerCache.startSession();
 
 		InjectorForTopDownAnalyzerBasic injector = new InjectorForTopDownAnalyzerBasic(project, topDownAnalysisParameters, new ObservableBindingTrace(bindingTraceImpl), owner);
 		try
@@ -55,6 +70,16 @@ public class AnalyzerFacade
 		}
 		finally
 		{
+			CompilerStatistics.setCounter("typeChecker.cache.hits", typeCheckerCache.getHits());
+			CompilerStatistics.setCounter("typeChecker.cache.misses", typeCheckerCache.getMisses());
+			CompilerStatistics.setCounter("typeChecker.cache.bypasses", typeCheckerCache.getBypasses());
+			CompilerStatistics.setCounter("typeInterner.requests", typeInterner.getRequests());
+			CompilerStatistics.setCounter("typeInterner.hits", typeInterner.getHits());
+			CompilerStatistics.setCounter("typeInterner.size", typeInterner.getSize());
+
+			typeInterner.endSession();
+			typeCheckerCache.endSession();
+
 			injector.destroy();
 		}
 	}}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.analyzer;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.AbstractMemberNode;
+import org.napile.asm.tree.members.AnnotationNode;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.MacroNode;
+import org.napile.asm.tree.members.MethodNode;
+import org.napile.asm.tree.members.MethodParameterNode;
+import org.napile.asm.tree.members.Node;
+import org.napile.asm.tree.members.TypeParameterNode;
+import org.napile.asm.tree.members.VariableNode;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.asm.tree.members.types.constructors.MethodTypeNode;
+import org.napile.asm.tree.members.types.constructors.MultiTypeNode;
+import org.napile.compiler.util.DummyNodeVisitor;
+
+/**
+ * Collect names of classes, which are referenced from declarations of compiled class. Code of methods is not visited -
+ * it's not needed for analyzing, same as text mirror of class contains only declarations
+ *
+ * @author VISTALL
+ * @since 12:10/18.10.26
+ */
+public class ClassNodeReferenceCollector extends DummyNodeVisitor<Set<FqName>>
+{
+	private static final ClassNodeReferenceCollector INSTANCE = new ClassNodeReferenceCollector();
+
+	@NotNull
+	public static Set<FqName> collect(@NotNull ClassNode classNode)
+	{
+		Set<FqName> result = new LinkedHashSet<FqName>();
+		classNode.accept(INSTANCE, result);
+		return result;
+	}
+
+	@Override
+	public Void visitClassNode(ClassNode classNode, Set<FqName> a2)
+	{
+		acceptMember(classNode, a2);
+		acceptAll(classNode.supers, a2);
+		acceptAll(classNode.getMembers(), a2);
+		return null;
+	}
+
+	@Override
+	public Void visitMethodNode(MethodNode methodNode, Set<FqName> a2)
+	{
+		acceptMember(methodNode, a2);
+		methodNode.returnType.accept(this, a2);
+		acceptAll(methodNode.parameters, a2);
+		return null;
+	}
+
+	@Override
+	public Void visitMacroNode(MacroNode methodNode, Set<FqName> a2)
+	{
+		return visitMethodNode(methodNode, a2);
+	}
+
+	@Override
+	public Void visitVariableNode(VariableNode variableNode, Set<FqName> a2)
+	{
+		acceptMember(variableNode, a2);
+		variableNode.returnType.accept(this, a2);
+		return null;
+	}
+
+	@Override
+	public Void visitMethodParameterNode(MethodParameterNode methodParameterNode, Set<FqName> a2)
+	{
+		acceptMember(methodParameterNode, a2);
+		methodParameterNode.returnType.accept(this, a2);
+		return null;
+	}
+
+	@Override
+	public Void visitTypeParameter(TypeParameterNode typeParameterNode, Set<FqName> a2)
+	{
+		acceptAll(typeParameterNode.annotations, a2);
+		acceptAll(typeParameterNode.supers, a2);
+		for(List<MethodParameterNode> constructor : typeParameterNode.constructors)
+			acceptAll(constructor, a2);
+		return null;
+	}
+
+	@Override
+	public Void visitAnnotationNode(AnnotationNode annotationNode, Set<FqName> a2)
+	{
+		annotationNode.type.accept(this, a2);
+		return null;
+	}
+
+	@Override
+	public Void visitTypeNode(TypeNode typeNode, Set<FqName> a2)
+	{
+		acceptAll(typeNode.annotations, a2);
+		typeNode.typeConstructorNode.accept(this, a2);
+		acceptAll(typeNode.arguments, a2);
+		return null;
+	}
+
+	@Override
+	public Void visitClassTypeNode(ClassTypeNode classTypeNode, Set<FqName> a2)
+	{
+		a2.add(classTypeNode.className);
+		return null;
+	}
+
+	@Override
+	public Void visitMethodTypeNode(MethodTypeNode methodTypeNode, Set<FqName> a2)
+	{
+		methodTypeNode.returnType.accept(this, a2);
+		acceptAll(methodTypeNode.parameters, a2);
+		return null;
+	}
+
+	@Override
+	public Void visitMultiTypeNode(MultiTypeNode multiTypeNode, Set<FqName> a2)
+	{
+		acceptAll(multiTypeNode.variables, a2);
+		return null;
+	}
+
+	private void acceptMember(@NotNull AbstractMemberNode<?> memberNode, @NotNull Set<FqName> a2)
+	{
+		acceptAll(memberNode.annotations, a2);
+		acceptAll(memberNode.typeParameters, a2);
+	}
+
+	private void acceptAll(@NotNull Collection<? extends Node> nodes, @NotNull Set<FqName> a2)
+	{
+		for(Node node : nodes)
+			node.accept(this, a2);
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.analyzer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.lib.NapileAnnotationPackage;
+import org.napile.asm.lib.NapileAsmPackage;
+import org.napile.asm.lib.NapileCollectionPackage;
+import org.napile.asm.lib.NapileConditionPackage;
+import org.napile.asm.lib.NapileLangPackage;
+import org.napile.asm.lib.NapileReflectPackage;
+import org.napile.asm.resolve.ImportPath;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.resolve.name.Name;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.compiler.lang.NapileLanguage;
+import org.napile.compiler.lang.psi.NapileExpression;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.psi.NapileImportDirective;
+import org.napile.compiler.lang.psi.NapileSimpleNameExpression;
+import org.napile.compiler.lang.psi.NapileUserType;
+import org.napile.compiler.lang.psi.NapileVisitorVoid;
+import org.napile.compiler.lang.psi.impl.NXmlFileImpl;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+
+/**
+ * Collect library files, which are needed for analyzing of sources. Starting from sources, every name which can be
+ * a class (simple names in imported packages, qualified names) is looked up in {@link LibraryIndex}, and found files
+ * are processed by references from theirs class nodes. Library classes which are not referenced are never parsed
+ *
+ * @author VISTALL
+ * @since 18:45/18.10.26
+ */
+public class LibraryFileCollector
+{
+	// packages which classes are used by compiler itself - without references from code
+	private static final FqName[] REQUIRED_PACKAGES = new FqName[]
+	{
+		NapileLangPackage.PACKAGE,
+		NapileAnnotationPackage.PACKAGE,
+		NapileReflectPackage.PACKAGE
+	};
+
+	private static final FqName[] REQUIRED_CLASSES = new FqName[]
+	{
+		NapileCollectionPackage.ITERATOR,
+		NapileConditionPackage.COMPARE_RESULT,
+		NapileAsmPackage.ASM_CLASS,
+		NapileAsmPackage.ASM_TYPE
+	};
+
+	@NotNull
+	public static List<NapileFile> collect(@NotNull PsiManager manager, @NotNull Collection<VirtualFile> roots, @NotNull Collection<? extends NapileFile> sources)
+	{
+		LibraryIndex index = new LibraryIndex(roots);
+		if(index.isEmpty())
+			return new ArrayList<NapileFile>(0);
+
+		LibraryFileCollector collector = new LibraryFileCollector(manager, index);
+		for(FqName fqName : REQUIRED_PACKAGES)
+			for(VirtualFile file : index.getPackageClasses(fqName))
+				collector.addFile(file);
+		for(FqName fqName : REQUIRED_CLASSES)
+			collector.require(fqName);
+
+		for(NapileFile file : sources)
+			collector.process(file);
+
+		while(!collector.queue.isEmpty())
+			collector.process(collector.queue.removeFirst());
+
+		return collector.result;
+	}
+
+	private final PsiManager manager;
+	private final LibraryIndex index;
+
+	private final Set<VirtualFile> visited = new LinkedHashSet<VirtualFile>();
+	private final LinkedList<NapileFile> queue = new LinkedList<NapileFile>();
+	private final List<NapileFile> result = new ArrayList<NapileFile>();
+
+	private LibraryFileCollector(@NotNull PsiManager manager, @NotNull LibraryIndex index)
+	{
+		this.manager = manager;
+		this.index = index;
+	}
+
+	private void process(@NotNull NapileFile file)
+	{
+		// compiled classes are read from class node, visiting of psi will build text mirror of class
+		if(file instanceof NXmlFileImpl)
+		{
+			ClassNode classNode = ((NXmlFileImpl) file).getClassNode();
+			if(classNode != null)
+				for(FqName fqName : ClassNodeReferenceCollector.collect(classNode))
+					requireWithParents(fqName);
+			return;
+		}
+
+		final List<FqName> starImports = new ArrayList<FqName>();
+		for(ImportPath importPath : NapileLanguage.DEFAULT_IMPORTS)
+			starImports.add(importPath.fqnPart());
+		starImports.add(file.getPackageFqName());
+
+		for(NapileImportDirective importDirective : file.getImportDirectives())
+		{
+			FqName fqName = toFqName(importDirective.getImportedReference());
+			if(fqName == null)
+				continue;
+
+			if(importDirective.isAllUnder())
+				starImports.add(fqName);
+			else
+				requireWithParents(fqName);
+		}
+
+		file.accept(new NapileVisitorVoid()
+		{
+			@Override
+			public void visitElement(PsiElement element)
+			{
+				element.acceptChildren(this);
+			}
+
+			@Override
+			public void visitUserType(NapileUserType type)
+			{
+				if(type.getQualifier() == null)
+					requireInPackages(starImports, type.getReferencedName());
+				else
+					requireWithParents(toFqName(type));
+
+				super.visitUserType(type);
+			}
+
+			@Override
+			public void visitSimpleNameExpression(NapileSimpleNameExpression expression)
+			{
+				if(expression.getReceiverExpression() == null)
+					requireInPackages(starImports, expression.getReferencedName());
+				else
+				{
+					FqName receiverFqName = toFqName(expression.getReceiverExpression());
+					String name = expression.getReferencedName();
+					if(receiverFqName != null && name != null)
+						requireWithParents(new FqName(receiverFqName.getFqName() + "." + name));
+				}
+
+				super.visitSimpleNameExpression(expression);
+			}
+		});
+	}
+
+	private void requireInPackages(@NotNull List<FqName> packages, @Nullable String name)
+	{
+		if(name == null || !isQualifiedName(name) || name.indexOf('.') >= 0)
+			return;
+
+		for(FqName packageFqName : packages)
+			require(packageFqName.child(Name.identifierNoValidate(name)));
+	}
+
+	private void requireWithParents(@Nullable FqName fqName)
+	{
+		// inner classes are stored in file of top level class, and last part can be member of class
+		for(FqName current = fqName; current != null && !current.isRoot(); current = current.parent())
+			require(current);
+	}
+
+	private void require(@NotNull FqName fqName)
+	{
+		VirtualFile file = index.findClass(fqName);
+		if(file != null)
+			addFile(file);
+	}
+
+	private void addFile(@NotNull VirtualFile virtualFile)
+	{
+		if(!visited.add(virtualFile))
+			return;
+
+		PsiFile file = manager.findFile(virtualFile);
+		if(file instanceof NapileFile)
+		{
+			result.add((NapileFile) file);
+			queue.add((NapileFile) file);
+		}
+	}
+
+	@Nullable
+	private static FqName toFqName(@Nullable NapileExpression expression)
+	{
+		if(expression == null)
+			return null;
+
+		String text = expression.getText().replaceAll("\\s", "");
+		return isQualifiedName(text) ? new FqName(text) : null;
+	}
+
+	@Nullable
+	private static FqName toFqName(@NotNull NapileUserType type)
+	{
+		StringBuilder builder = new StringBuilder();
+		for(NapileUserType current = type; current != null; current = current.getQualifier())
+		{
+			String name = current.getReferencedName();
+			if(name == null)
+				return null;
+
+			if(builder.length() > 0)
+				builder.insert(0, '.');
+			builder.insert(0, name);
+		}
+		return isQualifiedName(builder.toString()) ? new FqName(builder.toString()) : null;
+	}
+
+	private static boolean isQualifiedName(@NotNull String text)
+	{
+		boolean start = true;
+		for(int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+			if(c == '.')
+			{
+				if(start)
+					return false;
+				start = true;
+			}
+			else if(start ? Character.isJavaIdentifierStart(c) : Character.isJavaIdentifierPart(c))
+				start = false;
+			else
+				return false;
+		}
+		return !start;
+	}
+}
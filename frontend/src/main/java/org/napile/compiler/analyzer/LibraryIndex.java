@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.analyzer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.resolve.name.Name;
+import org.napile.compiler.bytecode.ClassFileFormat;
+import com.intellij.openapi.vfs.VirtualFile;
+
+/**
+ * Finds compiled classes in library roots by theirs qualified names. Roots are not scanned -
+ * every lookup checks only the path of requested class or package, and result is cached
+ *
+ * @author VISTALL
+ * @since 18:30/18.10.26
+ */
+public class LibraryIndex
+{
+	// binary files are preferred - they are read faster
+	private static final ClassFileFormat[] FORMATS = new ClassFileFormat[]{ClassFileFormat.BINARY, ClassFileFormat.XML};
+
+	private final List<VirtualFile> roots;
+
+	private final Map<FqName, VirtualFile> classes = new HashMap<FqName, VirtualFile>();
+	private final Map<FqName, List<VirtualFile>> packages = new HashMap<FqName, List<VirtualFile>>();
+
+	public LibraryIndex(@NotNull Collection<VirtualFile> roots)
+	{
+		this.roots = new ArrayList<VirtualFile>(roots);
+	}
+
+	public boolean isEmpty()
+	{
+		return roots.isEmpty();
+	}
+
+	@Nullable
+	public VirtualFile findClass(@NotNull FqName fqName)
+	{
+		if(fqName.isRoot())
+			return null;
+
+		if(classes.containsKey(fqName))
+			return classes.get(fqName);
+
+		VirtualFile result = null;
+		String path = toPath(fqName);
+		loop:
+		for(VirtualFile root : roots)
+		{
+			for(ClassFileFormat format : FORMATS)
+			{
+				VirtualFile file = root.findFileByRelativePath(path + format.getDotExtension());
+				if(file != null && !file.isDirectory())
+				{
+					result = file;
+					break loop;
+				}
+			}
+		}
+
+		classes.put(fqName, result);
+		return result;
+	}
+
+	@NotNull
+	public List<VirtualFile> getPackageClasses(@NotNull FqName fqName)
+	{
+		List<VirtualFile> result = packages.get(fqName);
+		if(result != null)
+			return result;
+
+		result = new ArrayList<VirtualFile>();
+		String path = toPath(fqName);
+		for(VirtualFile root : roots)
+		{
+			VirtualFile dir = fqName.isRoot() ? root : root.findFileByRelativePath(path);
+			if(dir == null || !dir.isDirectory())
+				continue;
+
+			for(VirtualFile child : dir.getChildren())
+			{
+				if(child.isDirectory() || ClassFileFormat.findByExtension(child.getExtension()) == null)
+					continue;
+
+				FqName classFqName = fqName.child(Name.identifierNoValidate(child.getNameWithoutExtension()));
+				if(findClass(classFqName) == child)
+					result.add(child);
+			}
+		}
+
+		packages.put(fqName, result);
+		return result;
+	}
+
+	@NotNull
+	private static String toPath(@NotNull FqName fqName)
+	{
+		return fqName.getFqName().replace('.', '/');
+	}
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.lang.cfg;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.cfg.pseudocode.CompiledPseudocode;
+import org.napile.compiler.lang.cfg.pseudocode.Instruction;
+import org.napile.compiler.lang.cfg.pseudocode.LocalDeclarationInstruction;
+import org.napile.compiler.lang.cfg.pseudocode.Pseudocode;
+import org.napile.compiler.lang.descriptors.VariableDescriptor;
+
+/**
+ * Data flow analysis over pseudocode, where state of each variable is packed to fixed count of bits.
+ * Variables are numbered densely, so state of instruction is one slice of long array. States of incoming edges are merged
+ * by bitwise 'and'(must analysis) or 'or'(may analysis), and instructions are processed from worklist in reverse post order of
+ * {@link CompiledPseudocode}(post order for reversed analysis) - only instructions with changed incoming state are visited again.
+ * Nodes and edges are taken from compiled form too, node of instruction is offset of its pseudocode plus index in compiled form.
+ * <p/>
+ * If lookInside is set, bodies of local declarations are analyzed as part of graph: they are placed between incoming edges of
+ * local declaration instruction and instruction itself
+ *
+ * @author VISTALL
+ * @since 10:20/19.10.26
+ */
+public abstract class BitVectorDataFlow<S>
+{
+	private static final int[] EMPTY = new int[0];
+
+	private final boolean directOrder;
+	private final boolean lookInside;
+	private final boolean mustAnalysis;
+
+	private final TObjectIntHashMap<VariableDescriptor> variableIndexes = new TObjectIntHashMap<VariableDescriptor>();
+	private final int bitsPerVariable;
+	private final int words;
+
+	private final Pseudocode pseudocode;
+	private final Map<Pseudocode, Integer> graphOffsets = new HashMap<Pseudocode, Integer>();
+	private final Instruction[] nodes;
+	private int[][] incoming;
+	private boolean[] alias;
+	private int startNode = -1;
+
+	private long[] in;
+	private long[] out;
+
+	protected BitVectorDataFlow(@NotNull Pseudocode pseudocode, boolean directOrder, boolean lookInside, boolean mustAnalysis, @NotNull Collection<VariableDescriptor> variables, int bitsPerVariable)
+	{
+		this.pseudocode = pseudocode;
+		this.directOrder = directOrder;
+		this.lookInside = lookInside;
+		this.mustAnalysis = mustAnalysis;
+		this.bitsPerVariable = bitsPerVariable;
+
+		for(VariableDescriptor variable : variables)
+			if(!variableIndexes.containsKey(variable))
+				variableIndexes.put(variable, variableIndexes.size());
+		words = Math.max(1, (variableIndexes.size() * bitsPerVariable + 63) >>> 6);
+
+		List<CompiledPseudocode> graphs = new ArrayList<CompiledPseudocode>();
+		int nodeCount = addGraph(pseudocode, graphs, 0);
+		nodes = new Instruction[nodeCount];
+		for(CompiledPseudocode graph : graphs)
+		{
+			int offset = graphOffsets.get(graph.getPseudocode());
+			for(int i = 0; i < graph.getInstructionCount(); i++)
+				nodes[offset + i] = graph.getInstruction(i);
+		}
+
+		incoming = new int[nodeCount][];
+		alias = new boolean[nodeCount];
+		buildEdges(pseudocode.getCompiledPseudocode(), false, EMPTY);
+	}
+
+	/**
+	 * Sets state for start instruction of analysis(enter for direct order, sink for reversed)
+	 */
+	protected abstract void initStart(@NotNull long[] data, int offset);
+
+	/**
+	 * Changes state after instruction, data initially contains merged state of incoming edges
+	 */
+	protected abstract void transfer(@NotNull Instruction instruction, @NotNull long[] data, int offset);
+
+	@Nullable
+	protected abstract S getState(@NotNull long[] data, int offset, int variableIndex);
+
+	@NotNull
+	public BitVectorDataFlow<S> analyze()
+	{
+		int nodeCount = nodes.length;
+		in = new long[nodeCount * words];
+		out = new long[nodeCount * words];
+
+		// initial state is identity of merge, so not computed edges do not change result
+		if(mustAnalysis)
+		{
+			Arrays.fill(in, -1L);
+			Arrays.fill(out, -1L);
+		}
+
+		if(startNode >= 0)
+		{
+			int offset = startNode * words;
+			Arrays.fill(in, offset, offset + words, 0L);
+			initStart(in, offset);
+			System.arraycopy(in, offset, out, offset, words);
+		}
+
+		int[][] outgoing = buildOutgoing();
+		int[] order = buildOrder();
+		int[] positions = new int[nodeCount];
+		for(int i = 0; i < nodeCount; i++)
+			positions[order[i]] = i;
+
+		BitSet worklist = new BitSet(nodeCount);
+		worklist.set(0, nodeCount);
+		if(startNode >= 0)
+			worklist.clear(positions[startNode]);
+
+		long[] newIn = new long[words];
+		long[] newOut = new long[words];
+		int position;
+		while((position = worklist.nextSetBit(0)) >= 0)
+		{
+			worklist.clear(position);
+
+			int node = order[position];
+			int offset = node * words;
+			if(alias[node])
+			{
+				int source = incoming[node][0] * words;
+				System.arraycopy(in, source, newIn, 0, words);
+				System.arraycopy(out, source, newOut, 0, words);
+			}
+			else
+			{
+				Arrays.fill(newIn, mustAnalysis ? -1L : 0L);
+				for(int previous : incoming[node])
+				{
+					int previousOffset = previous * words;
+					for(int i = 0; i < words; i++)
+						newIn[i] = mustAnalysis ? newIn[i] & out[previousOffset + i] : newIn[i] | out[previousOffset + i];
+				}
+				System.arraycopy(newIn, 0, newOut, 0, words);
+				transfer(nodes[node], newOut, 0);
+			}
+
+			System.arraycopy(newIn, 0, in, offset, words);
+			if(!equals(newOut, out, offset))
+			{
+				System.arraycopy(newOut, 0, out, offset, words);
+				for(int next : outgoing[node])
+					worklist.set(positions[next]);
+			}
+		}
+		return this;
+	}
+
+	@Nullable
+	public S getIn(@NotNull Instruction instruction, @NotNull VariableDescriptor variable)
+	{
+		return getState(in, instruction, variable);
+	}
+
+	@Nullable
+	public S getOut(@NotNull Instruction instruction, @NotNull VariableDescriptor variable)
+	{
+		return getState(out, instruction, variable);
+	}
+
+	/**
+	 * @return index of variable, or -1 if variable is not analyzed
+	 */
+	protected final int getVariableIndex(@Nullable VariableDescriptor variable)
+	{
+		return variable != null && variableIndexes.containsKey(variable) ? variableIndexes.get(variable) : -1;
+	}
+
+	protected final boolean getBit(@NotNull long[] data, int offset, int variableIndex, int bit)
+	{
+		int index = variableIndex * bitsPerVariable + bit;
+		return (data[offset + (index >>> 6)] & (1L << index)) != 0;
+	}
+
+	protected final void setBit(@NotNull long[] data, int offset, int variableIndex, int bit, boolean value)
+	{
+		int index = variableIndex * bitsPerVariable + bit;
+		if(value)
+			data[offset + (index >>> 6)] |= 1L << index;
+		else
+			data[offset + (index >>> 6)] &= ~(1L << index);
+	}
+
+	@Nullable
+	private S getState(@Nullable long[] data, @NotNull Instruction instruction, @NotNull VariableDescriptor variable)
+	{
+		assert data != null : "Data flow is not analyzed";
+
+		int variableIndex = getVariableIndex(variable);
+		Pseudocode owner = instruction.getOwner();
+		Integer graphOffset = graphOffsets.get(owner);
+		int index = graphOffset == null ? -1 : owner.getCompiledPseudocode().getIndex(instruction);
+		if(variableIndex < 0 || index < 0)
+			return null;
+		return getState(data, (graphOffset + index) * words, variableIndex);
+	}
+
+	/**
+	 * @return count of nodes after added graphs
+	 */
+	private int addGraph(@NotNull Pseudocode pseudocode, @NotNull List<CompiledPseudocode> graphs, int nodeCount)
+	{
+		CompiledPseudocode graph = pseudocode.getCompiledPseudocode();
+		graphOffsets.put(pseudocode, nodeCount);
+		graphs.add(graph);
+		nodeCount += graph.getInstructionCount();
+
+		if(lookInside)
+		{
+			for(int i = 0; i < graph.getInstructionCount(); i++)
+			{
+				if(graph.getKind(i) != CompiledPseudocode.LOCAL_DECLARATION)
+					continue;
+				Pseudocode body = ((LocalDeclarationInstruction) graph.getInstruction(i)).getBody();
+				if(!graphOffsets.containsKey(body))
+					nodeCount = addGraph(body, graphs, nodeCount);
+			}
+		}
+		return nodeCount;
+	}
+
+	private void buildEdges(@NotNull CompiledPseudocode graph, boolean isLocal, @NotNull int[] previousSubGraphNodes)
+	{
+		int graphOffset = graphOffsets.get(graph.getPseudocode());
+		int startIndex = directOrder ? graph.getEnterIndex() : graph.getSinkIndex();
+		for(int i = 0; i < graph.getInstructionCount(); i++)
+		{
+			int node = graphOffset + i;
+			if(!isLocal && i == startIndex)
+			{
+				startNode = node;
+				incoming[node] = EMPTY;
+				continue;
+			}
+
+			int count = directOrder ? graph.getPredecessorCount(i) : graph.getSuccessorCount(i);
+			int[] previousNodes = new int[count];
+			for(int j = 0; j < count; j++)
+				previousNodes[j] = graphOffset + (directOrder ? graph.getPredecessor(i, j) : graph.getSuccessor(i, j));
+
+			if(lookInside && graph.getKind(i) == CompiledPseudocode.LOCAL_DECLARATION)
+			{
+				// state of local declaration is state at the end of its body
+				CompiledPseudocode body = ((LocalDeclarationInstruction) graph.getInstruction(i)).getBody().getCompiledPseudocode();
+				buildEdges(body, true, previousNodes);
+
+				int lastIndex = directOrder ? body.getSinkIndex() : body.getEnterIndex();
+				if(lastIndex >= 0)
+				{
+					alias[node] = true;
+					incoming[node] = new int[]{graphOffsets.get(body.getPseudocode()) + lastIndex};
+				}
+				else
+					incoming[node] = EMPTY;
+				continue;
+			}
+
+			if(i == startIndex && previousSubGraphNodes.length > 0)
+			{
+				int[] allPreviousNodes = Arrays.copyOf(previousNodes, count + previousSubGraphNodes.length);
+				System.arraycopy(previousSubGraphNodes, 0, allPreviousNodes, count, previousSubGraphNodes.length);
+				previousNodes = allPreviousNodes;
+			}
+			incoming[node] = previousNodes;
+		}
+	}
+
+	@NotNull
+	private int[][] buildOutgoing()
+	{
+		int nodeCount = nodes.length;
+		int[] counts = new int[nodeCount];
+		for(int[] previousNodes : incoming)
+			for(int previous : previousNodes)
+				counts[previous]++;
+
+		int[][] outgoing = new int[nodeCount][];
+		for(int i = 0; i < nodeCount; i++)
+			outgoing[i] = new int[counts[i]];
+
+		Arrays.fill(counts, 0);
+		for(int node = 0; node < nodeCount; node++)
+			for(int previous : incoming[node])
+				outgoing[previous][counts[previous]++] = node;
+		return outgoing;
+	}
+
+	/**
+	 * Nodes are placed in reverse post order of compiled pseudocode, bodies of local declarations - before their instructions. For reversed
+	 * analysis this order is reversed. Nodes, which are not reachable from enter, are placed after reachable ones in original order
+	 */
+	@NotNull
+	private int[] buildOrder()
+	{
+		int nodeCount = nodes.length;
+		int[] order = new int[nodeCount];
+		boolean[] placed = new boolean[nodeCount];
+		int size = addToOrder(pseudocode.getCompiledPseudocode(), order, placed, 0);
+
+		if(!directOrder)
+		{
+			for(int i = 0, j = size - 1; i < j; i++, j--)
+			{
+				int node = order[i];
+				order[i] = order[j];
+				order[j] = node;
+			}
+		}
+
+		for(int node = 0; node < nodeCount; node++)
+			if(!placed[node])
+				order[size++] = node;
+		return order;
+	}
+
+	/**
+	 * @return size of order after added nodes
+	 */
+	private int addToOrder(@NotNull CompiledPseudocode graph, @NotNull int[] order, @NotNull boolean[] placed, int size)
+	{
+		int graphOffset = graphOffsets.get(graph.getPseudocode());
+		for(int position = 0; position < graph.getReachableCount(); position++)
+		{
+			int index = graph.getReversePostOrder(position);
+			int node = graphOffset + index;
+			if(placed[node])
+				continue;
+
+			// for reversed analysis body is added after instruction, so it is before instruction after reversing
+			if(lookInside && graph.getKind(index) == CompiledPseudocode.LOCAL_DECLARATION)
+			{
+				if(!directOrder)
+				{
+					placed[node] = true;
+					order[size++] = node;
+				}
+				size = addToOrder(((LocalDeclarationInstruction) graph.getInstruction(index)).getBody().getCompiledPseudocode(), order, placed, size);
+				if(!directOrder)
+					continue;
+			}
+
+			placed[node] = true;
+			order[size++] = node;
+		}
+		return size;
+	}
+
+	private boolean equals(@NotNull long[] data, @NotNull long[] array, int offset)
+	{
+		for(int i = 0; i < words; i++)
+			if(data[i] != array[offset + i])
+				return false;
+		return true;
+	}
+}
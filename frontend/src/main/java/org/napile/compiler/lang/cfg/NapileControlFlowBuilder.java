@@ -85,6 +85,9 @@ public interface NapileControlFlowBuilder
 
 	Pseudocode exitSubroutine(@NotNull NapileDeclaration subroutine);
 
+	// already generated subroutine
+	void declareLocal(@NotNull NapileDeclaration subroutine, @NotNull Pseudocode body);
+
 	@NotNull
 	NapileElement getCurrentSubroutine();
 
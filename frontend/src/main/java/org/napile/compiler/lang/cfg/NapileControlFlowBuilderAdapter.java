@@ -193,6 +193,13 @@ public class NapileControlFlowBuilderAdapter implements NapileControlFlowBuilder
 		return builder.exitSubroutine(subroutine);
 	}
 
+	@Override
+	public void declareLocal(@NotNull NapileDeclaration subroutine, @NotNull Pseudocode body)
+	{
+		assert builder != null;
+		builder.declareLocal(subroutine, body);
+	}
+
 	@NotNull
 	@Override
 	public NapileElement getCurrentSubroutine()
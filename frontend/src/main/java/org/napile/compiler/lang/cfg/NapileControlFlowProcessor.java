@@ -65,17 +65,48 @@ public class NapileControlFlowProcessor
 		this.trace = trace;
 	}
 
+	/**
+	 * Returns pseudocode of declaration, which is generated only once per trace. Bodies of nested methods and constructors
+	 * are recorded too, and shared with pseudocode of enclosing declaration
+	 */
+	@NotNull
+	public static Pseudocode getPseudocode(@NotNull NapileDeclaration subroutine, @NotNull BindingTrace trace)
+	{
+		Pseudocode pseudocode = trace.get(BindingTraceKeys.PSEUDOCODE, subroutine);
+		if(pseudocode != null)
+			return pseudocode;
+		return new NapileControlFlowProcessor(trace).generatePseudocode(subroutine);
+	}
+
+	@NotNull
 	public Pseudocode generatePseudocode(@NotNull NapileDeclaration subroutine)
 	{
-		Pseudocode pseudocode = generate(subroutine);
+		Pseudocode pseudocode = trace.get(BindingTraceKeys.PSEUDOCODE, subroutine);
+		if(pseudocode != null)
+			return pseudocode;
+
+		pseudocode = generate(subroutine);
 		((PseudocodeImpl) pseudocode).postProcess();
+		recordPseudocode(subroutine, pseudocode);
 		for(LocalDeclarationInstruction localDeclarationInstruction : pseudocode.getLocalDeclarations())
 		{
-			((PseudocodeImpl) localDeclarationInstruction.getBody()).postProcess();
+			Pseudocode body = localDeclarationInstruction.getBody();
+			((PseudocodeImpl) body).postProcess();
+
+			// body of anonym method is a part of enclosing subroutine(returns, labels), it can not be used alone
+			NapileDeclaration element = localDeclarationInstruction.getElement();
+			if(!(element instanceof NapileAnonymMethod))
+				recordPseudocode(element, body);
 		}
 		return pseudocode;
 	}
 
+	private void recordPseudocode(@NotNull NapileDeclaration subroutine, @NotNull Pseudocode pseudocode)
+	{
+		if(trace.get(BindingTraceKeys.PSEUDOCODE, subroutine) == null)
+			trace.record(BindingTraceKeys.PSEUDOCODE, subroutine, pseudocode);
+	}
+
 	private Pseudocode generate(@NotNull NapileDeclaration subroutine)
 	{
 		builder.enterSubroutine(subroutine);
@@ -100,7 +131,11 @@ public class NapileControlFlowProcessor
 	{
 		Label afterDeclaration = builder.createUnboundLabel();
 		builder.nondeterministicJump(afterDeclaration);
-		generate(subroutine);
+		Pseudocode body = subroutine instanceof NapileAnonymMethod ? null : trace.get(BindingTraceKeys.PSEUDOCODE, subroutine);
+		if(body != null)
+			builder.declareLocal(subroutine, body);
+		else
+			generate(subroutine);
 		builder.bindLabel(afterDeclaration);
 	}
 
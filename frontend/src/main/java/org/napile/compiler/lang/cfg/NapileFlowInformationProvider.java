@@ -18,7 +18,6 @@ package org.napile.compiler.lang.cfg;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.jetbrains.annotations.NotNull;
@@ -67,8 +66,8 @@ public class NapileFlowInformationProvider
 
 		subroutine = declaration;
 		this.trace = trace;
-		pseudocode = new NapileControlFlowProcessor(trace).generatePseudocode(declaration);
-		pseudocodeVariablesData = new PseudocodeVariablesData(pseudocode, trace);
+		pseudocodeVariablesData = new PseudocodeVariablesData(declaration, trace);
+		pseudocode = pseudocodeVariablesData.getPseudocode();
 	}
 
 	private void collectReturnExpressions(@NotNull final Collection<NapileElement> returnedExpressions)
@@ -227,14 +226,12 @@ public class NapileFlowInformationProvider
 		final Collection<VariableDescriptor> varWithValReassignErrorGenerated = Sets.newHashSet();
 		final boolean processClassOrObject = subroutine instanceof NapileClassLike;
 
-		Map<Instruction, PseudocodeTraverser.Edges<Map<VariableDescriptor, VariableInitState>>> initializers = pseudocodeVariablesData.getVariableInitializers();
 		final Set<VariableDescriptor> declaredVariables = pseudocodeVariablesData.getDeclaredVariables(pseudocode);
-		PseudocodeTraverser.traverse(pseudocode, true, true, initializers, new PseudocodeTraverser.InstructionDataAnalyzeStrategy<Map<VariableDescriptor, VariableInitState>>()
+		PseudocodeTraverser.traverse(pseudocode, true, new PseudocodeTraverser.InstructionAnalyzeStrategy()
 		{
 			@Override
-			public void execute(@NotNull Instruction instruction, @Nullable Map<VariableDescriptor, VariableInitState> in, @Nullable Map<VariableDescriptor, VariableInitState> out)
+			public void execute(@NotNull Instruction instruction)
 			{
-				assert in != null && out != null;
 				VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true, trace);
 				if(variableDescriptor == null)
 					return;
@@ -242,7 +239,7 @@ public class NapileFlowInformationProvider
 				{
 					return;
 				}
-				VariableInitState outInitState = out.get(variableDescriptor);
+				VariableInitState outInitState = pseudocodeVariablesData.getVariableInitState(instruction, variableDescriptor, false);
 				if(instruction instanceof ReadValueInstruction)
 				{
 					NapileElement element = ((ReadValueInstruction) instruction).getElement();
@@ -257,7 +254,7 @@ public class NapileFlowInformationProvider
 				boolean error = checkBackingField(variableDescriptor, element);
 				if(!(element instanceof NapileExpression))
 					return;
-				VariableInitState inInitState = in.get(variableDescriptor);
+				VariableInitState inInitState = pseudocodeVariablesData.getVariableInitState(instruction, variableDescriptor, true);
 				if(!error && !processLocalDeclaration)
 				{ // error has been generated before, while processing outer function of this local declaration
 					error = checkValReassignment(variableDescriptor, (NapileExpression) element, inInitState, varWithValReassignErrorGenerated);
@@ -274,10 +271,10 @@ public class NapileFlowInformationProvider
 		});
 
 		Pseudocode pseudocode = pseudocodeVariablesData.getPseudocode();
-		recordInitializedVariables(pseudocode, initializers);
+		recordInitializedVariables(pseudocode);
 		for(LocalDeclarationInstruction instruction : pseudocode.getLocalDeclarations())
 		{
-			recordInitializedVariables(instruction.getBody(), initializers);
+			recordInitializedVariables(instruction.getBody());
 		}
 	}
 
@@ -492,16 +489,15 @@ public class NapileFlowInformationProvider
 		return false;
 	}
 
-	private void recordInitializedVariables(@NotNull Pseudocode pseudocode, @NotNull Map<Instruction, PseudocodeTraverser.Edges<Map<VariableDescriptor, VariableInitState>>> initializersMap)
+	private void recordInitializedVariables(@NotNull Pseudocode pseudocode)
 	{
-		PseudocodeTraverser.Edges<Map<VariableDescriptor, VariableInitState>> initializers = initializersMap.get(pseudocode.getExitInstruction());
 		Set<VariableDescriptor> usedVariables = pseudocodeVariablesData.getUsedVariables(pseudocode);
 		Set<VariableDescriptor> declaredVariables = pseudocodeVariablesData.getDeclaredVariables(pseudocode);
 		for(VariableDescriptor variable : usedVariables)
 		{
 			if(variable instanceof VariableDescriptorImpl && declaredVariables.contains(variable))
 			{
-				VariableInitState variableInitState = initializers.in.get(variable);
+				VariableInitState variableInitState = pseudocodeVariablesData.getVariableInitState(pseudocode.getExitInstruction(), variable, true);
 				if(variableInitState == null)
 					return;
 				trace.record(BindingTraceKeys.IS_INITIALIZED, (VariableDescriptorImpl) variable, variableInitState.isInitialized);
@@ -514,14 +510,11 @@ public class NapileFlowInformationProvider
 
 	public void markUnusedVariables()
 	{
-		Map<Instruction, PseudocodeTraverser.Edges<Map<VariableDescriptor, VariableUseState>>> variableStatusData = pseudocodeVariablesData.getVariableUseStatusData();
-		PseudocodeTraverser.InstructionDataAnalyzeStrategy<Map<VariableDescriptor, VariableUseState>> variableStatusAnalyzeStrategy = new PseudocodeTraverser.InstructionDataAnalyzeStrategy<Map<VariableDescriptor, VariableUseState>>()
+		PseudocodeTraverser.InstructionAnalyzeStrategy variableStatusAnalyzeStrategy = new PseudocodeTraverser.InstructionAnalyzeStrategy()
 		{
 			@Override
-			public void execute(@NotNull Instruction instruction, @Nullable Map<VariableDescriptor, VariableUseState> in, @Nullable Map<VariableDescriptor, VariableUseState> out)
+			public void execute(@NotNull Instruction instruction)
 			{
-
-				assert in != null && out != null;
 				Set<VariableDescriptor> declaredVariables = pseudocodeVariablesData.getDeclaredVariables(instruction.getOwner());
 				VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, trace);
 				if(variableDescriptor == null || !declaredVariables.contains(variableDescriptor) ||
@@ -529,7 +522,7 @@ public class NapileFlowInformationProvider
 				{
 					return;
 				}
-				VariableUseState variableUseState = in.get(variableDescriptor);
+				VariableUseState variableUseState = pseudocodeVariablesData.getVariableUseState(instruction, variableDescriptor, true);
 				if(instruction instanceof WriteValueInstruction)
 				{
 					if(trace.safeGet(BindingTraceKeys.CAPTURED_IN_CLOSURE, variableDescriptor))
@@ -604,7 +597,7 @@ public class NapileFlowInformationProvider
 				}
 			}
 		};
-		PseudocodeTraverser.traverse(pseudocode, false, true, variableStatusData, variableStatusAnalyzeStrategy);
+		PseudocodeTraverser.traverse(pseudocode, false, variableStatusAnalyzeStrategy);
 	}
 
 	////////////////////////////////////////////////////////////////////////////////
@@ -16,17 +16,14 @@
 
 package org.napile.compiler.lang.cfg;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
 import org.jetbrains.annotations.NotNull;
-import org.napile.compiler.lang.cfg.PseudocodeTraverser.Edges;
+import org.jetbrains.annotations.Nullable;
 import org.napile.compiler.lang.cfg.PseudocodeTraverser.InstructionAnalyzeStrategy;
-import org.napile.compiler.lang.cfg.PseudocodeTraverser.InstructionDataMergeStrategy;
 import org.napile.compiler.lang.cfg.pseudocode.Instruction;
-import org.napile.compiler.lang.cfg.pseudocode.LocalDeclarationInstruction;
 import org.napile.compiler.lang.cfg.pseudocode.Pseudocode;
 import org.napile.compiler.lang.cfg.pseudocode.PseudocodeUtil;
 import org.napile.compiler.lang.cfg.pseudocode.ReadValueInstruction;
@@ -51,8 +48,8 @@ public class PseudocodeVariablesData
 	private final Map<Pseudocode, Set<VariableDescriptor>> declaredVariablesInEachDeclaration = Maps.newHashMap();
 	private final Map<Pseudocode, Set<VariableDescriptor>> usedVariablesInEachDeclaration = Maps.newHashMap();
 
-	private Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> variableInitializersMap;
-	private Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> variableStatusMap;
+	private final Map<Pseudocode, BitVectorDataFlow<VariableInitState>> variableInitializersMap = Maps.newHashMap();
+	private BitVectorDataFlow<VariableUseState> variableStatusData;
 
 	public PseudocodeVariablesData(@NotNull Pseudocode pseudocode, @NotNull BindingTrace bindingTrace)
 	{
@@ -60,6 +57,11 @@ public class PseudocodeVariablesData
 		this.bindingTrace = bindingTrace;
 	}
 
+	public PseudocodeVariablesData(@NotNull NapileDeclaration declaration, @NotNull BindingTrace bindingTrace)
+	{
+		this(NapileControlFlowProcessor.getPseudocode(declaration, bindingTrace), bindingTrace);
+	}
+
 	@NotNull
 	public Pseudocode getPseudocode()
 	{
@@ -116,200 +118,166 @@ public class PseudocodeVariablesData
 
 	// variable initializers
 
+	/**
+	 * @param enter state before instruction if true, or after instruction
+	 * @return null if instruction is not reachable or variable is not used in pseudocode of instruction
+	 */
+	@Nullable
+	public VariableInitState getVariableInitState(@NotNull Instruction instruction, @NotNull VariableDescriptor variable, boolean enter)
+	{
+		BitVectorDataFlow<VariableInitState> dataFlow = getVariableInitializers(instruction.getOwner());
+		return enter ? dataFlow.getIn(instruction, variable) : dataFlow.getOut(instruction, variable);
+	}
+
 	@NotNull
-	public Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> getVariableInitializers()
+	private BitVectorDataFlow<VariableInitState> getVariableInitializers(@NotNull Pseudocode pseudocode)
 	{
-		if(variableInitializersMap == null)
+		BitVectorDataFlow<VariableInitState> dataFlow = variableInitializersMap.get(pseudocode);
+		if(dataFlow == null)
 		{
-			variableInitializersMap = getVariableInitializers(pseudocode);
+			dataFlow = new VariableInitializersDataFlow(pseudocode, getUsedVariables(pseudocode), getDeclaredVariables(pseudocode)).analyze();
+			variableInitializersMap.put(pseudocode, dataFlow);
 		}
-		return variableInitializersMap;
+		return dataFlow;
 	}
 
+	// variable use
+
+	/**
+	 * @param enter state before instruction if true(merged from next instructions), or after instruction
+	 */
 	@NotNull
-	private Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> getVariableInitializers(@NotNull Pseudocode pseudocode)
+	public VariableUseState getVariableUseState(@NotNull Instruction instruction, @NotNull VariableDescriptor variable, boolean enter)
 	{
+		if(variableStatusData == null)
+			variableStatusData = new VariableUseDataFlow(pseudocode, getUsedVariables(pseudocode)).analyze();
 
-		Set<VariableDescriptor> usedVariables = getUsedVariables(pseudocode);
-		Set<VariableDescriptor> declaredVariables = getDeclaredVariables(pseudocode);
-		Map<VariableDescriptor, VariableInitState> initialMap = Collections.emptyMap();
-		final Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = prepareInitializersMapForStartInstruction(usedVariables, declaredVariables);
-
-		Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> variableInitializersMap = PseudocodeTraverser.collectData(pseudocode, /* directOrder = */ true, /* lookInside = */ false, initialMap, initialMapForStartInstruction, new PseudocodeTraverser.InstructionDataMergeStrategy<Map<VariableDescriptor, VariableInitState>>()
-		{
-			@Override
-			public Edges<Map<VariableDescriptor, VariableInitState>> execute(@NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData)
-			{
+		VariableUseState state = enter ? variableStatusData.getIn(instruction, variable) : variableStatusData.getOut(instruction, variable);
+		return state == null ? VariableUseState.UNUSED : state;
+	}
 
-				Map<VariableDescriptor, VariableInitState> enterInstructionData = mergeIncomingEdgesDataForInitializers(incomingEdgesData);
-				Map<VariableDescriptor, VariableInitState> exitInstructionData = addVariableInitStateFromCurrentInstructionIfAny(instruction, enterInstructionData);
-				return Edges.create(enterInstructionData, exitInstructionData);
-			}
-		});
+	/**
+	 * Three bits for each variable: initialized, declared and absent. States of edges are merged by 'and'.
+	 * Absent state means that no data is reached instruction yet(instruction is not reachable from enter) - it has all bits set,
+	 * so it's identity of merge. Same as missing entry of map in old traversal, instructions are not reporting state
+	 * of absent variable, and writing or declaration of absent variable does not look to its previous state
+	 */
+	private class VariableInitializersDataFlow extends BitVectorDataFlow<VariableInitState>
+	{
+		private static final int INITIALIZED = 0;
+		private static final int DECLARED = 1;
+		private static final int ABSENT = 2;
 
+		private final Set<VariableDescriptor> usedVariables;
+		private final Set<VariableDescriptor> declaredVariables;
 
-		for(LocalDeclarationInstruction localDeclarationInstruction : pseudocode.getLocalDeclarations())
+		private VariableInitializersDataFlow(@NotNull Pseudocode pseudocode, @NotNull Set<VariableDescriptor> usedVariables, @NotNull Set<VariableDescriptor> declaredVariables)
 		{
-			Pseudocode localPseudocode = localDeclarationInstruction.getBody();
-			Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> initializersForLocalDeclaration = getVariableInitializers(localPseudocode);
+			super(pseudocode, true, false, true, usedVariables, 3);
+			this.usedVariables = usedVariables;
+			this.declaredVariables = declaredVariables;
+		}
 
-			for(Instruction instruction : initializersForLocalDeclaration.keySet())
-			{
-				//todo
-				if(!variableInitializersMap.containsKey(instruction))
-				{
-					variableInitializersMap.put(instruction, initializersForLocalDeclaration.get(instruction));
-				}
-			}
-			variableInitializersMap.putAll(initializersForLocalDeclaration);
+		@Override
+		protected void initStart(@NotNull long[] data, int offset)
+		{
+			// variables declared in pseudocode are not initialized, external variables are initialized
+			for(VariableDescriptor variable : usedVariables)
+				setBit(data, offset, getVariableIndex(variable), INITIALIZED, !declaredVariables.contains(variable));
 		}
-		return variableInitializersMap;
-	}
 
-	@NotNull
-	private Map<VariableDescriptor, VariableInitState> prepareInitializersMapForStartInstruction(@NotNull Collection<VariableDescriptor> usedVariables, @NotNull Collection<VariableDescriptor> declaredVariables)
-	{
+		@Override
+		protected void transfer(@NotNull Instruction instruction, @NotNull long[] data, int offset)
+		{
+			if(!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction))
+				return;
 
-		Map<VariableDescriptor, VariableInitState> initialMapForStartInstruction = Maps.newHashMap();
-		VariableInitState initializedForExternalVariable = VariableInitState.create(true);
-		VariableInitState notInitializedForDeclaredVariable = VariableInitState.create(false);
+			int variableIndex = getVariableIndex(PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, bindingTrace));
+			if(variableIndex < 0)
+				return;
 
-		for(VariableDescriptor variable : usedVariables)
-		{
-			if(declaredVariables.contains(variable))
+			boolean absent = getBit(data, offset, variableIndex, ABSENT);
+			if(instruction instanceof WriteValueInstruction)
 			{
-				initialMapForStartInstruction.put(variable, notInitializedForDeclaredVariable);
+				boolean declared = ((WriteValueInstruction) instruction).getElement() instanceof NapileVariable || !absent && getBit(data, offset, variableIndex, DECLARED);
+				setBit(data, offset, variableIndex, INITIALIZED, true);
+				setBit(data, offset, variableIndex, DECLARED, declared);
 			}
 			else
 			{
-				initialMapForStartInstruction.put(variable, initializedForExternalVariable);
+				if(absent)
+					setBit(data, offset, variableIndex, INITIALIZED, false);
+				setBit(data, offset, variableIndex, DECLARED, true);
 			}
+			setBit(data, offset, variableIndex, ABSENT, false);
 		}
-		return initialMapForStartInstruction;
-	}
-
-	@NotNull
-	private Map<VariableDescriptor, VariableInitState> mergeIncomingEdgesDataForInitializers(@NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData)
-	{
 
-		Set<VariableDescriptor> variablesInScope = Sets.newHashSet();
-		for(Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData)
+		@Nullable
+		@Override
+		protected VariableInitState getState(@NotNull long[] data, int offset, int variableIndex)
 		{
-			variablesInScope.addAll(edgeData.keySet());
+			if(getBit(data, offset, variableIndex, ABSENT))
+				return null;
+			return VariableInitState.create(getBit(data, offset, variableIndex, INITIALIZED), getBit(data, offset, variableIndex, DECLARED));
 		}
-
-		Map<VariableDescriptor, VariableInitState> enterInstructionData = Maps.newHashMap();
-		for(VariableDescriptor variable : variablesInScope)
-		{
-			Set<VariableInitState> edgesDataForVariable = Sets.newHashSet();
-			for(Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData)
-			{
-				VariableInitState initState = edgeData.get(variable);
-				if(initState != null)
-				{
-					edgesDataForVariable.add(initState);
-				}
-			}
-			enterInstructionData.put(variable, VariableInitState.create(edgesDataForVariable));
-		}
-		return enterInstructionData;
 	}
 
-	@NotNull
-	private Map<VariableDescriptor, VariableInitState> addVariableInitStateFromCurrentInstructionIfAny(@NotNull Instruction instruction, @NotNull Map<VariableDescriptor, VariableInitState> enterInstructionData)
+	/**
+	 * Analysis in reversed order. Each of three bits means that use state is not less than {@link VariableUseState#ONLY_WRITTEN_NEVER_READ},
+	 * {@link VariableUseState#LAST_WRITTEN} and {@link VariableUseState#LAST_READ} - so states are merged by 'or'
+	 */
+	private class VariableUseDataFlow extends BitVectorDataFlow<VariableUseState>
 	{
+		private static final int WRITTEN = 0;
+		private static final int LAST_WRITTEN = 1;
+		private static final int LAST_READ = 2;
 
-		if(!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction))
+		private VariableUseDataFlow(@NotNull Pseudocode pseudocode, @NotNull Set<VariableDescriptor> usedVariables)
 		{
-			return enterInstructionData;
+			super(pseudocode, false, true, false, usedVariables, 3);
 		}
-		VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, bindingTrace);
-		if(variable == null)
+
+		@Override
+		protected void initStart(@NotNull long[] data, int offset)
 		{
-			return enterInstructionData;
+			// all variables are unused
 		}
-		Map<VariableDescriptor, VariableInitState> exitInstructionData = Maps.newHashMap(enterInstructionData);
-		if(instruction instanceof WriteValueInstruction)
+
+		@Override
+		protected void transfer(@NotNull Instruction instruction, @NotNull long[] data, int offset)
 		{
-			VariableInitState enterInitState = enterInstructionData.get(variable);
-			VariableInitState initializationAtThisElement = VariableInitState.create(((WriteValueInstruction) instruction).getElement() instanceof NapileVariable, enterInitState);
-			exitInstructionData.put(variable, initializationAtThisElement);
-		}
-		else
-		{ // instruction instanceof VariableDeclarationInstruction
-			VariableInitState enterInitState = enterInstructionData.get(variable);
-			if(enterInitState == null || !enterInitState.isInitialized || !enterInitState.isDeclared)
-			{
-				boolean isInitialized = enterInitState != null && enterInitState.isInitialized;
-				VariableInitState variableDeclarationInfo = VariableInitState.create(isInitialized, true);
-				exitInstructionData.put(variable, variableDeclarationInfo);
-			}
-		}
-		return exitInstructionData;
-	}
+			if(!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))
+				return;
 
-	// variable use
+			int variableIndex = getVariableIndex(PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true, bindingTrace));
+			if(variableIndex < 0)
+				return;
 
-	@NotNull
-	public Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> getVariableUseStatusData()
-	{
-		if(variableStatusMap == null)
-		{
-			Map<VariableDescriptor, VariableUseState> sinkInstructionData = Maps.newHashMap();
-			for(VariableDescriptor usedVariable : usedVariablesInEachDeclaration.get(pseudocode))
+			if(instruction instanceof ReadValueInstruction)
 			{
-				sinkInstructionData.put(usedVariable, VariableUseState.UNUSED);
+				setBit(data, offset, variableIndex, WRITTEN, true);
+				setBit(data, offset, variableIndex, LAST_WRITTEN, true);
+				setBit(data, offset, variableIndex, LAST_READ, true);
 			}
-			InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>> collectVariableUseStatusStrategy = new InstructionDataMergeStrategy<Map<VariableDescriptor, VariableUseState>>()
+			else
 			{
-				@Override
-				public Edges<Map<VariableDescriptor, VariableUseState>> execute(@NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, VariableUseState>> incomingEdgesData)
-				{
+				// write after read is 'last written', else value is never read
+				setBit(data, offset, variableIndex, WRITTEN, true);
+				setBit(data, offset, variableIndex, LAST_READ, false);
+			}
+		}
 
-					Map<VariableDescriptor, VariableUseState> enterResult = Maps.newHashMap();
-					for(Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData)
-					{
-						for(Map.Entry<VariableDescriptor, VariableUseState> entry : edgeData.entrySet())
-						{
-							VariableDescriptor variableDescriptor = entry.getKey();
-							VariableUseState variableUseState = entry.getValue();
-							enterResult.put(variableDescriptor, variableUseState.merge(enterResult.get(variableDescriptor)));
-						}
-					}
-					VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true, bindingTrace);
-					if(variableDescriptor == null || (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction)))
-					{
-						return Edges.create(enterResult, enterResult);
-					}
-					Map<VariableDescriptor, VariableUseState> exitResult = Maps.newHashMap(enterResult);
-					if(instruction instanceof ReadValueInstruction)
-					{
-						exitResult.put(variableDescriptor, VariableUseState.LAST_READ);
-					}
-					else
-					{ //instruction instanceof WriteValueInstruction
-						VariableUseState variableUseState = enterResult.get(variableDescriptor);
-						if(variableUseState == null)
-						{
-							variableUseState = VariableUseState.UNUSED;
-						}
-						switch(variableUseState)
-						{
-							case UNUSED:
-							case ONLY_WRITTEN_NEVER_READ:
-								exitResult.put(variableDescriptor, VariableUseState.ONLY_WRITTEN_NEVER_READ);
-								break;
-							case LAST_WRITTEN:
-							case LAST_READ:
-								exitResult.put(variableDescriptor, VariableUseState.LAST_WRITTEN);
-						}
-					}
-					return Edges.create(enterResult, exitResult);
-				}
-			};
-			variableStatusMap = PseudocodeTraverser.collectData(pseudocode, false, true, Collections.<VariableDescriptor, VariableUseState>emptyMap(), sinkInstructionData, collectVariableUseStatusStrategy);
+		@NotNull
+		@Override
+		protected VariableUseState getState(@NotNull long[] data, int offset, int variableIndex)
+		{
+			if(getBit(data, offset, variableIndex, LAST_READ))
+				return VariableUseState.LAST_READ;
+			if(getBit(data, offset, variableIndex, LAST_WRITTEN))
+				return VariableUseState.LAST_WRITTEN;
+			if(getBit(data, offset, variableIndex, WRITTEN))
+				return VariableUseState.ONLY_WRITTEN_NEVER_READ;
+			return VariableUseState.UNUSED;
 		}
-		return variableStatusMap;
 	}
-
 }
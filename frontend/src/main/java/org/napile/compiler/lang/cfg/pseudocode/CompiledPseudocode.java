@@ -0,0 +1,392 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.lang.cfg.pseudocode;
+
+import gnu.trove.TObjectIntHashMap;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.psi.NapileElement;
+
+/**
+ * Immutable form of post-processed pseudocode. Instructions are numbered in order of {@link Pseudocode#getInstructions()},
+ * kinds, elements and edges are stored in parallel arrays - successors and predecessors of instruction <code>i</code> are placed in
+ * edge array between <code>offsets[i]</code> and <code>offsets[i + 1]</code>.
+ * <p/>
+ * Contains also reverse post order from enter instruction.
+ * Bodies of local declarations are not included - they have own compiled form
+ *
+ * @author VISTALL
+ * @since 14:10/19.10.26
+ */
+public final class CompiledPseudocode
+{
+	public static final byte ENTER = 0;
+	public static final byte EXIT = 1;
+	public static final byte SINK = 2;
+	public static final byte READ = 3;
+	public static final byte READ_UNIT = 4;
+	public static final byte WRITE = 5;
+	public static final byte VARIABLE_DECLARATION = 6;
+	public static final byte LOCAL_DECLARATION = 7;
+	public static final byte JUMP = 8;
+	public static final byte CONDITIONAL_JUMP = 9;
+	public static final byte NONDETERMINISTIC_JUMP = 10;
+	public static final byte RETURN_VALUE = 11;
+	public static final byte RETURN_NO_VALUE = 12;
+	public static final byte UNSUPPORTED = 13;
+
+	private static final int[] EMPTY = new int[0];
+
+	private final Pseudocode pseudocode;
+
+	private final Instruction[] instructions;
+	private final TObjectIntHashMap<Instruction> indexes;
+	private final byte[] kinds;
+	private final NapileElement[] elements;
+
+	private final int[] successorOffsets;
+	private final int[] successors;
+	private final int[] predecessorOffsets;
+	private final int[] predecessors;
+
+	private final int enterIndex;
+	private final int exitIndex;
+	private final int sinkIndex;
+
+	private final int[] reversePostOrder;
+	private final int[] postOrderNumbers;
+
+	CompiledPseudocode(@NotNull Pseudocode pseudocode)
+	{
+		this.pseudocode = pseudocode;
+
+		List<Instruction> list = pseudocode.getInstructions();
+		int size = list.size();
+		instructions = list.toArray(new Instruction[size]);
+		indexes = new TObjectIntHashMap<Instruction>(size);
+		kinds = new byte[size];
+		elements = new NapileElement[size];
+
+		KindVisitor kindVisitor = new KindVisitor();
+		for(int i = 0; i < size; i++)
+		{
+			Instruction instruction = instructions[i];
+			indexes.put(instruction, i);
+			instruction.accept(kindVisitor);
+			kinds[i] = kindVisitor.kind;
+			elements[i] = instruction instanceof NapileElementInstruction ? ((NapileElementInstruction) instruction).getElement() : null;
+		}
+
+		// successors, edges to instructions out of this pseudocode(null on incomplete code) are skipped
+		successorOffsets = new int[size + 1];
+		int[] edges = new int[size * 2];
+		int edgeCount = 0;
+		for(int i = 0; i < size; i++)
+		{
+			successorOffsets[i] = edgeCount;
+			for(Instruction next : instructions[i].getNextInstructions())
+			{
+				int nextIndex = getIndex(next);
+				if(nextIndex < 0)
+					continue;
+				if(edgeCount == edges.length)
+					edges = Arrays.copyOf(edges, edges.length * 2);
+				edges[edgeCount++] = nextIndex;
+			}
+		}
+		successorOffsets[size] = edgeCount;
+		successors = Arrays.copyOf(edges, edgeCount);
+
+		// predecessors are built from successors, to have same edge set
+		predecessorOffsets = new int[size + 1];
+		for(int edge : successors)
+			predecessorOffsets[edge + 1]++;
+		for(int i = 0; i < size; i++)
+			predecessorOffsets[i + 1] += predecessorOffsets[i];
+		predecessors = new int[edgeCount];
+		int[] fill = Arrays.copyOf(predecessorOffsets, size);
+		for(int i = 0; i < size; i++)
+			for(int j = successorOffsets[i]; j < successorOffsets[i + 1]; j++)
+				predecessors[fill[successors[j]]++] = i;
+
+		enterIndex = getIndex(pseudocode.getEnterInstruction());
+		exitIndex = getIndex(pseudocode.getExitInstruction());
+		sinkIndex = getIndex(pseudocode.getSinkInstruction());
+
+		postOrderNumbers = new int[size];
+		reversePostOrder = computeReversePostOrder();
+	}
+
+	@NotNull
+	public Pseudocode getPseudocode()
+	{
+		return pseudocode;
+	}
+
+	public int getInstructionCount()
+	{
+		return instructions.length;
+	}
+
+	@NotNull
+	public Instruction getInstruction(int index)
+	{
+		return instructions[index];
+	}
+
+	/**
+	 * @return index of instruction, or -1 if instruction is not a live instruction of this pseudocode
+	 */
+	public int getIndex(@Nullable Instruction instruction)
+	{
+		return instruction != null && indexes.containsKey(instruction) ? indexes.get(instruction) : -1;
+	}
+
+	public byte getKind(int index)
+	{
+		return kinds[index];
+	}
+
+	@Nullable
+	public NapileElement getElement(int index)
+	{
+		return elements[index];
+	}
+
+	public int getEnterIndex()
+	{
+		return enterIndex;
+	}
+
+	public int getExitIndex()
+	{
+		return exitIndex;
+	}
+
+	public int getSinkIndex()
+	{
+		return sinkIndex;
+	}
+
+	public int getSuccessorCount(int index)
+	{
+		return successorOffsets[index + 1] - successorOffsets[index];
+	}
+
+	public int getSuccessor(int index, int i)
+	{
+		return successors[successorOffsets[index] + i];
+	}
+
+	public int getPredecessorCount(int index)
+	{
+		return predecessorOffsets[index + 1] - predecessorOffsets[index];
+	}
+
+	public int getPredecessor(int index, int i)
+	{
+		return predecessors[predecessorOffsets[index] + i];
+	}
+
+	/**
+	 * @return copy of successors of instruction
+	 */
+	@NotNull
+	public int[] getSuccessors(int index)
+	{
+		return copy(successors, successorOffsets[index], successorOffsets[index + 1]);
+	}
+
+	/**
+	 * @return copy of predecessors of instruction
+	 */
+	@NotNull
+	public int[] getPredecessors(int index)
+	{
+		return copy(predecessors, predecessorOffsets[index], predecessorOffsets[index + 1]);
+	}
+
+	/**
+	 * @return count of instructions, which are reachable from enter by edges of this pseudocode
+	 */
+	public int getReachableCount()
+	{
+		return reversePostOrder.length;
+	}
+
+	/**
+	 * @param position position in reverse post order, less than {@link #getReachableCount()}
+	 */
+	public int getReversePostOrder(int position)
+	{
+		return reversePostOrder[position];
+	}
+
+	/**
+	 * @return position of instruction in reverse post order, or -1 if it is not reachable from enter
+	 */
+	public int getReversePostOrderPosition(int index)
+	{
+		int number = postOrderNumbers[index];
+		return number < 0 ? -1 : reversePostOrder.length - 1 - number;
+	}
+
+	@NotNull
+	private int[] computeReversePostOrder()
+	{
+		int size = instructions.length;
+		Arrays.fill(postOrderNumbers, -1);
+		if(enterIndex < 0)
+			return EMPTY;
+
+		int[] postOrder = new int[size];
+		int postOrderSize = 0;
+
+		boolean[] visited = new boolean[size];
+		int[] stack = new int[size];
+		int[] nextChild = new int[size];
+		int stackSize = 0;
+
+		stack[stackSize++] = enterIndex;
+		visited[enterIndex] = true;
+		while(stackSize > 0)
+		{
+			int index = stack[stackSize - 1];
+			int edge = successorOffsets[index] + nextChild[index];
+			if(edge < successorOffsets[index + 1])
+			{
+				nextChild[index]++;
+				int child = successors[edge];
+				if(!visited[child])
+				{
+					visited[child] = true;
+					stack[stackSize++] = child;
+				}
+			}
+			else
+			{
+				stackSize--;
+				postOrderNumbers[index] = postOrderSize;
+				postOrder[postOrderSize++] = index;
+			}
+		}
+
+		int[] order = new int[postOrderSize];
+		for(int i = 0; i < postOrderSize; i++)
+			order[i] = postOrder[postOrderSize - 1 - i];
+		return order;
+	}
+
+	@NotNull
+	private static int[] copy(@NotNull int[] array, int from, int to)
+	{
+		return from == to ? EMPTY : Arrays.copyOfRange(array, from, to);
+	}
+
+	private static class KindVisitor extends InstructionVisitor
+	{
+		private byte kind;
+
+		@Override
+		public void visitReadValue(ReadValueInstruction instruction)
+		{
+			kind = READ;
+		}
+
+		@Override
+		public void visitReadUnitValue(ReadUnitValueInstruction instruction)
+		{
+			kind = READ_UNIT;
+		}
+
+		@Override
+		public void visitWriteValue(WriteValueInstruction writeValueInstruction)
+		{
+			kind = WRITE;
+		}
+
+		@Override
+		public void visitVariableDeclarationInstruction(VariableDeclarationInstruction instruction)
+		{
+			kind = VARIABLE_DECLARATION;
+		}
+
+		@Override
+		public void visitLocalDeclarationInstruction(LocalDeclarationInstruction instruction)
+		{
+			kind = LOCAL_DECLARATION;
+		}
+
+		@Override
+		public void visitUnconditionalJump(UnconditionalJumpInstruction instruction)
+		{
+			kind = JUMP;
+		}
+
+		@Override
+		public void visitConditionalJump(ConditionalJumpInstruction instruction)
+		{
+			kind = CONDITIONAL_JUMP;
+		}
+
+		@Override
+		public void visitNondeterministicJump(NondeterministicJumpInstruction instruction)
+		{
+			kind = NONDETERMINISTIC_JUMP;
+		}
+
+		@Override
+		public void visitReturnValue(ReturnValueInstruction instruction)
+		{
+			kind = RETURN_VALUE;
+		}
+
+		@Override
+		public void visitReturnNoValue(ReturnNoValueInstruction instruction)
+		{
+			kind = RETURN_NO_VALUE;
+		}
+
+		@Override
+		public void visitSubroutineEnter(SubroutineEnterInstruction instruction)
+		{
+			kind = ENTER;
+		}
+
+		@Override
+		public void visitSubroutineExit(SubroutineExitInstruction instruction)
+		{
+			kind = EXIT;
+		}
+
+		@Override
+		public void visitSubroutineSink(SubroutineSinkInstruction instruction)
+		{
+			kind = SINK;
+		}
+
+		@Override
+		public void visitInstruction(Instruction instruction)
+		{
+			kind = UNSUPPORTED;
+		}
+	}
+}
@@ -245,6 +245,12 @@ public class NapileControlFlowInstructionsGenerator extends NapileControlFlowBui
 			return null;
 		}
 
+		@Override
+		public void declareLocal(@NotNull NapileDeclaration subroutine, @NotNull Pseudocode body)
+		{
+			add(new LocalDeclarationInstruction(subroutine, body));
+		}
+
 		@Override
 		public void returnValue(@NotNull NapileExpression returnExpression, @NotNull NapileElement subroutine)
 		{
@@ -50,4 +50,7 @@ public interface Pseudocode
 
 	@NotNull
 	SubroutineEnterInstruction getEnterInstruction();
+
+	@NotNull
+	CompiledPseudocode getCompiledPseudocode();
 }
@@ -108,6 +108,7 @@ public class PseudocodeImpl implements Pseudocode
 	private SubroutineSinkInstruction sinkInstruction;
 	private SubroutineExitInstruction errorInstruction;
 	private boolean postPrecessed = false;
+	private volatile CompiledPseudocode compiledPseudocode;
 
 	public PseudocodeImpl(NapileElement correspondingElement)
 	{
@@ -305,6 +306,19 @@ public class PseudocodeImpl implements Pseudocode
 		return (SubroutineEnterInstruction) mutableInstructionList.get(0);
 	}
 
+	@NotNull
+	@Override
+	public CompiledPseudocode getCompiledPseudocode()
+	{
+		CompiledPseudocode compiled = compiledPseudocode;
+		if(compiled == null)
+		{
+			assert postPrecessed : "Pseudocode is not processed";
+			compiledPseudocode = compiled = new CompiledPseudocode(this);
+		}
+		return compiled;
+	}
+
 	/*package*/ void bindLabel(Label label)
 	{
 		((PseudocodeLabel) label).setTargetInstructionIndex(mutableInstructionList.size());
@@ -164,6 +164,14 @@ public class MutableClassDescriptor extends MutableClassDescriptorLite
 		scopeForMemberResolution.changeLockLevel(WritableScope.LockLevel.READING);
 	}
 
+	@Override
+	public void freezeScopes()
+	{
+		super.freezeScopes();
+		scopeForSupertypeResolution.freeze();
+		scopeForMemberResolution.freeze();
+	}
+
 	private DescriptorBuilder builder = null;
 
 	@Override
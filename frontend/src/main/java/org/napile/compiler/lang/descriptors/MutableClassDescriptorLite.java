@@ -30,8 +30,10 @@ import org.napile.compiler.lang.resolve.scopes.receivers.ClassReceiver;
 import org.napile.compiler.lang.resolve.scopes.receivers.ReceiverDescriptor;
 import org.napile.compiler.lang.types.ErrorUtils;
 import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.SupertypeIndex;
 import org.napile.compiler.lang.types.TypeConstructor;
 import org.napile.compiler.lang.types.TypeUtils;
+import org.napile.compiler.lang.types.checker.TypeCheckerCache;
 import org.napile.compiler.lang.types.impl.TypeConstructorImpl;
 import org.napile.compiler.render.DescriptorRenderer;
 import com.google.common.collect.Lists;
@@ -184,6 +186,9 @@ public abstract class MutableClassDescriptorLite extends ClassDescriptorBase imp
 			{
 				// See the Errors.SUPERTYPE_NOT_A_CLASS_OR_TRAIT
 				supertypes.add(supertype);
+
+				TypeCheckerCache.invalidateCurrent();
+				SupertypeIndex.invalidateAll();
 			}
 		}
 	}
@@ -200,6 +205,14 @@ public abstract class MutableClassDescriptorLite extends ClassDescriptorBase imp
 		getScopeForMemberLookupAsWritableScope().changeLockLevel(WritableScope.LockLevel.READING);
 	}
 
+	/**
+	 * Called after locking scopes of all classes and packages
+	 */
+	public void freezeScopes()
+	{
+		getScopeForMemberLookupAsWritableScope().freeze();
+	}
+
 	@NotNull
 	@Override
 	public ReceiverDescriptor getImplicitReceiver()
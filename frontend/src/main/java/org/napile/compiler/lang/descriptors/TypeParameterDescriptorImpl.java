@@ -30,9 +30,11 @@ import org.napile.compiler.lang.resolve.scopes.NapileScope;
 import org.napile.compiler.lang.resolve.scopes.LazyScopeAdapter;
 import org.napile.compiler.lang.types.NapileType;
 import org.napile.compiler.lang.types.TypeConstructor;
+import org.napile.compiler.lang.types.SupertypeIndex;
 import org.napile.compiler.lang.types.TypeSubstitutor;
 import org.napile.compiler.lang.types.TypeUtils;
 import org.napile.compiler.lang.types.checker.NapileTypeChecker;
+import org.napile.compiler.lang.types.checker.TypeCheckerCache;
 import org.napile.compiler.lang.types.impl.NapileTypeImpl;
 import org.napile.compiler.lang.types.impl.TypeConstructorImpl;
 import org.napile.compiler.render.DescriptorRenderer;
@@ -105,6 +107,9 @@ public class TypeParameterDescriptorImpl extends DeclarationDescriptorNonRootImp
 	{
 		checkUninitialized();
 		upperBounds.add(bound);
+
+		TypeCheckerCache.invalidateCurrent();
+		SupertypeIndex.invalidateAll();
 	}
 
 	@Deprecated
@@ -113,7 +118,12 @@ public class TypeParameterDescriptorImpl extends DeclarationDescriptorNonRootImp
 		checkUninitialized();
 
 		if(upperBounds.isEmpty())
+		{
 			upperBounds.add(TypeUtils.getTypeOfClassOrErrorType(napileScope, NapileLangPackage.ANY, true));
+
+			TypeCheckerCache.invalidateCurrent();
+			SupertypeIndex.invalidateAll();
+		}
 	}
 
 	@Override
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.lang.psi.stubs;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.psi.stubs.elements.NapileFileElementType;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.stubs.StubTree;
+
+/**
+ * Persistent cache of stub trees. Cache directory contains one append-only segment file for each root(jar, classpath directory or source root),
+ * segment contains records with path of file relative to root, fingerprint of file(time stamp and length), hash of file content, and stub tree.
+ * <p/>
+ * If fingerprint of file is not changed - stubs are loaded without reading of file. Otherwise content of file is hashed, and stubs are
+ * searched by hash, so rebuilt jars or touched files are not parsed again. Segments which are written with other
+ * {@link NapileFileElementType#STUB_VERSION} are dropped.
+ * <p/>
+ * Cache is registered as application service, while compilation with cache directory is executed
+ *
+ * @author VISTALL
+ * @since 14:30/19.10.26
+ */
+public class NapileStubCache
+{
+	private static final Logger LOGGER = Logger.getInstance(NapileStubCache.class);
+
+	private static final int MAGIC = 0x4E535443;
+	private static final int FORMAT_VERSION = 1;
+
+	private static final class Record
+	{
+		private final long timeStamp;
+		private final long length;
+		private final String hash;
+		private final byte[] data;
+
+		private Record(long timeStamp, long length, @NotNull String hash, @NotNull byte[] data)
+		{
+			this.timeStamp = timeStamp;
+			this.length = length;
+			this.hash = hash;
+			this.data = data;
+		}
+	}
+
+	private static final class Segment
+	{
+		private final File file;
+		private final String rootUrl;
+
+		private final Map<String, Record> records = new HashMap<String, Record>();
+		private final Map<String, byte[]> dataByHash = new HashMap<String, byte[]>();
+
+		private DataOutputStream output;
+
+		private Segment(@NotNull File file, @NotNull String rootUrl)
+		{
+			this.file = file;
+			this.rootUrl = rootUrl;
+		}
+
+		private void load()
+		{
+			if(!file.exists())
+				return;
+
+			int obsoleteRecords = 0;
+			boolean corrupted = false;
+			DataInputStream in = null;
+			try
+			{
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+				if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readInt() != NapileFileElementType.STUB_VERSION || !rootUrl.equals(in.readUTF()))
+				{
+					close(in);
+					in = null;
+					file.delete();
+					return;
+				}
+
+				while(true)
+				{
+					String path;
+					try
+					{
+						path = in.readUTF();
+					}
+					catch(EOFException e)
+					{
+						break;
+					}
+
+					long timeStamp = in.readLong();
+					long length = in.readLong();
+					String hash = in.readUTF();
+					byte[] data = new byte[in.readInt()];
+					in.readFully(data);
+
+					if(records.put(path, new Record(timeStamp, length, hash, data)) != null)
+						obsoleteRecords++;
+					dataByHash.put(hash, data);
+				}
+			}
+			catch(IOException e)
+			{
+				// last record was not written completely
+				corrupted = true;
+			}
+			finally
+			{
+				close(in);
+			}
+
+			if(corrupted || obsoleteRecords > records.size())
+				rewrite();
+		}
+
+		private void rewrite()
+		{
+			File tempFile = new File(file.getPath() + ".tmp");
+			try
+			{
+				DataOutputStream out = openOutput(tempFile, false);
+				try
+				{
+					for(Map.Entry<String, Record> entry : records.entrySet())
+						writeRecord(out, entry.getKey(), entry.getValue());
+				}
+				finally
+				{
+					out.close();
+				}
+
+				if(!file.delete() || !tempFile.renameTo(file))
+					throw new IOException("Can't replace " + file);
+			}
+			catch(IOException e)
+			{
+				LOGGER.warn("Can't compact stub cache: " + file, e);
+
+				records.clear();
+				dataByHash.clear();
+				tempFile.delete();
+				file.delete();
+			}
+		}
+
+		@NotNull
+		private DataOutputStream openOutput(@NotNull File file, boolean append) throws IOException
+		{
+			boolean writeHeader = !append || !file.exists();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append)));
+			if(writeHeader)
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeInt(NapileFileElementType.STUB_VERSION);
+				out.writeUTF(rootUrl);
+			}
+			return out;
+		}
+
+		private void append(@NotNull String path, @NotNull Record record)
+		{
+			records.put(path, record);
+			dataByHash.put(record.hash, record.data);
+
+			try
+			{
+				if(output == null)
+					output = openOutput(file, true);
+				writeRecord(output, path, record);
+			}
+			catch(IOException e)
+			{
+				LOGGER.warn("Can't write stub cache: " + file, e);
+				close(output);
+				output = null;
+			}
+		}
+
+		private static void writeRecord(@NotNull DataOutputStream out, @NotNull String path, @NotNull Record record) throws IOException
+		{
+			out.writeUTF(path);
+			out.writeLong(record.timeStamp);
+			out.writeLong(record.length);
+			out.writeUTF(record.hash);
+			out.writeInt(record.data.length);
+			out.write(record.data);
+		}
+
+		private void flush()
+		{
+			if(output != null)
+			{
+				close(output);
+				output = null;
+			}
+		}
+	}
+
+	private final File directory;
+	private final ConcurrentMap<String, Segment> segments = new ConcurrentHashMap<String, Segment>();
+	private final Set<String> roots = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	public NapileStubCache(@NotNull File directory)
+	{
+		this.directory = directory;
+	}
+
+	@NotNull
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	/**
+	 * @return registered cache, or null if stubs are not cached
+	 */
+	@Nullable
+	public static NapileStubCache getInstance()
+	{
+		return ServiceManager.getService(NapileStubCache.class);
+	}
+
+	/**
+	 * Files under root are stored in own segment. Files without registered root are stored in segment of topmost directory,
+	 * for jar entries it is root of jar
+	 */
+	public void addRoot(@NotNull VirtualFile root)
+	{
+		roots.add(root.getUrl());
+	}
+
+	@Nullable
+	public StubTree get(@NotNull VirtualFile file)
+	{
+		VirtualFile root = findRoot(file);
+		String path = VfsUtilCore.getRelativePath(file, root, '/');
+		if(path == null)
+			return null;
+
+		Segment segment = getSegment(root);
+		byte[] data;
+		synchronized(segment)
+		{
+			Record record = segment.records.get(path);
+			if(record != null && record.timeStamp == file.getTimeStamp() && record.length == file.getLength())
+				data = record.data;
+			else
+			{
+				String hash = hash(file);
+				data = hash == null ? null : segment.dataByHash.get(hash);
+				if(data == null)
+					return null;
+
+				segment.append(path, new Record(file.getTimeStamp(), file.getLength(), hash, data));
+			}
+		}
+
+		try
+		{
+			return new StubTree(NapileStubTreeSerializer.read(data));
+		}
+		catch(IOException e)
+		{
+			LOGGER.warn("Can't read stubs of " + file.getPresentableUrl() + " from cache", e);
+			return null;
+		}
+	}
+
+	public void put(@NotNull VirtualFile file, @NotNull StubTree stubTree)
+	{
+		if(!(stubTree.getRoot() instanceof NapilePsiFileStub))
+			return;
+
+		VirtualFile root = findRoot(file);
+		String path = VfsUtilCore.getRelativePath(file, root, '/');
+		if(path == null)
+			return;
+
+		byte[] data = NapileStubTreeSerializer.write((NapilePsiFileStub) stubTree.getRoot());
+		String hash = hash(file);
+		if(data == null || hash == null)
+			return;
+
+		Segment segment = getSegment(root);
+		synchronized(segment)
+		{
+			segment.append(path, new Record(file.getTimeStamp(), file.getLength(), hash, data));
+		}
+	}
+
+	/**
+	 * Writes appended records to disk. Cache can be used after it
+	 */
+	public void flush()
+	{
+		for(Segment segment : segments.values())
+		{
+			synchronized(segment)
+			{
+				segment.flush();
+			}
+		}
+	}
+
+	@NotNull
+	private VirtualFile findRoot(@NotNull VirtualFile file)
+	{
+		VirtualFile root = file;
+		for(VirtualFile parent = file.getParent(); parent != null; parent = parent.getParent())
+		{
+			root = parent;
+			if(roots.contains(parent.getUrl()))
+				break;
+		}
+		return root;
+	}
+
+	@NotNull
+	private Segment getSegment(@NotNull VirtualFile root)
+	{
+		String rootUrl = root.getUrl();
+		Segment segment = segments.get(rootUrl);
+		if(segment != null)
+			return segment;
+
+		String name = Hashing.md5().hashString(rootUrl, Charsets.UTF_8).toString() + ".stubs";
+		segment = new Segment(new File(directory, name), rootUrl);
+
+		// other threads wait for loading on segment lock
+		synchronized(segment)
+		{
+			Segment oldSegment = segments.putIfAbsent(rootUrl, segment);
+			if(oldSegment != null)
+				return oldSegment;
+
+			directory.mkdirs();
+			segment.load();
+		}
+		return segment;
+	}
+
+	@Nullable
+	private static String hash(@NotNull VirtualFile file)
+	{
+		try
+		{
+			return Hashing.murmur3_128().hashBytes(file.contentsToByteArray()).toString();
+		}
+		catch(IOException e)
+		{
+			return null;
+		}
+	}
+
+	private static void close(@Nullable Closeable closeable)
+	{
+		if(closeable == null)
+			return;
+		try
+		{
+			closeable.close();
+		}
+		catch(IOException e)
+		{
+			// ignored
+		}
+	}
+}
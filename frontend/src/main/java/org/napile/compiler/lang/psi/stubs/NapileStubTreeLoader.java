@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.lang.psi.stubs;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.NXmlFileType;
+import org.napile.compiler.NapileFileType;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.stubs.ObjectStubTree;
+import com.intellij.psi.stubs.StubTree;
+import com.intellij.psi.stubs.StubTreeLoader;
+
+/**
+ * Stub loader, which reads stubs of napile files from {@link NapileStubCache}, and stores built stubs of source files in it.
+ * Stubs of compiled files are built by {@link org.napile.compiler.lang.psi.impl.NXmlFileImpl}, and stored by it
+ *
+ * @author VISTALL
+ * @since 15:05/19.10.26
+ */
+public class NapileStubTreeLoader extends StubTreeLoader
+{
+	private final StubTreeLoader delegate;
+	private final NapileStubCache cache;
+
+	public NapileStubTreeLoader(@NotNull StubTreeLoader delegate, @NotNull NapileStubCache cache)
+	{
+		this.delegate = delegate;
+		this.cache = cache;
+	}
+
+	@Nullable
+	@Override
+	public ObjectStubTree readOrBuild(Project project, VirtualFile vFile, @Nullable PsiFile psiFile)
+	{
+		if(!isNapileFile(vFile))
+			return delegate.readOrBuild(project, vFile, psiFile);
+
+		StubTree stubTree = cache.get(vFile);
+		if(stubTree != null)
+			return stubTree;
+
+		ObjectStubTree builtTree = delegate.readOrBuild(project, vFile, psiFile);
+		if(builtTree instanceof StubTree)
+			cache.put(vFile, (StubTree) builtTree);
+		return builtTree;
+	}
+
+	@Nullable
+	@Override
+	public ObjectStubTree readFromVFile(Project project, VirtualFile vFile)
+	{
+		return delegate.readFromVFile(project, vFile);
+	}
+
+	@Override
+	public void rebuildStubTree(VirtualFile virtualFile)
+	{
+		delegate.rebuildStubTree(virtualFile);
+	}
+
+	@Override
+	public boolean canHaveStub(VirtualFile vFile)
+	{
+		return delegate.canHaveStub(vFile);
+	}
+
+	@NotNull
+	public StubTreeLoader getDelegate()
+	{
+		return delegate;
+	}
+
+	private static boolean isNapileFile(@NotNull VirtualFile file)
+	{
+		FileType fileType = file.getFileType();
+		return fileType == NapileFileType.INSTANCE || fileType == NXmlFileType.INSTANCE;
+	}
+}
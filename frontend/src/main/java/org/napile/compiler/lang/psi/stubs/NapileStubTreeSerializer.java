@@ -0,0 +1,181 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.lang.psi.stubs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.compiler.lang.psi.stubs.elements.NapileStubElementTypes;
+import com.intellij.psi.stubs.IStubElementType;
+import com.intellij.psi.stubs.NamedStub;
+import com.intellij.psi.stubs.StubElement;
+
+/**
+ * Compact form of stub tree for {@link NapileStubCache}. Unlike serialization of element types, it does not need
+ * name storage of IDEA index, so stub trees can be stored without IDEA infrastructure.
+ * <p/>
+ * Format depends on stub classes - {@link org.napile.compiler.lang.psi.stubs.elements.NapileFileElementType#STUB_VERSION} must be changed with them
+ *
+ * @author VISTALL
+ * @since 14:10/19.10.26
+ */
+class NapileStubTreeSerializer
+{
+	private static final IStubElementType[] TYPES = new IStubElementType[]
+	{
+			NapileStubElementTypes.CLASS,
+			NapileStubElementTypes.CONSTRUCTOR,
+			NapileStubElementTypes.METHOD,
+			NapileStubElementTypes.MACRO,
+			NapileStubElementTypes.VARIABLE,
+			NapileStubElementTypes.ENUM_VALUE,
+			NapileStubElementTypes.CALL_PARAMETER_AS_VARIABLE,
+			NapileStubElementTypes.MODIFIER_LIST,
+			NapileStubElementTypes.CALL_PARAMETER_LIST,
+			NapileStubElementTypes.TYPE_PARAMETER,
+			NapileStubElementTypes.TYPE_PARAMETER_LIST
+	};
+
+	/**
+	 * @return bytes of tree, or null if tree contains unknown stubs
+	 */
+	@Nullable
+	static byte[] write(@NotNull NapilePsiFileStub fileStub)
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeUTF(fileStub.getFqName().getFqName());
+			out.writeBoolean(fileStub.isCompiled());
+			if(!writeChildren(fileStub, out))
+				return null;
+			out.close();
+			return bytes.toByteArray();
+		}
+		catch(IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static boolean writeChildren(@NotNull StubElement<?> stub, @NotNull DataOutputStream out) throws IOException
+	{
+		List<StubElement> children = stub.getChildrenStubs();
+		out.writeInt(children.size());
+		for(StubElement child : children)
+		{
+			int type = indexOf(child.getStubType());
+			if(type == -1)
+				return false;
+
+			out.writeByte(type);
+			if(child instanceof NapilePsiClassStub)
+			{
+				out.writeUTF(((NapilePsiClassStub) child).getFqName().getFqName());
+				writeName(((NapilePsiClassStub) child).getName(), out);
+			}
+			else if(child instanceof NapilePsiModifierListStub)
+				out.writeInt(((NapilePsiModifierListStub) child).getModifiers());
+			else if(child instanceof NamedStub && !(child instanceof NapilePsiConstructorStub))
+				writeName(((NamedStub<?>) child).getName(), out);
+
+			if(!writeChildren(child, out))
+				return false;
+		}
+		return true;
+	}
+
+	@NotNull
+	static NapilePsiFileStub read(@NotNull byte[] bytes) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		NapilePsiFileStub fileStub = new NapilePsiFileStub(null, new FqName(in.readUTF()), in.readBoolean());
+		readChildren(fileStub, in);
+		return fileStub;
+	}
+
+	private static void readChildren(@NotNull StubElement<?> parent, @NotNull DataInputStream in) throws IOException
+	{
+		int size = in.readInt();
+		for(int i = 0; i < size; i++)
+		{
+			int type = in.readByte();
+			if(type < 0 || type >= TYPES.length)
+				throw new IOException("Unknown stub type: " + type);
+
+			// stub is added to children of parent by constructor
+			StubElement<?> stub;
+			IStubElementType elementType = TYPES[type];
+			if(elementType == NapileStubElementTypes.CLASS)
+			{
+				FqName fqName = new FqName(in.readUTF());
+				stub = new NapilePsiClassStub(parent, fqName, readName(in));
+			}
+			else if(elementType == NapileStubElementTypes.CONSTRUCTOR)
+				stub = new NapilePsiConstructorStub(parent);
+			else if(elementType == NapileStubElementTypes.METHOD)
+				stub = new NapilePsiMethodStub(parent, readName(in));
+			else if(elementType == NapileStubElementTypes.MACRO)
+				stub = new NapilePsiMacroStub(parent, readName(in));
+			else if(elementType == NapileStubElementTypes.VARIABLE)
+				stub = new NapilePsiVariableStub(parent, readName(in));
+			else if(elementType == NapileStubElementTypes.ENUM_VALUE)
+				stub = new NapilePsiEnumValueStub(parent, readName(in));
+			else if(elementType == NapileStubElementTypes.CALL_PARAMETER_AS_VARIABLE)
+				stub = new NapilePsiCallParameterAsVariableStub(parent, readName(in));
+			else if(elementType == NapileStubElementTypes.MODIFIER_LIST)
+				stub = new NapilePsiModifierListStub(parent, in.readInt());
+			else if(elementType == NapileStubElementTypes.CALL_PARAMETER_LIST)
+				stub = new NapilePsiCallParameterListStub(parent);
+			else if(elementType == NapileStubElementTypes.TYPE_PARAMETER)
+				stub = new NapilePsiTypeParameterStub(parent, readName(in));
+			else
+				stub = new NapilePsiTypeParameterListStub(parent);
+
+			readChildren(stub, in);
+		}
+	}
+
+	private static int indexOf(@Nullable IStubElementType elementType)
+	{
+		for(int i = 0; i < TYPES.length; i++)
+			if(TYPES[i] == elementType)
+				return i;
+		return -1;
+	}
+
+	private static void writeName(@Nullable String name, @NotNull DataOutputStream out) throws IOException
+	{
+		out.writeBoolean(name != null);
+		if(name != null)
+			out.writeUTF(name);
+	}
+
+	@Nullable
+	private static String readName(@NotNull DataInputStream in) throws IOException
+	{
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+}
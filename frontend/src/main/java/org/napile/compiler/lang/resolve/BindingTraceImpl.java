@@ -22,9 +22,9 @@ import java.util.List;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.napile.compiler.lang.diagnostics.Diagnostic;
+import org.napile.compiler.util.slicedmap.CompactSlicedMap;
 import org.napile.compiler.util.slicedmap.MutableSlicedMap;
 import org.napile.compiler.util.slicedmap.ReadOnlySlice;
-import org.napile.compiler.util.slicedmap.SlicedMapImpl;
 import org.napile.compiler.util.slicedmap.WritableSlice;
 import com.google.common.collect.Lists;
 import com.intellij.psi.PsiCompiledElement;
@@ -36,7 +36,7 @@ public class BindingTraceImpl implements BindingTrace
 {
 	private final List<Diagnostic> diagnostics = Lists.newArrayList();
 
-	private final MutableSlicedMap map = SlicedMapImpl.create();
+	private final MutableSlicedMap map = CompactSlicedMap.create();
 
 	@Override
 	public void report(@NotNull Diagnostic diagnostic)
@@ -18,6 +18,7 @@ package org.napile.compiler.lang.resolve;
 
 import java.util.Collection;
 
+import org.napile.compiler.lang.cfg.pseudocode.Pseudocode;
 import org.napile.compiler.lang.descriptors.*;
 import org.napile.compiler.lang.descriptors.annotations.AnnotationDescriptor;
 import org.napile.compiler.lang.psi.*;
@@ -91,6 +92,17 @@ public interface BindingTraceKeys
 
 	WritableSlice<VariableDescriptor, Boolean> CAPTURED_IN_CLOSURE = Slices.createSimpleSetSlice();
 
+	/**
+	 * Classes of compiled module(classes of compiled libraries are not included).
+	 * Filled by {@link org.napile.compiler.lang.resolve.processors.OverrideResolver}, and used for devirtualization of calls
+	 */
+	WritableSlice<ClassDescriptor, Boolean> MODULE_CLASS = Slices.createSimpleSetSlice();
+
+	/**
+	 * Post-processed control flow graph of declaration, see {@link org.napile.compiler.lang.cfg.NapileControlFlowProcessor#getPseudocode}
+	 */
+	WritableSlice<NapileDeclaration, Pseudocode> PSEUDOCODE = Slices.createSimpleSlice();
+
 	//    enum DeferredTypeKey {DEFERRED_TYPE_KEY}
 	//    WritableSlice<DeferredTypeKey, Collection<DeferredType>> DEFERRED_TYPES = Slices.createSimpleSlice();
 
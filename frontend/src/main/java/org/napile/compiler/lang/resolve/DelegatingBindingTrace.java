@@ -17,15 +17,16 @@
 package org.napile.compiler.lang.resolve;
 
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.napile.compiler.lang.diagnostics.Diagnostic;
-import org.napile.compiler.util.slicedmap.MutableSlicedMap;
+import org.napile.compiler.util.slicedmap.CompactSlicedMap;
 import org.napile.compiler.util.slicedmap.ReadOnlySlice;
-import org.napile.compiler.util.slicedmap.SlicedMapImpl;
+import org.napile.compiler.util.slicedmap.RewritePolicy;
 import org.napile.compiler.util.slicedmap.SlicedMapKey;
 import org.napile.compiler.util.slicedmap.Slices;
 import org.napile.compiler.util.slicedmap.WritableSlice;
@@ -33,14 +34,30 @@ import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
 
 /**
+ * Records are stored in own map and in layers - sealed maps, which are never changed after sealing. When data is added
+ * to other delegating trace, layers are shared - not copied. Neighbour layers are merged while older one is not
+ * two times bigger than newer, so lookup walks only logarithmic count of layers.
+ * Rewrite policy is checked when value is recorded, or when layer is added - against older layers of trace.
+ * Layers, which are added to other trace, are not merged - so next commit to same trace adds only new layers
+ *
  * @author abreslav
  */
 public class DelegatingBindingTrace implements BindingTrace
 {
 	private final BindingTrace parentTrace;
-	private final MutableSlicedMap map = SlicedMapImpl.create();
+	@Nullable
+	private CompactSlicedMap map;
+	// oldest first
+	@Nullable
+	private List<CompactSlicedMap> layers;
 	private final List<Diagnostic> diagnostics = Lists.newArrayList();
 
+	// trace, which received layers and diagnostics of this trace last time, and count of them
+	@Nullable
+	private DelegatingBindingTrace sharedTo;
+	private int sharedLayers;
+	private int sharedDiagnostics;
+
 	public DelegatingBindingTrace(BindingTrace parentTrace)
 	{
 		this.parentTrace = parentTrace;
@@ -49,6 +66,11 @@ public class DelegatingBindingTrace implements BindingTrace
 	@Override
 	public <K, V> void record(WritableSlice<K, V> slice, K key, V value)
 	{
+		if(!checkRewrite(slice, key, value))
+			return;
+
+		if(map == null)
+			map = CompactSlicedMap.create();
 		map.put(slice, key, value);
 	}
 
@@ -68,17 +90,16 @@ public class DelegatingBindingTrace implements BindingTrace
 	@Override
 	public <K, V> V get(ReadOnlySlice<K, V> slice, K key)
 	{
-		V value = map.get(slice, key);
-		if(slice instanceof Slices.SetSlice)
+		V value = map == null ? null : find(map, slice, key);
+		if(value == null && layers != null)
 		{
-			assert value != null;
-			if(value.equals(true))
-				return value;
+			for(int i = layers.size() - 1; i >= 0 && value == null; i--)
+				value = find(layers.get(i), slice, key);
 		}
-		else if(value != null)
-		{
+
+		// 'false' in set slice hides only own older records
+		if(value != null && !(slice instanceof Slices.SetSlice && value.equals(false)))
 			return value;
-		}
 
 		return parentTrace.get(slice, key);
 	}
@@ -94,37 +115,66 @@ public class DelegatingBindingTrace implements BindingTrace
 	@Override
 	public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice)
 	{
-		Collection<K> keys = map.getKeys(slice);
 		Collection<K> fromParent = parentTrace.getKeys(slice);
-		if(keys.isEmpty())
-			return fromParent;
-		if(fromParent.isEmpty())
-			return keys;
 
-		List<K> result = Lists.newArrayList(keys);
-		result.addAll(fromParent);
-		return result;
-	}
+		// insertion order - layers are oldest first, and own map is newest. Key can be recorded in few layers
+		Collection<K> result = null;
+		if(layers != null)
+			for(CompactSlicedMap layer : layers)
+				result = addKeys(result, layer.getKeys(slice));
+		if(map != null)
+			result = addKeys(result, map.getKeys(slice));
 
-	public void addAllMyDataTo(@NotNull BindingTrace trace)
-	{
-		addAllMyDataTo(trace, null, true);
+		if(result == null)
+			return fromParent;
+		List<K> keys = Lists.newArrayList(result);
+		keys.addAll(fromParent);
+		return keys;
 	}
 
-	public void addAllMyDataTo(@NotNull BindingTrace trace, @Nullable Predicate<WritableSlice> filter, boolean commitDiagnostics)
+	public void addAllMyDataTo(@NotNull BindingTrace trace)
 	{
-		for(Map.Entry<SlicedMapKey<?, ?>, ?> entry : map)
+		if(trace instanceof DelegatingBindingTrace && trace != this)
 		{
-			SlicedMapKey slicedMapKey = entry.getKey();
-			Object value = entry.getValue();
+			DelegatingBindingTrace delegatingTrace = (DelegatingBindingTrace) trace;
 
-			WritableSlice slice = slicedMapKey.getSlice();
-			if(filter == null || filter.apply(slice))
+			seal();
+			delegatingTrace.seal();
+
+			// data, which is already added to this trace, is not added again
+			if(sharedTo != delegatingTrace)
 			{
-				//noinspection unchecked
-				trace.record(slice, slicedMapKey.getKey(), value);
+				sharedLayers = 0;
+				sharedDiagnostics = 0;
 			}
+
+			if(layers != null)
+				for(int i = sharedLayers; i < layers.size(); i++)
+				{
+					delegatingTrace.checkRewrites(layers.get(i));
+					delegatingTrace.addLayer(layers.get(i));
+				}
+
+			for(int i = sharedDiagnostics; i < diagnostics.size(); i++)
+				trace.report(diagnostics.get(i));
+
+			sharedTo = delegatingTrace;
+			sharedLayers = layers == null ? 0 : layers.size();
+			sharedDiagnostics = diagnostics.size();
+		}
+		else
+		{
+			addAllMyDataTo(trace, null, true);
 		}
+	}
+
+	public void addAllMyDataTo(@NotNull BindingTrace trace, @Nullable Predicate<WritableSlice> filter, boolean commitDiagnostics)
+	{
+		if(layers != null)
+			for(CompactSlicedMap layer : layers)
+				copy(layer, trace, filter);
+		if(map != null)
+			copy(map, trace, filter);
 
 		if(!commitDiagnostics)
 			return;
@@ -137,8 +187,14 @@ public class DelegatingBindingTrace implements BindingTrace
 
 	public void clear()
 	{
-		map.clear();
+		// layers can be shared with other traces - so only drop references
+		map = null;
+		layers = null;
 		diagnostics.clear();
+
+		sharedTo = null;
+		sharedLayers = 0;
+		sharedDiagnostics = 0;
 	}
 
 	@Override
@@ -153,4 +209,127 @@ public class DelegatingBindingTrace implements BindingTrace
 	{
 		return diagnostics;
 	}
+
+	private void seal()
+	{
+		if(map == null)
+			return;
+
+		CompactSlicedMap sealed = map;
+		map = null;
+		addLayer(sealed);
+	}
+
+	private void addLayer(@NotNull CompactSlicedMap layer)
+	{
+		if(layer.isEmpty())
+			return;
+
+		if(layers == null)
+			layers = Lists.newArrayList();
+		layers.add(layer);
+
+		// shared layers are kept as is - they are skipped by next commit
+		int size = layers.size();
+		while(size - 2 >= sharedLayers)
+		{
+			CompactSlicedMap older = layers.get(size - 2);
+			CompactSlicedMap newer = layers.get(size - 1);
+			if(older.size() > newer.size() * 2)
+				break;
+
+			CompactSlicedMap merged = CompactSlicedMap.create();
+			copy(older, merged);
+			copy(newer, merged);
+
+			layers.remove(--size);
+			layers.set(size - 1, merged);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void checkRewrites(@NotNull CompactSlicedMap layer)
+	{
+		if(layers == null)
+			return;
+
+		for(Map.Entry<SlicedMapKey<?, ?>, ?> entry : layer)
+		{
+			SlicedMapKey slicedMapKey = entry.getKey();
+			checkRewrite(slicedMapKey.getSlice(), slicedMapKey.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Own map is checked by {@link CompactSlicedMap#put}, here value is checked against layers
+	 *
+	 * @return false if value must be skipped
+	 */
+	private <K, V> boolean checkRewrite(@NotNull WritableSlice<K, V> slice, K key, V value)
+	{
+		if(layers == null || !slice.check(key, value))
+			return true;
+
+		RewritePolicy rewritePolicy = slice.getRewritePolicy();
+		if(!rewritePolicy.rewriteProcessingNeeded(key))
+			return true;
+
+		for(int i = layers.size() - 1; i >= 0; i--)
+		{
+			CompactSlicedMap layer = layers.get(i);
+			if(layer.containsKey(slice, key))
+				return rewritePolicy.processRewrite(slice, key, layer.get(slice, key), value);
+		}
+		return true;
+	}
+
+	/**
+	 * @return null if map does not contains key
+	 */
+	@Nullable
+	private static <K, V> V find(@NotNull CompactSlicedMap map, @NotNull ReadOnlySlice<K, V> slice, K key)
+	{
+		V value = map.get(slice, key);
+		if(slice instanceof Slices.SetSlice)
+		{
+			assert value != null;
+			return value.equals(true) || map.containsKey(slice, key) ? value : null;
+		}
+		return value;
+	}
+
+	@Nullable
+	private static <K> Collection<K> addKeys(@Nullable Collection<K> result, @NotNull Collection<K> keys)
+	{
+		if(keys.isEmpty())
+			return result;
+		if(result == null)
+			result = new LinkedHashSet<K>();
+		result.addAll(keys);
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void copy(@NotNull CompactSlicedMap from, @NotNull BindingTrace trace, @Nullable Predicate<WritableSlice> filter)
+	{
+		for(Map.Entry<SlicedMapKey<?, ?>, ?> entry : from)
+		{
+			SlicedMapKey slicedMapKey = entry.getKey();
+			WritableSlice slice = slicedMapKey.getSlice();
+			if(filter == null || filter.apply(slice))
+			{
+				trace.record(slice, slicedMapKey.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void copy(@NotNull CompactSlicedMap from, @NotNull CompactSlicedMap to)
+	{
+		for(Map.Entry<SlicedMapKey<?, ?>, ?> entry : from)
+		{
+			SlicedMapKey slicedMapKey = entry.getKey();
+			to.put(slicedMapKey.getSlice(), slicedMapKey.getKey(), entry.getValue());
+		}
+	}
 }
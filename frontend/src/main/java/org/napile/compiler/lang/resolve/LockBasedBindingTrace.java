@@ -0,0 +1,139 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.lang.resolve;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.diagnostics.Diagnostic;
+import org.napile.compiler.util.slicedmap.ReadOnlySlice;
+import org.napile.compiler.util.slicedmap.WritableSlice;
+
+/**
+ * Trace wrapper which can be shared between threads. Lookups are done under read lock - so they can run in parallel,
+ * while records and reports are exclusive
+ *
+ * @author VISTALL
+ * @since 12:40/18.10.26
+ */
+public class LockBasedBindingTrace implements BindingTrace
+{
+	private final BindingTrace originalTrace;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public LockBasedBindingTrace(@NotNull BindingTrace originalTrace)
+	{
+		this.originalTrace = originalTrace;
+	}
+
+	@Override
+	public <K, V> void record(WritableSlice<K, V> slice, K key, V value)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			originalTrace.record(slice, key, value);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public <K> void record(WritableSlice<K, Boolean> slice, K key)
+	{
+		record(slice, key, true);
+	}
+
+	@Nullable
+	@Override
+	public BindingTrace getParent()
+	{
+		return originalTrace;
+	}
+
+	@Override
+	public <K, V> V get(ReadOnlySlice<K, V> slice, K key)
+	{
+		lock.readLock().lock();
+		try
+		{
+			return originalTrace.get(slice, key);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	@NotNull
+	@Override
+	public <K, V> V safeGet(ReadOnlySlice<K, V> slice, K key)
+	{
+		return get(slice, key);
+	}
+
+	@NotNull
+	@Override
+	public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice)
+	{
+		lock.readLock().lock();
+		try
+		{
+			return new ArrayList<K>(originalTrace.getKeys(slice));
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void report(@NotNull Diagnostic diagnostic)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			originalTrace.report(diagnostic);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	@NotNull
+	@Override
+	public List<Diagnostic> getDiagnostics()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return new ArrayList<Diagnostic>(originalTrace.getDiagnostics());
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+}
@@ -17,6 +17,7 @@
 package org.napile.compiler.lang.resolve;
 
 import java.io.PrintStream;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -50,13 +51,14 @@ public class TopDownAnalysisContext implements BodiesResolveContext
 {
 
 	private final Map<NapileClass, MutableClassDescriptor> classes = Maps.newLinkedHashMap();
-	private final Map<NapileAnonymClass, MutableClassDescriptor> objects = Maps.newLinkedHashMap();
+	// anonym classes and their members are added while bodies are resolved, it can be done by pool threads
+	private final Map<NapileAnonymClass, MutableClassDescriptor> objects = Collections.synchronizedMap(Maps.<NapileAnonymClass, MutableClassDescriptor>newLinkedHashMap());
 	private final Map<NapileFile, PackageDescriptor> packages = Maps.newHashMap();
 
-	private final Map<NapileDeclaration, NapileScope> declaringScopes = Maps.newHashMap();
-	private final Map<NapileConstructor, ConstructorDescriptor> constructors = Maps.newLinkedHashMap();
+	private final Map<NapileDeclaration, NapileScope> declaringScopes = new ConcurrentHashMap<NapileDeclaration, NapileScope>();
+	private final Map<NapileConstructor, ConstructorDescriptor> constructors = Collections.synchronizedMap(Maps.<NapileConstructor, ConstructorDescriptor>newLinkedHashMap());
 	private final Map<NapileNamedMethodOrMacro, SimpleMethodDescriptor> methods = new ConcurrentHashMap<NapileNamedMethodOrMacro, SimpleMethodDescriptor>();
-	private final Map<NapileVariable, VariableDescriptor> variables = Maps.newLinkedHashMap();
+	private final Map<NapileVariable, VariableDescriptor> variables = Collections.synchronizedMap(Maps.<NapileVariable, VariableDescriptor>newLinkedHashMap());
 	private final Map<NapileEnumValue, MutableClassDescriptor> enumValues = Maps.newLinkedHashMap();
 	private Map<NapileDeclaration, CallableMemberDescriptor> members = null;
 
@@ -30,11 +30,18 @@ public class TopDownAnalysisParameters
 	@NotNull
 	private final Predicate<NapileFile> analyzeCompletely;
 	private final boolean declaredLocally;
+	private final int bodyResolveThreads;
 
 	public TopDownAnalysisParameters(@NotNull Predicate<NapileFile> analyzeCompletely, boolean declaredLocally)
+	{
+		this(analyzeCompletely, declaredLocally, 1);
+	}
+
+	public TopDownAnalysisParameters(@NotNull Predicate<NapileFile> analyzeCompletely, boolean declaredLocally, int bodyResolveThreads)
 	{
 		this.analyzeCompletely = analyzeCompletely;
 		this.declaredLocally = declaredLocally;
+		this.bodyResolveThreads = bodyResolveThreads;
 	}
 
 	@NotNull
@@ -47,4 +54,9 @@ public class TopDownAnalysisParameters
 	{
 		return declaredLocally;
 	}
+
+	public int getBodyResolveThreads()
+	{
+		return bodyResolveThreads;
+	}
 }
@@ -26,6 +26,7 @@ import javax.inject.Inject;
 import org.jetbrains.annotations.NotNull;
 import org.napile.asm.resolve.name.FqName;
 import org.napile.compiler.analyzer.AnalyzeContext;
+import org.napile.compiler.analyzer.LibraryFileCollector;
 import org.napile.compiler.lang.descriptors.DescriptorBuilder;
 import org.napile.compiler.lang.descriptors.DescriptorBuilderDummy;
 import org.napile.compiler.lang.descriptors.ModuleDescriptor;
@@ -44,9 +45,9 @@ import org.napile.compiler.lang.resolve.scopes.WritableScope;
 import org.napile.compiler.lang.resolve.scopes.WritableScopeImpl;
 import org.napile.compiler.plugin.CompilerPlugin;
 import org.napile.compiler.plugin.CompilerPluginManager;
+import org.napile.compiler.util.CompilerStatistics;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiFile;
 import com.intellij.psi.PsiManager;
 
 /**
@@ -157,29 +158,50 @@ public class TopDownAnalyzer
 		//        context.enableDebugOutput();
 		context.debug("Enter");
 
+		// local declarations are analyzed inside bodies phase - they are not measured separately
+		CompilerStatistics.Phase phase = topDownAnalysisParameters.isDeclaredLocally() ? CompilerStatistics.Phase.NONE : CompilerStatistics.startPhase("resolve.typeHierarchy");
+
 		typeHierarchyResolver.process(outerScope, owner, declarations);
 
+		phase = phase.next("resolve.declarations");
+
 		declarationResolver.process(outerScope);
 
+		phase = phase.next("resolve.annotations");
+
 		annotationResolver.resolveBindAnnotations(trace); // check declarations annotations
 
+		phase = phase.next("resolve.plugins");
+
 		for(CompilerPlugin compilerPlugin : CompilerPluginManager.INSTANCE.getPlugins())
 		{
 			compilerPlugin.process(outerScope, trace, context, declarations);
 		}
 
+		phase = phase.next("resolve.overrides");
+
 		overrideResolver.process();
 
 		lockScopes();
 
+		phase = phase.next("resolve.overloads");
+
 		overloadResolver.process();
 
+		phase = phase.next("resolve.bodies");
+
 		bodyResolver.resolveBodies(context);
 
+		phase = phase.next("resolve.bodyAnnotations");
+
 		annotationResolver.resolveBindAnnotations(trace); // need call again for body annotations
 
+		phase = phase.next("resolve.annotationChecks");
+
 		annotationChecker.process();
 
+		phase.end();
+
 		context.debug("Exit");
 		context.printDebugOutput(System.out);
 	}
@@ -198,6 +220,20 @@ public class TopDownAnalyzer
 		{
 			namespaceScope.getValue().changeLockLevel(WritableScope.LockLevel.READING);
 		}
+
+		// all declaration scopes are locked - lookup results can be cached
+		for(MutableClassDescriptor mutableClassDescriptor : context.getClasses().values())
+		{
+			mutableClassDescriptor.freezeScopes();
+		}
+		for(MutableClassDescriptor mutableClassDescriptor : context.getAnonymous().values())
+		{
+			mutableClassDescriptor.freezeScopes();
+		}
+		for(WritableScope namespaceScope : context.getPackageScope().values())
+		{
+			namespaceScope.freeze();
+		}
 	}
 
 	public void analyzeFiles(@NotNull Project project, @NotNull AnalyzeContext analyzeContext)
@@ -216,37 +252,18 @@ public class TopDownAnalyzer
 
 		DescriptorBuilderDummy owner = new DescriptorBuilderDummy();
 
-		PsiManager manager = PsiManager.getInstance(project);
-		List<NapileFile> files = new ArrayList<NapileFile>(analyzeContext.getFiles().size());
-
-		for(VirtualFile virtualFile : analyzeContext.getBootpath())
-		{
-			collect(files, virtualFile, manager);
-		}
+		List<VirtualFile> libraryRoots = new ArrayList<VirtualFile>(analyzeContext.getBootpath());
+		libraryRoots.addAll(analyzeContext.getClasspath());
 
+		// only library classes which are referenced from sources (directly or from other library classes) are analyzed
+		CompilerStatistics.Phase phase = CompilerStatistics.startPhase("resolve.libraryFiles");
+		List<NapileFile> files = LibraryFileCollector.collect(PsiManager.getInstance(project), libraryRoots, analyzeContext.getFiles());
 		files.addAll(analyzeContext.getFiles());
-
+		phase.end();
+		CompilerStatistics.setCounter("resolve.files", files.size());
 
 		// dummy builder is used because "root" is module descriptor,
 		// namespaces added to module explicitly in
 		doProcess(scope, owner, files);
 	}
-
-	private void collect(@NotNull List<NapileFile> list, @NotNull VirtualFile virtualFile, @NotNull PsiManager manager)
-	{
-		PsiFile file = manager.findFile(virtualFile);
-		if(file instanceof NapileFile)
-			list.add(((NapileFile) file));
-		else
-		{
-			final VirtualFile[] children = virtualFile.getChildren();
-			if(children == null)
-				return;
-
-			for(VirtualFile child : children)
-			{
-				collect(list, child, manager);
-			}
-		}
-	}
 }
\ No newline at end of file
@@ -78,6 +78,7 @@ import org.napile.compiler.lang.types.TypeSubstitutor;
 import org.napile.compiler.lang.types.TypeUtils;
 import org.napile.compiler.lang.types.checker.NapileTypeChecker;
 import org.napile.compiler.lang.types.expressions.ExpressionTypingServices;
+import org.napile.compiler.util.CompilerStatistics;
 import org.napile.compiler.util.slicedmap.WritableSlice;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
@@ -293,9 +294,11 @@ public class CallResolver
 				DelegatingBindingTrace delegatingTrace = context.trace.safeGet(TRACE_DELTAS_CACHE, (NapileExpression) element);
 
 				delegatingTrace.addAllMyDataTo(context.trace);
+				CompilerStatistics.count(CompilerStatistics.CALLS_CACHED, 1);
 				return cachedResults;
 			}
 		}
+		CompilerStatistics.count(CompilerStatistics.CALLS_RESOLVED, 1);
 		TemporaryBindingTrace delegatingBindingTrace = TemporaryBindingTrace.create(context.trace);
 		BasicResolutionContext newContext = context.replaceTrace(delegatingBindingTrace);
 		OverloadResolutionResults<F> results = doResolveCall(newContext, prioritizedTasks, callTransformer, reference, bindReference);
@@ -585,11 +588,13 @@ public class CallResolver
 	@NotNull
 	private <D extends CallableDescriptor, F extends D> OverloadResolutionResultsImpl<F> performResolution(@NotNull ResolutionTask<D, F> task, @NotNull CallTransformer<D, F> callTransformer, @NotNull BindingTrace traceForResolutionCache, boolean bindReference)
 	{
+		CompilerStatistics.count(CompilerStatistics.CALL_CANDIDATES, task.getCandidates().size());
 
 		for(ResolutionCandidate<D> resolutionCandidate : task.getCandidates())
 		{
 			TemporaryBindingTrace candidateTrace = TemporaryBindingTrace.create(task.trace);
 			Collection<CallResolutionContext<D, F>> contexts = callTransformer.createCallContexts(resolutionCandidate, task, candidateTrace);
+			CompilerStatistics.count(CompilerStatistics.CALL_CANDIDATE_CALLS, contexts.size());
 			for(CallResolutionContext<D, F> context : contexts)
 			{
 				performResolutionForCandidateCall(context, task);
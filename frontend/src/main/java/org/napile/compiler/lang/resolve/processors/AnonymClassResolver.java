@@ -82,7 +82,7 @@ public class AnonymClassResolver
 	{
 		final MutableClassDescriptor mutableClassDescriptor = new MutableClassDescriptor(owner, scope, ClassKind.ANONYM_CLASS, anonymClass.getNameAsSafeName(), Collections.<AnnotationDescriptor>emptyList(), false);
 
-		bodyResolver.getContext().getAnonymous().put(anonymClass, mutableClassDescriptor);
+		bodyResolver.addAnonymous(anonymClass, mutableClassDescriptor);
 
 		ConstructorDescriptor constructorDescriptor = new ConstructorDescriptor(mutableClassDescriptor, Collections.<AnnotationDescriptor>emptyList(), false);
 		constructorDescriptor.initialize(Collections.<TypeParameterDescriptor>emptyList(), Collections.<CallParameterDescriptor>emptyList(), Visibility.PUBLIC);
@@ -100,9 +100,9 @@ public class AnonymClassResolver
 		mutableClassDescriptor.setTypeParameterDescriptors(Collections.<TypeParameterDescriptor>emptyList());
 		mutableClassDescriptor.createTypeConstructor();
 
-		declarationResolver.resolveInsideDeclarations(anonymClass, mutableClassDescriptor.getScopeForMemberResolution(), mutableClassDescriptor);
+		declarationResolver.resolveInsideDeclarations(bindingTrace, anonymClass, mutableClassDescriptor.getScopeForMemberResolution(), mutableClassDescriptor);
 
-		bodyResolver.resolveDelegationSpecifierList(anonymClass, mutableClassDescriptor, mutableClassDescriptor.getScopeForSupertypeResolution(), true);
+		bodyResolver.resolveDelegationSpecifierList(bindingTrace, anonymClass, mutableClassDescriptor, mutableClassDescriptor.getScopeForSupertypeResolution(), true);
 
 		for(NapileDeclaration declaration : anonymClass.getDeclarations())
 		{
@@ -113,7 +113,7 @@ public class AnonymClassResolver
 				{
 					NapileExpression initializer = property.getInitializer();
 					if(initializer != null)
-						bodyResolver.resolvePropertyInitializer(property, bindingTrace.safeGet(BindingTraceKeys.VARIABLE, property), initializer, mutableClassDescriptor.getScopeForMemberResolution());
+						bodyResolver.resolvePropertyInitializer(bindingTrace, property, bindingTrace.safeGet(BindingTraceKeys.VARIABLE, property), initializer, mutableClassDescriptor.getScopeForMemberResolution());
 				}
 
 				@Override
@@ -123,13 +123,13 @@ public class AnonymClassResolver
 				}
 			});
 		}
-		overrideResolver.doGenerateOverridesInAClass(mutableClassDescriptor);
+		overrideResolver.doGenerateOverridesInAClass(bindingTrace, mutableClassDescriptor);
 
-		overrideResolver.checkOverridesInAClass(mutableClassDescriptor, anonymClass);
+		overrideResolver.checkOverridesInAClass(bindingTrace, mutableClassDescriptor, anonymClass);
 
 		Collection<CallableMemberDescriptor> members = mutableClassDescriptor.getAllCallableMembers();
 		for(CallableMemberDescriptor member : members)
-			overrideResolver.checkOverridesForParameters(member);
+			overrideResolver.checkOverridesForParameters(bindingTrace, member);
 		return mutableClassDescriptor;
 	}
 }
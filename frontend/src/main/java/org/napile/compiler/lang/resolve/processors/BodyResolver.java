@@ -18,18 +18,37 @@ package org.napile.compiler.lang.resolve.processors;
 
 import static org.napile.compiler.lang.resolve.BindingTraceKeys.DEFERRED_TYPE;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.compiler.lang.descriptors.*;
 import org.napile.compiler.lang.diagnostics.Errors;
 import org.napile.compiler.lang.psi.*;
 import org.napile.compiler.lang.resolve.BindingTraceKeys;
 import org.napile.compiler.lang.resolve.BindingTrace;
 import org.napile.compiler.lang.resolve.BodiesResolveContext;
+import org.napile.compiler.lang.resolve.DelegatingBindingTrace;
+import org.napile.compiler.lang.resolve.DescriptorUtils;
+import org.napile.compiler.lang.resolve.LockBasedBindingTrace;
 import org.napile.compiler.lang.resolve.ObservableBindingTrace;
 import org.napile.compiler.lang.resolve.TopDownAnalysisParameters;
 import org.napile.compiler.lang.resolve.calls.CallMaker;
@@ -45,8 +64,13 @@ import org.napile.compiler.lang.types.TypeUtils;
 import org.napile.compiler.lang.types.expressions.ExpressionTypingServices;
 import org.napile.compiler.lang.types.expressions.VariableAccessorResolver;
 import org.napile.compiler.util.Box;
+import org.napile.compiler.util.CompilerStatistics;
 import org.napile.compiler.util.lazy.ReenteringLazyValueComputationException;
 import org.napile.compiler.util.slicedmap.WritableSlice;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
 import com.intellij.util.containers.Queue;
 
 /**
@@ -148,17 +172,17 @@ public class BodyResolver
 	private void resolveDelegationSpecifierLists()
 	{
 		for(Map.Entry<NapileConstructor, ConstructorDescriptor> entry : context.getConstructors().entrySet())
-			resolveDelegationSpecifierList(entry.getKey(), entry.getValue(), entry.getValue().getParametersScope(), false);
+			resolveDelegationSpecifierList(trace, entry.getKey(), entry.getValue(), entry.getValue().getParametersScope(), false);
 
 		// anonym resolved later
 		//for(Map.Entry<NapileAnonymClass, MutableClassDescriptor> entry : context.getAnonymous().entrySet())
 		//	resolveDelegationSpecifierList(entry.getKey(), entry.getValue(), entry.getValue().getScopeForSupertypeResolution());
 
 		for(Map.Entry<NapileEnumValue, MutableClassDescriptor> entry : context.getEnumValues().entrySet())
-			resolveDelegationSpecifierList(entry.getKey(), entry.getValue(), entry.getValue().getScopeForSupertypeResolution(), true);
+			resolveDelegationSpecifierList(trace, entry.getKey(), entry.getValue(), entry.getValue().getScopeForSupertypeResolution(), true);
 	}
 
-	public void resolveDelegationSpecifierList(final NapileDelegationSpecifierListOwner owner, @NotNull final DeclarationDescriptor declarationDescriptor, final @NotNull NapileScope napileScope, boolean canSuperTraitedClass)
+	public void resolveDelegationSpecifierList(@NotNull BindingTrace trace, final NapileDelegationSpecifierListOwner owner, @NotNull final DeclarationDescriptor declarationDescriptor, final @NotNull NapileScope napileScope, boolean canSuperTraitedClass)
 	{
 		if(!context.completeAnalysisNeeded(owner))
 			return;
@@ -201,7 +225,7 @@ public class BodyResolver
 		}
 	}
 
-	public void resolvePropertyInitializer(NapileVariable property, VariableDescriptor propertyDescriptor, NapileExpression initializer, NapileScope scope)
+	public void resolvePropertyInitializer(@NotNull BindingTrace trace, NapileVariable property, VariableDescriptor propertyDescriptor, NapileExpression initializer, NapileScope scope)
 	{
 		//JetFlowInformationProvider flowInformationProvider = context.getDescriptorResolver().computeFlowData(property, initializer); // TODO : flow JET-15
 		NapileType expectedTypeForInitializer = property.getType() != null ? propertyDescriptor.getType() : TypeUtils.NO_EXPECTED_TYPE;
@@ -220,57 +244,215 @@ public class BodyResolver
 
 	private void resolveBodies()
 	{
-		for(Map.Entry<NapileVariable, VariableDescriptor> entry : this.context.getVariables().entrySet())
+		List<BodyTask> tasks = collectBodyTasks();
+
+		int threads = topDownAnalysisParameters.getBodyResolveThreads();
+		if(threads > 1 && tasks.size() > 1 && !topDownAnalysisParameters.isDeclaredLocally())
 		{
-			NapileVariable variable = entry.getKey();
-			if(!context.completeAnalysisNeeded(variable))
+			resolveBodiesParallel(tasks, threads);
+		}
+		else
+		{
+			for(BodyTask task : tasks)
+			{
+				task.prepare();
+				task.run(trace, !topDownAnalysisParameters.isDeclaredLocally());
+			}
+		}
+	}
+
+	/**
+	 * Deferred return types are computed before all bodies in declaration order, because they can require bodies of other declarations.
+	 * All other deferred types of main trace are computed too - lazy value of deferred type is not thread safe, and records to trace
+	 * which was used on creating. After it bodies are independent - each is resolved in pool thread with own trace, and deferred
+	 * types which are created by body stay in this thread. Traces are committed in declaration order, so result does not depend on scheduling.
+	 * Anonym classes of body are resolved with trace of body too, their declarations are sorted in context after all bodies
+	 */
+	private void resolveBodiesParallel(@NotNull List<BodyTask> tasks, int threads)
+	{
+		for(BodyTask task : tasks)
+			task.prepare();
+
+		computeAllDeferredTypes(trace);
+
+		final BindingTrace sharedTrace = new LockBasedBindingTrace(trace);
+
+		int anonymousSize = context.getAnonymous().size();
+		int constructorsSize = context.getConstructors().size();
+		int variablesSize = context.getVariables().size();
+
+		ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, tasks.size()), new BodyResolverThreadFactory());
+		try
+		{
+			List<Future<DelegatingBindingTrace>> futures = new ArrayList<Future<DelegatingBindingTrace>>(tasks.size());
+			for(final BodyTask task : tasks)
+				futures.add(executorService.submit(new Callable<DelegatingBindingTrace>()
+				{
+					@Override
+					public DelegatingBindingTrace call() throws Exception
+					{
+						DelegatingBindingTrace taskTrace = new DelegatingBindingTrace(sharedTrace);
+						task.run(taskTrace, true);
+						// deferred types of task are recording to task trace - it can't be done after commit
+						computeAllDeferredTypes(taskTrace);
+						return taskTrace;
+					}
+				}));
+
+			// other tasks are still running - so commit only by shared trace
+			for(Future<DelegatingBindingTrace> future : futures)
+				future.get().addAllMyDataTo(sharedTrace);
+
+			Map<PsiElement, Integer> taskIndexes = new HashMap<PsiElement, Integer>(tasks.size());
+			for(int i = 0; i < tasks.size(); i++)
+				taskIndexes.put(tasks.get(i).declaration, i);
+
+			sortAddedDeclarations(context.getAnonymous(), anonymousSize, taskIndexes);
+			sortAddedDeclarations(context.getConstructors(), constructorsSize, taskIndexes);
+			sortAddedDeclarations(context.getVariables(), variablesSize, taskIndexes);
+		}
+		catch(InterruptedException e)
+		{
+			throw new ProcessCanceledException(e);
+		}
+		catch(ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if(cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if(cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+		finally
+		{
+			executorService.shutdownNow();
+		}
+	}
+
+	/**
+	 * Declarations of anonym classes are added to context by pool threads in any order. They are moved to order of sequential
+	 * resolution - by body, which contains them, and by position in it
+	 */
+	private static <K extends NapileElement, V> void sortAddedDeclarations(@NotNull Map<K, V> map, int oldSize, @NotNull final Map<PsiElement, Integer> taskIndexes)
+	{
+		if(map.size() == oldSize)
+			return;
+
+		List<Map.Entry<K, V>> added = new ArrayList<Map.Entry<K, V>>(map.size() - oldSize);
+		Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+		for(int i = 0; iterator.hasNext(); i++)
+		{
+			Map.Entry<K, V> entry = iterator.next();
+			if(i < oldSize)
 				continue;
 
-			final VariableDescriptor propertyDescriptor = entry.getValue();
+			added.add(new AbstractMap.SimpleEntry<K, V>(entry));
+			iterator.remove();
+		}
 
-			computeDeferredType(propertyDescriptor.getReturnType());
+		Collections.sort(added, new Comparator<Map.Entry<K, V>>()
+		{
+			@Override
+			public int compare(Map.Entry<K, V> o1, Map.Entry<K, V> o2)
+			{
+				int index1 = getTaskIndex(o1.getKey(), taskIndexes);
+				int index2 = getTaskIndex(o2.getKey(), taskIndexes);
+				if(index1 != index2)
+					return index1 < index2 ? -1 : 1;
+				int offset1 = o1.getKey().getTextOffset();
+				int offset2 = o2.getKey().getTextOffset();
+				return offset1 < offset2 ? -1 : (offset1 == offset2 ? 0 : 1);
+			}
+		});
+
+		for(Map.Entry<K, V> entry : added)
+			map.put(entry.getKey(), entry.getValue());
+	}
+
+	private static int getTaskIndex(@NotNull PsiElement element, @NotNull Map<PsiElement, Integer> taskIndexes)
+	{
+		for(PsiElement e = element; e != null; e = e.getParent())
+		{
+			Integer index = taskIndexes.get(e);
+			if(index != null)
+				return index;
+		}
+		return Integer.MAX_VALUE;
+	}
 
-			NapileScope declaringScope = this.context.getDeclaringScopes().get(variable);
+	@NotNull
+	private List<BodyTask> collectBodyTasks()
+	{
+		List<BodyTask> tasks = new ArrayList<BodyTask>();
+		for(Map.Entry<NapileVariable, VariableDescriptor> entry : this.context.getVariables().entrySet())
+		{
+			final NapileVariable variable = entry.getKey();
+			if(!context.completeAnalysisNeeded(variable))
+				continue;
 
-			NapileExpression initializer = variable.getInitializer();
-			if(initializer != null)
-				resolvePropertyInitializer(variable, propertyDescriptor, initializer, declaringScope);
+			final VariableDescriptor propertyDescriptor = entry.getValue();
+			final NapileScope declaringScope = this.context.getDeclaringScopes().get(variable);
 
-			for(NapileVariableAccessor accessor : variable.getAccessors())
+			tasks.add(new BodyTask(propertyDescriptor.getReturnType(), variable, propertyDescriptor)
 			{
-				final VariableAccessorDescriptor descriptor = trace.get(VariableAccessorResolver.getSliceForAccessor(accessor), accessor);
-				if(descriptor == null || accessor.getBodyExpression() == null)
+				@Override
+				void resolve(@NotNull BindingTrace trace)
 				{
-					continue;
-				}
+					NapileExpression initializer = variable.getInitializer();
+					if(initializer != null)
+						resolvePropertyInitializer(trace, variable, propertyDescriptor, initializer, declaringScope);
 
-				resolveBody(trace, accessor, descriptor, declaringScope, true);
-			}
+					for(NapileVariableAccessor accessor : variable.getAccessors())
+					{
+						final VariableAccessorDescriptor descriptor = trace.get(VariableAccessorResolver.getSliceForAccessor(accessor), accessor);
+						if(descriptor == null || accessor.getBodyExpression() == null)
+						{
+							continue;
+						}
+
+						resolveBody(trace, accessor, descriptor, declaringScope, true);
+					}
+				}
+			});
 		}
 
 		for(Map.Entry<NapileNamedMethodOrMacro, SimpleMethodDescriptor> entry : this.context.getMethods().entrySet())
 		{
-			NapileNamedMethodOrMacro declaration = entry.getKey();
-			SimpleMethodDescriptor descriptor = entry.getValue();
-
-			computeDeferredType(descriptor.getReturnType());
+			final NapileNamedMethodOrMacro declaration = entry.getKey();
+			final SimpleMethodDescriptor descriptor = entry.getValue();
 
-			NapileScope declaringScope = this.context.getDeclaringScopes().get(declaration);
+			final NapileScope declaringScope = this.context.getDeclaringScopes().get(declaration);
 			assert declaringScope != null;
 
-			resolveBody(trace, declaration, descriptor, declaringScope, false);
+			tasks.add(new BodyTask(descriptor.getReturnType(), declaration, descriptor)
+			{
+				@Override
+				void resolve(@NotNull BindingTrace trace)
+				{
+					resolveBody(trace, declaration, descriptor, declaringScope, false);
+				}
+			});
 		}
 
 		for(Map.Entry<NapileConstructor, ConstructorDescriptor> entry : context.getConstructors().entrySet())
 		{
-			NapileConstructor declaration = entry.getKey();
-			ConstructorDescriptor descriptor = entry.getValue();
+			final NapileConstructor declaration = entry.getKey();
+			final ConstructorDescriptor descriptor = entry.getValue();
 
-			NapileScope declaringScope = context.getDeclaringScopes().get(declaration);
+			final NapileScope declaringScope = context.getDeclaringScopes().get(declaration);
 			assert declaringScope != null;
 
-			resolveBody(trace, declaration, descriptor, declaringScope, false);
+			tasks.add(new BodyTask(null, declaration, descriptor)
+			{
+				@Override
+				void resolve(@NotNull BindingTrace trace)
+				{
+					resolveBody(trace, declaration, descriptor, declaringScope, false);
+				}
+			});
 		}
+		return tasks;
 	}
 
 	public void resolveBody(@NotNull BindingTrace trace, @NotNull NapileDeclarationWithBody function, @NotNull MethodDescriptor methodDescriptor, @NotNull NapileScope declaringScope, boolean variableAccessor)
@@ -337,9 +519,119 @@ public class BodyResolver
 		}
 	}
 
+	/**
+	 * Computes deferred types of trace, including types which are created while computing, without registering of record handler
+	 */
+	private static void computeAllDeferredTypes(@NotNull BindingTrace trace)
+	{
+		// type which failed by reentering can stay not computed - it's tried only once
+		Set<DeferredType> visited = Sets.newIdentityHashSet();
+		boolean computed = true;
+		while(computed)
+		{
+			computed = false;
+
+			Collection<Box<DeferredType>> keys = trace.getKeys(DEFERRED_TYPE);
+			if(keys == null)
+				return;
+
+			for(Box<DeferredType> box : new ArrayList<Box<DeferredType>>(keys))
+			{
+				DeferredType deferredType = box.getData();
+				if(deferredType.isComputed() || !visited.add(deferredType))
+					continue;
+
+				computed = true;
+				try
+				{
+					deferredType.getActualType();
+				}
+				catch(ReenteringLazyValueComputationException e)
+				{
+					// A problem should be reported while computing the type
+				}
+			}
+		}
+	}
+
 	@NotNull
 	public BodiesResolveContext getContext()
 	{
 		return context;
 	}
+
+	/**
+	 * Can be called by pool threads, while bodies are resolved in parallel
+	 */
+	public void addAnonymous(@NotNull NapileAnonymClass anonymClass, @NotNull MutableClassDescriptor classDescriptor)
+	{
+		context.getAnonymous().put(anonymClass, classDescriptor);
+	}
+
+	private static abstract class BodyTask
+	{
+		@Nullable
+		private final NapileType returnType;
+		@NotNull
+		private final NapileDeclaration declaration;
+		@NotNull
+		private final DeclarationDescriptor descriptor;
+
+		BodyTask(@Nullable NapileType returnType, @NotNull NapileDeclaration declaration, @NotNull DeclarationDescriptor descriptor)
+		{
+			this.returnType = returnType;
+			this.declaration = declaration;
+			this.descriptor = descriptor;
+		}
+
+		void prepare()
+		{
+			computeDeferredType(returnType);
+		}
+
+		/**
+		 * @param measure false for bodies of local declarations - their time is a part of enclosing body
+		 */
+		void run(@NotNull BindingTrace trace, boolean measure)
+		{
+			if(!measure || CompilerStatistics.getCurrent() == null)
+			{
+				resolve(trace);
+				return;
+			}
+
+			long time = System.nanoTime();
+			try
+			{
+				resolve(trace);
+			}
+			finally
+			{
+				time = System.nanoTime() - time;
+
+				NapileFile file = declaration.getContainingFile();
+				VirtualFile virtualFile = file.getVirtualFile();
+				CompilerStatistics.recordTime(CompilerStatistics.BODY_RESOLVE_FILES, virtualFile == null ? file.getName() : virtualFile.getPath(), time);
+
+				DeclarationDescriptor owner = descriptor.getContainingDeclaration();
+				if(owner != null)
+					CompilerStatistics.recordTime(CompilerStatistics.BODY_RESOLVE_CLASSES, DescriptorUtils.getFQName(owner).getFqName(), time);
+			}
+		}
+
+		abstract void resolve(@NotNull BindingTrace trace);
+	}
+
+	private static class BodyResolverThreadFactory implements ThreadFactory
+	{
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, "body-resolver-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
 }
@@ -102,11 +102,11 @@ public class DeclarationResolver
 			NapileClass napileClass = entry.getKey();
 			MutableClassDescriptor classDescriptor = entry.getValue();
 
-			resolveInsideDeclarations(napileClass, classDescriptor.getScopeForMemberResolution(), classDescriptor);
+			resolveInsideDeclarations(trace, napileClass, classDescriptor.getScopeForMemberResolution(), classDescriptor);
 		}
 	}
 
-	public void resolveInsideDeclarations(@NotNull NapileDeclarationContainer<NapileDeclaration> declarationOwner, final @NotNull NapileScope scope, final @NotNull MutableClassDescriptor ownerDescription)
+	public void resolveInsideDeclarations(final @NotNull BindingTrace trace, @NotNull NapileDeclarationContainer<NapileDeclaration> declarationOwner, final @NotNull NapileScope scope, final @NotNull MutableClassDescriptor ownerDescription)
 	{
 		for(NapileDeclaration declaration : declarationOwner.getDeclarations())
 		{
@@ -33,10 +33,14 @@ import org.napile.compiler.lang.psi.NapileCallParameterAsVariable;
 import org.napile.compiler.lang.psi.NapileClass;
 import org.napile.compiler.lang.psi.NapileClassLike;
 import org.napile.compiler.lang.psi.NapileDeclaration;
+import org.napile.compiler.lang.psi.NapileElement;
+import org.napile.compiler.lang.psi.NapileEnumValue;
 import org.napile.compiler.lang.psi.NapileModifierList;
 import org.napile.compiler.lang.psi.NapileModifierListOwner;
 import org.napile.compiler.lang.psi.NapileNamedDeclaration;
 import org.napile.compiler.lang.psi.NapileVariable;
+import org.napile.compiler.lang.psi.impl.NXmlFileImpl;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
 import org.napile.compiler.lang.resolve.BindingTraceUtil;
 import org.napile.compiler.lang.resolve.BindingTrace;
 import org.napile.compiler.lang.resolve.OverridingUtil;
@@ -92,6 +96,7 @@ public class OverrideResolver
 	{
 		//all created fake descriptors are stored to resolve visibility on them later
 		generateOverrides();
+		recordModuleClasses();
 
 		checkVisibility();
 		checkOverrides();
@@ -138,10 +143,10 @@ public class OverrideResolver
 			}
 		}
 
-		doGenerateOverridesInAClass(classDescriptor);
+		doGenerateOverridesInAClass(trace, classDescriptor);
 	}
 
-	public void doGenerateOverridesInAClass(final MutableClassDescriptor classDescriptor)
+	public void doGenerateOverridesInAClass(@NotNull final BindingTrace trace, final MutableClassDescriptor classDescriptor)
 	{
 		List<CallableMemberDescriptor> membersFromSupertypes = getCallableMembersFromSupertypes(classDescriptor);
 
@@ -187,6 +192,24 @@ public class OverrideResolver
 		}
 	}
 
+	/**
+	 * Classes from compiled libraries(nxml files) are not module classes - library can be changed after compilation
+	 */
+	private void recordModuleClasses()
+	{
+		for(Map.Entry<NapileClass, MutableClassDescriptor> entry : context.getClasses().entrySet())
+			if(!isLibraryElement(entry.getKey()))
+				trace.record(BindingTraceKeys.MODULE_CLASS, entry.getValue());
+		for(Map.Entry<NapileEnumValue, MutableClassDescriptor> entry : context.getEnumValues().entrySet())
+			if(!isLibraryElement(entry.getKey()))
+				trace.record(BindingTraceKeys.MODULE_CLASS, entry.getValue());
+	}
+
+	private static boolean isLibraryElement(@NotNull NapileElement element)
+	{
+		return element.getContainingFile() instanceof NXmlFileImpl;
+	}
+
 	public interface DescriptorSink
 	{
 		void addToScope(@NotNull CallableMemberDescriptor fakeOverride);
@@ -352,17 +375,17 @@ public class OverrideResolver
 	private void checkOverrides()
 	{
 		for(Map.Entry<NapileClass, MutableClassDescriptor> entry : context.getClasses().entrySet())
-			checkOverridesInAClass(entry.getValue(), entry.getKey());
+			checkOverridesInAClass(trace, entry.getValue(), entry.getKey());
 		//for(Map.Entry<NapileAnonymClass, MutableClassDescriptor> entry : context.getAnonymous().entrySet())
 		//	checkOverridesInAClass(entry.getValue(), entry.getKey());
 	}
 
-	protected void checkOverridesInAClass(@NotNull MutableClassDescriptor classDescriptor, @NotNull NapileClassLike klass)
+	protected void checkOverridesInAClass(@NotNull BindingTrace trace, @NotNull MutableClassDescriptor classDescriptor, @NotNull NapileClassLike klass)
 	{
 		// Check overrides for internal consistency
 		for(CallableMemberDescriptor member : classDescriptor.getDeclaredCallableMembers())
 		{
-			checkOverrideForMember(member);
+			checkOverrideForMember(trace, member);
 		}
 
 		// Check if everything that must be overridden, actually is
@@ -487,7 +510,7 @@ public class OverrideResolver
 		return factoredMembers;
 	}
 
-	private void checkOverrideForMember(@NotNull CallableMemberDescriptor declared)
+	private void checkOverrideForMember(@NotNull BindingTrace trace, @NotNull CallableMemberDescriptor declared)
 	{
 		NapileNamedDeclaration member = (NapileNamedDeclaration) BindingTraceUtil.descriptorToDeclaration(trace, declared);
 		if(member == null)
@@ -609,12 +632,12 @@ public class OverrideResolver
 			Collection<CallableMemberDescriptor> members = classDescriptor.getAllCallableMembers();
 			for(CallableMemberDescriptor member : members)
 			{
-				checkOverridesForParameters(member);
+				checkOverridesForParameters(trace, member);
 			}
 		}
 	}
 
-	public void checkOverridesForParameters(CallableMemberDescriptor declared)
+	public void checkOverridesForParameters(@NotNull BindingTrace trace, CallableMemberDescriptor declared)
 	{
 		if(declared.getKind() == CallableMemberDescriptor.Kind.CREATED_BY_PLUGIN)
 		{
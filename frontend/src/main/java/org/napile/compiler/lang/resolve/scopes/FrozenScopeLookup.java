@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.lang.resolve.scopes;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.resolve.name.Name;
+import org.napile.compiler.lang.descriptors.ClassifierDescriptor;
+import org.napile.compiler.lang.descriptors.MethodDescriptor;
+import org.napile.compiler.lang.descriptors.VariableDescriptor;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.PrimitiveSink;
+
+/**
+ * Lookup results of frozen scope(see {@link WritableScope#freeze()}). Contains bloom filter of names, which are declared in scope self,
+ * and results of full lookup(own declarations, worker scope and imports) by name.
+ * <p/>
+ * Results are immutable, and can be shared between threads
+ *
+ * @author VISTALL
+ * @since 12:40/19.10.26
+ */
+class FrozenScopeLookup
+{
+	private static final Funnel<Name> NAME_FUNNEL = new Funnel<Name>()
+	{
+		@Override
+		public void funnel(Name from, PrimitiveSink into)
+		{
+			into.putString(from.getName());
+		}
+	};
+
+	private static final Object NULL_CLASSIFIER = new Object();
+
+	static final Object NOT_CACHED = new Object();
+
+	@NotNull
+	static BloomFilter<Name> createNameFilter(@NotNull Collection<Name> names)
+	{
+		BloomFilter<Name> filter = BloomFilter.create(NAME_FUNNEL, Math.max(names.size(), 16), 0.01);
+		for(Name name : names)
+			filter.put(name);
+		return filter;
+	}
+
+	@Nullable
+	private final BloomFilter<Name> ownNames;
+
+	private final ConcurrentMap<Name, Collection<MethodDescriptor>> methods = new ConcurrentHashMap<Name, Collection<MethodDescriptor>>();
+	private final ConcurrentMap<Name, Set<VariableDescriptor>> variables = new ConcurrentHashMap<Name, Set<VariableDescriptor>>();
+	private final ConcurrentMap<Name, Object> classifiers = new ConcurrentHashMap<Name, Object>();
+
+	FrozenScopeLookup(@Nullable BloomFilter<Name> ownNames)
+	{
+		this.ownNames = ownNames;
+	}
+
+	/**
+	 * @return false if scope self definitely does not declare anything with this name
+	 */
+	boolean mayDeclare(@NotNull Name name)
+	{
+		return ownNames == null || ownNames.mightContain(name);
+	}
+
+	@Nullable
+	Collection<MethodDescriptor> getMethods(@NotNull Name name)
+	{
+		return methods.get(name);
+	}
+
+	@NotNull
+	Collection<MethodDescriptor> cacheMethods(@NotNull Name name, @NotNull Collection<MethodDescriptor> result)
+	{
+		Collection<MethodDescriptor> value = result.isEmpty() ? Collections.<MethodDescriptor>emptySet() : Collections.unmodifiableCollection(result);
+		Collection<MethodDescriptor> oldValue = methods.putIfAbsent(name, value);
+		return oldValue == null ? value : oldValue;
+	}
+
+	@Nullable
+	Set<VariableDescriptor> getVariables(@NotNull Name name)
+	{
+		return variables.get(name);
+	}
+
+	@NotNull
+	Set<VariableDescriptor> cacheVariables(@NotNull Name name, @NotNull Set<VariableDescriptor> result)
+	{
+		Set<VariableDescriptor> value = result.isEmpty() ? Collections.<VariableDescriptor>emptySet() : Collections.unmodifiableSet(result);
+		Set<VariableDescriptor> oldValue = variables.putIfAbsent(name, value);
+		return oldValue == null ? value : oldValue;
+	}
+
+	/**
+	 * @return classifier, null if scope does not have it, or {@link #NOT_CACHED}
+	 */
+	@Nullable
+	Object getClassifier(@NotNull Name name)
+	{
+		Object value = classifiers.get(name);
+		if(value == null)
+			return NOT_CACHED;
+		return value == NULL_CLASSIFIER ? null : value;
+	}
+
+	@Nullable
+	ClassifierDescriptor cacheClassifier(@NotNull Name name, @Nullable ClassifierDescriptor result)
+	{
+		classifiers.putIfAbsent(name, result == null ? NULL_CLASSIFIER : result);
+		return result;
+	}
+}
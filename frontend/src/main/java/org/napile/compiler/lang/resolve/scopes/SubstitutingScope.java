@@ -18,8 +18,9 @@ package org.napile.compiler.lang.resolve.scopes;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -33,7 +34,6 @@ import org.napile.compiler.lang.descriptors.PackageDescriptor;
 import org.napile.compiler.lang.descriptors.VariableDescriptor;
 import org.napile.compiler.lang.resolve.scopes.receivers.ReceiverDescriptor;
 import org.napile.compiler.lang.types.TypeSubstitutor;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
@@ -45,8 +45,9 @@ public class SubstitutingScope implements NapileScope
 	private final NapileScope workerScope;
 	private final TypeSubstitutor substitutor;
 
-	private Map<DeclarationDescriptor, DeclarationDescriptor> substitutedDescriptors = null;
-	private Collection<DeclarationDescriptor> allDescriptors = null;
+	// scopes of library classes are shared by threads of body resolving
+	private volatile ConcurrentMap<DeclarationDescriptor, DeclarationDescriptor> substitutedDescriptors = null;
+	private volatile Collection<DeclarationDescriptor> allDescriptors = null;
 
 	public SubstitutingScope(NapileScope workerScope, @NotNull TypeSubstitutor substitutor)
 	{
@@ -62,16 +63,28 @@ public class SubstitutingScope implements NapileScope
 		if(substitutor.isEmpty())
 			return descriptor;
 
+		ConcurrentMap<DeclarationDescriptor, DeclarationDescriptor> substitutedDescriptors = this.substitutedDescriptors;
 		if(substitutedDescriptors == null)
 		{
-			substitutedDescriptors = Maps.newHashMap();
+			synchronized(this)
+			{
+				substitutedDescriptors = this.substitutedDescriptors;
+				if(substitutedDescriptors == null)
+					this.substitutedDescriptors = substitutedDescriptors = new ConcurrentHashMap<DeclarationDescriptor, DeclarationDescriptor>();
+			}
 		}
 
 		DeclarationDescriptor substituted = substitutedDescriptors.get(descriptor);
 		if(substituted == null)
 		{
 			substituted = descriptor.substitute(substitutor);
-			substitutedDescriptors.put(descriptor, substituted);
+			if(substituted == null)
+				return null;
+
+			// only one substituted descriptor must be visible
+			DeclarationDescriptor old = substitutedDescriptors.putIfAbsent(descriptor, substituted);
+			if(old != null)
+				substituted = old;
 		}
 		//noinspection unchecked
 		return (D) substituted;
@@ -173,6 +186,7 @@ public class SubstitutingScope implements NapileScope
 	@Override
 	public Collection<DeclarationDescriptor> getAllDescriptors()
 	{
+		Collection<DeclarationDescriptor> allDescriptors = this.allDescriptors;
 		if(allDescriptors == null)
 		{
 			allDescriptors = Sets.newHashSet();
@@ -185,6 +199,7 @@ public class SubstitutingScope implements NapileScope
 					allDescriptors.add(substitute);
 				}
 			}
+			this.allDescriptors = allDescriptors;
 		}
 		return allDescriptors;
 	}
@@ -43,6 +43,12 @@ public interface WritableScope extends NapileScope
 
 	WritableScope changeLockLevel(LockLevel lockLevel);
 
+	/**
+	 * Freezes scope, which is locked for reading - lookup results by name are cached. Must be called only
+	 * when worker and imported scopes are not changed anymore too(after locking all declaration scopes)
+	 */
+	void freeze();
+
 	void addVariableDescriptor(@NotNull VariableDescriptor variableDescriptor);
 
 	@Deprecated
@@ -18,6 +18,7 @@ package org.napile.compiler.lang.resolve.scopes;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -42,6 +43,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
+import com.google.common.hash.BloomFilter;
 
 /**
  * @author abreslav
@@ -222,7 +224,20 @@ public class WritableScopeImpl extends WritableScopeWithImports
 	{
 		checkMayRead();
 
-		Set<VariableDescriptor> result = Sets.newLinkedHashSet(getVariableGroups().get(name));
+		FrozenScopeLookup frozenLookup = getFrozenLookup();
+		if(frozenLookup == null)
+			return doGetVariables(name, true);
+
+		Set<VariableDescriptor> result = frozenLookup.getVariables(name);
+		if(result == null)
+			result = frozenLookup.cacheVariables(name, doGetVariables(name, frozenLookup.mayDeclare(name)));
+		return result;
+	}
+
+	@NotNull
+	private Set<VariableDescriptor> doGetVariables(@NotNull Name name, boolean mayDeclare)
+	{
+		Set<VariableDescriptor> result = mayDeclare ? Sets.newLinkedHashSet(getVariableGroups().get(name)) : Sets.<VariableDescriptor>newLinkedHashSet();
 
 		result.addAll(getWorkerScope().getVariables(name));
 
@@ -283,7 +298,20 @@ public class WritableScopeImpl extends WritableScopeWithImports
 	{
 		checkMayRead();
 
-		Set<MethodDescriptor> result = Sets.newLinkedHashSet(getMethodGroups().get(name));
+		FrozenScopeLookup frozenLookup = getFrozenLookup();
+		if(frozenLookup == null)
+			return doGetMethods(name, true);
+
+		Collection<MethodDescriptor> result = frozenLookup.getMethods(name);
+		if(result == null)
+			result = frozenLookup.cacheMethods(name, doGetMethods(name, frozenLookup.mayDeclare(name)));
+		return result;
+	}
+
+	@NotNull
+	private Collection<MethodDescriptor> doGetMethods(@NotNull Name name, boolean mayDeclare)
+	{
+		Set<MethodDescriptor> result = mayDeclare ? Sets.newLinkedHashSet(getMethodGroups().get(name)) : Sets.<MethodDescriptor>newLinkedHashSet();
 
 		result.addAll(getWorkerScope().getMethods(name));
 
@@ -374,6 +402,20 @@ public class WritableScopeImpl extends WritableScopeWithImports
 	}
 
 
+	@Nullable
+	@Override
+	protected BloomFilter<Name> createDeclaredNamesFilter()
+	{
+		Set<Name> names = new HashSet<Name>();
+		if(methodGroups != null)
+			names.addAll(methodGroups.keySet());
+		if(variableGroups != null)
+			names.addAll(variableGroups.keySet());
+		if(variableClassOrNamespaceDescriptors != null)
+			names.addAll(variableClassOrNamespaceDescriptors.keySet());
+		return FrozenScopeLookup.createNameFilter(names);
+	}
+
 	private void checkForRedeclaration(@NotNull Name name, DeclarationDescriptor classifierDescriptor)
 	{
 		DeclarationDescriptor originalDescriptor = getVariableClassOrNamespaceDescriptors().get(name);
@@ -388,10 +430,25 @@ public class WritableScopeImpl extends WritableScopeWithImports
 	{
 		checkMayRead();
 
-		Map<Name, DeclarationDescriptor> variableClassOrNamespaceDescriptors = getVariableClassOrNamespaceDescriptors();
-		DeclarationDescriptor descriptor = variableClassOrNamespaceDescriptors.get(name);
-		if(descriptor instanceof ClassifierDescriptor)
-			return (ClassifierDescriptor) descriptor;
+		FrozenScopeLookup frozenLookup = getFrozenLookup();
+		if(frozenLookup == null)
+			return doGetClassifier(name, true);
+
+		Object result = frozenLookup.getClassifier(name);
+		if(result == FrozenScopeLookup.NOT_CACHED)
+			return frozenLookup.cacheClassifier(name, doGetClassifier(name, frozenLookup.mayDeclare(name)));
+		return (ClassifierDescriptor) result;
+	}
+
+	@Nullable
+	private ClassifierDescriptor doGetClassifier(@NotNull Name name, boolean mayDeclare)
+	{
+		if(mayDeclare)
+		{
+			DeclarationDescriptor descriptor = getVariableClassOrNamespaceDescriptors().get(name);
+			if(descriptor instanceof ClassifierDescriptor)
+				return (ClassifierDescriptor) descriptor;
+		}
 
 		ClassifierDescriptor classifierDescriptor = getWorkerScope().getClassifier(name);
 		if(classifierDescriptor != null)
@@ -33,6 +33,7 @@ import org.napile.compiler.lang.descriptors.PackageDescriptor;
 import org.napile.compiler.lang.descriptors.VariableDescriptor;
 import org.napile.compiler.lang.resolve.scopes.receivers.ReceiverDescriptor;
 import com.google.common.collect.Sets;
+import com.google.common.hash.BloomFilter;
 
 /**
  * @author abreslav
@@ -58,6 +59,9 @@ public abstract class WritableScopeWithImports extends NapileScopeAdapter implem
 
 	private LockLevel lockLevel = LockLevel.WRITING;
 
+	@Nullable
+	private volatile FrozenScopeLookup frozenLookup;
+
 	@Override
 	public WritableScope changeLockLevel(LockLevel lockLevel)
 	{
@@ -69,6 +73,30 @@ public abstract class WritableScopeWithImports extends NapileScopeAdapter implem
 		return this;
 	}
 
+	@Override
+	public void freeze()
+	{
+		checkMayNotWrite();
+
+		if(frozenLookup == null)
+			frozenLookup = new FrozenScopeLookup(createDeclaredNamesFilter());
+	}
+
+	/**
+	 * @return filter of names, which are declared in this scope(not in worker or imported scopes), or null if it's not known
+	 */
+	@Nullable
+	protected BloomFilter<Name> createDeclaredNamesFilter()
+	{
+		return null;
+	}
+
+	@Nullable
+	protected final FrozenScopeLookup getFrozenLookup()
+	{
+		return frozenLookup;
+	}
+
 	protected void checkMayRead()
 	{
 		if(lockLevel != LockLevel.READING && lockLevel != LockLevel.BOTH)
@@ -72,6 +72,19 @@ public class WriteThroughScope extends WritableScopeWithImports
 	{
 		checkMayRead();
 
+		FrozenScopeLookup frozenLookup = getFrozenLookup();
+		if(frozenLookup == null)
+			return doGetMethods(name);
+
+		Collection<MethodDescriptor> result = frozenLookup.getMethods(name);
+		if(result == null)
+			result = frozenLookup.cacheMethods(name, doGetMethods(name));
+		return result;
+	}
+
+	@NotNull
+	private Collection<MethodDescriptor> doGetMethods(@NotNull Name name)
+	{
 		Set<MethodDescriptor> result = Sets.newLinkedHashSet();
 
 		result.addAll(writableWorker.getMethods(name));
@@ -89,6 +102,19 @@ public class WriteThroughScope extends WritableScopeWithImports
 	{
 		checkMayRead();
 
+		FrozenScopeLookup frozenLookup = getFrozenLookup();
+		if(frozenLookup == null)
+			return doGetVariables(name);
+
+		Set<VariableDescriptor> result = frozenLookup.getVariables(name);
+		if(result == null)
+			result = frozenLookup.cacheVariables(name, doGetVariables(name));
+		return result;
+	}
+
+	@NotNull
+	private Set<VariableDescriptor> doGetVariables(@NotNull Name name)
+	{
 		Set<VariableDescriptor> properties = Sets.newLinkedHashSet();
 		properties.addAll(writableWorker.getVariables(name));
 		properties.addAll(getWorkerScope().getVariables(name));
@@ -136,6 +162,19 @@ public class WriteThroughScope extends WritableScopeWithImports
 	{
 		checkMayRead();
 
+		FrozenScopeLookup frozenLookup = getFrozenLookup();
+		if(frozenLookup == null)
+			return doGetClassifier(name);
+
+		Object result = frozenLookup.getClassifier(name);
+		if(result == FrozenScopeLookup.NOT_CACHED)
+			return frozenLookup.cacheClassifier(name, doGetClassifier(name));
+		return (ClassifierDescriptor) result;
+	}
+
+	@Nullable
+	private ClassifierDescriptor doGetClassifier(@NotNull Name name)
+	{
 		ClassifierDescriptor classifier = writableWorker.getClassifier(name);
 		if(classifier != null)
 			return classifier;
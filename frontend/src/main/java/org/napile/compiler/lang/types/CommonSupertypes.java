@@ -25,7 +25,7 @@ import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
 import org.napile.compiler.lang.descriptors.TypeParameterDescriptor;
 import org.napile.compiler.lang.descriptors.annotations.AnnotationDescriptor;
 import org.napile.compiler.lang.resolve.scopes.NapileScope;
-import org.napile.compiler.lang.types.impl.NapileTypeImpl;
+import org.napile.compiler.lang.types.impl.NapileTypeInterner;
 
 /**
  * @author abreslav
@@ -96,9 +96,31 @@ public class CommonSupertypes
 		final Map<TypeConstructor, Set<NapileType>> constructorToAllInstances = new HashMap<TypeConstructor, Set<NapileType>>();
 		Set<TypeConstructor> commonSuperclasses = null;
 
+		// types with indexed hierarchy - their supertypes are taken from index
+		final Map<NapileType, SupertypeIndex> indexedTypes = new LinkedHashMap<NapileType, SupertypeIndex>();
+
 		List<TypeConstructor> order = null;
 		for(NapileType type : types)
 		{
+			SupertypeIndex supertypeIndex = SupertypeIndex.getIndex(type.getConstructor());
+			if(supertypeIndex != null)
+			{
+				indexedTypes.put(type, supertypeIndex);
+				order = supertypeIndex.getAncestors();
+
+				if(commonSuperclasses == null)
+					commonSuperclasses = new HashSet<TypeConstructor>(order);
+				else
+				{
+					for(Iterator<TypeConstructor> iterator = commonSuperclasses.iterator(); iterator.hasNext(); )
+					{
+						if(!supertypeIndex.isAncestor(iterator.next()))
+							iterator.remove();
+					}
+				}
+				continue;
+			}
+
 			Set<TypeConstructor> visited = new HashSet<TypeConstructor>();
 
 			order = dfs(type, visited, new DfsNodeHandler<List<TypeConstructor>>()
@@ -154,7 +176,18 @@ public class CommonSupertypes
 
 			if(!notSource.contains(superConstructor))
 			{
-				result.put(superConstructor, constructorToAllInstances.get(superConstructor));
+				Set<NapileType> instances = new HashSet<NapileType>();
+				Set<NapileType> dfsInstances = constructorToAllInstances.get(superConstructor);
+				if(dfsInstances != null)
+					instances.addAll(dfsInstances);
+				for(Map.Entry<NapileType, SupertypeIndex> entry : indexedTypes.entrySet())
+				{
+					NapileType instance = entry.getValue().getCorrespondingSupertype(entry.getKey(), superConstructor);
+					assert instance != null : superConstructor + " is not supertype of " + entry.getKey();
+					instances.add(instance);
+				}
+
+				result.put(superConstructor, instances);
 				markAll(superConstructor, notSource);
 			}
 		}
@@ -200,7 +233,7 @@ public class CommonSupertypes
 		{
 			newScope = ((ClassDescriptor) declarationDescriptor).getMemberScope(newProjections);
 		}
-		return new NapileTypeImpl(Collections.<AnnotationDescriptor>emptyList(), constructor, nullable, newProjections, newScope);
+		return NapileTypeInterner.create(Collections.<AnnotationDescriptor>emptyList(), constructor, nullable, newProjections, newScope);
 	}
 
 	@NotNull
@@ -216,6 +249,13 @@ public class CommonSupertypes
 
 	private static void markAll(@NotNull TypeConstructor typeConstructor, @NotNull Set<TypeConstructor> markerSet)
 	{
+		SupertypeIndex supertypeIndex = SupertypeIndex.getIndex(typeConstructor);
+		if(supertypeIndex != null)
+		{
+			markerSet.addAll(supertypeIndex.getAncestors());
+			return;
+		}
+
 		markerSet.add(typeConstructor);
 		for(NapileType type : typeConstructor.getSupertypes())
 		{
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.lang.types;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.types.impl.NapileTypeImpl;
+import org.napile.compiler.lang.types.impl.TypeConstructorImpl;
+
+/**
+ * Linearized hierarchy of type constructor. Contains all ancestors in order of {@link CommonSupertypes} (each constructor is before its supertypes),
+ * and supertype for each ancestor constructor, where type parameters of owner constructor are not substituted.
+ * <p/>
+ * Index is built lazily, on first query. Supertypes are changed while resolving hierarchy, so all indexes are invalidated
+ * by {@link #invalidateAll()}. Hierarchies with error or deferred supertypes are not indexed - callers must walk supertypes self.
+ *
+ * @author VISTALL
+ * @since 11:20/19.10.26
+ */
+public final class SupertypeIndex
+{
+	private static final AtomicInteger MODIFICATION_COUNT = new AtomicInteger();
+
+	/**
+	 * Must be called after changing supertypes of class, or upper bounds of type parameter
+	 */
+	public static void invalidateAll()
+	{
+		MODIFICATION_COUNT.incrementAndGet();
+	}
+
+	@Nullable
+	public static SupertypeIndex getIndex(@NotNull TypeConstructor constructor)
+	{
+		if(!(constructor instanceof TypeConstructorImpl))
+			return null;
+
+		TypeConstructorImpl constructorImpl = (TypeConstructorImpl) constructor;
+
+		int modificationCount = MODIFICATION_COUNT.get();
+		SupertypeIndex index = constructorImpl.getSupertypeIndex();
+		if(index == null || index.modificationCount != modificationCount)
+		{
+			index = build(constructorImpl, modificationCount);
+			constructorImpl.setSupertypeIndex(index);
+		}
+		return index.complete ? index : null;
+	}
+
+	@NotNull
+	private static SupertypeIndex build(@NotNull TypeConstructor constructor, int modificationCount)
+	{
+		SupertypeIndex index = new SupertypeIndex(constructor, modificationCount);
+
+		index.ancestorSet.add(constructor);
+		for(NapileType supertype : constructor.getSupertypes())
+		{
+			if(!index.ancestorSet.contains(supertype.getConstructor()))
+				index.visit(supertype);
+		}
+		index.ancestors.add(constructor);
+		Collections.reverse(index.ancestors);
+		return index;
+	}
+
+	private final TypeConstructor constructor;
+	private final int modificationCount;
+
+	private final List<TypeConstructor> ancestors = new ArrayList<TypeConstructor>();
+	private final Set<TypeConstructor> ancestorSet = new HashSet<TypeConstructor>();
+	private final Map<TypeConstructor, NapileType> supertypes = new HashMap<TypeConstructor, NapileType>();
+
+	private boolean complete = true;
+
+	private SupertypeIndex(@NotNull TypeConstructor constructor, int modificationCount)
+	{
+		this.constructor = constructor;
+		this.modificationCount = modificationCount;
+	}
+
+	// same walk as CommonSupertypes.dfs, with postorder
+	private void visit(@NotNull NapileType current)
+	{
+		if(!(current instanceof NapileTypeImpl) || ErrorUtils.isErrorType(current))
+		{
+			complete = false;
+			return;
+		}
+
+		TypeConstructor currentConstructor = current.getConstructor();
+		if(!ancestorSet.add(currentConstructor))
+			return;
+		supertypes.put(currentConstructor, current);
+
+		TypeSubstitutor substitutor = TypeSubstitutor.create(current);
+		for(NapileType supertype : currentConstructor.getSupertypes())
+		{
+			if(ancestorSet.contains(supertype.getConstructor()))
+				continue;
+			visit(substitutor.safeSubstitute(supertype));
+		}
+		ancestors.add(currentConstructor);
+	}
+
+	/**
+	 * @return owner constructor and all its ancestors, each constructor is placed before its supertypes
+	 */
+	@NotNull
+	public List<TypeConstructor> getAncestors()
+	{
+		return Collections.unmodifiableList(ancestors);
+	}
+
+	public boolean isAncestor(@NotNull TypeConstructor typeConstructor)
+	{
+		return ancestorSet.contains(typeConstructor);
+	}
+
+	/**
+	 * @param type type with owner constructor
+	 * @return supertype of given type with given constructor, with substituted type arguments
+	 */
+	@Nullable
+	public NapileType getCorrespondingSupertype(@NotNull NapileType type, @NotNull TypeConstructor superConstructor)
+	{
+		if(constructor.equals(superConstructor))
+			return type;
+
+		NapileType supertype = supertypes.get(superConstructor);
+		if(supertype == null)
+			return null;
+		if(constructor.getParameters().isEmpty())
+			return supertype;
+		return TypeSubstitutor.create(type).safeSubstitute(supertype);
+	}
+}
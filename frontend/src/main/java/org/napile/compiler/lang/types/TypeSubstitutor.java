@@ -17,7 +17,9 @@
 package org.napile.compiler.lang.types;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +33,7 @@ import org.napile.compiler.lang.descriptors.TypeParameterDescriptor;
 import org.napile.compiler.lang.resolve.scopes.NapileScope;
 import org.napile.compiler.lang.resolve.scopes.SubstitutingScope;
 import org.napile.compiler.lang.types.impl.NapileTypeImpl;
+import org.napile.compiler.lang.types.impl.NapileTypeInterner;
 import org.napile.compiler.lang.types.impl.MethodTypeConstructorImpl;
 import org.napile.compiler.lang.types.impl.MultiTypeConstructorImpl;
 import com.intellij.openapi.progress.ProcessCanceledException;
@@ -43,6 +46,8 @@ public class TypeSubstitutor
 
 	private static final int MAX_RECURSION_DEPTH = 100;
 
+	private static final int MAX_CACHE_SIZE = 256;
+
 	public static class MapToTypeSubstitutionAdapter implements TypeSubstitution
 	{
 		@NotNull
@@ -112,6 +117,10 @@ public class TypeSubstitutor
 	@NotNull
 	TypeSubstitution substitution;
 
+	// results of substitution by identity of type, only for substitution by map - other substitutions can be changed after creating
+	@Nullable
+	private Map<NapileType, NapileType> cache;
+
 	protected TypeSubstitutor(@NotNull TypeSubstitution substitution)
 	{
 		this.substitution = substitution;
@@ -151,9 +160,52 @@ public class TypeSubstitutor
 		assertRecursionDepth(recursionDepth, type, substitution);
 		// The type is within the substitution range, i.e. T or T?
 
-		if(ErrorUtils.isErrorType(type))
+		if(ErrorUtils.isErrorType(type) || substitution.isEmpty())
+			return type;
+
+		if(!(type instanceof NapileTypeImpl))
+			return doSubstitute(type, ownerDescriptor, recursionDepth);
+
+		Collection<TypeConstructor> freeTypeParameters = ((NapileTypeImpl) type).getFreeTypeParameters();
+		if(freeTypeParameters != null && !inRange(freeTypeParameters))
 			return type;
 
+		if(!(substitution instanceof MapToTypeSubstitutionAdapter))
+			return doSubstitute(type, ownerDescriptor, recursionDepth);
+
+		NapileType result;
+		synchronized(this)
+		{
+			if(cache == null)
+				cache = new IdentityHashMap<NapileType, NapileType>();
+			result = cache.get(type);
+		}
+
+		if(result == null)
+		{
+			result = doSubstitute(type, ownerDescriptor, recursionDepth);
+
+			synchronized(this)
+			{
+				if(cache.size() >= MAX_CACHE_SIZE)
+					cache.clear();
+				cache.put(type, result);
+			}
+		}
+		return result;
+	}
+
+	private boolean inRange(@NotNull Collection<TypeConstructor> typeConstructors)
+	{
+		for(TypeConstructor typeConstructor : typeConstructors)
+			if(inRange(typeConstructor))
+				return true;
+		return false;
+	}
+
+	@NotNull
+	private NapileType doSubstitute(@NotNull NapileType type, @Nullable final DeclarationDescriptor ownerDescriptor, final int recursionDepth)
+	{
 		return type.accept(new TypeConstructorVisitor<Object, NapileType>()
 		{
 			@Override
@@ -172,7 +224,7 @@ public class TypeSubstitutor
 					// The type is not within the substitution range, i.e. Foo, Bar<T> etc.
 					List<NapileType> substitutedArguments = substituteTypeArguments(type.getConstructor().getParameters(), ownerDescriptor, type.getArguments(), recursionDepth);
 
-					return new NapileTypeImpl(type.getAnnotations(), t, type.isNullable(), substitutedArguments, new SubstitutingScope(type.getMemberScope(), TypeSubstitutor.this));
+					return NapileTypeInterner.create(type.getAnnotations(), t, type.isNullable(), substitutedArguments, new SubstitutingScope(type.getMemberScope(), TypeSubstitutor.this));
 				}
 			}
 
@@ -183,7 +235,7 @@ public class TypeSubstitutor
 
 				NapileType defaultType = classDescriptor.getDefaultType();
 
-				return new NapileTypeImpl(type.getAnnotations(), classDescriptor.getTypeConstructor(), false, defaultType.getArguments(), new SubstitutingScope(type.getMemberScope(), TypeSubstitutor.this));
+				return NapileTypeInterner.create(type.getAnnotations(), classDescriptor.getTypeConstructor(), false, defaultType.getArguments(), new SubstitutingScope(type.getMemberScope(), TypeSubstitutor.this));
 			}
 
 			@Override
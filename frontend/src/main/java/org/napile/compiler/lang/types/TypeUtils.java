@@ -44,6 +44,7 @@ import org.napile.compiler.lang.resolve.scopes.ChainedScope;
 import org.napile.compiler.lang.resolve.scopes.NapileScope;
 import org.napile.compiler.lang.types.checker.NapileTypeChecker;
 import org.napile.compiler.lang.types.impl.NapileTypeImpl;
+import org.napile.compiler.lang.types.impl.NapileTypeInterner;
 import org.napile.compiler.plugin.NodeVisitorAdapter;
 import com.google.common.base.Function;
 import com.google.common.collect.Collections2;
@@ -129,7 +130,7 @@ public class TypeUtils
 		{
 			return type;
 		}
-		return new NapileTypeImpl(type.getAnnotations(), type.getConstructor(), nullable, type.getArguments(), type.getMemberScope());
+		return NapileTypeInterner.create(type.getAnnotations(), type.getConstructor(), nullable, type.getArguments(), type.getMemberScope());
 	}
 
 	public static boolean isIntersectionEmpty(@NotNull NapileType typeA, @NotNull NapileType typeB)
@@ -581,7 +582,7 @@ public class TypeUtils
 			if(napileScope instanceof ErrorUtils.ErrorScope)
 				return ErrorUtils.createErrorType(name.getFqName());
 
-			return new NapileTypeImpl(Collections.<AnnotationDescriptor>emptyList(), classifierDescriptor.getTypeConstructor(), nullable, Collections.<NapileType>emptyList(), napileScope);
+			return NapileTypeInterner.create(Collections.<AnnotationDescriptor>emptyList(), classifierDescriptor.getTypeConstructor(), nullable, Collections.<NapileType>emptyList(), napileScope);
 		}
 	}
 
@@ -34,12 +34,36 @@ public class NapileTypeChecker
 
 	public boolean isSubtypeOf(@NotNull NapileType subtype, @NotNull NapileType supertype)
 	{
-		return TYPE_CHECKER.isSubtypeOf(subtype, supertype);
+		TypeCheckerCache cache = TypeCheckerCache.getCurrentCache();
+		Object key = cache == null ? null : cache.createKey(true, subtype, supertype);
+		if(key == null)
+			return TYPE_CHECKER.isSubtypeOf(subtype, supertype);
+
+		Boolean cached = cache.get(key);
+		if(cached != null)
+			return cached;
+
+		Object generation = cache.getGeneration();
+		boolean result = TYPE_CHECKER.isSubtypeOf(subtype, supertype);
+		cache.put(key, result, generation);
+		return result;
 	}
 
 	public boolean equalTypes(@NotNull NapileType a, @NotNull NapileType b)
 	{
-		return TYPE_CHECKER.equalTypes(a, b);
+		TypeCheckerCache cache = TypeCheckerCache.getCurrentCache();
+		Object key = cache == null ? null : cache.createKey(false, a, b);
+		if(key == null)
+			return TYPE_CHECKER.equalTypes(a, b);
+
+		Boolean cached = cache.get(key);
+		if(cached != null)
+			return cached;
+
+		Object generation = cache.getGeneration();
+		boolean result = TYPE_CHECKER.equalTypes(a, b);
+		cache.put(key, result, generation);
+		return result;
 	}
 
 	public boolean equalTypes(@NotNull NapileType a, @NotNull NapileType b, @NotNull final BiMap<TypeConstructor, TypeConstructor> equalityAxioms)
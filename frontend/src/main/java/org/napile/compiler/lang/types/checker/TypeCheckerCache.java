@@ -0,0 +1,262 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.lang.types.checker;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.types.ErrorUtils;
+import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.TypeConstructor;
+import org.napile.compiler.lang.types.impl.NapileTypeImpl;
+import org.napile.compiler.lang.types.impl.TypeConstructorImpl;
+
+/**
+ * Bounded cache of {@link NapileTypeChecker} results for one analysis session. Types are keyed by structure - identity of constructor, nullability
+ * and keys of arguments, {@link NapileType#equals(Object)} is not used, because it calls type checker.
+ * <p/>
+ * Types which contains deferred or error parts, or constructors with own equality(method, multi types) are not cached.
+ * Supertypes of class and type parameter can be changed while resolving, so {@link #invalidateCurrent()} must be called after it.
+ * If there no active session - results are not cached
+ *
+ * @author VISTALL
+ * @since 09:10/19.10.26
+ */
+public class TypeCheckerCache
+{
+	public static final int MAX_SIZE = 1 << 14;
+
+	private static final class TypeKey
+	{
+		private final TypeConstructor constructor;
+		private final boolean nullable;
+		private final TypeKey[] arguments;
+		private final int hashCode;
+
+		private TypeKey(@NotNull TypeConstructor constructor, boolean nullable, @NotNull TypeKey[] arguments)
+		{
+			this.constructor = constructor;
+			this.nullable = nullable;
+			this.arguments = arguments;
+
+			int result = System.identityHashCode(constructor);
+			result = 31 * result + Arrays.hashCode(arguments);
+			result = 31 * result + (nullable ? 1 : 0);
+			hashCode = result;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(this == o)
+				return true;
+			if(!(o instanceof TypeKey))
+				return false;
+
+			TypeKey typeKey = (TypeKey) o;
+			return hashCode == typeKey.hashCode && constructor == typeKey.constructor && nullable == typeKey.nullable && Arrays.equals(arguments, typeKey.arguments);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+	}
+
+	private static final class CheckKey
+	{
+		private final boolean subtype;
+		private final TypeKey first;
+		private final TypeKey second;
+
+		private CheckKey(boolean subtype, @NotNull TypeKey first, @NotNull TypeKey second)
+		{
+			this.subtype = subtype;
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(this == o)
+				return true;
+			if(!(o instanceof CheckKey))
+				return false;
+
+			CheckKey checkKey = (CheckKey) o;
+			return subtype == checkKey.subtype && first.equals(checkKey.first) && second.equals(checkKey.second);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = subtype ? 1 : 0;
+			result = 31 * result + first.hashCode();
+			result = 31 * result + second.hashCode();
+			return result;
+		}
+	}
+
+	private static volatile TypeCheckerCache currentCache;
+
+	/**
+	 * Starts new session. Results of previous session are not visible to it
+	 */
+	@NotNull
+	public static TypeCheckerCache startSession()
+	{
+		TypeCheckerCache cache = new TypeCheckerCache();
+		currentCache = cache;
+		return cache;
+	}
+
+	@Nullable
+	public static TypeCheckerCache getCurrentCache()
+	{
+		return currentCache;
+	}
+
+	/**
+	 * Must be called after changing supertypes of class, or upper bounds of type parameter
+	 */
+	public static void invalidateCurrent()
+	{
+		TypeCheckerCache cache = currentCache;
+		if(cache != null)
+			cache.invalidate();
+	}
+
+	// replaced on invalidation, so result computed before it is stored to dropped map
+	private volatile ConcurrentMap<CheckKey, Boolean> results = new ConcurrentHashMap<CheckKey, Boolean>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong bypasses = new AtomicLong();
+
+	private TypeCheckerCache()
+	{
+	}
+
+	/**
+	 * @return key of check, or null if types can not be cached
+	 */
+	@Nullable
+	Object createKey(boolean subtype, @NotNull NapileType first, @NotNull NapileType second)
+	{
+		TypeKey firstKey = createTypeKey(first);
+		TypeKey secondKey = firstKey == null ? null : createTypeKey(second);
+		if(secondKey == null)
+		{
+			bypasses.incrementAndGet();
+			return null;
+		}
+		return new CheckKey(subtype, firstKey, secondKey);
+	}
+
+	@Nullable
+	Boolean get(@NotNull Object key)
+	{
+		Boolean result = results.get(key);
+		if(result == null)
+			misses.incrementAndGet();
+		else
+			hits.incrementAndGet();
+		return result;
+	}
+
+	/**
+	 * @return generation of results, which must be passed to {@link #put(Object, boolean, Object)}
+	 */
+	@NotNull
+	Object getGeneration()
+	{
+		return results;
+	}
+
+	@SuppressWarnings("unchecked")
+	void put(@NotNull Object key, boolean result, @NotNull Object generation)
+	{
+		ConcurrentMap<CheckKey, Boolean> map = (ConcurrentMap<CheckKey, Boolean>) generation;
+		if(map.size() >= MAX_SIZE)
+			map.clear();
+		map.put((CheckKey) key, result);
+	}
+
+	public void invalidate()
+	{
+		results = new ConcurrentHashMap<CheckKey, Boolean>();
+	}
+
+	/**
+	 * Ends session. New checks are not cached
+	 */
+	public void endSession()
+	{
+		if(currentCache == this)
+			currentCache = null;
+		results.clear();
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	public long getBypasses()
+	{
+		return bypasses.get();
+	}
+
+	public int getSize()
+	{
+		return results.size();
+	}
+
+	@Nullable
+	private static TypeKey createTypeKey(@NotNull NapileType type)
+	{
+		if(!(type instanceof NapileTypeImpl))
+			return null;
+
+		TypeConstructor constructor = type.getConstructor();
+		if(!(constructor instanceof TypeConstructorImpl) || ErrorUtils.isError(constructor))
+			return null;
+
+		List<NapileType> arguments = type.getArguments();
+		TypeKey[] argumentKeys = new TypeKey[arguments.size()];
+		for(int i = 0; i < argumentKeys.length; i++)
+		{
+			TypeKey argumentKey = createTypeKey(arguments.get(i));
+			if(argumentKey == null)
+				return null;
+			argumentKeys[i] = argumentKey;
+		}
+		return new TypeKey(constructor, type.isNullable(), argumentKeys);
+	}
+}
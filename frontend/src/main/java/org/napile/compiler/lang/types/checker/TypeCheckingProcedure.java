@@ -23,6 +23,7 @@ import org.jetbrains.annotations.Nullable;
 import org.napile.asm.lib.NapileLangPackage;
 import org.napile.compiler.lang.types.ErrorUtils;
 import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.SupertypeIndex;
 import org.napile.compiler.lang.types.TypeConstructor;
 import org.napile.compiler.lang.types.TypeSubstitutor;
 import org.napile.compiler.lang.types.TypeUtils;
@@ -39,6 +40,11 @@ public class TypeCheckingProcedure
 	public static NapileType findCorrespondingSupertype(@NotNull NapileType subtype, @NotNull NapileType supertype)
 	{
 		TypeConstructor constructor = subtype.getConstructor();
+
+		SupertypeIndex supertypeIndex = SupertypeIndex.getIndex(constructor);
+		if(supertypeIndex != null)
+			return supertypeIndex.getCorrespondingSupertype(subtype, supertype.getConstructor());
+
 		if(constructor.equals(supertype.getConstructor()))
 		{
 			return subtype;
@@ -16,16 +16,26 @@
 
 package org.napile.compiler.lang.types.impl;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.compiler.lang.descriptors.ClassDescriptor;
+import org.napile.compiler.lang.descriptors.TypeParameterDescriptor;
 import org.napile.compiler.lang.descriptors.annotations.AnnotatedImpl;
 import org.napile.compiler.lang.descriptors.annotations.AnnotationDescriptor;
 import org.napile.compiler.lang.resolve.scopes.NapileScope;
+import org.napile.compiler.lang.types.DeferredType;
 import org.napile.compiler.lang.types.ErrorUtils;
+import org.napile.compiler.lang.types.MethodTypeConstructor;
+import org.napile.compiler.lang.types.MultiTypeConstructor;
+import org.napile.compiler.lang.types.MultiTypeEntry;
 import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.SelfTypeConstructor;
 import org.napile.compiler.lang.types.TypeConstructor;
 import org.napile.compiler.lang.types.TypeConstructorVisitor;
 import org.napile.compiler.lang.types.checker.NapileTypeChecker;
@@ -36,11 +46,17 @@ import org.napile.compiler.render.DescriptorRenderer;
  */
 public final class NapileTypeImpl extends AnnotatedImpl implements NapileType
 {
+	private static final Collection<TypeConstructor> ALWAYS_SUBSTITUTED = Collections.unmodifiableSet(Collections.<TypeConstructor>emptySet());
+
 	private final TypeConstructor constructor;
 	private final List<NapileType> arguments;
 	private final boolean nullable;
 	private final NapileScope memberScope;
 
+	private int hashCode;
+
+	private volatile Collection<TypeConstructor> freeTypeParameters;
+
 	public NapileTypeImpl(List<AnnotationDescriptor> annotations, TypeConstructor constructor, boolean nullable, @NotNull List<NapileType> arguments, NapileScope memberScope)
 	{
 		super(annotations);
@@ -98,6 +114,71 @@ public final class NapileTypeImpl extends AnnotatedImpl implements NapileType
 		return memberScope;
 	}
 
+	/**
+	 * @return constructors of type parameters, which are used in this type and its arguments. Null if type is changed by substitution
+	 * without type parameters(contains self or deferred type)
+	 */
+	@Nullable
+	public Collection<TypeConstructor> getFreeTypeParameters()
+	{
+		Collection<TypeConstructor> result = freeTypeParameters;
+		if(result == null)
+		{
+			Set<TypeConstructor> set = new LinkedHashSet<TypeConstructor>();
+			if(!collectFreeTypeParameters(set))
+				result = ALWAYS_SUBSTITUTED;
+			else
+				result = set.isEmpty() ? Collections.<TypeConstructor>emptySet() : set;
+			freeTypeParameters = result;
+		}
+		return result == ALWAYS_SUBSTITUTED ? null : result;
+	}
+
+	private boolean collectFreeTypeParameters(@NotNull Set<TypeConstructor> result)
+	{
+		if(constructor instanceof SelfTypeConstructor)
+			return false;
+		else if(constructor instanceof MethodTypeConstructor)
+		{
+			MethodTypeConstructor methodTypeConstructor = (MethodTypeConstructor) constructor;
+			if(!collectFreeTypeParameters(methodTypeConstructor.getReturnType(), result))
+				return false;
+			for(NapileType parameterType : methodTypeConstructor.getParameterTypes().values())
+				if(!collectFreeTypeParameters(parameterType, result))
+					return false;
+		}
+		else if(constructor instanceof MultiTypeConstructor)
+		{
+			for(MultiTypeEntry entry : ((MultiTypeConstructor) constructor).getEntries())
+				if(!collectFreeTypeParameters(entry.type, result))
+					return false;
+		}
+		else if(constructor.getDeclarationDescriptor() instanceof TypeParameterDescriptor)
+			result.add(constructor);
+
+		for(NapileType argument : arguments)
+			if(!collectFreeTypeParameters(argument, result))
+				return false;
+		return true;
+	}
+
+	private static boolean collectFreeTypeParameters(@NotNull NapileType type, @NotNull Set<TypeConstructor> result)
+	{
+		if(type instanceof DeferredType)
+			return false;
+		// error types are not substituted
+		if(ErrorUtils.isErrorType(type))
+			return true;
+		if(!(type instanceof NapileTypeImpl))
+			return false;
+
+		Collection<TypeConstructor> typeParameters = ((NapileTypeImpl) type).getFreeTypeParameters();
+		if(typeParameters == null)
+			return false;
+		result.addAll(typeParameters);
+		return true;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -126,9 +207,15 @@ public final class NapileTypeImpl extends AnnotatedImpl implements NapileType
 	@Override
 	public int hashCode()
 	{
-		int result = constructor != null ? constructor.hashCode() : 0;
-		result = 31 * result + (arguments != null ? arguments.hashCode() : 0);
-		result = 31 * result + (nullable ? 1 : 0);
+		// type is immutable, hash code of arguments is computed recursively - cache it
+		int result = hashCode;
+		if(result == 0)
+		{
+			result = constructor != null ? constructor.hashCode() : 0;
+			result = 31 * result + (arguments != null ? arguments.hashCode() : 0);
+			result = 31 * result + (nullable ? 1 : 0);
+			hashCode = result;
+		}
 		return result;
 	}
 }
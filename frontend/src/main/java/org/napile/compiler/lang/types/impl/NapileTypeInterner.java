@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.lang.types.impl;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.napile.compiler.lang.descriptors.annotations.AnnotationDescriptor;
+import org.napile.compiler.lang.resolve.scopes.NapileScope;
+import org.napile.compiler.lang.types.ErrorUtils;
+import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.TypeConstructor;
+
+/**
+ * Interning table of {@link NapileTypeImpl} for one analysis session. Types are same, if they have same constructor,
+ * nullability, and same(by identity) arguments and annotations. Member scope is not part of key - scopes of such types are equivalent,
+ * so type is returned with scope of first created instance.
+ * <p/>
+ * Only types with {@link TypeConstructorImpl} are interned - method and multi types are compared by structure.
+ * If there no active session - types are created as is.
+ *
+ * @author VISTALL
+ * @since 10:05/19.10.26
+ */
+public class NapileTypeInterner
+{
+	private static final class Key
+	{
+		private final TypeConstructor constructor;
+		private final boolean nullable;
+		private final List<NapileType> arguments;
+		private final List<AnnotationDescriptor> annotations;
+		private final int hashCode;
+
+		private Key(@NotNull TypeConstructor constructor, boolean nullable, @NotNull List<NapileType> arguments, @NotNull List<AnnotationDescriptor> annotations)
+		{
+			this.constructor = constructor;
+			this.nullable = nullable;
+			this.arguments = arguments;
+			this.annotations = annotations;
+
+			int result = System.identityHashCode(constructor);
+			result = 31 * result + (nullable ? 1 : 0);
+			result = 31 * result + identityHashCode(arguments);
+			result = 31 * result + identityHashCode(annotations);
+			hashCode = result;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(this == o)
+				return true;
+			if(!(o instanceof Key))
+				return false;
+
+			Key key = (Key) o;
+			return hashCode == key.hashCode && constructor == key.constructor && nullable == key.nullable && identityEquals(arguments, key.arguments) && identityEquals(annotations, key.annotations);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		private static int identityHashCode(@NotNull List<?> list)
+		{
+			int result = 1;
+			for(Object o : list)
+				result = 31 * result + System.identityHashCode(o);
+			return result;
+		}
+
+		private static boolean identityEquals(@NotNull List<?> list1, @NotNull List<?> list2)
+		{
+			int size = list1.size();
+			if(size != list2.size())
+				return false;
+			for(int i = 0; i < size; i++)
+				if(list1.get(i) != list2.get(i))
+					return false;
+			return true;
+		}
+	}
+
+	private static volatile NapileTypeInterner currentInterner;
+
+	/**
+	 * Starts new session. Types created before it, are not shared with types of new session
+	 */
+	@NotNull
+	public static NapileTypeInterner startSession()
+	{
+		NapileTypeInterner interner = new NapileTypeInterner();
+		currentInterner = interner;
+		return interner;
+	}
+
+	@Nullable
+	public static NapileTypeInterner getCurrentInterner()
+	{
+		return currentInterner;
+	}
+
+	@NotNull
+	public static NapileType create(@NotNull List<AnnotationDescriptor> annotations, @NotNull TypeConstructor constructor, boolean nullable, @NotNull List<NapileType> arguments, @Nullable NapileScope memberScope)
+	{
+		NapileTypeInterner interner = currentInterner;
+		if(interner == null || memberScope == null || !(constructor instanceof TypeConstructorImpl) || ErrorUtils.isError(constructor))
+			return new NapileTypeImpl(annotations, constructor, nullable, arguments, memberScope);
+
+		return interner.intern(annotations, constructor, nullable, arguments, memberScope);
+	}
+
+	private final ConcurrentMap<Key, NapileTypeImpl> types = new ConcurrentHashMap<Key, NapileTypeImpl>();
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+
+	private NapileTypeInterner()
+	{
+	}
+
+	@NotNull
+	private NapileType intern(@NotNull List<AnnotationDescriptor> annotations, @NotNull TypeConstructor constructor, boolean nullable, @NotNull List<NapileType> arguments, @NotNull NapileScope memberScope)
+	{
+		requests.incrementAndGet();
+
+		Key key = new Key(constructor, nullable, arguments, annotations);
+		NapileTypeImpl type = types.get(key);
+		if(type != null)
+		{
+			hits.incrementAndGet();
+			return type;
+		}
+
+		type = new NapileTypeImpl(annotations, constructor, nullable, arguments, memberScope);
+		NapileTypeImpl oldType = types.putIfAbsent(key, type);
+		if(oldType != null)
+		{
+			hits.incrementAndGet();
+			return oldType;
+		}
+		return type;
+	}
+
+	/**
+	 * Ends session. Already interned types are still valid, but new types are not interned
+	 */
+	public void endSession()
+	{
+		if(currentInterner == this)
+			currentInterner = null;
+		types.clear();
+	}
+
+	public long getRequests()
+	{
+		return requests.get();
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public int getSize()
+	{
+		return types.size();
+	}
+}
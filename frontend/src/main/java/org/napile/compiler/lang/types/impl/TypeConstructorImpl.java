@@ -28,6 +28,7 @@ import org.napile.compiler.lang.descriptors.TypeParameterDescriptor;
 import org.napile.compiler.lang.descriptors.annotations.AnnotatedImpl;
 import org.napile.compiler.lang.descriptors.annotations.AnnotationDescriptor;
 import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.SupertypeIndex;
 import org.napile.compiler.lang.types.TypeConstructor;
 import org.napile.compiler.lang.types.TypeConstructorVisitor;
 
@@ -44,6 +45,9 @@ public class TypeConstructorImpl extends AnnotatedImpl implements TypeConstructo
 	@Nullable
 	private final ClassifierDescriptor classifierDescriptor;
 
+	@Nullable
+	private volatile SupertypeIndex supertypeIndex;
+
 	public TypeConstructorImpl(@Nullable ClassifierDescriptor classifierDescriptor, @NotNull List<AnnotationDescriptor> annotations, boolean sealed, @NotNull String debugName, @NotNull List<? extends TypeParameterDescriptor> parameters, @NotNull Collection<NapileType> supertypes)
 	{
 		super(annotations);
@@ -68,6 +72,17 @@ public class TypeConstructorImpl extends AnnotatedImpl implements TypeConstructo
 		return supertypes;
 	}
 
+	@Nullable
+	public SupertypeIndex getSupertypeIndex()
+	{
+		return supertypeIndex;
+	}
+
+	public void setSupertypeIndex(@Nullable SupertypeIndex supertypeIndex)
+	{
+		this.supertypeIndex = supertypeIndex;
+	}
+
 	@Override
 	public String toString()
 	{
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Performance statistics of one compilation: times of phases, times of elements(files, classes) in groups, counters,
+ * and decisions of optimizations for elements(call sites).
+ * Statistics are collected only if session is started by {@link #start()}, otherwise all methods are no-op.
+ * <p/>
+ * Cpu time and allocated bytes of phase are measured only for thread, which started phase - work of pool threads(parallel body
+ * resolution and code generation) is counted only in wall time
+ *
+ * @author VISTALL
+ * @since 15:30/19.10.26
+ */
+public final class CompilerStatistics
+{
+	public static final String BODY_RESOLVE_FILES = "bodyResolve.files";
+	public static final String BODY_RESOLVE_CLASSES = "bodyResolve.classes";
+	public static final String CODEGEN_CLASSES = "codegen.classes";
+
+	public static final String CALLS_RESOLVED = "calls.resolved";
+	public static final String CALLS_CACHED = "calls.cached";
+	public static final String CALL_CANDIDATES = "calls.candidates";
+	public static final String CALL_CANDIDATE_CALLS = "calls.candidateCalls";
+
+	private static final int SLOWEST_COUNT = 10;
+
+	private static volatile CompilerStatistics current;
+
+	@NotNull
+	public static CompilerStatistics start()
+	{
+		CompilerStatistics statistics = new CompilerStatistics();
+		current = statistics;
+		return statistics;
+	}
+
+	@Nullable
+	public static CompilerStatistics getCurrent()
+	{
+		return current;
+	}
+
+	@NotNull
+	public static Phase startPhase(@NotNull String name)
+	{
+		CompilerStatistics statistics = current;
+		return statistics == null ? Phase.NONE : new Phase(statistics, name);
+	}
+
+	public static void count(@NotNull String counter, long delta)
+	{
+		CompilerStatistics statistics = current;
+		if(statistics != null)
+			statistics.getCounter(counter).addAndGet(delta);
+	}
+
+	public static void setCounter(@NotNull String counter, long value)
+	{
+		CompilerStatistics statistics = current;
+		if(statistics != null)
+			statistics.getCounter(counter).set(value);
+	}
+
+	public static void recordTime(@NotNull String group, @NotNull String key, long nanos)
+	{
+		CompilerStatistics statistics = current;
+		if(statistics == null)
+			return;
+
+		ConcurrentMap<String, AtomicLong> times = statistics.timings.get(group);
+		if(times == null)
+		{
+			ConcurrentMap<String, AtomicLong> newTimes = new ConcurrentHashMap<String, AtomicLong>();
+			times = statistics.timings.putIfAbsent(group, newTimes);
+			if(times == null)
+				times = newTimes;
+		}
+
+		AtomicLong time = times.get(key);
+		if(time == null)
+		{
+			AtomicLong newTime = new AtomicLong();
+			time = times.putIfAbsent(key, newTime);
+			if(time == null)
+				time = newTime;
+		}
+		time.addAndGet(nanos);
+	}
+
+	/**
+	 * Records decision, which is made for element of group(for example, call site). Last decision for element is kept
+	 */
+	public static void recordDecision(@NotNull String group, @NotNull String key, @NotNull String decision)
+	{
+		CompilerStatistics statistics = current;
+		if(statistics == null)
+			return;
+
+		ConcurrentMap<String, String> groupDecisions = statistics.decisions.get(group);
+		if(groupDecisions == null)
+		{
+			ConcurrentMap<String, String> newDecisions = new ConcurrentHashMap<String, String>();
+			groupDecisions = statistics.decisions.putIfAbsent(group, newDecisions);
+			if(groupDecisions == null)
+				groupDecisions = newDecisions;
+		}
+		groupDecisions.put(key, decision);
+	}
+
+	/**
+	 * Handle of running phase. Phases with same name are summed
+	 */
+	public static class Phase
+	{
+		public static final Phase NONE = new Phase(null, "none");
+
+		private final CompilerStatistics statistics;
+		private final String name;
+		private final long wallTime;
+		private final long cpuTime;
+		private final long allocatedBytes;
+
+		private Phase(@Nullable CompilerStatistics statistics, @NotNull String name)
+		{
+			this.statistics = statistics;
+			this.name = name;
+			if(statistics != null)
+			{
+				wallTime = System.nanoTime();
+				cpuTime = getCpuTime();
+				allocatedBytes = getAllocatedBytes();
+			}
+			else
+			{
+				wallTime = cpuTime = allocatedBytes = 0;
+			}
+		}
+
+		public void end()
+		{
+			if(statistics == null)
+				return;
+
+			PhaseData data = statistics.getPhase(name);
+			synchronized(data)
+			{
+				data.count++;
+				data.wallTime += System.nanoTime() - wallTime;
+				if(cpuTime >= 0)
+					data.cpuTime += getCpuTime() - cpuTime;
+				if(allocatedBytes >= 0)
+					data.allocatedBytes += getAllocatedBytes() - allocatedBytes;
+			}
+		}
+
+		/**
+		 * Ends this phase and starts next one
+		 */
+		@NotNull
+		public Phase next(@NotNull String name)
+		{
+			end();
+			return statistics == null ? NONE : new Phase(statistics, name);
+		}
+	}
+
+	private static class PhaseData
+	{
+		private int count;
+		private long wallTime;
+		private long cpuTime;
+		private long allocatedBytes;
+	}
+
+	private final long startTime = System.nanoTime();
+	private long endTime = -1;
+
+	private final Map<String, PhaseData> phases = new LinkedHashMap<String, PhaseData>();
+	private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+	private final ConcurrentMap<String, ConcurrentMap<String, AtomicLong>> timings = new ConcurrentHashMap<String, ConcurrentMap<String, AtomicLong>>();
+	private final ConcurrentMap<String, ConcurrentMap<String, String>> decisions = new ConcurrentHashMap<String, ConcurrentMap<String, String>>();
+
+	private CompilerStatistics()
+	{
+	}
+
+	/**
+	 * Ends session, statistics are not collected after it
+	 */
+	public void end()
+	{
+		if(current == this)
+			current = null;
+		if(endTime < 0)
+			endTime = System.nanoTime();
+	}
+
+	public long getCounter(@NotNull String name, long defaultValue)
+	{
+		AtomicLong counter = counters.get(name);
+		return counter == null ? defaultValue : counter.get();
+	}
+
+	/**
+	 * @return decisions of group by elements, sorted by element
+	 */
+	@NotNull
+	public Map<String, String> getDecisions(@NotNull String group)
+	{
+		ConcurrentMap<String, String> groupDecisions = decisions.get(group);
+		return groupDecisions == null ? Collections.<String, String>emptyMap() : new TreeMap<String, String>(groupDecisions);
+	}
+
+	/**
+	 * Writes report in JSON format. Times are in microseconds
+	 */
+	public void writeJson(@NotNull Appendable out) throws IOException
+	{
+		out.append("{\n");
+		out.append("  \"totalTime\": ").append(String.valueOf(micros(getTotalTime()))).append(",\n");
+
+		out.append("  \"phases\": [");
+		boolean first = true;
+		for(Map.Entry<String, PhaseData> entry : getPhases().entrySet())
+		{
+			PhaseData data = entry.getValue();
+			out.append(first ? "\n" : ",\n");
+			out.append("    {\"name\": ").append(quote(entry.getKey()));
+			out.append(", \"count\": ").append(String.valueOf(data.count));
+			out.append(", \"wallTime\": ").append(String.valueOf(micros(data.wallTime)));
+			out.append(", \"cpuTime\": ").append(String.valueOf(micros(data.cpuTime)));
+			out.append(", \"allocatedBytes\": ").append(String.valueOf(data.allocatedBytes));
+			out.append("}");
+			first = false;
+		}
+		out.append(first ? "],\n" : "\n  ],\n");
+
+		out.append("  \"counters\": {");
+		first = true;
+		for(Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>(counters).entrySet())
+		{
+			out.append(first ? "\n" : ",\n");
+			out.append("    ").append(quote(entry.getKey())).append(": ").append(String.valueOf(entry.getValue().get()));
+			first = false;
+		}
+		out.append(first ? "},\n" : "\n  },\n");
+
+		out.append("  \"timings\": {");
+		first = true;
+		for(Map.Entry<String, ConcurrentMap<String, AtomicLong>> group : new TreeMap<String, ConcurrentMap<String, AtomicLong>>(timings).entrySet())
+		{
+			out.append(first ? "\n" : ",\n");
+			out.append("    ").append(quote(group.getKey())).append(": {");
+			boolean firstTime = true;
+			for(Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>(group.getValue()).entrySet())
+			{
+				out.append(firstTime ? "\n" : ",\n");
+				out.append("      ").append(quote(entry.getKey())).append(": ").append(String.valueOf(micros(entry.getValue().get())));
+				firstTime = false;
+			}
+			out.append(firstTime ? "}" : "\n    }");
+			first = false;
+		}
+		out.append(first ? "},\n" : "\n  },\n");
+
+		out.append("  \"decisions\": {");
+		first = true;
+		for(String group : new TreeMap<String, ConcurrentMap<String, String>>(decisions).keySet())
+		{
+			out.append(first ? "\n" : ",\n");
+			out.append("    ").append(quote(group)).append(": {");
+			boolean firstDecision = true;
+			for(Map.Entry<String, String> entry : getDecisions(group).entrySet())
+			{
+				out.append(firstDecision ? "\n" : ",\n");
+				out.append("      ").append(quote(entry.getKey())).append(": ").append(quote(entry.getValue()));
+				firstDecision = false;
+			}
+			out.append(firstDecision ? "}" : "\n    }");
+			first = false;
+		}
+		out.append(first ? "}\n" : "\n  }\n");
+		out.append("}\n");
+	}
+
+	/**
+	 * @return short human readable report: phases, counters and slowest elements of each group
+	 */
+	@NotNull
+	public List<String> getMessages()
+	{
+		List<String> messages = new ArrayList<String>();
+		messages.add("Total time: " + millis(getTotalTime()) + " ms");
+		for(Map.Entry<String, PhaseData> entry : getPhases().entrySet())
+		{
+			PhaseData data = entry.getValue();
+			messages.add("Phase " + entry.getKey() + ": wall " + millis(data.wallTime) + " ms, cpu " + millis(data.cpuTime) + " ms, allocated " + (data.allocatedBytes >> 10) + " KB");
+		}
+		for(Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>(counters).entrySet())
+			messages.add("Counter " + entry.getKey() + ": " + entry.getValue().get());
+
+		for(Map.Entry<String, ConcurrentMap<String, AtomicLong>> group : new TreeMap<String, ConcurrentMap<String, AtomicLong>>(timings).entrySet())
+		{
+			List<Map.Entry<String, AtomicLong>> entries = new ArrayList<Map.Entry<String, AtomicLong>>(group.getValue().entrySet());
+			Collections.sort(entries, new Comparator<Map.Entry<String, AtomicLong>>()
+			{
+				@Override
+				public int compare(Map.Entry<String, AtomicLong> o1, Map.Entry<String, AtomicLong> o2)
+				{
+					long t1 = o1.getValue().get();
+					long t2 = o2.getValue().get();
+					return t1 < t2 ? 1 : (t1 == t2 ? 0 : -1);
+				}
+			});
+			for(Map.Entry<String, AtomicLong> entry : entries.subList(0, Math.min(SLOWEST_COUNT, entries.size())))
+				messages.add("Slowest in " + group.getKey() + ": " + entry.getKey() + " " + millis(entry.getValue().get()) + " ms");
+		}
+		return messages;
+	}
+
+	private long getTotalTime()
+	{
+		return (endTime < 0 ? System.nanoTime() : endTime) - startTime;
+	}
+
+	@NotNull
+	private PhaseData getPhase(@NotNull String name)
+	{
+		synchronized(phases)
+		{
+			PhaseData data = phases.get(name);
+			if(data == null)
+				phases.put(name, data = new PhaseData());
+			return data;
+		}
+	}
+
+	@NotNull
+	private Map<String, PhaseData> getPhases()
+	{
+		synchronized(phases)
+		{
+			return new LinkedHashMap<String, PhaseData>(phases);
+		}
+	}
+
+	@NotNull
+	private AtomicLong getCounter(@NotNull String name)
+	{
+		AtomicLong counter = counters.get(name);
+		if(counter == null)
+		{
+			AtomicLong newCounter = new AtomicLong();
+			counter = counters.putIfAbsent(name, newCounter);
+			if(counter == null)
+				counter = newCounter;
+		}
+		return counter;
+	}
+
+	private static long getCpuTime()
+	{
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : -1;
+	}
+
+	private static long getAllocatedBytes()
+	{
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if(threadMXBean instanceof com.sun.management.ThreadMXBean)
+		{
+			com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+			if(sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled())
+				return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	private static long micros(long nanos)
+	{
+		return nanos / 1000L;
+	}
+
+	private static long millis(long nanos)
+	{
+		return nanos / 1000000L;
+	}
+
+	@NotNull
+	private static String quote(@NotNull String value)
+	{
+		StringBuilder builder = new StringBuilder(value.length() + 2);
+		builder.append('"');
+		for(int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch(c)
+			{
+				case '"':
+					builder.append("\\\"");
+					break;
+				case '\\':
+					builder.append("\\\\");
+					break;
+				case '\n':
+					builder.append("\\n");
+					break;
+				case '\r':
+					builder.append("\\r");
+					break;
+				case '\t':
+					builder.append("\\t");
+					break;
+				default:
+					if(c < 0x20)
+						builder.append(String.format("\\u%04x", (int) c));
+					else
+						builder.append(c);
+			}
+		}
+		return builder.append('"').toString();
+	}
+}
@@ -18,6 +18,7 @@ package org.napile.compiler.util.slicedmap;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -50,6 +51,14 @@ public class BasicWritableSlice<K, V> implements WritableSlice<K, V>
 		return null;
 	}
 
+	private static final AtomicInteger ID_COUNTER = new AtomicInteger();
+
+	public static int nextId()
+	{
+		return ID_COUNTER.getAndIncrement();
+	}
+
+	private final int id = nextId();
 	private String debugName;
 	private final RewritePolicy rewritePolicy;
 	private final boolean isCollective;
@@ -68,7 +77,23 @@ public class BasicWritableSlice<K, V> implements WritableSlice<K, V>
 	@Override
 	public SlicedMapKey<K, V> makeKey(K key)
 	{
-		return new SlicedMapKey<K, V>(this, key);
+		return new SlicedMapKey<K, V>(this, normalizeKey(key));
+	}
+
+	/**
+	 * @return key, which is stored in map. Used by {@link CompactSlicedMap} without creating {@link SlicedMapKey}
+	 */
+	public K normalizeKey(K key)
+	{
+		return key;
+	}
+
+	/**
+	 * @return unique id of slice, used as index by {@link CompactSlicedMap}
+	 */
+	public int getId()
+	{
+		return id;
 	}
 
 	// True to put, false to skip
@@ -0,0 +1,371 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.util.slicedmap;
+
+import gnu.trove.THashMap;
+import gnu.trove.TIntArrayList;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Sliced map without {@link SlicedMapKey} wrappers. Every slice has own open addressing table, indexed by slice id.
+ * Insertion order (used by {@link #iterator()}) is kept in two parallel lists.
+ *
+ * Tables use equals/hashCode of keys - for psi elements and descriptors it is same as identity, but keys like
+ * {@link org.napile.compiler.lang.psi.CallKey} are compared by value
+ *
+ * @author VISTALL
+ * @since 17:10/18.10.26
+ */
+public class CompactSlicedMap implements MutableSlicedMap
+{
+	private static final Object REMOVED = new Object();
+	// trove tables do not support null keys
+	private static final Object NULL_KEY = new Object();
+
+	private static final Map<WritableSlice<?, ?>, Integer> OTHER_SLICE_IDS = new HashMap<WritableSlice<?, ?>, Integer>();
+
+	public static CompactSlicedMap create()
+	{
+		return new CompactSlicedMap();
+	}
+
+	private THashMap<Object, Object>[] tables = newTables(32);
+	private WritableSlice<?, ?>[] slices = new WritableSlice<?, ?>[32];
+
+	private final TIntArrayList orderSlices = new TIntArrayList();
+	private final List<Object> orderKeys = new ArrayList<Object>();
+
+	private List<Object>[] collectiveSliceKeys;
+
+	private int size;
+
+	private CompactSlicedMap()
+	{
+	}
+
+	@Override
+	public <K, V> void put(WritableSlice<K, V> slice, K key, V value)
+	{
+		if(!slice.check(key, value))
+		{
+			return;
+		}
+
+		WritableSlice<?, ?> storageSlice;
+		Object storedKey;
+		if(slice instanceof BasicWritableSlice)
+		{
+			storageSlice = slice;
+			storedKey = maskNull(((BasicWritableSlice<K, V>) slice).normalizeKey(key));
+		}
+		else
+		{
+			SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
+			storageSlice = slicedMapKey.getSlice();
+			storedKey = maskNull(slicedMapKey.getKey());
+		}
+
+		int id = getSliceId(storageSlice);
+		THashMap<Object, Object> table = getOrCreateTable(id, storageSlice);
+
+		RewritePolicy rewritePolicy = slice.getRewritePolicy();
+		if(rewritePolicy.rewriteProcessingNeeded(key))
+		{
+			if(table.containsKey(storedKey))
+			{
+				//noinspection unchecked
+				if(!rewritePolicy.processRewrite(slice, key, (V) table.get(storedKey), value))
+				{
+					return;
+				}
+			}
+		}
+
+		if(slice.isCollective())
+		{
+			getCollectiveKeys(id, true).add(key);
+		}
+
+		int oldSize = table.size();
+		table.put(storedKey, value);
+		if(table.size() != oldSize)
+		{
+			orderSlices.add(id);
+			orderKeys.add(storedKey);
+			size++;
+		}
+
+		slice.afterPut(this, key, value);
+	}
+
+	@Override
+	public <K, V> V get(ReadOnlySlice<K, V> slice, K key)
+	{
+		int id;
+		Object storedKey;
+		if(slice instanceof BasicWritableSlice)
+		{
+			id = ((BasicWritableSlice<K, V>) slice).getId();
+			storedKey = maskNull(((BasicWritableSlice<K, V>) slice).normalizeKey(key));
+		}
+		else
+		{
+			SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
+			id = getSliceId(slicedMapKey.getSlice());
+			storedKey = maskNull(slicedMapKey.getKey());
+		}
+
+		THashMap<Object, Object> table = id < tables.length ? tables[id] : null;
+		if(table == null)
+		{
+			return slice.computeValue(this, key, null, true);
+		}
+
+		//noinspection unchecked
+		V value = (V) table.get(storedKey);
+		return slice.computeValue(this, key, value, value == null && !table.containsKey(storedKey));
+	}
+
+	public <K, V> boolean containsKey(ReadOnlySlice<K, V> slice, K key)
+	{
+		int id;
+		Object storedKey;
+		if(slice instanceof BasicWritableSlice)
+		{
+			id = ((BasicWritableSlice<K, V>) slice).getId();
+			storedKey = maskNull(((BasicWritableSlice<K, V>) slice).normalizeKey(key));
+		}
+		else
+		{
+			SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
+			id = getSliceId(slicedMapKey.getSlice());
+			storedKey = maskNull(slicedMapKey.getKey());
+		}
+
+		THashMap<Object, Object> table = id < tables.length ? tables[id] : null;
+		return table != null && table.containsKey(storedKey);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice)
+	{
+		assert slice.isCollective() : "Keys are not collected for slice " + slice;
+
+		int id = slice instanceof BasicWritableSlice ? ((BasicWritableSlice) slice).getId() : getSliceId(slice);
+		List<Object> keys = getCollectiveKeys(id, false);
+		return keys == null ? Collections.<K>emptyList() : (Collection<K>) keys;
+	}
+
+	@Override
+	public <K, V> V remove(RemovableSlice<K, V> slice, K key)
+	{
+		SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
+		int id = getSliceId(slicedMapKey.getSlice());
+		Object storedKey = maskNull(slicedMapKey.getKey());
+
+		THashMap<Object, Object> table = id < tables.length ? tables[id] : null;
+		if(table == null || !table.containsKey(storedKey))
+		{
+			return null;
+		}
+
+		// removing is rare - so just linear search in insertion order
+		for(int i = orderKeys.size() - 1; i >= 0; i--)
+		{
+			if(orderSlices.get(i) == id && orderKeys.get(i).equals(storedKey))
+			{
+				orderKeys.set(i, REMOVED);
+				break;
+			}
+		}
+
+		size--;
+		//noinspection unchecked
+		return (V) table.remove(storedKey);
+	}
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill(tables, null);
+		Arrays.fill(slices, null);
+		orderSlices.clear();
+		orderKeys.clear();
+		collectiveSliceKeys = null;
+		size = 0;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	@Override
+	public Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>> iterator()
+	{
+		return new Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>>()
+		{
+			private int index = nextIndex(0);
+
+			@Override
+			public boolean hasNext()
+			{
+				return index < orderKeys.size();
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public Map.Entry<SlicedMapKey<?, ?>, ?> next()
+			{
+				if(!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+
+				int id = orderSlices.get(index);
+				Object key = orderKeys.get(index);
+
+				index = nextIndex(index + 1);
+
+				SlicedMapKey<?, ?> slicedMapKey = new SlicedMapKey(slices[id], key == NULL_KEY ? null : key);
+				return new AbstractMap.SimpleImmutableEntry<SlicedMapKey<?, ?>, Object>(slicedMapKey, tables[id].get(key));
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+
+			private int nextIndex(int from)
+			{
+				while(from < orderKeys.size() && orderKeys.get(from) == REMOVED)
+				{
+					from++;
+				}
+				return from;
+			}
+		};
+	}
+
+	private THashMap<Object, Object> getOrCreateTable(int id, WritableSlice<?, ?> slice)
+	{
+		ensureCapacity(id);
+
+		THashMap<Object, Object> table = tables[id];
+		if(table == null)
+		{
+			tables[id] = table = new THashMap<Object, Object>(4);
+			slices[id] = slice;
+		}
+		return table;
+	}
+
+	private List<Object> getCollectiveKeys(int id, boolean create)
+	{
+		if(collectiveSliceKeys == null || id >= collectiveSliceKeys.length)
+		{
+			if(!create)
+			{
+				return null;
+			}
+
+			List<Object>[] newArray = newLists(Math.max(id + 1, tables.length));
+			if(collectiveSliceKeys != null)
+			{
+				System.arraycopy(collectiveSliceKeys, 0, newArray, 0, collectiveSliceKeys.length);
+			}
+			collectiveSliceKeys = newArray;
+		}
+
+		List<Object> keys = collectiveSliceKeys[id];
+		if(keys == null && create)
+		{
+			collectiveSliceKeys[id] = keys = new ArrayList<Object>();
+		}
+		return keys;
+	}
+
+	private void ensureCapacity(int id)
+	{
+		if(id < tables.length)
+		{
+			return;
+		}
+
+		int newLength = Math.max(id + 1, tables.length * 2);
+
+		THashMap<Object, Object>[] newTables = newTables(newLength);
+		System.arraycopy(tables, 0, newTables, 0, tables.length);
+		tables = newTables;
+
+		WritableSlice<?, ?>[] newSlices = new WritableSlice<?, ?>[newLength];
+		System.arraycopy(slices, 0, newSlices, 0, slices.length);
+		slices = newSlices;
+	}
+
+	private static int getSliceId(WritableSlice<?, ?> slice)
+	{
+		if(slice instanceof BasicWritableSlice)
+		{
+			return ((BasicWritableSlice) slice).getId();
+		}
+
+		synchronized(OTHER_SLICE_IDS)
+		{
+			Integer id = OTHER_SLICE_IDS.get(slice);
+			if(id == null)
+			{
+				OTHER_SLICE_IDS.put(slice, id = BasicWritableSlice.nextId());
+			}
+			return id;
+		}
+	}
+
+	private static Object maskNull(Object key)
+	{
+		return key == null ? NULL_KEY : key;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static THashMap<Object, Object>[] newTables(int size)
+	{
+		return new THashMap[size];
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object>[] newLists(int size)
+	{
+		return new List[size];
+	}
+}
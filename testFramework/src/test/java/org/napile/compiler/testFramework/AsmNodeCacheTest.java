@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.AsmConstants;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.AnnotationNode;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.CodeInfo;
+import org.napile.asm.tree.members.bytecode.adapter.InstructionAdapter;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.codegen.processors.AsmNodeCache;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.types.ErrorUtils;
+import org.napile.compiler.lang.types.NapileType;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.ArrayUtil;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 20:50/18.10.26
+ */
+public class AsmNodeCacheTest extends TestCase
+{
+	public void testSharedNodesGiveSameOutput() throws Exception
+	{
+		AsmNodeCache asmNodeCache = new AsmNodeCache();
+
+		Map<FqName, ClassNode> expected = generate(null);
+		Map<FqName, ClassNode> actual = generate(asmNodeCache);
+
+		assertEquals(expected.keySet(), actual.keySet());
+		for(Map.Entry<FqName, ClassNode> entry : expected.entrySet())
+			assertEquals(entry.getKey().getFqName(), entry.getValue().toString(), actual.get(entry.getKey()).toString());
+
+		assertTrue(asmNodeCache.getHits() > 0);
+	}
+
+	public void testSharedTypeArgumentsCanNotBeChanged() throws Exception
+	{
+		AsmNodeCache asmNodeCache = new AsmNodeCache();
+		NapileType napileType = ErrorUtils.createErrorType("test");
+
+		TypeNode typeNode = asmNodeCache.putType(napileType, classType("napile.lang.Array").visitArgument(classType("napile.lang.Int")));
+		assertSame(typeNode, asmNodeCache.getType(napileType));
+
+		try
+		{
+			typeNode.visitArgument(classType("napile.lang.Int"));
+			fail();
+		}
+		catch(UnsupportedOperationException e)
+		{
+			// shared node is not changed
+		}
+	}
+
+	public void testAnnotatedTypeIsNotShared() throws Exception
+	{
+		AsmNodeCache asmNodeCache = new AsmNodeCache();
+		NapileType napileType = ErrorUtils.createErrorType("test");
+
+		TypeNode typeNode = classType("napile.lang.Int");
+		typeNode.annotations.add(annotation());
+
+		assertSame(typeNode, asmNodeCache.putType(napileType, typeNode));
+		assertNull(asmNodeCache.getType(napileType));
+	}
+
+	public void testChangedSharedTypeIsFound() throws Exception
+	{
+		AsmNodeCache asmNodeCache = new AsmNodeCache();
+		NapileType napileType = ErrorUtils.createErrorType("test");
+
+		TypeNode typeNode = asmNodeCache.putType(napileType, classType("napile.lang.Int"));
+		typeNode.annotations.add(annotation());
+
+		try
+		{
+			asmNodeCache.getType(napileType);
+			fail();
+		}
+		catch(IllegalStateException e)
+		{
+			// changed node is not returned
+		}
+	}
+
+	private static Map<FqName, ClassNode> generate(@Nullable AsmNodeCache asmNodeCache) throws Exception
+	{
+		Disposable disposable = Disposer.newDisposable();
+		try
+		{
+			NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+			environment.addSources(new File("testFramework/src/test/napileRt"));
+
+			AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+			assertNull(exhaust.getError());
+
+			TestGenerationState generationState = new TestGenerationState(exhaust, environment.getSourceFiles(), asmNodeCache);
+			generationState.compileAndGenerate();
+			return generationState.getClassNodes();
+		}
+		finally
+		{
+			Disposer.dispose(disposable);
+		}
+	}
+
+	private static TypeNode classType(String fqName)
+	{
+		return new TypeNode(false, new ClassTypeNode(new FqName(fqName)));
+	}
+
+	private static AnnotationNode annotation()
+	{
+		InstructionAdapter adapter = new InstructionAdapter();
+		adapter.returnValues(1);
+		return new AnnotationNode(AsmConstants.ANY_TYPE, new CodeInfo(adapter), ArrayUtil.EMPTY_STRING_ARRAY);
+	}
+}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.napile.asm.lib.NapileLangPackage;
+import org.napile.asm.tree.members.CodeInfo;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.adapter.InstructionAdapter;
+import org.napile.asm.tree.members.bytecode.tryCatch.CatchBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryBlock;
+import org.napile.asm.tree.members.bytecode.tryCatch.TryCatchBlockNode;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.compiler.codegen.optimization.CodeOptimizationPass;
+import org.napile.compiler.codegen.optimization.CodeOptimizer;
+import org.napile.compiler.codegen.optimization.ConstantConditionPass;
+import org.napile.compiler.codegen.optimization.JumpChainPass;
+import org.napile.compiler.codegen.optimization.LocalStoreLoadPass;
+import org.napile.compiler.codegen.optimization.PushPopPass;
+import org.napile.compiler.codegen.optimization.UnreachableCodePass;
+import junit.framework.TestCase;
+
+/**
+ * Each pass is checked on code before and after it
+ *
+ * @author VISTALL
+ * @since 20:10/18.10.26
+ */
+public class CodeOptimizerTest extends TestCase
+{
+	public void testEqualConstantConditionIsRemoved() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.putTrue();
+		before.putTrue();
+		before.jumpIf(4);
+		before.newInt(1);
+		before.returnValues(1);
+
+		InstructionAdapter after = new InstructionAdapter();
+		after.newInt(1);
+		after.returnValues(1);
+
+		assertOptimized(new ConstantConditionPass(), before, after);
+	}
+
+	public void testNotEqualConstantConditionIsJump() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.putTrue();
+		before.putFalse();
+		before.jumpIf(5);
+		before.newInt(1);
+		before.returnValues(1);
+		before.newInt(2);
+		before.returnValues(1);
+
+		InstructionAdapter after = new InstructionAdapter();
+		after.jump(3);
+		after.newInt(1);
+		after.returnValues(1);
+		after.newInt(2);
+		after.returnValues(1);
+
+		assertOptimized(new ConstantConditionPass(), before, after);
+	}
+
+	public void testConditionJumpToNextIsPop() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.localGet(0);
+		before.putTrue();
+		before.jumpIf(3);
+		before.returnValues(0);
+
+		InstructionAdapter after = new InstructionAdapter();
+		after.localGet(0);
+		after.pop();
+		after.returnValues(0);
+
+		assertOptimized(new ConstantConditionPass(), before, after);
+	}
+
+	public void testJumpChain() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.localGet(0);
+		before.putTrue();
+		before.jumpIf(5);
+		before.newInt(1);
+		before.returnValues(1);
+		before.jump(7);
+		before.newInt(2);
+		before.newInt(3);
+		before.returnValues(1);
+
+		InstructionAdapter after = new InstructionAdapter();
+		after.localGet(0);
+		after.putTrue();
+		after.jumpIf(7);
+		after.newInt(1);
+		after.returnValues(1);
+		after.jump(7);
+		after.newInt(2);
+		after.newInt(3);
+		after.returnValues(1);
+
+		assertOptimized(new JumpChainPass(), before, after);
+	}
+
+	public void testJumpToReturnAndToNext() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.jump(1);
+		before.localGet(0);
+		before.putTrue();
+		before.jumpIf(6);
+		before.newInt(1);
+		before.jump(7);
+		before.newInt(2);
+		before.returnValues(1);
+
+		InstructionAdapter after = new InstructionAdapter();
+		after.localGet(0);
+		after.putTrue();
+		after.jumpIf(5);
+		after.newInt(1);
+		after.returnValues(1);
+		after.newInt(2);
+		after.returnValues(1);
+
+		assertOptimized(new JumpChainPass(), before, after);
+	}
+
+	public void testPushPop() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.newInt(1);
+		before.pop();
+		before.localGet(0);
+		before.pop();
+		before.putNull();
+		before.pop();
+		before.returnValues(0);
+
+		InstructionAdapter after = new InstructionAdapter();
+		after.returnValues(0);
+
+		assertOptimized(new PushPopPass(), before, after);
+	}
+
+	public void testPopOfJumpTargetIsKept() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.localGet(0);
+		before.localGet(1);
+		before.putTrue();
+		before.jumpIf(5);
+		before.newInt(1);
+		before.pop();
+		before.returnValues(0);
+
+		assertOptimized(new PushPopPass(), before, before);
+	}
+
+	public void testLocalGetPut() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.localGet(0);
+		before.localPut(0);
+		before.localGet(1);
+		before.returnValues(1);
+
+		InstructionAdapter after = new InstructionAdapter();
+		after.localGet(1);
+		after.returnValues(1);
+
+		assertOptimized(new LocalStoreLoadPass(), before, after);
+	}
+
+	public void testTemporaryLocal() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.newInt(1);
+		before.localPut(1);
+		before.localGet(1);
+		before.returnValues(1);
+
+		InstructionAdapter after = new InstructionAdapter();
+		after.newInt(1);
+		after.returnValues(1);
+
+		assertOptimized(new LocalStoreLoadPass(), before, after);
+	}
+
+	public void testLiveLocalIsKept() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.newInt(1);
+		before.localPut(1);
+		before.localGet(1);
+		before.pop();
+		before.localGet(1);
+		before.returnValues(1);
+
+		assertOptimized(new LocalStoreLoadPass(), before, before);
+	}
+
+	public void testLocalLiveAtExitIsKept() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.visitLocalVariable("this");
+		before.visitLocalVariable("a");
+		before.newInt(1);
+		before.localPut(1);
+		before.localGet(1);
+		before.returnValues(1);
+
+		CodeInfo result = new CodeOptimizer(Collections.<CodeOptimizationPass>singletonList(new LocalStoreLoadPass())).optimize(new CodeInfo(before), true);
+		assertEquals(toString(before), toString(result.instructions));
+	}
+
+	public void testUnreachableCode() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.localGet(0);
+		before.putTrue();
+		before.jumpIf(6);
+		before.newInt(1);
+		before.returnValues(1);
+		before.newInt(2);
+		before.newInt(3);
+		before.returnValues(1);
+
+		InstructionAdapter after = new InstructionAdapter();
+		after.localGet(0);
+		after.putTrue();
+		after.jumpIf(5);
+		after.newInt(1);
+		after.returnValues(1);
+		after.newInt(3);
+		after.returnValues(1);
+
+		assertOptimized(new UnreachableCodePass(), before, after);
+	}
+
+	public void testUnreachableTryBlockIsRemoved() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.returnValues(0);
+		before.newInt(1);
+		before.returnValues(1);
+		before.newInt(2);
+		before.returnValues(1);
+		before.tryCatch(new TryCatchBlockNode(new TryBlock(1, 3), Arrays.asList(new CatchBlock(3, 5, 0, new TypeNode(false, new ClassTypeNode(NapileLangPackage.EXCEPTION))))));
+
+		CodeInfo result = optimize(new UnreachableCodePass(), before);
+
+		InstructionAdapter after = new InstructionAdapter();
+		after.returnValues(0);
+		assertEquals(toString(after), toString(result.instructions));
+		assertTrue(result.tryCatchBlockNodes.isEmpty());
+	}
+
+	public void testReachableHandlerIsKept() throws Exception
+	{
+		InstructionAdapter before = new InstructionAdapter();
+		before.newInt(1);
+		before.returnValues(1);
+		before.newInt(2);
+		before.returnValues(1);
+		before.tryCatch(new TryCatchBlockNode(new TryBlock(0, 2), Arrays.asList(new CatchBlock(2, 4, 0, new TypeNode(false, new ClassTypeNode(NapileLangPackage.EXCEPTION))))));
+
+		CodeInfo result = optimize(new UnreachableCodePass(), before);
+		assertEquals(toString(before), toString(result.instructions));
+		assertEquals(1, result.tryCatchBlockNodes.size());
+	}
+
+	public void testParse() throws Exception
+	{
+		assertTrue(CodeOptimizer.parse("none").isEmpty());
+		assertEquals(CodeOptimizer.parse("all").getPassNames(), new CodeOptimizer(CodeOptimizer.createAllPasses()).getPassNames());
+		assertEquals(Arrays.asList("jumps", "locals"), CodeOptimizer.parse("jumps, locals").getPassNames());
+
+		try
+		{
+			CodeOptimizer.parse("jumps,unknown");
+			fail();
+		}
+		catch(IllegalArgumentException e)
+		{
+			// unknown pass
+		}
+	}
+
+	public void testRemovedCounts() throws Exception
+	{
+		InstructionAdapter code = new InstructionAdapter();
+		code.newInt(1);
+		code.pop();
+		code.returnValues(0);
+		code.newInt(2);
+		code.returnValues(1);
+
+		CodeOptimizer codeOptimizer = CodeOptimizer.parse("pushPop,unreachable");
+		codeOptimizer.optimize(new CodeInfo(code), false);
+
+		assertEquals(Long.valueOf(2), codeOptimizer.getRemovedCounts().get("pushPop"));
+		assertEquals(Long.valueOf(2), codeOptimizer.getRemovedCounts().get("unreachable"));
+	}
+
+	private static void assertOptimized(CodeOptimizationPass pass, InstructionAdapter before, InstructionAdapter after)
+	{
+		assertEquals(toString(after), toString(optimize(pass, before).instructions));
+	}
+
+	private static CodeInfo optimize(CodeOptimizationPass pass, InstructionAdapter code)
+	{
+		return new CodeOptimizer(Collections.singletonList(pass)).optimize(new CodeInfo(code), false);
+	}
+
+	private static List<String> toString(Iterable<Instruction> instructions)
+	{
+		List<String> result = new ArrayList<String>();
+		for(Instruction instruction : instructions)
+			result.add(instruction.toString());
+		return result;
+	}
+}
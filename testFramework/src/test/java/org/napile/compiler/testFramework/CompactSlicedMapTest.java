@@ -0,0 +1,225 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.napile.compiler.testFramework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.napile.compiler.util.slicedmap.CompactSlicedMap;
+import org.napile.compiler.util.slicedmap.MutableSlicedMap;
+import org.napile.compiler.util.slicedmap.RemovableSlice;
+import org.napile.compiler.util.slicedmap.RewritePolicy;
+import org.napile.compiler.util.slicedmap.SlicedMapImpl;
+import org.napile.compiler.util.slicedmap.SlicedMapKey;
+import org.napile.compiler.util.slicedmap.Slices;
+import org.napile.compiler.util.slicedmap.WritableSlice;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 11:10/20.10.26
+ */
+public class CompactSlicedMapTest extends TestCase
+{
+	private static final WritableSlice<String, String> SIMPLE = Slices.createSimpleSlice();
+	private static final WritableSlice<String, String> OTHER = Slices.createSimpleSlice();
+	private static final RemovableSlice<String, String> REWRITABLE = Slices.<String, String>sliceBuilder().build();
+	private static final RemovableSlice<String, Boolean> REMOVABLE_SET = Slices.createRemovableSetSlice();
+	private static final WritableSlice<String, Boolean> COLLECTIVE_SET = Slices.createCollectiveSetSlice();
+	private static final WritableSlice<String, Boolean> OTHER_COLLECTIVE_SET = Slices.createCollectiveSetSlice();
+	private static final WritableSlice<String, String> WITH_DEFAULT = Slices.<String, String>sliceBuilder().setDefaultValue("default").build();
+
+	public void testPutAndGet()
+	{
+		CompactSlicedMap map = CompactSlicedMap.create();
+		map.put(SIMPLE, "a", "1");
+		map.put(OTHER, "a", "2");
+		map.put(SIMPLE, null, "3");
+
+		assertEquals("1", map.get(SIMPLE, "a"));
+		assertEquals("2", map.get(OTHER, "a"));
+		assertEquals("3", map.get(SIMPLE, null));
+		assertNull(map.get(SIMPLE, "b"));
+		assertTrue(map.containsKey(SIMPLE, "a"));
+		assertFalse(map.containsKey(OTHER, "b"));
+		assertEquals(3, map.size());
+	}
+
+	public void testRewriteToEqualValue()
+	{
+		CompactSlicedMap map = CompactSlicedMap.create();
+		map.put(SIMPLE, "a", "1");
+		map.put(SIMPLE, "a", new String("1"));
+
+		assertEquals("1", map.get(SIMPLE, "a"));
+		assertEquals(1, map.size());
+		assertEquals(Arrays.asList("a"), keys(map));
+	}
+
+	public void testRewriteToOtherValue()
+	{
+		CompactSlicedMap map = CompactSlicedMap.create();
+		map.put(SIMPLE, "a", "1");
+		try
+		{
+			map.put(SIMPLE, "a", "2");
+			fail("rewrite is not checked");
+		}
+		catch(IllegalStateException e)
+		{
+			// expected
+		}
+		assertEquals("1", map.get(SIMPLE, "a"));
+	}
+
+	public void testRewriteWithoutCheck()
+	{
+		CompactSlicedMap map = CompactSlicedMap.create();
+		map.put(REMOVABLE_SET, "a", Boolean.TRUE);
+		map.put(REMOVABLE_SET, "b", Boolean.TRUE);
+		map.put(REMOVABLE_SET, "a", Boolean.FALSE);
+
+		assertEquals(RewritePolicy.DO_NOTHING, REMOVABLE_SET.getRewritePolicy());
+		assertEquals(Boolean.FALSE, map.get(REMOVABLE_SET, "a"));
+		assertEquals(2, map.size());
+		// rewritten key keeps position
+		assertEquals(Arrays.asList("a", "b"), keys(map));
+	}
+
+	public void testRemove()
+	{
+		CompactSlicedMap map = CompactSlicedMap.create();
+		map.put(REWRITABLE, "a", "1");
+		map.put(REWRITABLE, "b", "2");
+		map.put(REWRITABLE, "c", "3");
+
+		assertEquals("2", map.remove(REWRITABLE, "b"));
+		assertNull(map.get(REWRITABLE, "b"));
+		assertFalse(map.containsKey(REWRITABLE, "b"));
+		assertEquals(2, map.size());
+		assertEquals(Arrays.asList("a", "c"), keys(map));
+
+		assertNull(map.remove(REWRITABLE, "b"));
+		assertNull(map.remove(REWRITABLE, "unknown"));
+		assertEquals(2, map.size());
+
+		// after remove value can be changed, key is added to end
+		map.put(REWRITABLE, "b", "4");
+		assertEquals("4", map.get(REWRITABLE, "b"));
+		assertEquals(Arrays.asList("a", "c", "b"), keys(map));
+	}
+
+	public void testClear()
+	{
+		CompactSlicedMap map = CompactSlicedMap.create();
+		map.put(SIMPLE, "a", "1");
+		map.put(COLLECTIVE_SET, "b", Boolean.TRUE);
+
+		map.clear();
+
+		assertTrue(map.isEmpty());
+		assertNull(map.get(SIMPLE, "a"));
+		assertFalse(map.iterator().hasNext());
+		assertTrue(map.getKeys(COLLECTIVE_SET).isEmpty());
+
+		map.put(SIMPLE, "a", "2");
+		assertEquals("2", map.get(SIMPLE, "a"));
+		assertEquals(1, map.size());
+	}
+
+	public void testCollectiveKeys()
+	{
+		CompactSlicedMap map = CompactSlicedMap.create();
+		assertTrue(map.getKeys(COLLECTIVE_SET).isEmpty());
+
+		map.put(COLLECTIVE_SET, "b", Boolean.TRUE);
+		map.put(OTHER_COLLECTIVE_SET, "x", Boolean.TRUE);
+		map.put(COLLECTIVE_SET, "a", Boolean.TRUE);
+		map.put(SIMPLE, "c", "1");
+
+		assertEquals(Arrays.asList("b", "a"), new ArrayList<String>(map.getKeys(COLLECTIVE_SET)));
+		assertEquals(Collections.singletonList("x"), new ArrayList<String>(map.getKeys(OTHER_COLLECTIVE_SET)));
+		assertEquals(Boolean.TRUE, map.get(COLLECTIVE_SET, "a"));
+		assertEquals(Boolean.FALSE, map.get(COLLECTIVE_SET, "c"));
+	}
+
+	public void testDefaultValue()
+	{
+		CompactSlicedMap map = CompactSlicedMap.create();
+		assertEquals("default", map.get(WITH_DEFAULT, "a"));
+
+		map.put(WITH_DEFAULT, "a", "1");
+		assertEquals("1", map.get(WITH_DEFAULT, "a"));
+	}
+
+	public void testSameAsSlicedMapImpl()
+	{
+		MutableSlicedMap expected = fill(SlicedMapImpl.create());
+		MutableSlicedMap actual = fill(CompactSlicedMap.create());
+
+		List<Map.Entry<SlicedMapKey<?, ?>, ?>> expectedEntries = entries(expected);
+		List<Map.Entry<SlicedMapKey<?, ?>, ?>> actualEntries = entries(actual);
+		assertEquals(expectedEntries.size(), actualEntries.size());
+		for(int i = 0; i < expectedEntries.size(); i++)
+		{
+			assertEquals(expectedEntries.get(i).getKey(), actualEntries.get(i).getKey());
+			assertEquals(expectedEntries.get(i).getValue(), actualEntries.get(i).getValue());
+		}
+
+		assertEquals(new ArrayList<String>(expected.getKeys(COLLECTIVE_SET)), new ArrayList<String>(actual.getKeys(COLLECTIVE_SET)));
+		for(String key : new String[]{"a", "b", "c", "d"})
+		{
+			assertEquals(expected.get(SIMPLE, key), actual.get(SIMPLE, key));
+			assertEquals(expected.get(REWRITABLE, key), actual.get(REWRITABLE, key));
+			assertEquals(expected.get(COLLECTIVE_SET, key), actual.get(COLLECTIVE_SET, key));
+		}
+	}
+
+	private static MutableSlicedMap fill(MutableSlicedMap map)
+	{
+		map.put(SIMPLE, "a", "1");
+		map.put(REWRITABLE, "a", "2");
+		map.put(COLLECTIVE_SET, "c", Boolean.TRUE);
+		map.put(SIMPLE, "b", "3");
+		map.put(REWRITABLE, "b", "4");
+		map.put(COLLECTIVE_SET, "a", Boolean.TRUE);
+		map.remove(REWRITABLE, "a");
+		map.put(REWRITABLE, "d", "5");
+		map.put(SIMPLE, "a", "1");
+		return map;
+	}
+
+	private static List<Map.Entry<SlicedMapKey<?, ?>, ?>> entries(MutableSlicedMap map)
+	{
+		List<Map.Entry<SlicedMapKey<?, ?>, ?>> entries = new ArrayList<Map.Entry<SlicedMapKey<?, ?>, ?>>();
+		for(Map.Entry<SlicedMapKey<?, ?>, ?> entry : map)
+			entries.add(entry);
+		return entries;
+	}
+
+	private static List<Object> keys(MutableSlicedMap map)
+	{
+		List<Object> keys = new ArrayList<Object>();
+		for(Map.Entry<SlicedMapKey<?, ?>, ?> entry : map)
+			keys.add(entry.getKey().getKey());
+		return keys;
+	}
+}
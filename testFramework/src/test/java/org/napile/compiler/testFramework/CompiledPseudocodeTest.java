@@ -0,0 +1,183 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.cfg.pseudocode.CompiledPseudocode;
+import org.napile.compiler.lang.cfg.pseudocode.Instruction;
+import org.napile.compiler.lang.cfg.pseudocode.LocalDeclarationInstruction;
+import org.napile.compiler.lang.cfg.pseudocode.Pseudocode;
+import org.napile.compiler.lang.psi.NapileDeclaration;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 19:40/18.10.26
+ */
+public class CompiledPseudocodeTest extends TestCase
+{
+	private Disposable disposable;
+	private List<Pseudocode> pseudocodes;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		disposable = Disposer.newDisposable();
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+		assertNull(exhaust.getError());
+
+		BindingTrace trace = exhaust.getBindingTrace();
+		pseudocodes = new ArrayList<Pseudocode>();
+		for(NapileDeclaration declaration : trace.getKeys(BindingTraceKeys.PSEUDOCODE))
+			addPseudocode(trace.get(BindingTraceKeys.PSEUDOCODE, declaration));
+		assertFalse(pseudocodes.isEmpty());
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Disposer.dispose(disposable);
+
+		super.tearDown();
+	}
+
+	public void testInstructionsAndEdges() throws Exception
+	{
+		for(Pseudocode pseudocode : pseudocodes)
+		{
+			CompiledPseudocode graph = pseudocode.getCompiledPseudocode();
+			assertSame(graph, pseudocode.getCompiledPseudocode());
+
+			List<Instruction> instructions = pseudocode.getInstructions();
+			assertEquals(instructions.size(), graph.getInstructionCount());
+			assertSame(pseudocode.getEnterInstruction(), graph.getInstruction(graph.getEnterIndex()));
+			assertSame(pseudocode.getSinkInstruction(), graph.getInstruction(graph.getSinkIndex()));
+
+			for(int i = 0; i < instructions.size(); i++)
+			{
+				Instruction instruction = instructions.get(i);
+				assertSame(instruction, graph.getInstruction(i));
+				assertEquals(i, graph.getIndex(instruction));
+
+				List<Instruction> expected = new ArrayList<Instruction>();
+				for(Instruction next : instruction.getNextInstructions())
+					if(graph.getIndex(next) >= 0)
+						expected.add(next);
+
+				List<Instruction> actual = new ArrayList<Instruction>();
+				for(int j = 0; j < graph.getSuccessorCount(i); j++)
+				{
+					int successor = graph.getSuccessor(i, j);
+					actual.add(graph.getInstruction(successor));
+
+					// each edge is stored in predecessors of successor
+					boolean found = false;
+					for(int predecessor : graph.getPredecessors(successor))
+						found |= predecessor == i;
+					assertTrue(found);
+				}
+				assertEquals(expected, actual);
+			}
+		}
+	}
+
+	public void testReversePostOrder() throws Exception
+	{
+		for(Pseudocode pseudocode : pseudocodes)
+		{
+			CompiledPseudocode graph = pseudocode.getCompiledPseudocode();
+
+			Set<Integer> reachable = new HashSet<Integer>();
+			LinkedList<Integer> queue = new LinkedList<Integer>();
+			queue.add(graph.getEnterIndex());
+			reachable.add(graph.getEnterIndex());
+			while(!queue.isEmpty())
+				for(int successor : graph.getSuccessors(queue.removeFirst()))
+					if(reachable.add(successor))
+						queue.add(successor);
+
+			assertEquals(reachable.size(), graph.getReachableCount());
+			assertEquals(graph.getEnterIndex(), graph.getReversePostOrder(0));
+
+			for(int index = 0; index < graph.getInstructionCount(); index++)
+			{
+				int position = graph.getReversePostOrderPosition(index);
+				if(!reachable.contains(index))
+				{
+					assertEquals(-1, position);
+					continue;
+				}
+				assertEquals(index, graph.getReversePostOrder(position));
+
+				// instruction is after its predecessors, except of back edges
+				for(int predecessor : graph.getPredecessors(index))
+				{
+					int predecessorPosition = graph.getReversePostOrderPosition(predecessor);
+					if(predecessorPosition > position)
+						assertTrue(isReachable(graph, index, predecessor));
+				}
+			}
+		}
+	}
+
+	private void addPseudocode(Pseudocode pseudocode)
+	{
+		if(pseudocodes.contains(pseudocode))
+			return;
+		pseudocodes.add(pseudocode);
+		for(LocalDeclarationInstruction instruction : pseudocode.getLocalDeclarations())
+			addPseudocode(instruction.getBody());
+	}
+
+	private static boolean isReachable(CompiledPseudocode graph, int from, int to)
+	{
+		Set<Integer> visited = new HashSet<Integer>();
+		LinkedList<Integer> queue = new LinkedList<Integer>();
+		queue.add(from);
+		while(!queue.isEmpty())
+		{
+			int index = queue.removeFirst();
+			if(index == to)
+				return true;
+			for(int successor : graph.getSuccessors(index))
+				if(visited.add(successor))
+					queue.add(successor);
+		}
+		return false;
+	}
+}
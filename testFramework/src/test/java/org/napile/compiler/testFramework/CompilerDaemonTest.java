@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.napile.asm.Modifier;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.compiler.bytecode.ClassNodeCache;
+import org.napile.compiler.common.CompilerArguments;
+import org.napile.compiler.common.ExitCode;
+import org.napile.compiler.daemon.CompilerDaemon;
+import org.napile.compiler.daemon.CompilerDaemonClient;
+import org.napile.compiler.daemon.CompilerDaemonProtocol;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.testFramework.LightVirtualFile;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 14:00/18.10.26
+ */
+public class CompilerDaemonTest extends TestCase
+{
+	private File daemonDir;
+	private CompilerDaemon daemon;
+	private String token;
+	private Thread daemonThread;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		daemonDir = FileUtil.createTempDirectory("daemon", "");
+		daemon = new CompilerDaemon(0, daemonDir);
+		token = CompilerDaemon.readToken(daemonDir, daemon.getPort());
+		daemonThread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				daemon.run();
+			}
+		}, "compiler-daemon");
+		daemonThread.start();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		daemon.dispose();
+		daemonThread.join(10000);
+		FileUtil.delete(daemonDir);
+
+		super.tearDown();
+	}
+
+	public void testCompileRequest() throws Exception
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int exitCode = CompilerDaemonClient.compile(daemon.getPort(), token, new PrintStream(output), new File("").getAbsoluteFile(), new String[]{"-help"});
+
+		assertEquals(ExitCode.OK.getCode(), exitCode);
+		assertTrue(output.toString().contains("-output"));
+	}
+
+	public void testErrorOfCompilation() throws Exception
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int exitCode = CompilerDaemonClient.compile(daemon.getPort(), token, new PrintStream(output), new File("").getAbsoluteFile(), new String[]{"-format", "unknown"});
+
+		assertEquals(ExitCode.INTERNAL_ERROR.getCode(), exitCode);
+		assertTrue(output.toString().contains("Unknown class file format: unknown"));
+	}
+
+	public void testSeveralRequests() throws Exception
+	{
+		for(int i = 0; i < 3; i++)
+		{
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			assertEquals(ExitCode.OK.getCode(), CompilerDaemonClient.compile(daemon.getPort(), token, new PrintStream(output), new File("").getAbsoluteFile(), new String[]{"-help"}));
+		}
+	}
+
+	public void testShutdown() throws Exception
+	{
+		assertEquals(ExitCode.OK.getCode(), CompilerDaemonClient.shutdown(daemon.getPort(), token));
+
+		daemonThread.join(10000);
+		assertFalse(daemonThread.isAlive());
+	}
+
+	public void testTokenFile() throws Exception
+	{
+		assertEquals(CompilerDaemon.getTokenFile(daemonDir, daemon.getPort()), daemon.getTokenFile());
+		assertNotNull(token);
+		assertEquals(64, token.length());
+
+		daemon.dispose();
+		assertFalse(daemon.getTokenFile().exists());
+		assertNull(CompilerDaemon.readToken(daemonDir, daemon.getPort()));
+	}
+
+	public void testInvalidToken() throws Exception
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		int exitCode = CompilerDaemonClient.compile(daemon.getPort(), "invalid", new PrintStream(output), new File("").getAbsoluteFile(), new String[]{"-help"});
+
+		assertEquals(ExitCode.INTERNAL_ERROR.getCode(), exitCode);
+		assertTrue(output.toString().contains("Invalid token of compiler daemon"));
+		assertFalse(output.toString().contains("-output"));
+	}
+
+	public void testShutdownWithInvalidToken() throws Exception
+	{
+		assertEquals(ExitCode.INTERNAL_ERROR.getCode(), CompilerDaemonClient.shutdown(daemon.getPort(), "invalid"));
+
+		// daemon is still running
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertEquals(ExitCode.OK.getCode(), CompilerDaemonClient.compile(daemon.getPort(), token, new PrintStream(output), new File("").getAbsoluteFile(), new String[]{"-help"}));
+	}
+
+	public void testErrorOfRequestIsReported() throws Exception
+	{
+		Socket socket = new Socket(InetAddress.getByName(null), daemon.getPort());
+		try
+		{
+			DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+			output.writeInt(CompilerDaemonProtocol.PROTOCOL_VERSION);
+			output.writeUTF(token);
+			output.writeByte(CompilerDaemonProtocol.REQUEST_COMPILE);
+			output.writeUTF(new File("").getAbsolutePath());
+			// negative count of arguments fails request
+			output.writeInt(-1);
+			output.flush();
+
+			DataInputStream input = new DataInputStream(socket.getInputStream());
+			StringBuilder text = new StringBuilder();
+			byte response;
+			while((response = input.readByte()) == CompilerDaemonProtocol.RESPONSE_OUTPUT)
+			{
+				byte[] bytes = new byte[input.readInt()];
+				input.readFully(bytes);
+				text.append(new String(bytes, "UTF-8"));
+			}
+
+			assertEquals(CompilerDaemonProtocol.RESPONSE_EXIT, response);
+			assertEquals(ExitCode.INTERNAL_ERROR.getCode(), input.readInt());
+			assertTrue(text.toString(), text.toString().contains(NegativeArraySizeException.class.getName()));
+		}
+		finally
+		{
+			socket.close();
+		}
+
+		// daemon is still running
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertEquals(ExitCode.OK.getCode(), CompilerDaemonClient.compile(daemon.getPort(), token, new PrintStream(output), new File("").getAbsoluteFile(), new String[]{"-help"}));
+	}
+
+	public void testResolvePaths() throws Exception
+	{
+		File workingDir = new File("work").getAbsoluteFile();
+		File absolute = new File("absolute").getAbsoluteFile();
+
+		CompilerArguments arguments = new CompilerArguments();
+		arguments.outputDir = "out";
+		arguments.classpath = "lib" + File.pathSeparator + absolute.getPath();
+		arguments.freeArgs.add("src");
+
+		arguments.resolvePaths(workingDir);
+
+		assertEquals(new File(workingDir, "out").getPath(), arguments.outputDir);
+		assertEquals(new File(workingDir, "lib").getPath() + File.pathSeparator + absolute.getPath(), arguments.classpath);
+		assertEquals(new File(workingDir, "src").getPath(), arguments.freeArgs.get(0));
+		assertNull(arguments.report);
+	}
+
+	public void testClassNodeCacheInvalidatedByChange() throws Exception
+	{
+		ClassNodeCache cache = new ClassNodeCache();
+		LightVirtualFile file = new LightVirtualFile("A.nxml", "<class/>");
+		ClassNode classNode = new ClassNode(Modifier.EMPTY, new FqName("A"));
+
+		assertNull(cache.get(file));
+
+		cache.put(file, classNode);
+		assertSame(classNode, cache.get(file));
+
+		file.setContent(null, "<class name=\"A\"/>", false);
+		assertNull(cache.get(file));
+	}
+}
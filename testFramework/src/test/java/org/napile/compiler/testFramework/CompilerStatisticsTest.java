@@ -0,0 +1,182 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.List;
+
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.util.CompilerStatistics;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 19:50/18.10.26
+ */
+public class CompilerStatisticsTest extends TestCase
+{
+	private CompilerStatistics statistics;
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		if(statistics != null)
+			statistics.end();
+
+		super.tearDown();
+	}
+
+	public void testNoSession() throws Exception
+	{
+		assertNull(CompilerStatistics.getCurrent());
+		assertSame(CompilerStatistics.Phase.NONE, CompilerStatistics.startPhase("test"));
+		assertSame(CompilerStatistics.Phase.NONE, CompilerStatistics.Phase.NONE.next("test"));
+
+		CompilerStatistics.count("test", 1);
+		CompilerStatistics.setCounter("test", 1);
+		CompilerStatistics.recordTime("group", "test", 1);
+	}
+
+	public void testCountersAndTimes() throws Exception
+	{
+		statistics = CompilerStatistics.start();
+		assertSame(statistics, CompilerStatistics.getCurrent());
+
+		CompilerStatistics.count("a", 2);
+		CompilerStatistics.count("a", 3);
+		CompilerStatistics.setCounter("b", 7);
+		CompilerStatistics.setCounter("b", 8);
+		assertEquals(5, statistics.getCounter("a", -1));
+		assertEquals(8, statistics.getCounter("b", -1));
+		assertEquals(-1, statistics.getCounter("c", -1));
+
+		CompilerStatistics.recordTime("group", "slow", 5000000);
+		CompilerStatistics.recordTime("group", "fast", 1000000);
+		CompilerStatistics.recordTime("group", "slow", 5000000);
+
+		List<String> messages = statistics.getMessages();
+		assertTrue(messages.contains("Counter a: 5"));
+		assertTrue(messages.contains("Counter b: 8"));
+		int slow = messages.indexOf("Slowest in group: slow 10 ms");
+		int fast = messages.indexOf("Slowest in group: fast 1 ms");
+		assertTrue(slow >= 0);
+		assertTrue(fast > slow);
+
+		statistics.end();
+		assertNull(CompilerStatistics.getCurrent());
+		CompilerStatistics.count("a", 1);
+		assertEquals(5, statistics.getCounter("a", -1));
+	}
+
+	public void testPhasesWithSameNameAreSummed() throws Exception
+	{
+		statistics = CompilerStatistics.start();
+
+		CompilerStatistics.Phase phase = CompilerStatistics.startPhase("first");
+		phase = phase.next("second");
+		phase = phase.next("first");
+		phase.end();
+		statistics.end();
+
+		StringBuilder builder = new StringBuilder();
+		statistics.writeJson(builder);
+		String json = builder.toString();
+
+		assertTrue(json, json.contains("{\"name\": \"first\", \"count\": 2,"));
+		assertTrue(json, json.contains("{\"name\": \"second\", \"count\": 1,"));
+		assertTrue(json.indexOf("\"first\"") < json.indexOf("\"second\""));
+	}
+
+	public void testJsonEscaping() throws Exception
+	{
+		statistics = CompilerStatistics.start();
+		CompilerStatistics.setCounter("a\"b\\c\n", 1);
+		CompilerStatistics.recordTime("group", "d\te", 1000);
+		statistics.end();
+
+		StringBuilder builder = new StringBuilder();
+		statistics.writeJson(builder);
+		String json = builder.toString();
+
+		assertTrue(json, json.contains("\"a\\\"b\\\\c\\n\": 1"));
+		assertTrue(json, json.contains("\"d\\te\": 1"));
+	}
+
+	public void testDecisions() throws Exception
+	{
+		statistics = CompilerStatistics.start();
+		CompilerStatistics.recordDecision("group", "b", "first");
+		CompilerStatistics.recordDecision("group", "a", "second");
+		CompilerStatistics.recordDecision("group", "b", "third");
+		statistics.end();
+		CompilerStatistics.recordDecision("group", "c", "ignored");
+
+		assertEquals("{a=second, b=third}", statistics.getDecisions("group").toString());
+		assertTrue(statistics.getDecisions("other").isEmpty());
+
+		StringBuilder builder = new StringBuilder();
+		statistics.writeJson(builder);
+		String json = builder.toString();
+
+		assertTrue(json, json.contains("\"decisions\": {\n    \"group\": {\n      \"a\": \"second\",\n      \"b\": \"third\"\n    }\n  }"));
+	}
+
+	public void testAnalysis() throws Exception
+	{
+		Disposable disposable = Disposer.newDisposable();
+		try
+		{
+			NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+			environment.addSources(new File("testFramework/src/test/napileRt"));
+
+			statistics = CompilerStatistics.start();
+			AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+			assertNull(exhaust.getError());
+			statistics.end();
+		}
+		finally
+		{
+			Disposer.dispose(disposable);
+		}
+
+		assertTrue(statistics.getCounter("resolve.files", 0) > 0);
+		assertTrue(statistics.getCounter(CompilerStatistics.CALLS_RESOLVED, 0) > 0);
+		assertTrue(statistics.getCounter(CompilerStatistics.CALL_CANDIDATES, 0) >= statistics.getCounter(CompilerStatistics.CALLS_RESOLVED, 0));
+		assertTrue(statistics.getCounter("typeInterner.requests", 0) > 0);
+
+		List<String> messages = statistics.getMessages();
+		for(String phase : new String[]{"resolve.typeHierarchy", "resolve.declarations", "resolve.bodies", "resolve.annotationChecks"})
+			assertTrue(phase, containsPrefix(messages, "Phase " + phase + ":"));
+		assertTrue(containsPrefix(messages, "Slowest in " + CompilerStatistics.BODY_RESOLVE_FILES + ":"));
+		assertTrue(containsPrefix(messages, "Slowest in " + CompilerStatistics.BODY_RESOLVE_CLASSES + ":"));
+	}
+
+	private static boolean containsPrefix(List<String> messages, String prefix)
+	{
+		for(String message : messages)
+			if(message.startsWith(prefix))
+				return true;
+		return false;
+	}
+}
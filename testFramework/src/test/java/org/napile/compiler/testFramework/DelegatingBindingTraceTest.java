@@ -0,0 +1,139 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.napile.compiler.testFramework;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.napile.compiler.lang.resolve.BindingTraceImpl;
+import org.napile.compiler.lang.resolve.DelegatingBindingTrace;
+import org.napile.compiler.util.slicedmap.Slices;
+import org.napile.compiler.util.slicedmap.WritableSlice;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 11:40/20.10.26
+ */
+public class DelegatingBindingTraceTest extends TestCase
+{
+	private static final WritableSlice<String, Boolean> KEYS = Slices.createCollectiveSetSlice();
+	private static final WritableSlice<String, String> VALUES = Slices.createSimpleSlice();
+
+	public void testKeysInInsertionOrder()
+	{
+		BindingTraceImpl parent = new BindingTraceImpl();
+		parent.record(KEYS, "parent");
+
+		DelegatingBindingTrace trace = new DelegatingBindingTrace(parent);
+
+		DelegatingBindingTrace child = new DelegatingBindingTrace(trace);
+		child.record(KEYS, "a");
+		child.addAllMyDataTo(trace);
+
+		trace.record(KEYS, "b");
+
+		child = new DelegatingBindingTrace(trace);
+		child.record(KEYS, "c");
+		child.record(KEYS, "d");
+		child.addAllMyDataTo(trace);
+
+		trace.record(KEYS, "e");
+
+		// own keys first, then keys of parent
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e", "parent"), new ArrayList<String>(trace.getKeys(KEYS)));
+	}
+
+	public void testNewerLayerHidesOlder()
+	{
+		DelegatingBindingTrace trace = new DelegatingBindingTrace(new BindingTraceImpl());
+
+		DelegatingBindingTrace child = new DelegatingBindingTrace(trace);
+		child.record(VALUES, "a", "1");
+		child.addAllMyDataTo(trace);
+
+		child = new DelegatingBindingTrace(trace);
+		child.record(KEYS, "b");
+		child.addAllMyDataTo(trace);
+
+		trace.record(KEYS, "b", false);
+
+		assertEquals("1", trace.get(VALUES, "a"));
+		assertEquals(Boolean.FALSE, trace.get(KEYS, "b"));
+		assertEquals(Boolean.FALSE, trace.get(KEYS, "unknown"));
+	}
+
+	public void testCommitTwice()
+	{
+		DelegatingBindingTrace trace = new DelegatingBindingTrace(new BindingTraceImpl());
+
+		DelegatingBindingTrace child = new DelegatingBindingTrace(trace);
+		child.record(KEYS, "a");
+		child.addAllMyDataTo(trace);
+		child.addAllMyDataTo(trace);
+
+		assertEquals(Arrays.asList("a"), new ArrayList<String>(trace.getKeys(KEYS)));
+
+		// only new data is added by next commit
+		child.record(KEYS, "b");
+		child.addAllMyDataTo(trace);
+
+		assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(trace.getKeys(KEYS)));
+	}
+
+	public void testRewriteOfLayerOnRecord()
+	{
+		DelegatingBindingTrace trace = new DelegatingBindingTrace(new BindingTraceImpl());
+
+		DelegatingBindingTrace child = new DelegatingBindingTrace(trace);
+		child.record(VALUES, "a", "1");
+		child.addAllMyDataTo(trace);
+
+		trace.record(VALUES, "a", "1");
+		try
+		{
+			trace.record(VALUES, "a", "2");
+			fail();
+		}
+		catch(IllegalStateException e)
+		{
+			// rewrite to other value
+		}
+	}
+
+	public void testRewriteOfLayerOnCommit()
+	{
+		DelegatingBindingTrace trace = new DelegatingBindingTrace(new BindingTraceImpl());
+
+		DelegatingBindingTrace child = new DelegatingBindingTrace(trace);
+		child.record(VALUES, "a", "1");
+		child.addAllMyDataTo(trace);
+
+		child = new DelegatingBindingTrace(trace);
+		child.record(VALUES, "a", "2");
+		try
+		{
+			child.addAllMyDataTo(trace);
+			fail();
+		}
+		catch(IllegalStateException e)
+		{
+			// rewrite to other value
+		}
+	}
+}
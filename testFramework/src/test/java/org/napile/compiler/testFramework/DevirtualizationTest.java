@@ -0,0 +1,243 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+
+import org.napile.asm.AsmConstants;
+import org.napile.asm.LangVersion;
+import org.napile.asm.Modifier;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.resolve.name.Name;
+import org.napile.asm.tree.members.AbstractMemberNode;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.MethodNode;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.InstructionInCodePosition;
+import org.napile.asm.tree.members.bytecode.impl.InvokeInstruction;
+import org.napile.asm.tree.members.bytecode.impl.InvokeSpecialInstruction;
+import org.napile.asm.tree.members.bytecode.impl.InvokeVirtualInstruction;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.bytecode.ClassFileFormat;
+import org.napile.compiler.codegen.processors.codegen.CallTransformer;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.util.CompilerStatistics;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+/**
+ * Calls from 'test.devirtualization.Caller' are checked: calls to final and local members are special,
+ * calls to members, which can be overridden, and to members of library classes are virtual. Decision is recorded for each call site
+ *
+ * @author VISTALL
+ * @since 20:40/18.10.26
+ */
+public class DevirtualizationTest extends TestCase
+{
+	private static final String SOURCE = "package test.devirtualization\n" +
+			"\n" +
+			"import test.lib.Library\n" +
+			"\n" +
+			"final class FinalTarget\n" +
+			"{\n" +
+			"\tthis()\n" +
+			"\n" +
+			"\tmeth call()\n" +
+			"\t{\n" +
+			"\t}\n" +
+			"}\n" +
+			"\n" +
+			"class Target\n" +
+			"{\n" +
+			"\tthis()\n" +
+			"\n" +
+			"\tfinal meth finalCall()\n" +
+			"\t{\n" +
+			"\t}\n" +
+			"\n" +
+			"\tmeth call()\n" +
+			"\t{\n" +
+			"\t}\n" +
+			"\n" +
+			"\tmeth overriddenCall()\n" +
+			"\t{\n" +
+			"\t}\n" +
+			"}\n" +
+			"\n" +
+			"class SubTarget : Target\n" +
+			"{\n" +
+			"\tthis() : Target()\n" +
+			"\n" +
+			"\toverride meth overriddenCall()\n" +
+			"\t{\n" +
+			"\t}\n" +
+			"}\n" +
+			"\n" +
+			"class Caller\n" +
+			"{\n" +
+			"\tthis()\n" +
+			"\n" +
+			"\tmeth callFinalClass(val target : FinalTarget)\n" +
+			"\t{\n" +
+			"\t\ttarget.call()\n" +
+			"\t}\n" +
+			"\n" +
+			"\tmeth callFinalMember(val target : Target)\n" +
+			"\t{\n" +
+			"\t\ttarget.finalCall()\n" +
+			"\t}\n" +
+			"\n" +
+			"\tmeth callNotOverridden(val target : Target)\n" +
+			"\t{\n" +
+			"\t\ttarget.call()\n" +
+			"\t}\n" +
+			"\n" +
+			"\tmeth callOverridden(val target : Target)\n" +
+			"\t{\n" +
+			"\t\ttarget.overriddenCall()\n" +
+			"\t}\n" +
+			"\n" +
+			"\tmeth callLibrary(val library : Library)\n" +
+			"\t{\n" +
+			"\t\tlibrary.call()\n" +
+			"\t}\n" +
+			"\n" +
+			"\tmeth callLocal()\n" +
+			"\t{\n" +
+			"\t\tlocalCall()\n" +
+			"\t}\n" +
+			"\n" +
+			"\tlocal meth localCall()\n" +
+			"\t{\n" +
+			"\t}\n" +
+			"}";
+
+	private File sourceDir;
+	private File libraryDir;
+	private Disposable disposable;
+	private CompilerStatistics statistics;
+	private TestGenerationState generationState;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		sourceDir = FileUtil.createTempDirectory("devirtualization", "");
+		libraryDir = FileUtil.createTempDirectory("library", "");
+		disposable = Disposer.newDisposable();
+
+		FileUtil.writeToFile(new File(sourceDir, "test/devirtualization/Caller.ns"), SOURCE);
+
+		// final library class - call to it is virtual anyway, library can be changed after compilation
+		ClassNode classNode = new ClassNode(Modifier.list(Modifier.FINAL), new FqName("test.lib.Library"));
+		classNode.visitSuper(new TypeNode(false, new ClassTypeNode(new FqName("napile.lang.Any"))));
+		classNode.addMember(MethodNode.constructor());
+		classNode.addMember(new MethodNode(Modifier.EMPTY, Name.identifier("call"), AsmConstants.NULL_TYPE));
+		ClassFileFormat.XML.write(libraryDir, LangVersion.CURRENT, classNode);
+
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addToClasspath(libraryDir);
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+		environment.addSources(sourceDir);
+
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+		assertNull(exhaust.getError());
+
+		statistics = CompilerStatistics.start();
+		generationState = new TestGenerationState(exhaust, environment.getSourceFiles());
+		generationState.compileAndGenerate();
+		statistics.end();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		statistics.end();
+		Disposer.dispose(disposable);
+		FileUtil.delete(libraryDir);
+		FileUtil.delete(sourceDir);
+
+		super.tearDown();
+	}
+
+	public void testFinalClass() throws Exception
+	{
+		assertCall("callFinalClass", "test.devirtualization.FinalTarget.call", InvokeSpecialInstruction.class, "special.finalClass");
+	}
+
+	public void testFinalMember() throws Exception
+	{
+		assertCall("callFinalMember", "test.devirtualization.Target.finalCall", InvokeSpecialInstruction.class, "special.finalMember");
+	}
+
+	public void testLocalMember() throws Exception
+	{
+		assertCall("callLocal", "test.devirtualization.Caller.localCall", InvokeSpecialInstruction.class, "special.localMember");
+	}
+
+	public void testNotOverriddenMember() throws Exception
+	{
+		// can be overridden by other module or after incremental build
+		assertCall("callNotOverridden", "test.devirtualization.Target.call", InvokeVirtualInstruction.class, "virtual.overridable");
+	}
+
+	public void testOverriddenMember() throws Exception
+	{
+		assertCall("callOverridden", "test.devirtualization.Target.overriddenCall", InvokeVirtualInstruction.class, "virtual.overridable");
+	}
+
+	public void testLibraryMember() throws Exception
+	{
+		assertCall("callLibrary", "test.lib.Library.call", InvokeVirtualInstruction.class, "virtual.library");
+	}
+
+	private void assertCall(String methodName, String target, Class<? extends Instruction> instructionClass, String decision)
+	{
+		Instruction instruction = findInvoke(methodName, target);
+		assertTrue(instruction.toString(), instructionClass.isInstance(instruction));
+
+		InstructionInCodePosition position = instruction.position;
+		assertNotNull(position);
+		assertEquals("test/devirtualization/Caller.ns", position.getFile());
+
+		String site = position.getFile() + ":" + position.getLine() + ":" + position.getColumn() + " " + target;
+		assertEquals(decision, statistics.getDecisions(CallTransformer.DEVIRTUALIZATION_DECISIONS).get(site));
+	}
+
+	private Instruction findInvoke(String methodName, String target)
+	{
+		ClassNode classNode = generationState.getClassNodes().get(new FqName("test.devirtualization.Caller"));
+		assertNotNull(classNode);
+
+		for(AbstractMemberNode<?> member : classNode.getMembers())
+			if(member instanceof MethodNode && ((MethodNode) member).name.getName().equals(methodName))
+				for(Instruction instruction : ((MethodNode) member).code.instructions)
+					if(instruction instanceof InvokeInstruction && ((InvokeInstruction) instruction).methodRef.method.getFqName().equals(target))
+						return instruction;
+		fail(target + " is not called from " + methodName);
+		return null;
+	}
+}
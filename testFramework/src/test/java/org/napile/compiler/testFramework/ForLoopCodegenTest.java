@@ -0,0 +1,269 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.AbstractMemberNode;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.CodeInfo;
+import org.napile.asm.tree.members.MethodNode;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.impl.InvokeInstruction;
+import org.napile.asm.tree.members.bytecode.impl.InvokeStaticInstruction;
+import org.napile.asm.tree.members.bytecode.impl.JumpIfInstruction;
+import org.napile.asm.tree.members.bytecode.impl.JumpInstruction;
+import org.napile.asm.tree.members.bytecode.impl.LocalGetInstruction;
+import org.napile.asm.tree.members.bytecode.impl.LocalPutInstruction;
+import org.napile.asm.tree.members.bytecode.impl.NewIntInstruction;
+import org.napile.asm.tree.members.bytecode.impl.NewStringInstruction;
+import org.napile.asm.tree.members.bytecode.impl.PopInstruction;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.psi.NapileFile;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import junit.framework.TestCase;
+
+/**
+ * Loops with index are checked by code of runtime classes, and executed from start of loop to its exit:
+ * array loop from 'Exception.printStackTrace', range loop from constructor of 'Array'
+ *
+ * @author VISTALL
+ * @since 20:20/18.10.26
+ */
+public class ForLoopCodegenTest extends TestCase
+{
+	private static final String INT_RANGE_TO = "napile.lang.Int.rangeTo";
+	private static final String ARRAY_ITERATOR = "napile.lang.Array.iterator";
+	private static final String ARRAY_LENGTH = "napile.lang.Array.length$get";
+	private static final String INT_COMPARE_TO = "napile.lang.Int.compareTo";
+
+	private Disposable disposable;
+	private TestGenerationState generationState;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		disposable = Disposer.newDisposable();
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+		assertNull(exhaust.getError());
+
+		generationState = new TestGenerationState(exhaust, environment.getSourceFiles());
+		generationState.compileAndGenerate();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Disposer.dispose(disposable);
+
+		super.tearDown();
+	}
+
+	public void testArrayLoop() throws Exception
+	{
+		CodeInfo code = findCode("napile.lang.Exception", "printStackTrace", ARRAY_LENGTH);
+		assertEquals(-1, indexOfInvoke(code.instructions, ARRAY_ITERATOR));
+
+		// 'for(i in stack)' - array is on stack before first instruction of loop
+		int start = indexOfInvoke(code.instructions, ARRAY_LENGTH) - 9;
+		assertTrue(new ArrayList<Instruction>(code.instructions).get(start) instanceof LocalPutInstruction);
+
+		assertEquals(Arrays.<Object>asList("a", "b", "c"), runLoop(code, start, new Object[]{"a", "b", "c"}));
+		assertEquals(Arrays.<Object>asList(), runLoop(code, start, new Object[0]));
+	}
+
+	public void testRangeLoop() throws Exception
+	{
+		CodeInfo code = findCode("napile.lang.Array", "this", INT_COMPARE_TO);
+		assertEquals(-1, indexOfInvoke(code.instructions, INT_RANGE_TO));
+		assertEquals(-1, indexOfInvoke(code.instructions, ARRAY_ITERATOR));
+
+		// 'for(c in 0..length)' - 'length' is parameter of constructor
+		int start = indexOfInvoke(code.instructions, INT_COMPARE_TO) - 10;
+		assertTrue(new ArrayList<Instruction>(code.instructions).get(start) instanceof NewIntInstruction);
+
+		assertEquals(Arrays.<Object>asList(0, 1, 2), runLoop(code, start, 3));
+		assertEquals(Arrays.<Object>asList(0), runLoop(code, start, 1));
+	}
+
+	public void testEmptyRangeLoop() throws Exception
+	{
+		CodeInfo code = findCode("napile.lang.Array", "this", INT_COMPARE_TO);
+		int start = indexOfInvoke(code.instructions, INT_COMPARE_TO) - 10;
+
+		assertEquals(Arrays.<Object>asList(), runLoop(code, start, 0));
+	}
+
+	/**
+	 * 'rangeTo' fails on inverted range(array with negative size), loop with index have no iterations
+	 */
+	public void testInvertedRangeLoop() throws Exception
+	{
+		CodeInfo code = findCode("napile.lang.Array", "this", INT_COMPARE_TO);
+		int start = indexOfInvoke(code.instructions, INT_COMPARE_TO) - 10;
+
+		assertEquals(Arrays.<Object>asList(), runLoop(code, start, -3));
+	}
+
+	public void testOtherRangeUsesIterator() throws Exception
+	{
+		// 'for(i in 0..parameters.size())' - right value is not constant or local
+		CodeInfo code = findCode("napile.reflect.Class", "isValidMethodLike", INT_RANGE_TO);
+		int index = indexOfInvoke(code.instructions, INT_RANGE_TO);
+		assertTrue(index >= 0);
+		assertEquals(index + 1, indexOfInvoke(code.instructions, ARRAY_ITERATOR));
+	}
+
+	private CodeInfo findCode(String className, String methodName, String invoke)
+	{
+		ClassNode classNode = generationState.getClassNodes().get(new FqName(className));
+		assertNotNull(className, classNode);
+
+		for(AbstractMemberNode<?> member : classNode.getMembers())
+			if(member instanceof MethodNode && ((MethodNode) member).name.getName().equals(methodName))
+			{
+				CodeInfo code = ((MethodNode) member).code;
+				if(code != null && indexOfInvoke(code.instructions, invoke) >= 0)
+					return code;
+			}
+		fail(methodName + " with " + invoke + " is not found in " + className);
+		return null;
+	}
+
+	private static int indexOfInvoke(Collection<Instruction> instructions, String method)
+	{
+		int index = 0;
+		for(Instruction instruction : instructions)
+		{
+			if(instruction instanceof InvokeInstruction && ((InvokeInstruction) instruction).methodRef.method.getFqName().equals(method))
+				return index;
+			index++;
+		}
+		return -1;
+	}
+
+	/**
+	 * Executes code from start of loop until exit from loop. Loop value is first value of stack for array loop,
+	 * and value of local with index 1 for range loop
+	 *
+	 * @return values of loop parameter in each iteration
+	 */
+	private static List<Object> runLoop(CodeInfo code, int start, Object value)
+	{
+		List<Instruction> instructions = new ArrayList<Instruction>(code.instructions);
+		Object[] locals = new Object[code.maxLocals];
+		LinkedList<Object> stack = new LinkedList<Object>();
+		if(value instanceof Object[])
+			stack.push(value);
+		else
+			locals[1] = value;
+
+		int exit = -1;
+		int parameterIndex = -1;
+		for(int i = start; i < instructions.size() && parameterIndex == -1; i++)
+			if(exit == -1 && instructions.get(i) instanceof JumpIfInstruction)
+				exit = ((JumpIfInstruction) instructions.get(i)).value;
+			else if(exit != -1 && instructions.get(i) instanceof LocalPutInstruction)
+				parameterIndex = ((LocalPutInstruction) instructions.get(i)).varIndex;
+		assertTrue(exit > start);
+		assertTrue(parameterIndex >= 0);
+
+		List<Object> values = new ArrayList<Object>();
+		int index = start;
+		for(int step = 0; index != exit; step++)
+		{
+			assertTrue("loop is not finished", step < 1000);
+
+			Instruction instruction = instructions.get(index++);
+			if(instruction instanceof NewIntInstruction)
+				stack.push(((NewIntInstruction) instruction).value);
+			else if(instruction instanceof NewStringInstruction)
+				stack.push(((NewStringInstruction) instruction).value);
+			else if(instruction instanceof LocalGetInstruction)
+				stack.push(locals[((LocalGetInstruction) instruction).varIndex]);
+			else if(instruction instanceof LocalPutInstruction)
+			{
+				int varIndex = ((LocalPutInstruction) instruction).varIndex;
+				locals[varIndex] = stack.pop();
+				if(varIndex == parameterIndex)
+					values.add(locals[varIndex]);
+			}
+			else if(instruction instanceof PopInstruction)
+				stack.pop();
+			else if(instruction instanceof JumpInstruction)
+				index = ((JumpInstruction) instruction).value;
+			else if(instruction instanceof JumpIfInstruction)
+			{
+				// jumps if values are not equal
+				if(!stack.pop().equals(stack.pop()))
+					index = ((JumpIfInstruction) instruction).value;
+			}
+			else if(instruction instanceof InvokeInstruction)
+				stack.push(invoke((InvokeInstruction) instruction, stack));
+			else
+				fail("unexpected instruction " + instruction);
+		}
+		return values;
+	}
+
+	private static Object invoke(InvokeInstruction instruction, LinkedList<Object> stack)
+	{
+		Object[] arguments = new Object[instruction.methodRef.parameters.size()];
+		for(int i = arguments.length - 1; i >= 0; i--)
+			arguments[i] = stack.pop();
+		Object receiver = instruction instanceof InvokeStaticInstruction ? null : stack.pop();
+
+		String method = instruction.methodRef.method.getFqName();
+		if(method.equals("napile.lang.Bool.TRUE$get"))
+			return Boolean.TRUE;
+		if(method.equals("napile.lang.Bool.FALSE$get"))
+			return Boolean.FALSE;
+		if(method.equals("napile.condition.CompareResult.LOWER$get"))
+			return "LOWER";
+		if(method.equals("napile.lang.Any.equals"))
+			return receiver.equals(arguments[0]);
+		if(method.equals("napile.lang.Int.inc"))
+			return (Integer) receiver + 1;
+		if(method.equals(INT_COMPARE_TO))
+		{
+			int compare = ((Integer) receiver).compareTo((Integer) arguments[0]);
+			return compare < 0 ? "LOWER" : compare == 0 ? "EQUAL" : "GREATER";
+		}
+		if(method.equals(ARRAY_LENGTH))
+			return ((Object[]) receiver).length;
+		if(method.equals("napile.lang.Array.get"))
+			return ((Object[]) receiver)[(Integer) arguments[0]];
+		// calls from body of loop
+		return method;
+	}
+}
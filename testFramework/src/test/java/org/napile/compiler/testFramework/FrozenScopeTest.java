@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.napile.asm.resolve.name.Name;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.descriptors.ClassDescriptor;
+import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
+import org.napile.compiler.lang.descriptors.MethodDescriptor;
+import org.napile.compiler.lang.descriptors.VariableDescriptor;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.lang.resolve.scopes.NapileScope;
+import org.napile.compiler.lang.resolve.scopes.RedeclarationHandler;
+import org.napile.compiler.lang.resolve.scopes.WritableScope;
+import org.napile.compiler.lang.resolve.scopes.WritableScopeImpl;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.PsiElement;
+import junit.framework.TestCase;
+
+/**
+ * Frozen scope must give same lookup results, as not frozen scope with same declarations, worker and imported scopes
+ *
+ * @author VISTALL
+ * @since 19:00/18.10.26
+ */
+public class FrozenScopeTest extends TestCase
+{
+	private Disposable disposable;
+	private List<ClassDescriptor> classDescriptors;
+	private List<DeclarationDescriptor> members;
+	private Set<Name> names;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		disposable = Disposer.newDisposable();
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+		assertNull(exhaust.getError());
+
+		BindingTrace trace = exhaust.getBindingTrace();
+		classDescriptors = new ArrayList<ClassDescriptor>();
+		members = new ArrayList<DeclarationDescriptor>();
+		names = new LinkedHashSet<Name>();
+		for(PsiElement element : trace.getKeys(BindingTraceKeys.CLASS))
+		{
+			ClassDescriptor classDescriptor = trace.get(BindingTraceKeys.CLASS, element);
+			classDescriptors.add(classDescriptor);
+			names.add(classDescriptor.getName());
+
+			for(DeclarationDescriptor descriptor : classDescriptor.getMemberScope(classDescriptor.getDefaultType().getArguments()).getAllDescriptors())
+			{
+				if(descriptor instanceof MethodDescriptor || descriptor instanceof VariableDescriptor)
+				{
+					members.add(descriptor);
+					names.add(descriptor.getName());
+				}
+			}
+		}
+		names.add(Name.identifier("notDeclaredName"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Disposer.dispose(disposable);
+
+		super.tearDown();
+	}
+
+	public void testSameResults() throws Exception
+	{
+		WritableScope expected = createScope(false);
+		WritableScope actual = createScope(true);
+
+		for(Name name : names)
+		{
+			assertEquals(name.getName(), new LinkedHashSet<MethodDescriptor>(expected.getMethods(name)), new LinkedHashSet<MethodDescriptor>(actual.getMethods(name)));
+			assertEquals(name.getName(), expected.getVariables(name), actual.getVariables(name));
+			assertSame(name.getName(), expected.getClassifier(name), actual.getClassifier(name));
+		}
+	}
+
+	public void testResultsAreCached() throws Exception
+	{
+		WritableScope scope = createScope(true);
+
+		for(Name name : names)
+		{
+			assertSame(scope.getMethods(name), scope.getMethods(name));
+			assertSame(scope.getVariables(name), scope.getVariables(name));
+			assertSame(scope.getClassifier(name), scope.getClassifier(name));
+		}
+	}
+
+	public void testFreezeOfWritableScope() throws Exception
+	{
+		WritableScopeImpl scope = new WritableScopeImpl(NapileScope.EMPTY, classDescriptors.get(0), RedeclarationHandler.DO_NOTHING, "test");
+		scope.changeLockLevel(WritableScope.LockLevel.BOTH);
+		try
+		{
+			scope.freeze();
+			fail();
+		}
+		catch(IllegalStateException e)
+		{
+			// scope can be changed
+		}
+	}
+
+	// declarations are placed to own, worker and imported scopes by turns
+	private WritableScope createScope(boolean frozen)
+	{
+		WritableScopeImpl[] scopes = new WritableScopeImpl[3];
+		for(int i = 0; i < scopes.length; i++)
+		{
+			scopes[i] = new WritableScopeImpl(i == 0 ? NapileScope.EMPTY : scopes[0], classDescriptors.get(0), RedeclarationHandler.DO_NOTHING, "scope" + i);
+			scopes[i].changeLockLevel(WritableScope.LockLevel.BOTH);
+		}
+
+		for(int i = 0; i < classDescriptors.size(); i++)
+			scopes[i % scopes.length].addClassifierDescriptor(classDescriptors.get(i));
+
+		for(int i = 0; i < members.size(); i++)
+		{
+			DeclarationDescriptor descriptor = members.get(i);
+			if(descriptor instanceof MethodDescriptor)
+				scopes[i % scopes.length].addMethodDescriptor((MethodDescriptor) descriptor);
+			else
+				scopes[i % scopes.length].addVariableDescriptor((VariableDescriptor) descriptor);
+		}
+
+		// worker is scopes[0], scopes[1] is imported to own scope
+		WritableScopeImpl scope = scopes[2];
+		scope.importScope(scopes[1]);
+		for(WritableScopeImpl writableScope : scopes)
+			writableScope.changeLockLevel(WritableScope.LockLevel.READING);
+		if(frozen)
+			scope.freeze();
+		return scope;
+	}
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.napile.asm.resolve.name.FqName;
+import org.napile.compiler.bytecode.ClassFileFormat;
+import org.napile.compiler.incremental.IncrementalCache;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 10:30/20.10.26
+ */
+public class IncrementalCacheTest extends TestCase
+{
+	private static final String OPTIONS = "optimize=[] macroInlineSize=0";
+
+	private File tempDir;
+	private File outputDir;
+	private File library;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		tempDir = File.createTempFile("incremental", "");
+		tempDir.delete();
+		tempDir.mkdirs();
+
+		outputDir = new File(tempDir, "out");
+		outputDir.mkdirs();
+
+		library = new File(tempDir, "library.jar");
+		write(library, "library");
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		delete(tempDir);
+
+		super.tearDown();
+	}
+
+	public void testEditedFile() throws Exception
+	{
+		saveCache(entry("1", "a.A"), entry("1", "b.B"));
+
+		IncrementalCache cache = loadCache(OPTIONS);
+		assertEquals(set("a.ns"), cache.computeDirtyFiles(files(entry("2", "a.A"), entry("1", "b.B"))));
+	}
+
+	public void testFileWithoutOutput() throws Exception
+	{
+		saveCache(entry("1", "a.A"), entry("1", "b.B"));
+
+		assertTrue(output("a.A").delete());
+
+		IncrementalCache cache = loadCache(OPTIONS);
+		assertEquals(set("a.ns"), cache.computeDirtyFiles(files(entry("1", "a.A"), entry("1", "b.B"))));
+	}
+
+	public void testDependentFiles() throws Exception
+	{
+		saveCache(entry("1", "a.A"), entry("1", "b.B", "a.A"), entry("1", "c.C", "b.B"), entry("1", "d.D"));
+
+		IncrementalCache cache = loadCache(OPTIONS);
+		assertEquals(set("a.ns", "b.ns", "c.ns"), cache.computeDirtyFiles(files(entry("2", "a.A"), entry("1", "b.B"), entry("1", "c.C"), entry("1", "d.D"))));
+	}
+
+	public void testDeletedFile() throws Exception
+	{
+		saveCache(entry("1", "a.A"), entry("1", "b.B", "a.A"));
+
+		IncrementalCache cache = loadCache(OPTIONS);
+		assertEquals(set("b.ns"), cache.computeDirtyFiles(files(entry("1", "b.B"))));
+
+		cache.putEntry("b.ns", entry("2", "b.B"));
+		cache.retainFiles(Collections.singletonList("b.ns"));
+
+		assertFalse(output("a.A").exists());
+		assertTrue(output("b.B").exists());
+		assertNull(cache.getEntry("a.ns"));
+	}
+
+	public void testRemovedClass() throws Exception
+	{
+		saveCache(new IncrementalCache.FileEntry("1", names("a.A", "a.A2"), names()), entry("1", "b.B"));
+
+		IncrementalCache cache = loadCache(OPTIONS);
+		cache.putEntry("a.ns", entry("2", "a.A"));
+		cache.retainFiles(Arrays.asList("a.ns", "b.ns"));
+
+		assertTrue(output("a.A").exists());
+		assertFalse(output("a.A2").exists());
+		assertTrue(output("b.B").exists());
+	}
+
+	public void testMovedClass() throws Exception
+	{
+		saveCache(new IncrementalCache.FileEntry("1", names("a.A", "a.A2"), names()), entry("1", "b.B"));
+
+		IncrementalCache cache = loadCache(OPTIONS);
+		cache.putEntry("a.ns", entry("2", "a.A"));
+		cache.putEntry("b.ns", new IncrementalCache.FileEntry("2", names("b.B", "a.A2"), names()));
+		cache.retainFiles(Arrays.asList("a.ns", "b.ns"));
+
+		assertTrue(output("a.A2").exists());
+	}
+
+	public void testChangedOptions() throws Exception
+	{
+		saveCache(entry("1", "a.A"), entry("1", "b.B"));
+
+		IncrementalCache cache = loadCache("optimize=[jumpChain] macroInlineSize=0");
+		assertTrue(cache.isOutdated());
+		assertEquals(set("a.ns", "b.ns"), cache.computeDirtyFiles(files(entry("1", "a.A"), entry("1", "b.B"))));
+	}
+
+	public void testChangedClasspath() throws Exception
+	{
+		saveCache(entry("1", "a.A"), entry("1", "b.B"));
+
+		write(library, "changed library");
+
+		IncrementalCache cache = loadCache(OPTIONS);
+		assertTrue(cache.isOutdated());
+		assertEquals(set("a.ns", "b.ns"), cache.computeDirtyFiles(files(entry("1", "a.A"), entry("1", "b.B"))));
+	}
+
+	public void testSameOptionsAndClasspath() throws Exception
+	{
+		saveCache(entry("1", "a.A"));
+
+		IncrementalCache cache = loadCache(OPTIONS);
+		assertFalse(cache.isOutdated());
+		assertTrue(cache.computeDirtyFiles(files(entry("1", "a.A"))).isEmpty());
+	}
+
+	/**
+	 * Entries are stored for files 'a.ns', 'b.ns' ... in order of arguments, outputs of exported classes are created
+	 */
+	private void saveCache(IncrementalCache.FileEntry... entries) throws IOException
+	{
+		IncrementalCache cache = new IncrementalCache(outputDir, ClassFileFormat.XML, OPTIONS, classpath());
+		for(Map.Entry<String, IncrementalCache.FileEntry> entry : files(entries).entrySet())
+		{
+			cache.putEntry(entry.getKey(), entry.getValue());
+			for(FqName fqName : entry.getValue().exports)
+				write(output(fqName.getFqName()), fqName.getFqName());
+		}
+		cache.save();
+	}
+
+	private IncrementalCache loadCache(String options) throws IOException
+	{
+		IncrementalCache cache = new IncrementalCache(outputDir, ClassFileFormat.XML, options, classpath());
+		cache.load();
+		return cache;
+	}
+
+	private List<File> classpath()
+	{
+		return Collections.singletonList(library);
+	}
+
+	private File output(String fqName)
+	{
+		return ClassFileFormat.XML.getOutputFile(outputDir, new FqName(fqName));
+	}
+
+	private static Map<String, IncrementalCache.FileEntry> files(IncrementalCache.FileEntry... entries)
+	{
+		Map<String, IncrementalCache.FileEntry> files = new LinkedHashMap<String, IncrementalCache.FileEntry>();
+		for(IncrementalCache.FileEntry entry : entries)
+		{
+			String name = entry.exports.iterator().next().shortName().getName();
+			files.put(name.substring(0, 1).toLowerCase() + ".ns", entry);
+		}
+		return files;
+	}
+
+	private static IncrementalCache.FileEntry entry(String hash, String export, String... references)
+	{
+		return new IncrementalCache.FileEntry(hash, names(export), names(references));
+	}
+
+	private static Set<FqName> names(String... names)
+	{
+		Set<FqName> result = new LinkedHashSet<FqName>();
+		for(String name : names)
+			result.add(new FqName(name));
+		return result;
+	}
+
+	private static Set<String> set(String... values)
+	{
+		return new LinkedHashSet<String>(Arrays.asList(values));
+	}
+
+	private static void write(File file, String text) throws IOException
+	{
+		file.getParentFile().mkdirs();
+
+		FileOutputStream stream = new FileOutputStream(file);
+		try
+		{
+			stream.write(text.getBytes("UTF-8"));
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+}
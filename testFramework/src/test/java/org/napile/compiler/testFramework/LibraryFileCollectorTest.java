@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.napile.asm.LangVersion;
+import org.napile.asm.Modifier;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.resolve.name.Name;
+import org.napile.asm.tree.members.AnnotationNode;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.MethodNode;
+import org.napile.asm.tree.members.MethodParameterNode;
+import org.napile.asm.tree.members.VariableNode;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.compiler.analyzer.ClassNodeReferenceCollector;
+import org.napile.compiler.analyzer.LibraryFileCollector;
+import org.napile.compiler.bytecode.ClassFileFormat;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.psi.NapileFile;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiManager;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 12:40/18.10.26
+ */
+public class LibraryFileCollectorTest extends TestCase
+{
+	private File libraryDir;
+	private Disposable disposable;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		libraryDir = FileUtil.createTempDirectory("library", "");
+		disposable = Disposer.newDisposable();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Disposer.dispose(disposable);
+		FileUtil.delete(libraryDir);
+
+		super.tearDown();
+	}
+
+	public void testReferencesFromDeclarations() throws Exception
+	{
+		ClassNode classNode = createHolder();
+
+		Set<FqName> expected = new LinkedHashSet<FqName>();
+		expected.add(new FqName("test.lib.Used"));
+		expected.add(new FqName("test.lib.Annotation"));
+		expected.add(new FqName("test.lib.Return"));
+		expected.add(new FqName("test.lib.Argument"));
+		expected.add(new FqName("test.lib.Param"));
+		expected.add(new FqName("test.lib.Variable"));
+		assertEquals(expected, ClassNodeReferenceCollector.collect(classNode));
+	}
+
+	public void testUnreferencedClassIsNotLoaded() throws Exception
+	{
+		write(createHolder());
+		for(String name : new String[]{"Used", "Annotation", "Return", "Argument", "Param", "Variable", "Unused"})
+			write(new ClassNode(Modifier.EMPTY, new FqName("test.lib." + name)));
+
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addToClasspath(libraryDir);
+
+		VirtualFile root = environment.getApplicationEnvironment().getLocalFileSystem().findFileByIoFile(libraryDir);
+		assertNotNull(root);
+
+		List<NapileFile> files = LibraryFileCollector.collect(PsiManager.getInstance(environment.getProject()), Collections.singletonList(root), Collections.<NapileFile>emptyList());
+
+		Set<String> names = new LinkedHashSet<String>();
+		for(NapileFile file : files)
+			names.add(file.getVirtualFile().getNameWithoutExtension());
+
+		assertTrue(names.contains("Holder"));
+		assertTrue(names.contains("Used"));
+		assertTrue(names.contains("Param"));
+		assertTrue(names.contains("Argument"));
+		assertFalse(names.contains("Unused"));
+		assertEquals(7, names.size());
+	}
+
+	// class from required package, so it's loaded without references from sources
+	private static ClassNode createHolder()
+	{
+		ClassNode classNode = new ClassNode(Modifier.EMPTY, new FqName("napile.lang.Holder"));
+		classNode.visitSuper(type("test.lib.Used"));
+		classNode.annotations.add(new AnnotationNode(type("test.lib.Annotation"), null, new String[0]));
+
+		MethodNode methodNode = new MethodNode(Modifier.list(Modifier.ABSTRACT), Name.identifier("method"), type("test.lib.Return").visitArgument(type("test.lib.Argument")));
+		methodNode.parameters.add(new MethodParameterNode(Modifier.EMPTY, Name.identifier("p"), type("test.lib.Param")));
+		classNode.addMember(methodNode);
+
+		classNode.addMember(new VariableNode(Modifier.EMPTY, Name.identifier("variable"), type("test.lib.Variable")));
+		return classNode;
+	}
+
+	private static TypeNode type(String name)
+	{
+		return new TypeNode(false, new ClassTypeNode(new FqName(name)));
+	}
+
+	private void write(ClassNode classNode) throws Exception
+	{
+		ClassFileFormat.XML.write(libraryDir, LangVersion.CURRENT, classNode);
+	}
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.napile.asm.AsmConstants;
+import org.napile.asm.Modifier;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.resolve.name.Name;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.CodeInfo;
+import org.napile.asm.tree.members.MacroNode;
+import org.napile.asm.tree.members.MethodNode;
+import org.napile.asm.tree.members.MethodParameterNode;
+import org.napile.asm.tree.members.bytecode.Instruction;
+import org.napile.asm.tree.members.bytecode.MethodRef;
+import org.napile.asm.tree.members.bytecode.adapter.InstructionAdapter;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.compiler.codegen.optimization.MacroInliner;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 20:30/18.10.26
+ */
+public class MacroInlinerTest extends TestCase
+{
+	private static final MethodParameterNode VALUE = new MethodParameterNode(Modifier.EMPTY, Name.identifier("value"), AsmConstants.INT_TYPE);
+	private static final MethodRef INT_INC = new MethodRef(new FqName("napile.lang.Int.inc"), Collections.<MethodParameterNode>emptyList(), Collections.<TypeNode>emptyList(), AsmConstants.INT_TYPE);
+
+	public void testStaticMacro() throws Exception
+	{
+		ClassNode classNode = new ClassNode(Modifier.EMPTY, new FqName("test.A"));
+		InstructionAdapter macro = new InstructionAdapter();
+		macro.visitLocalVariable("value");
+		macro.localGet(0);
+		macro.invokeVirtual(INT_INC, false);
+		addMacro(classNode, "m", true, macro);
+
+		InstructionAdapter code = new InstructionAdapter();
+		code.visitLocalVariable("this");
+		code.newInt(5);
+		code.macroStaticJump(macroRef("test.A.m"));
+		code.returnValues(1);
+		MethodNode methodNode = addMethod(classNode, code);
+
+		new MacroInliner(32, MacroInliner.DEFAULT_MAX_INLINED_INSTRUCTIONS).inline(classNode);
+
+		// argument is stored after locals of caller
+		InstructionAdapter expected = new InstructionAdapter();
+		expected.newInt(5);
+		expected.localPut(1);
+		expected.localGet(1);
+		expected.invokeVirtual(INT_INC, false);
+		expected.returnValues(1);
+		assertEquals(toString(expected), toString(methodNode.code.instructions));
+		assertEquals(2, methodNode.code.maxLocals);
+	}
+
+	public void testMacroWithReceiver() throws Exception
+	{
+		ClassNode classNode = new ClassNode(Modifier.EMPTY, new FqName("test.A"));
+		InstructionAdapter macro = new InstructionAdapter();
+		macro.visitLocalVariable("this");
+		macro.visitLocalVariable("value");
+		macro.localGet(1);
+		addMacro(classNode, "m", false, macro);
+
+		InstructionAdapter code = new InstructionAdapter();
+		code.visitLocalVariable("this");
+		code.localGet(0);
+		code.newInt(5);
+		code.macroJump(macroRef("test.A.m"));
+		code.returnValues(1);
+		MethodNode methodNode = addMethod(classNode, code);
+
+		new MacroInliner(32, MacroInliner.DEFAULT_MAX_INLINED_INSTRUCTIONS).inline(classNode);
+
+		InstructionAdapter expected = new InstructionAdapter();
+		expected.localGet(0);
+		expected.newInt(5);
+		expected.localPut(2);
+		expected.localPut(1);
+		expected.localGet(2);
+		expected.returnValues(1);
+		assertEquals(toString(expected), toString(methodNode.code.instructions));
+	}
+
+	public void testJumpsAreRelocated() throws Exception
+	{
+		ClassNode classNode = new ClassNode(Modifier.EMPTY, new FqName("test.A"));
+		InstructionAdapter macro = new InstructionAdapter();
+		macro.visitLocalVariable("value");
+		macro.localGet(0);
+		macro.putTrue();
+		macro.jumpIf(4);
+		macro.jump(5);
+		macro.newInt(1);
+		addMacro(classNode, "m", true, macro);
+
+		InstructionAdapter code = new InstructionAdapter();
+		code.visitLocalVariable("this");
+		code.jump(2);
+		code.returnValues(0);
+		code.newInt(1);
+		code.macroStaticJump(macroRef("test.A.m"));
+		code.jump(1);
+		MethodNode methodNode = addMethod(classNode, code);
+
+		new MacroInliner(32, MacroInliner.DEFAULT_MAX_INLINED_INSTRUCTIONS).inline(classNode);
+
+		InstructionAdapter expected = new InstructionAdapter();
+		expected.jump(2);
+		expected.returnValues(0);
+		expected.newInt(1);
+		expected.localPut(1);
+		expected.localGet(1);
+		expected.putTrue();
+		expected.jumpIf(8);
+		expected.jump(9);
+		expected.newInt(1);
+		expected.jump(1);
+		assertEquals(toString(expected), toString(methodNode.code.instructions));
+	}
+
+	public void testMacroWithReturnIsNotInlined() throws Exception
+	{
+		ClassNode classNode = new ClassNode(Modifier.EMPTY, new FqName("test.A"));
+		InstructionAdapter macro = new InstructionAdapter();
+		macro.visitLocalVariable("value");
+		macro.localGet(0);
+		macro.returnValues(1);
+		addMacro(classNode, "m", true, macro);
+
+		assertNotInlined(classNode, new MacroInliner(32, MacroInliner.DEFAULT_MAX_INLINED_INSTRUCTIONS));
+	}
+
+	public void testLargeMacroIsNotInlined() throws Exception
+	{
+		ClassNode classNode = new ClassNode(Modifier.EMPTY, new FqName("test.A"));
+		InstructionAdapter macro = new InstructionAdapter();
+		macro.visitLocalVariable("value");
+		macro.localGet(0);
+		macro.invokeVirtual(INT_INC, false);
+		addMacro(classNode, "m", true, macro);
+
+		assertNotInlined(classNode, new MacroInliner(1, MacroInliner.DEFAULT_MAX_INLINED_INSTRUCTIONS));
+	}
+
+	public void testRecursiveMacro() throws Exception
+	{
+		ClassNode classNode = new ClassNode(Modifier.EMPTY, new FqName("test.A"));
+		InstructionAdapter macro = new InstructionAdapter();
+		macro.visitLocalVariable("value");
+		macro.localGet(0);
+		macro.macroStaticJump(macroRef("test.A.m"));
+		MacroNode macroNode = addMacro(classNode, "m", true, macro);
+
+		InstructionAdapter code = new InstructionAdapter();
+		code.newInt(1);
+		code.macroStaticJump(macroRef("test.A.m"));
+		code.returnValues(1);
+		MethodNode methodNode = addMethod(classNode, code);
+
+		new MacroInliner(32, MacroInliner.DEFAULT_MAX_INLINED_INSTRUCTIONS).inline(classNode);
+
+		// macro is not inlined into itself
+		assertEquals(toString(macro), toString(macroNode.code.instructions));
+
+		// macro is inlined into caller once
+		InstructionAdapter expected = new InstructionAdapter();
+		expected.newInt(1);
+		expected.localPut(0);
+		expected.localGet(0);
+		expected.macroStaticJump(macroRef("test.A.m"));
+		expected.returnValues(1);
+		assertEquals(toString(expected), toString(methodNode.code.instructions));
+	}
+
+	public void testLimitOfClass() throws Exception
+	{
+		MacroInliner macroInliner = new MacroInliner(32, 2);
+
+		for(String name : new String[]{"test.A", "test.B"})
+		{
+			ClassNode classNode = new ClassNode(Modifier.EMPTY, new FqName(name));
+			InstructionAdapter macro = new InstructionAdapter();
+			macro.visitLocalVariable("value");
+			macro.localGet(0);
+			macro.invokeVirtual(INT_INC, false);
+			addMacro(classNode, "m", true, macro);
+
+			InstructionAdapter code = new InstructionAdapter();
+			code.newInt(1);
+			code.macroStaticJump(macroRef(name + ".m"));
+			code.macroStaticJump(macroRef(name + ".m"));
+			code.returnValues(1);
+			MethodNode methodNode = addMethod(classNode, code);
+
+			macroInliner.inline(classNode);
+
+			// limit is reached by first call, limit of other class is not changed by this class
+			InstructionAdapter expected = new InstructionAdapter();
+			expected.newInt(1);
+			expected.localPut(0);
+			expected.localGet(0);
+			expected.invokeVirtual(INT_INC, false);
+			expected.macroStaticJump(macroRef(name + ".m"));
+			expected.returnValues(1);
+			assertEquals(name, toString(expected), toString(methodNode.code.instructions));
+		}
+
+		assertEquals(2, macroInliner.getInlinedCalls());
+	}
+
+	private static void assertNotInlined(ClassNode classNode, MacroInliner macroInliner)
+	{
+		InstructionAdapter code = new InstructionAdapter();
+		code.newInt(1);
+		code.macroStaticJump(macroRef(classNode.name.getFqName() + ".m"));
+		code.returnValues(1);
+		MethodNode methodNode = addMethod(classNode, code);
+
+		macroInliner.inline(classNode);
+
+		assertEquals(toString(code), toString(methodNode.code.instructions));
+		assertEquals(0, macroInliner.getInlinedCalls());
+	}
+
+	private static MacroNode addMacro(ClassNode classNode, String name, boolean isStatic, InstructionAdapter code)
+	{
+		MacroNode macroNode = new MacroNode(isStatic ? new Modifier[]{Modifier.STATIC} : Modifier.EMPTY, Name.identifier(name), AsmConstants.INT_TYPE);
+		macroNode.parameters.add(VALUE);
+		macroNode.code = new CodeInfo(code);
+		classNode.addMember(macroNode);
+		return macroNode;
+	}
+
+	private static MethodNode addMethod(ClassNode classNode, InstructionAdapter code)
+	{
+		MethodNode methodNode = new MethodNode(Modifier.EMPTY, Name.identifier("test"), AsmConstants.INT_TYPE);
+		methodNode.code = new CodeInfo(code);
+		classNode.addMember(methodNode);
+		return methodNode;
+	}
+
+	private static MethodRef macroRef(String fqName)
+	{
+		return new MethodRef(new FqName(fqName), Collections.singletonList(VALUE), Collections.<TypeNode>emptyList(), AsmConstants.INT_TYPE);
+	}
+
+	private static List<String> toString(Iterable<Instruction> instructions)
+	{
+		List<String> result = new ArrayList<String>();
+		for(Instruction instruction : instructions)
+			result.add(instruction.toString());
+		return result;
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+
+import org.napile.asm.AsmConstants;
+import org.napile.asm.LangVersion;
+import org.napile.asm.Modifier;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.resolve.name.Name;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.asm.tree.members.MethodNode;
+import org.napile.asm.tree.members.MethodParameterNode;
+import org.napile.asm.tree.members.VariableNode;
+import org.napile.asm.tree.members.types.TypeNode;
+import org.napile.asm.tree.members.types.constructors.ClassTypeNode;
+import org.napile.compiler.bytecode.ClassFileFormat;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.psi.NapileClass;
+import org.napile.compiler.lang.psi.NapileDeclaration;
+import org.napile.compiler.lang.psi.impl.NXmlFileImpl;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 13:20/18.10.26
+ */
+public class NXmlFileStubTest extends TestCase
+{
+	private File libraryDir;
+	private Disposable disposable;
+	private NXmlFileImpl file;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		libraryDir = FileUtil.createTempDirectory("library", "");
+		disposable = Disposer.newDisposable();
+
+		ClassNode classNode = new ClassNode(Modifier.EMPTY, new FqName("test.lib.Foo"));
+		classNode.visitSuper(new TypeNode(false, new ClassTypeNode(new FqName("test.lib.Base"))));
+		classNode.addMember(MethodNode.constructor(Modifier.ABSTRACT));
+
+		MethodNode methodNode = new MethodNode(Modifier.list(Modifier.ABSTRACT), Name.identifier("method"), AsmConstants.NULL_TYPE);
+		methodNode.parameters.add(new MethodParameterNode(Modifier.EMPTY, Name.identifier("p"), AsmConstants.NULL_TYPE));
+		classNode.addMember(methodNode);
+
+		classNode.addMember(new VariableNode(Modifier.EMPTY, Name.identifier("variable"), AsmConstants.NULL_TYPE));
+
+		File ioFile = ClassFileFormat.XML.write(libraryDir, LangVersion.CURRENT, classNode);
+
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addToClasspath(libraryDir);
+
+		VirtualFile virtualFile = environment.getApplicationEnvironment().getLocalFileSystem().findFileByIoFile(ioFile);
+		assertNotNull(virtualFile);
+
+		PsiFile psiFile = PsiManager.getInstance(environment.getProject()).findFile(virtualFile);
+		assertTrue(psiFile instanceof NXmlFileImpl);
+		file = (NXmlFileImpl) psiFile;
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Disposer.dispose(disposable);
+		FileUtil.delete(libraryDir);
+
+		super.tearDown();
+	}
+
+	public void testDeclarationsFromClassNode() throws Exception
+	{
+		assertEquals(new FqName("test.lib"), file.getPackageFqName());
+
+		NapileClass[] classes = file.getDeclarations();
+		assertEquals(1, classes.length);
+		assertEquals("Foo", classes[0].getName());
+		assertEquals(new FqName("test.lib.Foo"), classes[0].getFqName());
+		assertEquals(1, classes[0].getConstructors().length);
+
+		NapileDeclaration[] declarations = classes[0].getDeclarations();
+		assertEquals(3, declarations.length);
+		assertEquals("method", declarations[1].getName());
+		assertEquals("variable", declarations[2].getName());
+	}
+
+	public void testMirrorIsBuiltOnlyOnRequest() throws Exception
+	{
+		NapileClass napileClass = file.getDeclarations()[0];
+
+		// super types are known only from mirror
+		assertTrue(napileClass.getSuperTypes().isEmpty());
+
+		assertNotNull(file.getMirror());
+		assertEquals(1, napileClass.getSuperTypes().size());
+	}
+
+	public void testClassNodeIsShared() throws Exception
+	{
+		ClassNode classNode = file.getClassNode();
+		assertNotNull(classNode);
+
+		file.getDeclarations();
+		file.getMirror();
+
+		assertSame(classNode, file.getClassNode());
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.napile.compiler.common.CompileEnvironmentException;
+import org.napile.compiler.common.CompilerConfigurationKeys;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.psi.stubs.NapilePsiClassStub;
+import org.napile.compiler.lang.psi.stubs.NapilePsiFileStub;
+import org.napile.compiler.lang.psi.stubs.NapilePsiModifierListStub;
+import org.napile.compiler.lang.psi.stubs.NapileStubCache;
+import org.napile.compiler.lang.psi.stubs.NapileStubTreeLoader;
+import com.intellij.core.CoreApplicationEnvironment;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.stubs.NamedStub;
+import com.intellij.psi.stubs.ObjectStubTree;
+import com.intellij.psi.stubs.StubElement;
+import com.intellij.psi.stubs.StubTree;
+import com.intellij.psi.stubs.StubTreeLoader;
+import junit.framework.TestCase;
+
+/**
+ * Stubs from cache must be same as built stubs. Sources are copied to temp directory, to change them
+ *
+ * @author VISTALL
+ * @since 20:00/18.10.26
+ */
+public class NapileStubCacheTest extends TestCase
+{
+	private File tempDirectory;
+	private File sourceDirectory;
+	private File cacheDirectory;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		tempDirectory = FileUtil.createTempDirectory("stubCache", null);
+		sourceDirectory = new File(tempDirectory, "src");
+		cacheDirectory = new File(tempDirectory, "cache");
+		FileUtil.copyDir(new File("testFramework/src/test/napileRt"), sourceDirectory);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		FileUtil.delete(tempDirectory);
+
+		super.tearDown();
+	}
+
+	public void testStubsAreSameAsBuilt() throws Exception
+	{
+		Map<String, String> expected = buildStubs();
+		assertFalse(expected.isEmpty());
+
+		Disposable disposable = Disposer.newDisposable();
+		try
+		{
+			NapileCoreEnvironment environment = createEnvironment(disposable);
+			NapileStubCache cache = NapileStubCache.getInstance();
+			assertNotNull(cache);
+
+			for(NapileFile file : environment.getSourceFiles())
+			{
+				StubTree stubTree = cache.get(file.getVirtualFile());
+				assertNotNull(file.getName(), stubTree);
+				assertEquals(file.getName(), expected.get(file.getName()), toString(stubTree.getRoot()));
+			}
+		}
+		finally
+		{
+			Disposer.dispose(disposable);
+		}
+	}
+
+	public void testTouchedFileIsFoundByHash() throws Exception
+	{
+		buildStubs();
+
+		File file = findSourceFile();
+		assertTrue(file.setLastModified(file.lastModified() + 10000));
+
+		assertNotNull(getCachedStubs(file));
+	}
+
+	public void testChangedFileIsNotFound() throws Exception
+	{
+		buildStubs();
+
+		File file = findSourceFile();
+		FileUtil.appendToFile(file, "\n");
+
+		assertNull(getCachedStubs(file));
+	}
+
+	public void testSegmentWithOtherHeaderIsDropped() throws Exception
+	{
+		buildStubs();
+
+		File[] segments = cacheDirectory.listFiles();
+		assertNotNull(segments);
+		assertTrue(segments.length > 0);
+		for(File segment : segments)
+		{
+			RandomAccessFile randomAccessFile = new RandomAccessFile(segment, "rw");
+			try
+			{
+				randomAccessFile.writeInt(0);
+			}
+			finally
+			{
+				randomAccessFile.close();
+			}
+		}
+
+		assertNull(getCachedStubs(findSourceFile()));
+	}
+
+	public void testSharedApplicationEnvironment() throws Exception
+	{
+		Disposable disposable = Disposer.newDisposable();
+		try
+		{
+			CoreApplicationEnvironment applicationEnvironment = NapileCoreEnvironment.createApplicationEnvironment(disposable);
+
+			new NapileCoreEnvironment(disposable, applicationEnvironment, createConfiguration(cacheDirectory));
+			NapileStubCache cache = NapileStubCache.getInstance();
+			assertNotNull(cache);
+
+			new NapileCoreEnvironment(disposable, applicationEnvironment, createConfiguration(cacheDirectory));
+			assertSame(cache, NapileStubCache.getInstance());
+
+			try
+			{
+				new NapileCoreEnvironment(disposable, applicationEnvironment, createConfiguration(new File(tempDirectory, "otherCache")));
+				fail();
+			}
+			catch(CompileEnvironmentException e)
+			{
+				// other directory is not served by registered cache
+			}
+			assertSame(cache, NapileStubCache.getInstance());
+		}
+		finally
+		{
+			Disposer.dispose(disposable);
+		}
+	}
+
+	/**
+	 * Builds stubs of all source files with cache, and writes cache to disk
+	 *
+	 * @return text of stubs by name of file
+	 */
+	private Map<String, String> buildStubs() throws Exception
+	{
+		Map<String, String> stubs = new LinkedHashMap<String, String>();
+		Disposable disposable = Disposer.newDisposable();
+		try
+		{
+			NapileCoreEnvironment environment = createEnvironment(disposable);
+			StubTreeLoader loader = StubTreeLoader.getInstance();
+			assertTrue(loader instanceof NapileStubTreeLoader);
+
+			for(NapileFile file : environment.getSourceFiles())
+			{
+				// built stubs, not from cache
+				assertNull(file.getName(), NapileStubCache.getInstance().get(file.getVirtualFile()));
+
+				ObjectStubTree stubTree = loader.readOrBuild(environment.getProject(), file.getVirtualFile(), file);
+				assertTrue(file.getName(), stubTree instanceof StubTree);
+				stubs.put(file.getName(), toString(((StubTree) stubTree).getRoot()));
+			}
+		}
+		finally
+		{
+			Disposer.dispose(disposable);
+		}
+		return stubs;
+	}
+
+	private StubTree getCachedStubs(File file) throws Exception
+	{
+		Disposable disposable = Disposer.newDisposable();
+		try
+		{
+			NapileCoreEnvironment environment = createEnvironment(disposable);
+			VirtualFile virtualFile = environment.getApplicationEnvironment().getLocalFileSystem().findFileByPath(file.getAbsolutePath());
+			assertNotNull(virtualFile);
+			return NapileStubCache.getInstance().get(virtualFile);
+		}
+		finally
+		{
+			Disposer.dispose(disposable);
+		}
+	}
+
+	private NapileCoreEnvironment createEnvironment(Disposable disposable)
+	{
+		return new NapileCoreEnvironment(disposable, createConfiguration(cacheDirectory));
+	}
+
+	private CompilerConfiguration createConfiguration(File stubCacheDirectory)
+	{
+		CompilerConfiguration configuration = new CompilerConfiguration();
+		configuration.put(CompilerConfigurationKeys.STUB_CACHE_DIRECTORY_KEY, stubCacheDirectory);
+		configuration.add(CompilerConfigurationKeys.SOURCE_ROOTS_KEY, sourceDirectory.getAbsolutePath());
+		return configuration;
+	}
+
+	private File findSourceFile()
+	{
+		File[] files = new File(sourceDirectory, "napile/lang").listFiles();
+		assertNotNull(files);
+		for(File file : files)
+			if(file.getName().endsWith(".ns"))
+				return file;
+		fail();
+		return null;
+	}
+
+	private static String toString(StubElement<?> stub)
+	{
+		StringBuilder builder = new StringBuilder();
+		appendStub(stub, builder, 0);
+		return builder.toString();
+	}
+
+	private static void appendStub(StubElement<?> stub, StringBuilder builder, int indent)
+	{
+		for(int i = 0; i < indent; i++)
+			builder.append("  ");
+		builder.append(stub.getStubType());
+		if(stub instanceof NapilePsiFileStub)
+			builder.append(" package=").append(((NapilePsiFileStub) stub).getFqName()).append(" compiled=").append(((NapilePsiFileStub) stub).isCompiled());
+		if(stub instanceof NapilePsiClassStub)
+			builder.append(" fqName=").append(((NapilePsiClassStub) stub).getFqName());
+		if(stub instanceof NamedStub)
+			builder.append(" name=").append(((NamedStub<?>) stub).getName());
+		if(stub instanceof NapilePsiModifierListStub)
+			builder.append(" modifiers=").append(((NapilePsiModifierListStub) stub).getModifiers());
+		builder.append('\n');
+
+		for(StubElement child : stub.getChildrenStubs())
+			appendStub(child, builder, indent + 1);
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.psi.NapileExpression;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.lang.types.ErrorUtils;
+import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.impl.MethodTypeConstructor;
+import org.napile.compiler.lang.types.impl.NapileTypeImpl;
+import org.napile.compiler.lang.types.impl.NapileTypeInterner;
+import org.napile.compiler.lang.types.impl.TypeConstructorImpl;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 17:50/18.10.26
+ */
+public class NapileTypeInternerTest extends TestCase
+{
+	private Disposable disposable;
+	private BindingTrace trace;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		disposable = Disposer.newDisposable();
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+		assertNull(exhaust.getError());
+		trace = exhaust.getBindingTrace();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		NapileTypeInterner interner = NapileTypeInterner.getCurrentInterner();
+		if(interner != null)
+			interner.endSession();
+		Disposer.dispose(disposable);
+
+		super.tearDown();
+	}
+
+	public void testSessionIsEndedByAnalyzer() throws Exception
+	{
+		assertNull(NapileTypeInterner.getCurrentInterner());
+	}
+
+	public void testNotInternedWithoutSession() throws Exception
+	{
+		NapileType type = findType(false);
+
+		assertNotSame(copy(type, type.isNullable()), copy(type, type.isNullable()));
+	}
+
+	public void testInternedInSession() throws Exception
+	{
+		NapileType type = findType(false);
+
+		NapileTypeInterner interner = NapileTypeInterner.startSession();
+		NapileType first = copy(type, type.isNullable());
+		NapileType second = copy(type, type.isNullable());
+
+		assertSame(first, second);
+		assertEquals(type, first);
+		assertEquals(2, interner.getRequests());
+		assertEquals(1, interner.getHits());
+		assertEquals(1, interner.getSize());
+
+		NapileType nullable = copy(type, !type.isNullable());
+		assertNotSame(first, nullable);
+		assertEquals(2, interner.getSize());
+	}
+
+	public void testArgumentsAreComparedByIdentity() throws Exception
+	{
+		NapileType type = findType(true);
+
+		List<NapileType> copiedArguments = new ArrayList<NapileType>();
+		for(NapileType argument : type.getArguments())
+			copiedArguments.add(new NapileTypeImpl(argument.getAnnotations(), argument.getConstructor(), argument.isNullable(), argument.getArguments(), argument.getMemberScope()));
+
+		NapileTypeInterner.startSession();
+		NapileType first = copy(type, type.isNullable());
+		NapileType second = NapileTypeInterner.create(type.getAnnotations(), type.getConstructor(), type.isNullable(), copiedArguments, type.getMemberScope());
+
+		assertNotSame(first, second);
+		assertEquals(first, second);
+	}
+
+	public void testEndSession() throws Exception
+	{
+		NapileType type = findType(false);
+
+		NapileTypeInterner interner = NapileTypeInterner.startSession();
+		NapileType interned = copy(type, type.isNullable());
+		interner.endSession();
+
+		assertNull(NapileTypeInterner.getCurrentInterner());
+		assertEquals(0, interner.getSize());
+		assertNotSame(interned, copy(type, type.isNullable()));
+	}
+
+	public void testMethodTypesAreNotInterned() throws Exception
+	{
+		NapileType methodType = null;
+		for(NapileExpression expression : trace.getKeys(BindingTraceKeys.EXPRESSION_TYPE))
+		{
+			NapileType type = trace.get(BindingTraceKeys.EXPRESSION_TYPE, expression);
+			if(type != null && type.getConstructor() instanceof MethodTypeConstructor)
+				methodType = type;
+		}
+		assertNotNull(methodType);
+
+		NapileTypeInterner interner = NapileTypeInterner.startSession();
+		assertNotSame(copy(methodType, false), copy(methodType, false));
+		assertEquals(0, interner.getRequests());
+	}
+
+	private NapileType findType(boolean withArguments)
+	{
+		for(NapileExpression expression : trace.getKeys(BindingTraceKeys.EXPRESSION_TYPE))
+		{
+			NapileType type = trace.get(BindingTraceKeys.EXPRESSION_TYPE, expression);
+			if(type instanceof NapileTypeImpl && type.getConstructor() instanceof TypeConstructorImpl && !ErrorUtils.isErrorType(type) && type.getArguments().isEmpty() != withArguments)
+				return type;
+		}
+		fail();
+		return null;
+	}
+
+	private static NapileType copy(NapileType type, boolean nullable)
+	{
+		return NapileTypeInterner.create(type.getAnnotations(), type.getConstructor(), nullable, type.getArguments(), type.getMemberScope());
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.descriptors.DeclarationDescriptor;
+import org.napile.compiler.lang.diagnostics.Diagnostic;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.lang.resolve.calls.ResolvedCall;
+import org.napile.compiler.render.DescriptorRenderer;
+import org.napile.compiler.util.slicedmap.WritableSlice;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.psi.PsiElement;
+import junit.framework.TestCase;
+
+/**
+ * Bodies resolved in parallel must give same diagnostics, records and anonym classes, as serial resolving
+ *
+ * @author VISTALL
+ * @since 15:10/18.10.26
+ */
+public class ParallelBodyResolveTest extends TestCase
+{
+	private static final int ANONYM_CLASSES = 16;
+
+	private static final String ANONYM_SOURCE = "package test.anonym\n" +
+			"\n" +
+			"class Holder{N}\n" +
+			"{\n" +
+			"\tval field : Any = anonym : Any\n" +
+			"\t{\n" +
+			"\t\tval inner : Int = {N}\n" +
+			"\t\tval wrong : Int = \"{N}\"\n" +
+			"\t}\n" +
+			"\n" +
+			"\tthis()\n" +
+			"\n" +
+			"\tmeth value() : Any\n" +
+			"\t{\n" +
+			"\t\treturn anonym : Any\n" +
+			"\t\t{\n" +
+			"\t\t\tval inner : Int = {N}\n" +
+			"\t\t\tval wrong : Int = \"{N}\"\n" +
+			"\n" +
+			"\t\t\tmeth get() : Int\n" +
+			"\t\t\t{\n" +
+			"\t\t\t\treturn inner\n" +
+			"\t\t\t}\n" +
+			"\t\t}\n" +
+			"\t}\n" +
+			"}";
+
+	private Disposable disposable;
+	private NapileCoreEnvironment environment;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		disposable = Disposer.newDisposable();
+		environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Disposer.dispose(disposable);
+
+		super.tearDown();
+	}
+
+	public void testSameResultAsSerial() throws Exception
+	{
+		BindingTrace serial = analyze(1);
+		BindingTrace parallel = analyze(4);
+
+		assertEquals(renderDiagnostics(serial), renderDiagnostics(parallel));
+
+		assertSlice(BindingTraceKeys.EXPRESSION_TYPE, serial, parallel);
+		assertSlice(BindingTraceKeys.REFERENCE_TARGET, serial, parallel);
+		assertSlice(BindingTraceKeys.RESOLVED_CALL, serial, parallel);
+		assertSlice(BindingTraceKeys.AUTOCAST, serial, parallel);
+		assertSlice(BindingTraceKeys.VARIABLE_REASSIGNMENT, serial, parallel);
+	}
+
+	public void testParallelIsStable() throws Exception
+	{
+		BindingTrace first = analyze(4);
+		BindingTrace second = analyze(4);
+
+		assertEquals(renderDiagnostics(first), renderDiagnostics(second));
+		assertSlice(BindingTraceKeys.EXPRESSION_TYPE, first, second);
+	}
+
+	public void testAnonymClassesInParallel() throws Exception
+	{
+		File sourceDir = FileUtil.createTempDirectory("anonym", "");
+		try
+		{
+			// each class gives bodies with anonym classes, errors in anonym classes are reported to trace of body
+			for(int i = 0; i < ANONYM_CLASSES; i++)
+				FileUtil.writeToFile(new File(sourceDir, "test/anonym/Holder" + i + ".ns"), ANONYM_SOURCE.replace("{N}", String.valueOf(i)));
+			environment.addSources(sourceDir);
+
+			AnalyzeExhaust serial = analyzeExhaust(1);
+			AnalyzeExhaust parallel = analyzeExhaust(4);
+
+			List<String> diagnostics = renderDiagnostics(parallel.getBindingTrace());
+			assertEquals(renderDiagnostics(serial.getBindingTrace()), diagnostics);
+			assertEquals(ANONYM_CLASSES * 2, count(diagnostics, " TYPE_MISMATCH"));
+
+			assertSlice(BindingTraceKeys.EXPRESSION_TYPE, serial.getBindingTrace(), parallel.getBindingTrace());
+			assertSlice(BindingTraceKeys.CLASS, serial.getBindingTrace(), parallel.getBindingTrace());
+			assertSlice(BindingTraceKeys.VARIABLE, serial.getBindingTrace(), parallel.getBindingTrace());
+
+			// declarations of anonym classes are in context in same order
+			List<String> anonymous = renderElements(parallel.getBodiesResolveContext().getAnonymous().keySet());
+			assertEquals(renderElements(serial.getBodiesResolveContext().getAnonymous().keySet()), anonymous);
+			assertEquals(ANONYM_CLASSES * 2, anonymous.size());
+			assertEquals(renderElements(serial.getBodiesResolveContext().getVariables().keySet()), renderElements(parallel.getBodiesResolveContext().getVariables().keySet()));
+		}
+		finally
+		{
+			FileUtil.delete(sourceDir);
+		}
+	}
+
+	private BindingTrace analyze(int bodyResolveThreads)
+	{
+		return analyzeExhaust(bodyResolveThreads).getBindingTrace();
+	}
+
+	private AnalyzeExhaust analyzeExhaust(int bodyResolveThreads)
+	{
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue(), bodyResolveThreads);
+		assertNull(exhaust.getError());
+		return exhaust;
+	}
+
+	private static int count(List<String> lines, String part)
+	{
+		int count = 0;
+		for(String line : lines)
+			if(line.contains(part))
+				count++;
+		return count;
+	}
+
+	private static List<String> renderElements(Collection<? extends PsiElement> elements)
+	{
+		List<String> result = new ArrayList<String>(elements.size());
+		for(PsiElement element : elements)
+			result.add(renderElement(element, element.getTextRange()));
+		return result;
+	}
+
+	private static <K extends PsiElement, V> void assertSlice(WritableSlice<K, V> slice, BindingTrace expected, BindingTrace actual)
+	{
+		assertEquals(slice.toString(), renderSlice(slice, expected), renderSlice(slice, actual));
+	}
+
+	// same psi is analyzed twice - descriptors are different, so values are compared by text
+	private static <K extends PsiElement, V> Map<String, String> renderSlice(WritableSlice<K, V> slice, BindingTrace trace)
+	{
+		Map<String, String> result = new TreeMap<String, String>();
+		for(K key : trace.getKeys(slice))
+			result.put(renderElement(key, key.getTextRange()), renderValue(trace.get(slice, key)));
+		return result;
+	}
+
+	private static String renderValue(Object value)
+	{
+		if(value instanceof ResolvedCall)
+			value = ((ResolvedCall<?>) value).getResultingDescriptor();
+		if(value instanceof DeclarationDescriptor)
+			return DescriptorRenderer.DEBUG_TEXT.render((DeclarationDescriptor) value);
+		return String.valueOf(value);
+	}
+
+	private static List<String> renderDiagnostics(BindingTrace trace)
+	{
+		List<String> result = new ArrayList<String>();
+		for(Diagnostic diagnostic : trace.getDiagnostics())
+			for(TextRange textRange : diagnostic.getTextRanges())
+				result.add(renderElement(diagnostic.getPsiElement(), textRange) + " " + diagnostic.getFactory().getName());
+		Collections.sort(result);
+		return result;
+	}
+
+	private static String renderElement(PsiElement element, TextRange textRange)
+	{
+		return element.getContainingFile().getVirtualFile().getPath() + ":" + textRange.getStartOffset() + ":" + textRange.getEndOffset() + ":" + element.getClass().getSimpleName();
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.codegen.CompilationErrorHandler;
+import org.napile.compiler.codegen.GenerationState;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.psi.NapileFile;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 21:10/18.10.26
+ */
+public class ParallelCodegenTest extends TestCase
+{
+	public void testParallelOutputIsSameAsSequential() throws Exception
+	{
+		Map<FqName, ClassNode> expected = generate(1);
+		assertTrue(expected.size() > 1);
+
+		// few runs - order of finished classes is different in each run
+		for(int threads : new int[]{2, 4, 8})
+		{
+			Map<FqName, ClassNode> actual = generate(threads);
+
+			assertEquals("threads: " + threads, new ArrayList<FqName>(expected.keySet()), new ArrayList<FqName>(actual.keySet()));
+			for(Map.Entry<FqName, ClassNode> entry : expected.entrySet())
+				assertEquals("threads: " + threads + ", " + entry.getKey().getFqName(), entry.getValue().toString(), actual.get(entry.getKey()).toString());
+		}
+	}
+
+	private static Map<FqName, ClassNode> generate(int threads) throws Exception
+	{
+		Disposable disposable = Disposer.newDisposable();
+		try
+		{
+			NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+			environment.addSources(new File("testFramework/src/test/napileRt"));
+
+			AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+			assertNull(exhaust.getError());
+
+			GenerationState generationState = new GenerationState(environment.getProject(), null, exhaust, environment.getSourceFiles(), threads);
+			generationState.compileAndGenerate(CompilationErrorHandler.THROW_EXCEPTION);
+			return generationState.getClassNodes();
+		}
+		finally
+		{
+			Disposer.dispose(disposable);
+		}
+	}
+}
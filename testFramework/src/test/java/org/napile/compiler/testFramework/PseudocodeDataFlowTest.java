@@ -0,0 +1,345 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.cfg.PseudocodeVariablesData;
+import org.napile.compiler.lang.cfg.VariableInitState;
+import org.napile.compiler.lang.cfg.VariableUseState;
+import org.napile.compiler.lang.cfg.pseudocode.Instruction;
+import org.napile.compiler.lang.cfg.pseudocode.LocalDeclarationInstruction;
+import org.napile.compiler.lang.cfg.pseudocode.Pseudocode;
+import org.napile.compiler.lang.cfg.pseudocode.PseudocodeUtil;
+import org.napile.compiler.lang.cfg.pseudocode.ReadValueInstruction;
+import org.napile.compiler.lang.cfg.pseudocode.SubroutineEnterInstruction;
+import org.napile.compiler.lang.cfg.pseudocode.SubroutineSinkInstruction;
+import org.napile.compiler.lang.cfg.pseudocode.VariableDeclarationInstruction;
+import org.napile.compiler.lang.cfg.pseudocode.WriteValueInstruction;
+import org.napile.compiler.lang.descriptors.VariableDescriptor;
+import org.napile.compiler.lang.psi.NapileDeclaration;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.psi.NapileVariable;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import com.google.common.base.Predicates;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import junit.framework.TestCase;
+
+/**
+ * States of bit vector data flow must be same, as states of map based traversal, which was used before it. Diagnostics are
+ * built only from these states, so same states give same diagnostics. Reference traversal is copy of removed one
+ *
+ * @author VISTALL
+ * @since 16:30/18.10.26
+ */
+public class PseudocodeDataFlowTest extends TestCase
+{
+	private Disposable disposable;
+	private BindingTrace trace;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		disposable = Disposer.newDisposable();
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue(), 1);
+		assertNull(exhaust.getError());
+		trace = exhaust.getBindingTrace();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Disposer.dispose(disposable);
+
+		super.tearDown();
+	}
+
+	public void testInitStatesAsMapTraversal() throws Exception
+	{
+		int unknownStates = 0;
+		for(NapileDeclaration declaration : trace.getKeys(BindingTraceKeys.PSEUDOCODE))
+		{
+			Pseudocode pseudocode = trace.get(BindingTraceKeys.PSEUDOCODE, declaration);
+			PseudocodeVariablesData data = new PseudocodeVariablesData(pseudocode, trace);
+
+			Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> expected = collectInitStates(pseudocode, data);
+			for(Map.Entry<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> entry : expected.entrySet())
+			{
+				Instruction instruction = entry.getKey();
+				for(VariableDescriptor variable : data.getUsedVariables(instruction.getOwner()))
+				{
+					VariableInitState in = entry.getValue().in.get(variable);
+					if(in == null)
+						unknownStates++;
+
+					assertSame(instruction + " " + variable, in, data.getVariableInitState(instruction, variable, true));
+					assertSame(instruction + " " + variable, entry.getValue().out.get(variable), data.getVariableInitState(instruction, variable, false));
+				}
+			}
+		}
+
+		// not reachable exits of methods, which are always throwing
+		assertTrue(unknownStates > 0);
+	}
+
+	public void testUseStatesAsMapTraversal() throws Exception
+	{
+		for(NapileDeclaration declaration : trace.getKeys(BindingTraceKeys.PSEUDOCODE))
+		{
+			Pseudocode pseudocode = trace.get(BindingTraceKeys.PSEUDOCODE, declaration);
+			PseudocodeVariablesData data = new PseudocodeVariablesData(pseudocode, trace);
+
+			Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> expected = collectUseStates(pseudocode, data);
+			for(Map.Entry<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> entry : expected.entrySet())
+			{
+				Instruction instruction = entry.getKey();
+				for(VariableDescriptor variable : data.getUsedVariables(pseudocode))
+				{
+					assertSame(instruction + " " + variable, useState(entry.getValue().in, variable), data.getVariableUseState(instruction, variable, true));
+					assertSame(instruction + " " + variable, useState(entry.getValue().out, variable), data.getVariableUseState(instruction, variable, false));
+				}
+			}
+		}
+	}
+
+	@NotNull
+	private static VariableUseState useState(@NotNull Map<VariableDescriptor, VariableUseState> data, @NotNull VariableDescriptor variable)
+	{
+		VariableUseState state = data.get(variable);
+		return state == null ? VariableUseState.UNUSED : state;
+	}
+
+	@NotNull
+	private Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> collectInitStates(@NotNull Pseudocode pseudocode, @NotNull PseudocodeVariablesData data)
+	{
+		Set<VariableDescriptor> declaredVariables = data.getDeclaredVariables(pseudocode);
+		Map<VariableDescriptor, VariableInitState> start = Maps.newHashMap();
+		for(VariableDescriptor variable : data.getUsedVariables(pseudocode))
+			start.put(variable, VariableInitState.create(!declaredVariables.contains(variable)));
+
+		Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> result = collectData(pseudocode, true, false, Collections.<VariableDescriptor, VariableInitState>emptyMap(), start, new MergeStrategy<Map<VariableDescriptor, VariableInitState>>()
+		{
+			@Override
+			public Edges<Map<VariableDescriptor, VariableInitState>> execute(@NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, VariableInitState>> incomingEdgesData)
+			{
+				Set<VariableDescriptor> variablesInScope = Sets.newHashSet();
+				for(Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData)
+					variablesInScope.addAll(edgeData.keySet());
+
+				Map<VariableDescriptor, VariableInitState> enter = Maps.newHashMap();
+				for(VariableDescriptor variable : variablesInScope)
+				{
+					Set<VariableInitState> edgesDataForVariable = Sets.newHashSet();
+					for(Map<VariableDescriptor, VariableInitState> edgeData : incomingEdgesData)
+						if(edgeData.get(variable) != null)
+							edgesDataForVariable.add(edgeData.get(variable));
+					enter.put(variable, VariableInitState.create(edgesDataForVariable));
+				}
+
+				if(!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction))
+					return new Edges<Map<VariableDescriptor, VariableInitState>>(enter, enter);
+				VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, trace);
+				if(variable == null)
+					return new Edges<Map<VariableDescriptor, VariableInitState>>(enter, enter);
+
+				Map<VariableDescriptor, VariableInitState> exit = Maps.newHashMap(enter);
+				VariableInitState enterState = enter.get(variable);
+				if(instruction instanceof WriteValueInstruction)
+					exit.put(variable, VariableInitState.create(((WriteValueInstruction) instruction).getElement() instanceof NapileVariable, enterState));
+				else if(enterState == null || !enterState.isInitialized || !enterState.isDeclared)
+					exit.put(variable, VariableInitState.create(enterState != null && enterState.isInitialized, true));
+				return new Edges<Map<VariableDescriptor, VariableInitState>>(enter, exit);
+			}
+		});
+
+		for(LocalDeclarationInstruction localDeclarationInstruction : pseudocode.getLocalDeclarations())
+			result.putAll(collectInitStates(localDeclarationInstruction.getBody(), data));
+		return result;
+	}
+
+	@NotNull
+	private Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> collectUseStates(@NotNull Pseudocode pseudocode, @NotNull PseudocodeVariablesData data)
+	{
+		Map<VariableDescriptor, VariableUseState> start = Maps.newHashMap();
+		for(VariableDescriptor variable : data.getUsedVariables(pseudocode))
+			start.put(variable, VariableUseState.UNUSED);
+
+		return collectData(pseudocode, false, true, Collections.<VariableDescriptor, VariableUseState>emptyMap(), start, new MergeStrategy<Map<VariableDescriptor, VariableUseState>>()
+		{
+			@Override
+			public Edges<Map<VariableDescriptor, VariableUseState>> execute(@NotNull Instruction instruction, @NotNull Collection<Map<VariableDescriptor, VariableUseState>> incomingEdgesData)
+			{
+				Map<VariableDescriptor, VariableUseState> enter = Maps.newHashMap();
+				for(Map<VariableDescriptor, VariableUseState> edgeData : incomingEdgesData)
+					for(Map.Entry<VariableDescriptor, VariableUseState> entry : edgeData.entrySet())
+						enter.put(entry.getKey(), entry.getValue().merge(enter.get(entry.getKey())));
+
+				VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true, trace);
+				if(variable == null || !(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))
+					return new Edges<Map<VariableDescriptor, VariableUseState>>(enter, enter);
+
+				Map<VariableDescriptor, VariableUseState> exit = Maps.newHashMap(enter);
+				if(instruction instanceof ReadValueInstruction)
+					exit.put(variable, VariableUseState.LAST_READ);
+				else
+				{
+					VariableUseState state = enter.get(variable);
+					if(state == null || state == VariableUseState.UNUSED || state == VariableUseState.ONLY_WRITTEN_NEVER_READ)
+						exit.put(variable, VariableUseState.ONLY_WRITTEN_NEVER_READ);
+					else
+						exit.put(variable, VariableUseState.LAST_WRITTEN);
+				}
+				return new Edges<Map<VariableDescriptor, VariableUseState>>(enter, exit);
+			}
+		});
+	}
+
+	// map based traversal
+
+	@NotNull
+	private static <D> Map<Instruction, Edges<D>> collectData(@NotNull Pseudocode pseudocode, boolean directOrder, boolean lookInside, @NotNull D initialValue, @NotNull D startValue, @NotNull MergeStrategy<D> mergeStrategy)
+	{
+		Map<Instruction, Edges<D>> edgesMap = Maps.newLinkedHashMap();
+		initializeEdgesMap(pseudocode, lookInside, edgesMap, initialValue);
+		edgesMap.put(getStartInstruction(pseudocode, directOrder), new Edges<D>(startValue, startValue));
+
+		boolean[] changed = new boolean[]{true};
+		while(changed[0])
+		{
+			changed[0] = false;
+			collectDataFromSubgraph(pseudocode, directOrder, lookInside, edgesMap, mergeStrategy, Collections.<Instruction>emptyList(), changed, false);
+		}
+		return edgesMap;
+	}
+
+	private static <D> void initializeEdgesMap(@NotNull Pseudocode pseudocode, boolean lookInside, @NotNull Map<Instruction, Edges<D>> edgesMap, @NotNull D initialValue)
+	{
+		for(Instruction instruction : pseudocode.getInstructions())
+		{
+			edgesMap.put(instruction, new Edges<D>(initialValue, initialValue));
+			if(lookInside && instruction instanceof LocalDeclarationInstruction)
+				initializeEdgesMap(((LocalDeclarationInstruction) instruction).getBody(), lookInside, edgesMap, initialValue);
+		}
+	}
+
+	private static <D> void collectDataFromSubgraph(@NotNull Pseudocode pseudocode, boolean directOrder, boolean lookInside, @NotNull Map<Instruction, Edges<D>> edgesMap, @NotNull MergeStrategy<D> mergeStrategy, @NotNull Collection<Instruction> previousSubGraphInstructions, boolean[] changed, boolean isLocal)
+	{
+		List<Instruction> instructions = directOrder ? pseudocode.getInstructions() : pseudocode.getReversedInstructions();
+		Instruction startInstruction = getStartInstruction(pseudocode, directOrder);
+
+		for(Instruction instruction : instructions)
+		{
+			boolean isStart = directOrder ? instruction instanceof SubroutineEnterInstruction : instruction instanceof SubroutineSinkInstruction;
+			if(!isLocal && isStart)
+				continue;
+
+			Collection<Instruction> previousInstructions = directOrder ? instruction.getPreviousInstructions() : instruction.getNextInstructions();
+			Collection<Instruction> allPreviousInstructions = previousInstructions;
+			if(instruction == startInstruction && !previousSubGraphInstructions.isEmpty())
+			{
+				allPreviousInstructions = Lists.newArrayList(previousInstructions);
+				allPreviousInstructions.addAll(previousSubGraphInstructions);
+			}
+
+			if(lookInside && instruction instanceof LocalDeclarationInstruction)
+			{
+				Pseudocode body = ((LocalDeclarationInstruction) instruction).getBody();
+				collectDataFromSubgraph(body, directOrder, lookInside, edgesMap, mergeStrategy, previousInstructions, changed, true);
+				Edges<D> newValue = edgesMap.get(directOrder ? body.getSinkInstruction() : body.getEnterInstruction());
+				if(!newValue.equals(edgesMap.get(instruction)))
+				{
+					changed[0] = true;
+					edgesMap.put(instruction, newValue);
+				}
+				continue;
+			}
+
+			Collection<D> incomingEdgesData = Sets.newHashSet();
+			for(Instruction previousInstruction : allPreviousInstructions)
+			{
+				Edges<D> previousData = edgesMap.get(previousInstruction);
+				if(previousData != null)
+					incomingEdgesData.add(previousData.out);
+			}
+
+			Edges<D> mergedData = mergeStrategy.execute(instruction, incomingEdgesData);
+			if(!mergedData.equals(edgesMap.get(instruction)))
+			{
+				changed[0] = true;
+				edgesMap.put(instruction, mergedData);
+			}
+		}
+	}
+
+	@NotNull
+	private static Instruction getStartInstruction(@NotNull Pseudocode pseudocode, boolean directOrder)
+	{
+		return directOrder ? pseudocode.getEnterInstruction() : pseudocode.getSinkInstruction();
+	}
+
+	private interface MergeStrategy<D>
+	{
+		Edges<D> execute(@NotNull Instruction instruction, @NotNull Collection<D> incomingEdgesData);
+	}
+
+	private static class Edges<D>
+	{
+		private final D in;
+		private final D out;
+
+		private Edges(@NotNull D in, @NotNull D out)
+		{
+			this.in = in;
+			this.out = out;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if(!(o instanceof Edges))
+				return false;
+			Edges<?> edges = (Edges<?>) o;
+			return in.equals(edges.in) && out.equals(edges.out);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * in.hashCode() + out.hashCode();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.cfg.NapileControlFlowProcessor;
+import org.napile.compiler.lang.cfg.pseudocode.LocalDeclarationInstruction;
+import org.napile.compiler.lang.cfg.pseudocode.Pseudocode;
+import org.napile.compiler.lang.diagnostics.Diagnostic;
+import org.napile.compiler.lang.psi.NapileAnonymMethod;
+import org.napile.compiler.lang.psi.NapileDeclaration;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.TextRange;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 19:20/18.10.26
+ */
+public class PseudocodeRecordTest extends TestCase
+{
+	private Disposable disposable;
+	private BindingTrace trace;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		disposable = Disposer.newDisposable();
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+		assertNull(exhaust.getError());
+		trace = exhaust.getBindingTrace();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Disposer.dispose(disposable);
+
+		super.tearDown();
+	}
+
+	public void testPseudocodeIsGeneratedOnce() throws Exception
+	{
+		assertFalse(trace.getKeys(BindingTraceKeys.PSEUDOCODE).isEmpty());
+
+		for(NapileDeclaration declaration : trace.getKeys(BindingTraceKeys.PSEUDOCODE))
+		{
+			Pseudocode pseudocode = trace.get(BindingTraceKeys.PSEUDOCODE, declaration);
+			assertSame(pseudocode, NapileControlFlowProcessor.getPseudocode(declaration, trace));
+			assertSame(pseudocode, new NapileControlFlowProcessor(trace).generatePseudocode(declaration));
+		}
+	}
+
+	public void testBodiesOfLocalDeclarationsAreShared() throws Exception
+	{
+		int count = 0;
+		for(NapileDeclaration declaration : trace.getKeys(BindingTraceKeys.PSEUDOCODE))
+		{
+			for(LocalDeclarationInstruction instruction : trace.get(BindingTraceKeys.PSEUDOCODE, declaration).getLocalDeclarations())
+			{
+				count++;
+
+				// body of anonym method is not valid alone
+				NapileDeclaration element = instruction.getElement();
+				if(element instanceof NapileAnonymMethod)
+					assertNull(trace.get(BindingTraceKeys.PSEUDOCODE, element));
+				else
+					assertSame(instruction.getBody(), trace.get(BindingTraceKeys.PSEUDOCODE, element));
+			}
+		}
+		assertTrue(count > 0);
+	}
+
+	public void testDiagnosticsAreNotDuplicated() throws Exception
+	{
+		List<String> diagnostics = new ArrayList<String>();
+		for(Diagnostic diagnostic : trace.getDiagnostics())
+			for(TextRange textRange : diagnostic.getTextRanges())
+				diagnostics.add(diagnostic.getPsiFile().getName() + ":" + textRange + ":" + diagnostic.getFactory().getName());
+
+		Set<String> unique = new HashSet<String>(diagnostics);
+		assertEquals(unique.size(), diagnostics.size());
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.util.slicedmap.CompactSlicedMap;
+import org.napile.compiler.util.slicedmap.MutableSlicedMap;
+import org.napile.compiler.util.slicedmap.SlicedMapImpl;
+import org.napile.compiler.util.slicedmap.SlicedMapKey;
+import org.napile.compiler.util.slicedmap.WritableSlice;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiRecursiveElementVisitor;
+
+/**
+ * Replays trace records of napileRt analysis into {@link SlicedMapImpl} and {@link CompactSlicedMap}, checks that
+ * both maps return same data, and prints time and retained heap of each implementation.
+ * <p/>
+ * It is not part of test suite - run it by {@link #main(String[])}. Behaviour of map is tested by {@link CompactSlicedMapTest}
+ *
+ * @author VISTALL
+ * @since 17:40/18.10.26
+ */
+public class SlicedMapBenchmark
+{
+	private static final int WARMUP_ROUNDS = 10;
+	private static final int ROUNDS = 30;
+	private static final int RETAINED_MAPS = 10;
+
+	private static final WritableSlice<?, ?>[] SLICES = new WritableSlice<?, ?>[]{
+			BindingTraceKeys.EXPRESSION_TYPE,
+			BindingTraceKeys.EXPRESSION_DATA_FLOW_INFO,
+			BindingTraceKeys.REFERENCE_TARGET,
+			BindingTraceKeys.RESOLVED_CALL,
+			BindingTraceKeys.CALL,
+			BindingTraceKeys.TYPE,
+			BindingTraceKeys.TYPE_RESOLUTION_SCOPE,
+			BindingTraceKeys.RESOLUTION_SCOPE,
+			BindingTraceKeys.AUTOCAST,
+			BindingTraceKeys.COMPILE_TIME_VALUE,
+			BindingTraceKeys.PROCESSED,
+			BindingTraceKeys.STATEMENT,
+			BindingTraceKeys.CLASS,
+			BindingTraceKeys.METHOD,
+			BindingTraceKeys.VARIABLE
+	};
+
+	private static interface MapFactory
+	{
+		MutableSlicedMap create();
+	}
+
+	private static final MapFactory SLICED_MAP_IMPL = new MapFactory()
+	{
+		@Override
+		public MutableSlicedMap create()
+		{
+			return SlicedMapImpl.create();
+		}
+
+		@Override
+		public String toString()
+		{
+			return "SlicedMapImpl";
+		}
+	};
+
+	private static final MapFactory COMPACT_SLICED_MAP = new MapFactory()
+	{
+		@Override
+		public MutableSlicedMap create()
+		{
+			return CompactSlicedMap.create();
+		}
+
+		@Override
+		public String toString()
+		{
+			return "CompactSlicedMap";
+		}
+	};
+
+	private final List<WritableSlice> opSlices = new ArrayList<WritableSlice>();
+	private final List<Object> opKeys = new ArrayList<Object>();
+	private final List<Object> opValues = new ArrayList<Object>();
+
+	public static void main(String[] args) throws Exception
+	{
+		NapileTestCase testCase = new NapileTestCase()
+		{
+		};
+		testCase.setUp();
+
+		SlicedMapBenchmark benchmark = new SlicedMapBenchmark(testCase.environment.getSourceFiles(), testCase.analyzeExhaust.getBindingTrace());
+		benchmark.run();
+	}
+
+	@SuppressWarnings("unchecked")
+	private SlicedMapBenchmark(Collection<NapileFile> files, final BindingTrace trace)
+	{
+		for(NapileFile file : files)
+		{
+			file.accept(new PsiRecursiveElementVisitor()
+			{
+				@Override
+				public void visitElement(PsiElement element)
+				{
+					for(WritableSlice slice : SLICES)
+					{
+						Object value = trace.get(slice.makeRawValueVersion(), element);
+						if(value != null)
+						{
+							opSlices.add(slice);
+							opKeys.add(element);
+							opValues.add(value);
+						}
+					}
+
+					super.visitElement(element);
+				}
+			});
+		}
+	}
+
+	private void run() throws Exception
+	{
+		check(!opKeys.isEmpty(), "no records");
+
+		MutableSlicedMap expected = fill(SLICED_MAP_IMPL.create());
+		MutableSlicedMap actual = fill(COMPACT_SLICED_MAP.create());
+
+		check(lookup(expected).equals(lookup(actual)), "values are not same");
+
+		Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>> expectedIterator = expected.iterator();
+		Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>> actualIterator = actual.iterator();
+		while(expectedIterator.hasNext())
+		{
+			check(actualIterator.hasNext(), "less entries");
+
+			Map.Entry<SlicedMapKey<?, ?>, ?> expectedEntry = expectedIterator.next();
+			Map.Entry<SlicedMapKey<?, ?>, ?> actualEntry = actualIterator.next();
+			check(expectedEntry.getKey().equals(actualEntry.getKey()) && expectedEntry.getValue() == actualEntry.getValue(), "entries are not same: " + expectedEntry + " " + actualEntry);
+		}
+		check(!actualIterator.hasNext(), "more entries");
+
+		System.out.println("Sliced map replay: " + opKeys.size() + " records");
+		for(MapFactory factory : new MapFactory[]{SLICED_MAP_IMPL, COMPACT_SLICED_MAP})
+		{
+			System.out.println(factory + ": " + measureTime(factory) / 1000 + " us/round, " + measureRetainedHeap(factory) / 1024 + " kb/map");
+		}
+	}
+
+	private long measureTime(MapFactory factory)
+	{
+		for(int i = 0; i < WARMUP_ROUNDS; i++)
+		{
+			runRound(factory);
+		}
+
+		long start = System.nanoTime();
+		for(int i = 0; i < ROUNDS; i++)
+		{
+			runRound(factory);
+		}
+		return (System.nanoTime() - start) / ROUNDS;
+	}
+
+	private void runRound(MapFactory factory)
+	{
+		MutableSlicedMap map = fill(factory.create());
+		lookup(map);
+		lookup(map);
+
+		int count = 0;
+		for(Map.Entry<SlicedMapKey<?, ?>, ?> entry : map)
+		{
+			count++;
+		}
+		check(count > 0, "empty map");
+	}
+
+	private long measureRetainedHeap(MapFactory factory) throws Exception
+	{
+		long before = usedHeap();
+
+		List<MutableSlicedMap> maps = new ArrayList<MutableSlicedMap>(RETAINED_MAPS);
+		for(int i = 0; i < RETAINED_MAPS; i++)
+		{
+			maps.add(fill(factory.create()));
+		}
+
+		long after = usedHeap();
+		check(maps.size() == RETAINED_MAPS, "maps are not retained");
+		return (after - before) / RETAINED_MAPS;
+	}
+
+	@SuppressWarnings("unchecked")
+	private MutableSlicedMap fill(MutableSlicedMap map)
+	{
+		for(int i = 0; i < opKeys.size(); i++)
+		{
+			map.put(opSlices.get(i), opKeys.get(i), opValues.get(i));
+		}
+		return map;
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Object> lookup(MutableSlicedMap map)
+	{
+		List<Object> result = new ArrayList<Object>(opKeys.size());
+		for(int i = 0; i < opKeys.size(); i++)
+		{
+			result.add(map.get(opSlices.get(i), opKeys.get(i)));
+		}
+		return result;
+	}
+
+	private static long usedHeap() throws Exception
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for(int i = 0; i < 3; i++)
+		{
+			System.gc();
+			Thread.sleep(50);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if(!condition)
+		{
+			throw new IllegalStateException(message);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+import org.napile.asm.LangVersion;
+import org.napile.asm.resolve.name.FqName;
+import org.napile.asm.tree.members.ClassNode;
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.bytecode.ClassFileFormat;
+import org.napile.compiler.codegen.CompilationErrorHandler;
+import org.napile.compiler.codegen.GenerationState;
+import org.napile.compiler.common.CompileEnvironmentException;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.common.StreamingClassNodeWriter;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.psi.NapileFile;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 21:00/18.10.26
+ */
+public class StreamingClassNodeWriterTest extends TestCase
+{
+	private static final int QUEUE_SIZE = 2;
+
+	private File tempDirectory;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		tempDirectory = FileUtil.createTempDirectory("streamingWriter", null);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		FileUtil.delete(tempDirectory);
+
+		super.tearDown();
+	}
+
+	public void testStreamedOutputOfParallelCodegen() throws Exception
+	{
+		File expectedDir = new File(tempDirectory, "expected");
+		File actualDir = new File(tempDirectory, "actual");
+
+		Map<FqName, ClassNode> classNodes = generate(1, null);
+		assertTrue(classNodes.size() > QUEUE_SIZE * 4);
+
+		for(ClassNode classNode : classNodes.values())
+			ClassFileFormat.XML.write(expectedDir, LangVersion.CURRENT, classNode);
+
+		StreamingClassNodeWriter writer = new StreamingClassNodeWriter(actualDir, ClassFileFormat.XML, QUEUE_SIZE);
+		try
+		{
+			assertTrue(generate(4, writer).isEmpty());
+		}
+		finally
+		{
+			writer.close();
+		}
+
+		for(FqName fqName : classNodes.keySet())
+		{
+			File actualFile = ClassFileFormat.XML.getOutputFile(actualDir, fqName);
+			assertTrue(fqName.getFqName(), actualFile.exists());
+			assertEquals(fqName.getFqName(), FileUtil.loadFile(ClassFileFormat.XML.getOutputFile(expectedDir, fqName)), FileUtil.loadFile(actualFile));
+		}
+	}
+
+	public void testErrorOfWriteIsThrownOnClose() throws Exception
+	{
+		// file in place of output directory - node can not be written
+		File outputDir = new File(tempDirectory, "file");
+		assertTrue(outputDir.createNewFile());
+
+		Map<FqName, ClassNode> classNodes = generate(1, null);
+
+		StreamingClassNodeWriter writer = new StreamingClassNodeWriter(outputDir, ClassFileFormat.BINARY, QUEUE_SIZE);
+		// all nodes are consumed after error - writer thread drains queue
+		for(ClassNode classNode : classNodes.values())
+			writer.consume(classNode);
+
+		try
+		{
+			writer.close();
+			fail();
+		}
+		catch(CompileEnvironmentException e)
+		{
+			assertNotNull(e.getCause());
+		}
+	}
+
+	private static Map<FqName, ClassNode> generate(int threads, @Nullable StreamingClassNodeWriter writer) throws Exception
+	{
+		Disposable disposable = Disposer.newDisposable();
+		try
+		{
+			NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+			environment.addSources(new File("testFramework/src/test/napileRt"));
+
+			AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+			assertNull(exhaust.getError());
+
+			GenerationState generationState = new GenerationState(environment.getProject(), null, exhaust, environment.getSourceFiles(), threads);
+			generationState.setClassNodeConsumer(writer);
+			generationState.compileAndGenerate(CompilationErrorHandler.THROW_EXCEPTION);
+			return generationState.getClassNodes();
+		}
+		finally
+		{
+			Disposer.dispose(disposable);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.descriptors.ClassDescriptor;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.SupertypeIndex;
+import org.napile.compiler.lang.types.TypeConstructor;
+import org.napile.compiler.lang.types.TypeSubstitutor;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.PsiElement;
+import junit.framework.TestCase;
+
+/**
+ * Index must give same results, as walks over supertypes, which are used for not indexed hierarchies
+ *
+ * @author VISTALL
+ * @since 18:40/18.10.26
+ */
+public class SupertypeIndexTest extends TestCase
+{
+	private Disposable disposable;
+	private List<ClassDescriptor> classDescriptors;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		disposable = Disposer.newDisposable();
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+		assertNull(exhaust.getError());
+
+		BindingTrace trace = exhaust.getBindingTrace();
+		classDescriptors = new ArrayList<ClassDescriptor>();
+		for(PsiElement element : trace.getKeys(BindingTraceKeys.CLASS))
+			classDescriptors.add(trace.get(BindingTraceKeys.CLASS, element));
+		assertFalse(classDescriptors.isEmpty());
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Disposer.dispose(disposable);
+
+		super.tearDown();
+	}
+
+	public void testAncestors() throws Exception
+	{
+		for(ClassDescriptor classDescriptor : classDescriptors)
+		{
+			TypeConstructor constructor = classDescriptor.getTypeConstructor();
+			SupertypeIndex index = SupertypeIndex.getIndex(constructor);
+			if(index == null)
+				continue;
+
+			Set<TypeConstructor> expected = new HashSet<TypeConstructor>();
+			markAll(constructor, expected);
+
+			List<TypeConstructor> ancestors = index.getAncestors();
+			assertEquals(classDescriptor.toString(), expected, new HashSet<TypeConstructor>(ancestors));
+			assertEquals(expected.size(), ancestors.size());
+			assertSame(constructor, ancestors.get(0));
+
+			// each constructor is placed before its supertypes
+			for(int i = 0; i < ancestors.size(); i++)
+				for(NapileType supertype : ancestors.get(i).getSupertypes())
+					assertTrue(classDescriptor.toString(), ancestors.indexOf(supertype.getConstructor()) > i);
+		}
+	}
+
+	public void testCorrespondingSupertypes() throws Exception
+	{
+		for(ClassDescriptor classDescriptor : classDescriptors)
+		{
+			NapileType type = classDescriptor.getDefaultType();
+			SupertypeIndex index = SupertypeIndex.getIndex(type.getConstructor());
+			if(index == null)
+				continue;
+
+			for(TypeConstructor ancestor : index.getAncestors())
+			{
+				NapileType expected = findCorrespondingSupertype(type, ancestor);
+				assertNotNull(expected);
+				assertEquals(classDescriptor + " " + ancestor, expected, index.getCorrespondingSupertype(type, ancestor));
+			}
+		}
+	}
+
+	public void testInvalidation() throws Exception
+	{
+		TypeConstructor constructor = null;
+		SupertypeIndex index = null;
+		for(int i = 0; index == null && i < classDescriptors.size(); i++)
+		{
+			constructor = classDescriptors.get(i).getTypeConstructor();
+			index = SupertypeIndex.getIndex(constructor);
+		}
+		assertNotNull(index);
+		assertSame(index, SupertypeIndex.getIndex(constructor));
+
+		SupertypeIndex.invalidateAll();
+		assertNotSame(index, SupertypeIndex.getIndex(constructor));
+	}
+
+	private static void markAll(TypeConstructor typeConstructor, Set<TypeConstructor> markerSet)
+	{
+		if(!markerSet.add(typeConstructor))
+			return;
+		for(NapileType type : typeConstructor.getSupertypes())
+			markAll(type.getConstructor(), markerSet);
+	}
+
+	private static NapileType findCorrespondingSupertype(NapileType subtype, TypeConstructor superConstructor)
+	{
+		TypeConstructor constructor = subtype.getConstructor();
+		if(constructor.equals(superConstructor))
+			return subtype;
+		for(NapileType immediateSupertype : constructor.getSupertypes())
+		{
+			NapileType correspondingSupertype = findCorrespondingSupertype(immediateSupertype, superConstructor);
+			if(correspondingSupertype != null)
+				return TypeSubstitutor.create(subtype).safeSubstitute(correspondingSupertype);
+		}
+		return null;
+	}
+}
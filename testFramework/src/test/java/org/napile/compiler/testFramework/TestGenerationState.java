@@ -24,10 +24,12 @@ import java.util.List;
 import java.util.Map;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.napile.asm.resolve.name.FqName;
 import org.napile.asm.tree.members.ClassNode;
 import org.napile.compiler.analyzer.AnalyzeExhaust;
 import org.napile.compiler.codegen.GenerationState;
+import org.napile.compiler.codegen.processors.AsmNodeCache;
 import org.napile.compiler.codegen.processors.ClassCodegen;
 import org.napile.compiler.codegen.processors.ExpressionCodegenContext;
 import org.napile.compiler.codegen.processors.FqNameGenerator;
@@ -45,14 +47,22 @@ public class TestGenerationState
 	private final Collection<NapileFile> files;
 	@NotNull
 	private final BindingTrace bindingTrace;
+	@Nullable
+	private final AsmNodeCache asmNodeCache;
 
 	private Map<FqName, ClassNode> classNodes = new LinkedHashMap<FqName, ClassNode>();
 
 	private boolean used = false;
 
 	public TestGenerationState(@NotNull AnalyzeExhaust exhaust, @NotNull Collection<NapileFile> files)
+	{
+		this(exhaust, files, null);
+	}
+
+	public TestGenerationState(@NotNull AnalyzeExhaust exhaust, @NotNull Collection<NapileFile> files, @Nullable AsmNodeCache asmNodeCache)
 	{
 		this.files = files;
+		this.asmNodeCache = asmNodeCache;
 
 		this.bindingTrace = exhaust.getBindingTrace();
 	}
@@ -92,7 +102,7 @@ public class TestGenerationState
 
 			classNodes = new LinkedHashMap<FqName, ClassNode>(classes.size());
 
-			ClassCodegen classCodegen = new ClassCodegen(bindingTrace);
+			ClassCodegen classCodegen = new ClassCodegen(bindingTrace, asmNodeCache);
 			for(NapileClass napileClass : classes)
 			{
 				file = napileClass.getContainingFile();
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.descriptors.ClassDescriptor;
+import org.napile.compiler.lang.psi.NapileExpression;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.TypeSubstitutor;
+import org.napile.compiler.lang.types.TypeUtils;
+import org.napile.compiler.lang.types.checker.NapileTypeChecker;
+import org.napile.compiler.lang.types.checker.TypeCheckerCache;
+import org.napile.compiler.lang.types.impl.NapileTypeImpl;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 17:20/18.10.26
+ */
+public class TypeCheckerCacheTest extends TestCase
+{
+	private Disposable disposable;
+	private List<NapileType> types;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		disposable = Disposer.newDisposable();
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+		assertNull(exhaust.getError());
+
+		BindingTrace trace = exhaust.getBindingTrace();
+		Set<NapileType> result = new LinkedHashSet<NapileType>();
+		for(NapileExpression expression : trace.getKeys(BindingTraceKeys.EXPRESSION_TYPE))
+		{
+			NapileType type = trace.get(BindingTraceKeys.EXPRESSION_TYPE, expression);
+			if(type instanceof NapileTypeImpl && result.size() < 100)
+				result.add(type);
+		}
+		types = new ArrayList<NapileType>(result);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		TypeCheckerCache cache = TypeCheckerCache.getCurrentCache();
+		if(cache != null)
+			cache.endSession();
+		Disposer.dispose(disposable);
+
+		super.tearDown();
+	}
+
+	public void testSessionIsEndedByAnalyzer() throws Exception
+	{
+		assertNull(TypeCheckerCache.getCurrentCache());
+	}
+
+	public void testSameResultsAsWithoutCache() throws Exception
+	{
+		boolean[] expected = checkAll();
+
+		TypeCheckerCache cache = TypeCheckerCache.startSession();
+		boolean[] first = checkAll();
+		boolean[] second = checkAll();
+
+		assertTrue(cache.getHits() > 0);
+		assertTrue(cache.getSize() > 0);
+		for(int i = 0; i < expected.length; i++)
+		{
+			assertEquals(expected[i], first[i]);
+			assertEquals(expected[i], second[i]);
+		}
+	}
+
+	public void testResultsAreNotSharedBetweenSessions() throws Exception
+	{
+		TypeCheckerCache first = TypeCheckerCache.startSession();
+		checkAll();
+		assertTrue(first.getSize() > 0);
+		first.endSession();
+
+		assertNull(TypeCheckerCache.getCurrentCache());
+		assertEquals(0, first.getSize());
+
+		TypeCheckerCache second = TypeCheckerCache.startSession();
+		assertNotSame(first, second);
+		assertEquals(0, second.getSize());
+	}
+
+	public void testInvalidation() throws Exception
+	{
+		TypeCheckerCache cache = TypeCheckerCache.startSession();
+		checkAll();
+		assertTrue(cache.getSize() > 0);
+
+		TypeCheckerCache.invalidateCurrent();
+		assertEquals(0, cache.getSize());
+	}
+
+	public void testSubstitutedClassInvalidates() throws Exception
+	{
+		NapileType genericType = null;
+		for(NapileType type : types)
+			if(!type.getArguments().isEmpty() && TypeUtils.getClassDescriptor(type) != null)
+				genericType = type;
+		assertNotNull(genericType);
+
+		TypeCheckerCache cache = TypeCheckerCache.startSession();
+		checkAll();
+		assertTrue(cache.getSize() > 0);
+
+		ClassDescriptor classDescriptor = TypeUtils.getClassDescriptor(genericType);
+		classDescriptor.substitute(TypeSubstitutor.create(genericType)).getTypeConstructor();
+		assertEquals(0, cache.getSize());
+	}
+
+	private boolean[] checkAll()
+	{
+		boolean[] result = new boolean[types.size() * types.size() * 2];
+		int i = 0;
+		for(NapileType first : types)
+			for(NapileType second : types)
+			{
+				result[i++] = NapileTypeChecker.INSTANCE.isSubtypeOf(first, second);
+				result[i++] = NapileTypeChecker.INSTANCE.equalTypes(first, second);
+			}
+		return result;
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010-2013 napile.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.napile.compiler.testFramework;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.napile.compiler.analyzer.AnalyzeExhaust;
+import org.napile.compiler.analyzer.AnalyzerFacade;
+import org.napile.compiler.common.NapileCoreEnvironment;
+import org.napile.compiler.config.CompilerConfiguration;
+import org.napile.compiler.lang.descriptors.ClassDescriptor;
+import org.napile.compiler.lang.psi.NapileExpression;
+import org.napile.compiler.lang.psi.NapileFile;
+import org.napile.compiler.lang.resolve.BindingTrace;
+import org.napile.compiler.lang.resolve.BindingTraceKeys;
+import org.napile.compiler.lang.types.ErrorUtils;
+import org.napile.compiler.lang.types.NapileType;
+import org.napile.compiler.lang.types.TypeConstructor;
+import org.napile.compiler.lang.types.TypeSubstitution;
+import org.napile.compiler.lang.types.TypeSubstitutor;
+import org.napile.compiler.lang.types.TypeUtils;
+import org.napile.compiler.lang.types.impl.NapileTypeImpl;
+import org.napile.compiler.lang.types.impl.TypeConstructorImpl;
+import com.google.common.base.Predicates;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import junit.framework.TestCase;
+
+/**
+ * @author VISTALL
+ * @since 18:10/18.10.26
+ */
+public class TypeSubstitutorTest extends TestCase
+{
+	private Disposable disposable;
+	// type with arguments, for example Array<String>
+	private NapileType type;
+	// default type of class of type, for example Array<E>
+	private NapileType defaultType;
+	// type without arguments
+	private NapileType simpleType;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		disposable = Disposer.newDisposable();
+		NapileCoreEnvironment environment = new NapileCoreEnvironment(disposable, new CompilerConfiguration());
+		environment.addSources(new File("testFramework/src/test/napileRt"));
+
+		AnalyzeExhaust exhaust = AnalyzerFacade.analyzeFiles(environment.getProject(), environment.makeAnalyzeContext(), Predicates.<NapileFile>alwaysTrue());
+		assertNull(exhaust.getError());
+
+		BindingTrace trace = exhaust.getBindingTrace();
+		for(NapileExpression expression : trace.getKeys(BindingTraceKeys.EXPRESSION_TYPE))
+		{
+			NapileType expressionType = trace.get(BindingTraceKeys.EXPRESSION_TYPE, expression);
+			if(!(expressionType instanceof NapileTypeImpl) || !(expressionType.getConstructor() instanceof TypeConstructorImpl) || ErrorUtils.isErrorType(expressionType))
+				continue;
+
+			ClassDescriptor classDescriptor = TypeUtils.getClassDescriptor(expressionType);
+			if(classDescriptor == null)
+				continue;
+
+			if(expressionType.getArguments().isEmpty())
+			{
+				if(simpleType == null)
+					simpleType = expressionType;
+			}
+			else if(type == null && ((NapileTypeImpl) expressionType).getFreeTypeParameters().isEmpty())
+			{
+				type = expressionType;
+				defaultType = classDescriptor.getDefaultType();
+			}
+		}
+		assertNotNull(type);
+		assertNotNull(simpleType);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		Disposer.dispose(disposable);
+
+		super.tearDown();
+	}
+
+	public void testSubstitution() throws Exception
+	{
+		assertFalse(((NapileTypeImpl) defaultType).getFreeTypeParameters().isEmpty());
+
+		NapileType result = TypeSubstitutor.create(type).safeSubstitute(defaultType);
+		assertNotSame(defaultType, result);
+		assertEquals(type, result);
+	}
+
+	public void testEmptySubstitutionReturnsSameType() throws Exception
+	{
+		assertSame(defaultType, TypeSubstitutor.EMPTY.safeSubstitute(defaultType));
+	}
+
+	public void testTypeWithoutTypeParametersIsNotChanged() throws Exception
+	{
+		TypeSubstitutor substitutor = TypeSubstitutor.create(type);
+
+		assertTrue(((NapileTypeImpl) simpleType).getFreeTypeParameters().isEmpty());
+		assertSame(simpleType, substitutor.safeSubstitute(simpleType));
+		assertSame(type, substitutor.safeSubstitute(type));
+	}
+
+	public void testSubstitutionByMapIsMemoized() throws Exception
+	{
+		TypeSubstitutor substitutor = TypeSubstitutor.create(type);
+
+		assertSame(substitutor.safeSubstitute(defaultType), substitutor.safeSubstitute(defaultType));
+	}
+
+	public void testChangeableSubstitutionIsNotMemoized() throws Exception
+	{
+		TypeConstructor typeParameter = defaultType.getArguments().get(0).getConstructor();
+		final Map<TypeConstructor, NapileType> map = new HashMap<TypeConstructor, NapileType>();
+		TypeSubstitutor substitutor = TypeSubstitutor.create(new TypeSubstitution()
+		{
+			@Override
+			public NapileType get(TypeConstructor key)
+			{
+				return map.get(key);
+			}
+
+			@Override
+			public boolean isEmpty()
+			{
+				return map.isEmpty();
+			}
+		});
+
+		map.put(typeParameter, simpleType);
+		NapileType first = substitutor.safeSubstitute(defaultType);
+		assertEquals(simpleType, first.getArguments().get(0));
+
+		map.put(typeParameter, type);
+		NapileType second = substitutor.safeSubstitute(defaultType);
+		assertEquals(type, second.getArguments().get(0));
+	}
+}